@@ -20,6 +20,8 @@
 
 package com.apple.foundationdb.async;
 
+import com.apple.foundationdb.FDBError;
+import com.apple.foundationdb.FDBException;
 import com.apple.foundationdb.KeySelector;
 import com.apple.foundationdb.KeyValue;
 import com.apple.foundationdb.MutationType;
@@ -39,9 +41,14 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.zip.CRC32;
@@ -118,6 +125,7 @@ public class RankedSet {
     protected final Subspace subspace;
     protected final Executor executor;
     protected final Config config;
+    protected final RankedSetLevelCache levelCache;
 
     static {
         LEVEL_FAN_VALUES = new int[MAX_LEVELS];
@@ -129,6 +137,11 @@ public class RankedSet {
     private static final byte[] EMPTY_ARRAY = new byte[0];
     private static final byte[] ZERO_ARRAY = new byte[] { 0 };
 
+    // Set to the versionstamp of every transaction that changes the set, if the config tracks changes.
+    private static final Tuple VERSION_KEY = Tuple.from("version");
+    // An incomplete 10-byte versionstamp followed by its offset.
+    private static final byte[] VERSION_VALUE = ByteBuffer.allocate(14).order(ByteOrder.LITTLE_ENDIAN).putInt(10, 0).array();
+
     private static byte[] encodeLong(long count) {
         return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(count).array();
     }
@@ -155,17 +168,24 @@ public class RankedSet {
         private final HashFunction hashFunction;
         private final int nlevels;
         private final boolean countDuplicates;
+        private final boolean trackChanges;
 
         protected Config() {
             this.hashFunction = DEFAULT_HASH_FUNCTION;
             this.nlevels = DEFAULT_LEVELS;
             this.countDuplicates = false;
+            this.trackChanges = false;
         }
 
         protected Config(HashFunction hashFunction, int nlevels, boolean countDuplicates) {
+            this(hashFunction, nlevels, countDuplicates, false);
+        }
+
+        protected Config(HashFunction hashFunction, int nlevels, boolean countDuplicates, boolean trackChanges) {
             this.hashFunction = hashFunction;
             this.nlevels = nlevels;
             this.countDuplicates = countDuplicates;
+            this.trackChanges = trackChanges;
         }
 
         /**
@@ -192,8 +212,18 @@ public class RankedSet {
             return countDuplicates;
         }
 
+        /**
+         * Get whether every change to the set records a version, which allows its coarser levels to be cached.
+         * @return {@code true} if changes are tracked
+         * @see RankedSetLevelCache
+         */
+        @API(API.Status.EXPERIMENTAL)
+        public boolean isTrackChanges() {
+            return trackChanges;
+        }
+
         public ConfigBuilder toBuilder() {
-            return new ConfigBuilder(hashFunction, nlevels, countDuplicates);
+            return new ConfigBuilder(hashFunction, nlevels, countDuplicates, trackChanges);
         }
     }
 
@@ -206,14 +236,20 @@ public class RankedSet {
         private HashFunction hashFunction = DEFAULT_HASH_FUNCTION;
         private int nlevels = DEFAULT_LEVELS;
         private boolean countDuplicates = false;
+        private boolean trackChanges = false;
 
         protected ConfigBuilder() {
         }
 
         protected ConfigBuilder(HashFunction hashFunction, int nlevels, boolean countDuplicates) {
+            this(hashFunction, nlevels, countDuplicates, false);
+        }
+
+        protected ConfigBuilder(HashFunction hashFunction, int nlevels, boolean countDuplicates, boolean trackChanges) {
             this.hashFunction = hashFunction;
             this.nlevels = nlevels;
             this.countDuplicates = countDuplicates;
+            this.trackChanges = trackChanges;
         }
 
         public HashFunction getHashFunction() {
@@ -268,8 +304,27 @@ public class RankedSet {
             return this;
         }
 
+        @API(API.Status.EXPERIMENTAL)
+        public boolean isTrackChanges() {
+            return trackChanges;
+        }
+
+        /**
+         * Set whether every change to the set records a version.
+         *
+         * This allows the coarser levels of the set to be kept in a {@link RankedSetLevelCache}. It costs one
+         * additional versionstamped mutation in each transaction that changes the set.
+         * @param trackChanges whether to track changes
+         * @return this builder
+         */
+        @API(API.Status.EXPERIMENTAL)
+        public ConfigBuilder setTrackChanges(boolean trackChanges) {
+            this.trackChanges = trackChanges;
+            return this;
+        }
+
         public Config build() {
-            return new Config(hashFunction, nlevels, countDuplicates);
+            return new Config(hashFunction, nlevels, countDuplicates, trackChanges);
         }
     }
 
@@ -289,9 +344,23 @@ public class RankedSet {
      * @param config configuration to use
      */
     public RankedSet(Subspace subspace, Executor executor, Config config) {
+        this(subspace, executor, config, null);
+    }
+
+    /**
+     * Initialize a new ranked set that keeps its coarser levels in a cache.
+     * @param subspace the subspace where the ranked set is stored
+     * @param executor an executor to use when running asynchronous tasks
+     * @param config configuration to use
+     * @param levelCache a cache of the coarser levels of ranked sets or {@code null} to not cache them, which is only
+     * used if {@code config} {@linkplain Config#isTrackChanges tracks changes}
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public RankedSet(Subspace subspace, Executor executor, Config config, RankedSetLevelCache levelCache) {
         this.subspace = subspace;
         this.executor = executor;
         this.config = config;
+        this.levelCache = levelCache;
     }
 
     /**
@@ -387,6 +456,7 @@ public class RankedSet {
                     if (duplicate && !config.isCountDuplicates()) {
                         return READY_FALSE;
                     }
+                    recordChange(tr);
                     final int nlevels = config.getNLevels();
                     List<CompletableFuture<Void>> futures = new ArrayList<>(nlevels);
                     for (int li = 0; li < nlevels; ++li) {
@@ -413,6 +483,24 @@ public class RankedSet {
                 }));
     }
 
+    /**
+     * Add several keys to the set.
+     *
+     * This is equivalent to calling {@link #add} for each key in turn, but does the work one level at a time,
+     * with the keys in sorted order. Keys that fall between the same pair of keys on a level share the reads needed
+     * to find them and the change to that interval's count is made with a single mutation. This makes it much cheaper
+     * than individual calls when adding many keys in one transaction, particularly ones that are close together.
+     * @param tc the transaction to use to access the database
+     * @param keys the keys to add
+     * @return a future that completes to a list with, for each key in the order given, whether adding it modified the
+     * ranked set, as {@link #add} would have returned
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public CompletableFuture<List<Boolean>> addAll(TransactionContext tc, List<byte[]> keys) {
+        keys.forEach(RankedSet::checkKey);
+        return tc.runAsync(tr -> new BatchUpdate(tr, keys, false).run());
+    }
+
     // Use the hash of the key, instead a p value and randomLevel. The key is likely Tuple-encoded.
     protected int getKeyHash(final byte[] key) {
         return config.getHashFunction().hash(key);
@@ -460,6 +548,7 @@ public class RankedSet {
                             if (count == null || count <= 0) {
                                 return READY_FALSE;
                             }
+                            recordChange(tr);
                             // This works even if the current set does not track duplicates but duplicates were added
                             // earlier by one that did.
                             final boolean duplicate = count > 1;
@@ -512,6 +601,22 @@ public class RankedSet {
                         }));
     }
 
+    /**
+     * Removes several keys from the set.
+     *
+     * This is equivalent to calling {@link #remove} for each key in turn, but shares reads and count mutations
+     * between keys in the same way as {@link #addAll}.
+     * @param tc the transaction to use to access the database
+     * @param keys the keys to remove
+     * @return a future that completes to a list with, for each key in the order given, whether removing it modified the
+     * ranked set, as {@link #remove} would have returned
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public CompletableFuture<List<Boolean>> removeAll(TransactionContext tc, List<byte[]> keys) {
+        keys.forEach(RankedSet::checkKey);
+        return tc.runAsync(tr -> new BatchUpdate(tr, keys, true).run());
+    }
+
     /**
      * Clears the entire set.
      * @param tc the transaction to use to access the database
@@ -521,6 +626,7 @@ public class RankedSet {
         Range range = subspace.range();
         return tc.runAsync(tr -> {
             tr.clear(range);
+            recordChange(tr);
             return initLevels(tr);
         });
     }
@@ -568,6 +674,32 @@ public class RankedSet {
             return key;
         }
 
+        // Do the part of the lookup that is on cached levels, returning whether it needs to continue on finer ones.
+        boolean lookupCached(List<NavigableMap<byte[], Long>> cachedLevels) {
+            final int minLevel = level - cachedLevels.size();
+            while (level > minLevel) {
+                level--;
+                boolean narrowed = false;
+                for (Map.Entry<byte[], Long> entry : cachedLevels.get(level - minLevel).tailMap(key, true).entrySet()) {
+                    key = entry.getKey();
+                    if (rank == 0 && key.length > 0) {
+                        return false;
+                    }
+                    long count = entry.getValue();
+                    if (count > rank) {
+                        narrowed = true;
+                        break;
+                    }
+                    rank -= count;
+                }
+                if (!narrowed) {
+                    key = null;
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
         public CompletableFuture<Boolean> next(ReadTransaction tr) {
             final boolean newIterator = asyncIterator == null;
@@ -630,7 +762,12 @@ public class RankedSet {
         }
         return tc.readAsync(tr -> {
             NthLookup nth = new NthLookup(rank);
-            return AsyncUtil.whileTrue(() -> nextLookup(nth, tr), executor).thenApply(vignore -> nth.getKey());
+            return getCachedLevels(tr).thenCompose(cachedLevels -> {
+                if (cachedLevels != null && !nth.lookupCached(cachedLevels)) {
+                    return CompletableFuture.completedFuture(nth.getKey());
+                }
+                return AsyncUtil.whileTrue(() -> nextLookup(nth, tr), executor).thenApply(vignore -> nth.getKey());
+            });
         });
     }
 
@@ -665,6 +802,77 @@ public class RankedSet {
         return tr.getRange(subspace.range(), config.getNLevels(), true).asList().thenApply(l -> null);
     }
 
+    // Get the coarser levels from the cache, first reading them if they have changed, or null if they cannot be cached.
+    private CompletableFuture<List<NavigableMap<byte[], Long>>> getCachedLevels(ReadTransaction tr) {
+        if (levelCache == null || !config.isTrackChanges() || levelCache.getMinLevel() >= config.getNLevels()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final int minLevel = levelCache.getMinLevel();
+        final byte[] begin = subspace.range(Tuple.from(minLevel)).begin;
+        final byte[] end = subspace.range(Tuple.from(config.getNLevels() - 1)).end;
+        return tr.snapshot().get(subspace.pack(VERSION_KEY)).handle((version, err) -> {
+            if (err == null) {
+                return version;
+            }
+            if (isAccessedUnreadable(err)) {
+                // The set was changed earlier in this transaction, so the version is not known yet.
+                return null;
+            }
+            throw err instanceof CompletionException ? (CompletionException)err : new CompletionException(err);
+        }).thenCompose(version -> {
+            if (version == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            List<NavigableMap<byte[], Long>> cached = levelCache.get(subspace, version);
+            levelCacheLookup(cached != null);
+            final CompletableFuture<List<NavigableMap<byte[], Long>>> levels;
+            if (cached != null) {
+                levels = CompletableFuture.completedFuture(cached);
+            } else {
+                levels = tr.snapshot().getRange(begin, end).asList().thenApply(kvs -> {
+                    final List<NavigableMap<byte[], Long>> read = new ArrayList<>(config.getNLevels() - minLevel);
+                    for (int level = minLevel; level < config.getNLevels(); level++) {
+                        read.add(new TreeMap<>(ByteArrayUtil::compareUnsigned));
+                    }
+                    for (KeyValue kv : kvs) {
+                        final Tuple t = subspace.unpack(kv.getKey());
+                        read.get((int)t.getLong(0) - minLevel).put(t.getBytes(1), decodeLong(kv.getValue()));
+                    }
+                    levelCache.put(subspace, version, read);
+                    return read;
+                });
+            }
+            return levels.thenApply(l -> {
+                // Conflict with changes to the set just as though these levels had been read by the lookup.
+                tr.addReadConflictRangeIfNotSnapshot(begin, end);
+                return l;
+            });
+        });
+    }
+
+    private static boolean isAccessedUnreadable(Throwable err) {
+        while (err != null) {
+            if (err instanceof FDBException) {
+                return ((FDBException)err).getCode() == FDBError.ACCESSED_UNREADABLE.code();
+            }
+            err = err.getCause();
+        }
+        return false;
+    }
+
+    private void recordChange(Transaction tr) {
+        if (config.isTrackChanges()) {
+            tr.mutate(MutationType.SET_VERSIONSTAMPED_VALUE, subspace.pack(VERSION_KEY), VERSION_VALUE);
+        }
+    }
+
+    /**
+     * Called when looking up whether the coarser levels of the set are in the {@link RankedSetLevelCache}.
+     * @param hit whether the levels were cached at the set's current version
+     */
+    protected void levelCacheLookup(boolean hit) {
+    }
+
     protected CompletableFuture<Boolean> nextLookup(Lookup lookup, ReadTransaction tr) {
         return lookup.next(tr);
     }
@@ -699,6 +907,25 @@ public class RankedSet {
             return rank;
         }
 
+        // Do the part of the lookup that is on cached levels, returning whether it needs to continue on finer ones.
+        boolean lookupCached(List<NavigableMap<byte[], Long>> cachedLevels) {
+            final int minLevel = level - cachedLevels.size();
+            while (level > minLevel) {
+                level--;
+                lastCount = 0;
+                for (Map.Entry<byte[], Long> entry : cachedLevels.get(level - minLevel).subMap(rankKey, true, key, true).entrySet()) {
+                    rankKey = entry.getKey();
+                    lastCount = entry.getValue();
+                    rank += lastCount;
+                }
+                rank -= lastCount;
+                if (Arrays.equals(rankKey, key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
         public CompletableFuture<Boolean> next(ReadTransaction tr) {
             final boolean newIterator = asyncIterator == null;
@@ -789,7 +1016,12 @@ public class RankedSet {
 
     private CompletableFuture<Long> rankLookup(ReadTransaction tr, byte[] key, boolean keyShouldBePresent) {
         RankLookup rank = new RankLookup(key, keyShouldBePresent);
-        return AsyncUtil.whileTrue(() -> nextLookup(rank, tr), executor).thenApply(vignore -> rank.getRank());
+        return getCachedLevels(tr).thenCompose(cachedLevels -> {
+            if (cachedLevels != null && !rank.lookupCached(cachedLevels)) {
+                return CompletableFuture.completedFuture(rank.getRank());
+            }
+            return AsyncUtil.whileTrue(() -> nextLookup(rank, tr), executor).thenApply(vignore -> rank.getRank());
+        });
     }
 
     /**
@@ -924,6 +1156,288 @@ public class RankedSet {
         });
     }
 
+    /**
+     * State for {@link #addAll} and {@link #removeAll}.
+     *
+     * The levels are updated in order, since inserting a key into a level needs the final counts of the level below.
+     * On each level, every key is assigned the closest preceding key on that level that will remain after the batch,
+     * which is the key whose count it changes. Keys that share a preceding key on one level also share one on the next,
+     * unless a key in between is present on the next level, so the reads for the next level are done once for each
+     * such group and also return any keys in between.
+     */
+    private class BatchUpdate {
+        private final Transaction tr;
+        private final boolean remove;
+        private final List<byte[]> keys;
+        private final TreeMap<byte[], BatchKey> distinctKeys;
+
+        BatchUpdate(Transaction tr, List<byte[]> keys, boolean remove) {
+            this.tr = tr;
+            this.remove = remove;
+            this.keys = keys;
+            this.distinctKeys = new TreeMap<>(ByteArrayUtil::compareUnsigned);
+            for (byte[] key : keys) {
+                distinctKeys.computeIfAbsent(key, BatchKey::new).occurrences++;
+            }
+        }
+
+        CompletableFuture<List<Boolean>> run() {
+            final List<CompletableFuture<Void>> counts = new ArrayList<>(distinctKeys.size());
+            for (BatchKey batchKey : distinctKeys.values()) {
+                counts.add(countCheckedKey(tr, batchKey.key).thenAccept(count -> batchKey.count = count == null ? 0 : count));
+            }
+            return AsyncUtil.whenAll(counts).thenCompose(vignore -> {
+                final List<BatchKey> changed = new ArrayList<>(distinctKeys.size());
+                for (BatchKey batchKey : distinctKeys.values()) {
+                    if (remove) {
+                        batchKey.amount = Math.min(batchKey.occurrences, batchKey.count);
+                    } else if (config.isCountDuplicates()) {
+                        batchKey.amount = batchKey.occurrences;
+                    } else {
+                        batchKey.amount = batchKey.count > 0 ? 0 : 1;
+                    }
+                    if (batchKey.amount > 0) {
+                        changed.add(batchKey);
+                    }
+                }
+                if (changed.isEmpty()) {
+                    return DONE;
+                }
+                recordChange(tr);
+                updateLevelZero(changed);
+                // Initially, each key is in a group by itself.
+                List<List<BatchKey>> groups = new ArrayList<>(changed.size());
+                for (BatchKey batchKey : changed) {
+                    groups.add(Collections.singletonList(batchKey));
+                }
+                return updateLevels(1, groups);
+            }).thenApply(vignore -> results());
+        }
+
+        private List<Boolean> results() {
+            final List<Boolean> results = new ArrayList<>(keys.size());
+            for (byte[] key : keys) {
+                final BatchKey batchKey = distinctKeys.get(key);
+                // As many of the occurrences as were applied modified the set.
+                results.add(batchKey.returned++ < batchKey.amount);
+            }
+            return results;
+        }
+
+        private void updateLevelZero(List<BatchKey> changed) {
+            for (BatchKey batchKey : changed) {
+                final byte[] k = subspace.pack(Tuple.from(0, batchKey.key));
+                if (remove) {
+                    if (batchKey.isRemovedEntirely()) {
+                        tr.clear(k);
+                    } else {
+                        tr.set(k, encodeLong(batchKey.count - batchKey.amount));
+                    }
+                } else if (batchKey.count > 0) {
+                    tr.mutate(MutationType.ADD, k, encodeLong(batchKey.amount));
+                } else {
+                    tr.set(k, encodeLong(batchKey.amount));
+                }
+            }
+        }
+
+        private CompletableFuture<Void> updateLevels(int level, List<List<BatchKey>> groups) {
+            if (level >= config.getNLevels()) {
+                return DONE;
+            }
+            final List<CompletableFuture<List<Interval>>> futures = new ArrayList<>(groups.size());
+            for (List<BatchKey> group : groups) {
+                futures.add(findIntervals(level, group));
+            }
+            return AsyncUtil.getAll(futures).thenCompose(groupIntervals -> {
+                // Adjacent groups can share a preceding key on this level, so combine their intervals.
+                final List<Interval> merged = new ArrayList<>();
+                for (List<Interval> intervals : groupIntervals) {
+                    for (Interval interval : intervals) {
+                        final Interval previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                        if (previous != null && Arrays.equals(previous.prevKey, interval.prevKey)) {
+                            previous.members.addAll(interval.members);
+                        } else {
+                            merged.add(interval);
+                        }
+                    }
+                }
+                final List<List<BatchKey>> nextGroups = new ArrayList<>(merged.size());
+                final List<CompletableFuture<Void>> updates = new ArrayList<>(merged.size());
+                for (Interval interval : merged) {
+                    updates.add(updateInterval(level, interval));
+                    nextGroups.add(interval.members);
+                }
+                return AsyncUtil.whenAll(updates).thenCompose(vignore -> updateLevels(level + 1, nextGroups));
+            });
+        }
+
+        // Read the keys on the given level needed to find the remaining preceding key for each member of the group.
+        private CompletableFuture<List<Interval>> findIntervals(int level, List<BatchKey> group) {
+            final BatchKey first = group.get(0);
+            final BatchKey last = group.get(group.size() - 1);
+            final byte[] firstKey = subspace.pack(Tuple.from(level, first.key));
+            final byte[] lastKey = subspace.pack(Tuple.from(level, last.key));
+            // Enough to get past any keys on the level that will be removed.
+            int limit = 1;
+            if (remove) {
+                for (BatchKey batchKey : distinctKeys.headMap(first.key, true).values()) {
+                    if (batchKey.isRemovedEntirely()) {
+                        limit++;
+                    }
+                }
+            }
+            final CompletableFuture<List<KeyValue>> before = tr.snapshot()
+                    .getRange(subspace.pack(Tuple.from(level, EMPTY_ARRAY)), ByteArrayUtil.join(firstKey, ZERO_ARRAY), limit, true)
+                    .asList();
+            final CompletableFuture<List<KeyValue>> within = group.size() == 1 ?
+                                                             CompletableFuture.completedFuture(Collections.emptyList()) :
+                                                             tr.snapshot().getRange(ByteArrayUtil.join(firstKey, ZERO_ARRAY), ByteArrayUtil.join(lastKey, ZERO_ARRAY)).asList();
+            return before.thenCombine(within, (beforeKvs, withinKvs) -> {
+                final TreeMap<byte[], Long> levelKeys = new TreeMap<>(ByteArrayUtil::compareUnsigned);
+                for (KeyValue kv : beforeKvs) {
+                    levelKeys.put(subspace.unpack(kv.getKey()).getBytes(1), decodeLong(kv.getValue()));
+                }
+                for (KeyValue kv : withinKvs) {
+                    levelKeys.put(subspace.unpack(kv.getKey()).getBytes(1), decodeLong(kv.getValue()));
+                }
+                final List<Interval> intervals = new ArrayList<>();
+                Interval interval = null;
+                for (BatchKey batchKey : group) {
+                    final Long levelCount = levelKeys.get(batchKey.key);
+                    batchKey.levelCount = levelCount == null ? 0 : levelCount;
+                    batchKey.presentOnLevel = levelCount != null;
+                    Map.Entry<byte[], Long> prev = batchKey.isRemovedEntirely() ?
+                                                   levelKeys.lowerEntry(batchKey.key) :
+                                                   levelKeys.floorEntry(batchKey.key);
+                    while (prev != null && isRemovedEntirely(prev.getKey())) {
+                        prev = levelKeys.lowerEntry(prev.getKey());
+                    }
+                    if (prev == null) {
+                        throw new IllegalStateException("no key found on level");
+                    }
+                    if (interval == null || !Arrays.equals(interval.prevKey, prev.getKey())) {
+                        interval = new Interval(prev.getKey(), prev.getValue());
+                        intervals.add(interval);
+                    }
+                    interval.members.add(batchKey);
+                    addConflicts(level, prev.getKey(), batchKey);
+                }
+                return intervals;
+            });
+        }
+
+        // Add the same conflicts as getPreviousKey and the reads done by single key operations.
+        private void addConflicts(int level, byte[] prevKey, BatchKey batchKey) {
+            final byte[] k = subspace.pack(Tuple.from(level, batchKey.key));
+            if (!Arrays.equals(prevKey, batchKey.key)) {
+                tr.addReadConflictRange(ByteArrayUtil.join(subspace.pack(Tuple.from(level, prevKey)), ZERO_ARRAY), k);
+            }
+            tr.addReadConflictKey(subspace.pack(Tuple.from(0, prevKey)));
+            if (remove && batchKey.isRemovedEntirely()) {
+                tr.addReadConflictKey(k);
+            }
+        }
+
+        private boolean isRemovedEntirely(byte[] key) {
+            final BatchKey batchKey = distinctKeys.get(key);
+            return batchKey != null && batchKey.isRemovedEntirely();
+        }
+
+        private CompletableFuture<Void> updateInterval(int level, Interval interval) {
+            final byte[] prevKey = subspace.pack(Tuple.from(level, interval.prevKey));
+            if (remove) {
+                long countChange = 0;
+                for (BatchKey batchKey : interval.members) {
+                    countChange -= batchKey.amount;
+                    if (batchKey.isRemovedEntirely() && batchKey.presentOnLevel) {
+                        // Give back additional count from the key we are erasing to the neighbor.
+                        countChange += batchKey.levelCount;
+                        tr.clear(subspace.pack(Tuple.from(level, batchKey.key)));
+                    }
+                }
+                if (countChange != 0) {
+                    tr.mutate(MutationType.ADD, prevKey, encodeLong(countChange));
+                }
+                return DONE;
+            }
+            long totalAmount = 0;
+            final List<BatchKey> inserted = new ArrayList<>();
+            for (BatchKey batchKey : interval.members) {
+                totalAmount += batchKey.amount;
+                if (batchKey.count == 0 && (batchKey.hash & LEVEL_FAN_VALUES[level]) == 0) {
+                    inserted.add(batchKey);
+                }
+            }
+            if (inserted.isEmpty()) {
+                tr.mutate(MutationType.ADD, prevKey, encodeLong(totalAmount));
+                return DONE;
+            }
+            // Split the interval's count at the inserted keys by recounting the next lower level, which is now final.
+            tr.addReadConflictKey(prevKey);
+            final long total = interval.prevCount + totalAmount;
+            final byte[] lastInserted = inserted.get(inserted.size() - 1).key;
+            return tr.getRange(subspace.pack(Tuple.from(level - 1, interval.prevKey)), subspace.pack(Tuple.from(level - 1, lastInserted)))
+                    .asList()
+                    .thenAccept(kvs -> {
+                        final long[] counts = new long[inserted.size() + 1];
+                        int bucket = 0;
+                        for (KeyValue kv : kvs) {
+                            final byte[] k = subspace.unpack(kv.getKey()).getBytes(1);
+                            while (bucket < inserted.size() && ByteArrayUtil.compareUnsigned(k, inserted.get(bucket).key) >= 0) {
+                                bucket++;
+                            }
+                            counts[bucket] += decodeLong(kv.getValue());
+                        }
+                        long remaining = total;
+                        tr.set(prevKey, encodeLong(counts[0]));
+                        remaining -= counts[0];
+                        for (int i = 0; i < inserted.size() - 1; i++) {
+                            tr.set(subspace.pack(Tuple.from(level, inserted.get(i).key)), encodeLong(counts[i + 1]));
+                            remaining -= counts[i + 1];
+                        }
+                        tr.set(subspace.pack(Tuple.from(level, lastInserted)), encodeLong(remaining));
+                    });
+        }
+
+        private class BatchKey {
+            private final byte[] key;
+            private final int hash;
+            private int occurrences;
+            private int returned;
+            // The number of occurrences before the update.
+            private long count;
+            // The number of occurrences added or removed.
+            private long amount;
+            // Whether present on the level being updated and with what count.
+            private boolean presentOnLevel;
+            private long levelCount;
+
+            BatchKey(byte[] key) {
+                this.key = key;
+                this.hash = getKeyHash(key);
+            }
+
+            boolean isRemovedEntirely() {
+                return remove && amount > 0 && amount == count;
+            }
+        }
+
+        /**
+         * A key on some level, along with the keys from the batch for which it is the preceding key.
+         */
+        private class Interval {
+            private final byte[] prevKey;
+            private final long prevCount;
+            private final List<BatchKey> members = new ArrayList<>();
+
+            Interval(byte[] prevKey, long prevCount) {
+                this.prevKey = prevKey;
+                this.prevCount = prevCount;
+            }
+        }
+    }
+
     protected static class Consistency {
 
         private final boolean consistent;
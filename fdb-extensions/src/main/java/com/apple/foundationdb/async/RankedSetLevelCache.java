@@ -0,0 +1,160 @@
+/*
+ * RankedSetLevelCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.async;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * A process-wide cache of the coarser levels of {@link RankedSet}s, so that {@link RankedSet#rank} and
+ * {@link RankedSet#getNth} only need to read the finer levels from the database.
+ *
+ * <p>
+ * Only ranked sets whose {@link RankedSet.Config#isTrackChanges()} is set are cached. Every change to such a set also
+ * sets a key in its subspace to the committing transaction's versionstamp. A lookup reads that key (at snapshot isolation)
+ * and uses the cached levels if they were read at the same version. Otherwise, it reads the levels again and caches them.
+ * A lookup that uses the cached levels adds the same read conflicts as though it had read them, so a transaction that uses
+ * the cache is still serializable. A transaction that has itself changed the set cannot read the version key and so
+ * does not use the cache.
+ * </p>
+ *
+ * <p>
+ * Since the count of some key on every level changes whenever a key is added or removed, this is only effective
+ * for ranked sets that are looked up much more often than they are changed.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RankedSetLevelCache {
+    /**
+     * Default maximum number of ranked sets whose levels are cached.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1_000L;
+    /**
+     * Default finest level that is cached.
+     */
+    public static final int DEFAULT_MIN_LEVEL = 2;
+
+    @Nonnull
+    private final Cache<Subspace, Entry> cache;
+    private final int minLevel;
+
+    public RankedSetLevelCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MIN_LEVEL);
+    }
+
+    /**
+     * Create a new cache.
+     * @param maxSize the maximum number of ranked sets whose levels are cached
+     * @param minLevel the finest level to cache, which should be high enough that the number of keys in it and
+     * the levels above it is small enough to keep in memory for each set
+     */
+    public RankedSetLevelCache(long maxSize, int minLevel) {
+        if (minLevel < 1) {
+            throw new IllegalArgumentException("cannot cache the finest level");
+        }
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.minLevel = minLevel;
+    }
+
+    /**
+     * Get the finest level that is cached.
+     * @return the lowest level number whose keys are kept in the cache
+     */
+    public int getMinLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Get the cached levels of a ranked set if they were cached at the given version.
+     * @param subspace the subspace of the ranked set
+     * @param version the current value of the set's version key
+     * @return the cached levels, or {@code null} if they are not cached at this version
+     */
+    @Nullable
+    List<NavigableMap<byte[], Long>> get(@Nonnull Subspace subspace, @Nonnull byte[] version) {
+        final Entry entry = cache.getIfPresent(subspace);
+        if (entry == null || !Arrays.equals(entry.version, version)) {
+            return null;
+        }
+        return entry.levels;
+    }
+
+    /**
+     * Add the levels of a ranked set that were read along with the given version.
+     * If the cache already contains levels at a later version, the cache is left unchanged.
+     * @param subspace the subspace of the ranked set
+     * @param version the value of the set's version key
+     * @param levels the keys and counts of each cached level, starting with {@link #getMinLevel()}
+     */
+    void put(@Nonnull Subspace subspace, @Nonnull byte[] version, @Nonnull List<NavigableMap<byte[], Long>> levels) {
+        cache.asMap().merge(subspace, new Entry(version, levels),
+                (existing, added) -> ByteArrayUtil.compareUnsigned(existing.version, added.version) >= 0 ? existing : added);
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get the approximate number of ranked sets whose levels are cached.
+     * @return the number of cached entries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get statistics about this cache's hit and eviction rates.
+     * @return the cache statistics
+     */
+    @Nonnull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private static class Entry {
+        @Nonnull
+        private final byte[] version;
+        @Nonnull
+        private final List<NavigableMap<byte[], Long>> levels;
+
+        private Entry(@Nonnull byte[] version, @Nonnull List<NavigableMap<byte[], Long>> levels) {
+            this.version = version;
+            this.levels = levels;
+        }
+    }
+}
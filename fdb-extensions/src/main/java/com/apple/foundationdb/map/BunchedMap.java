@@ -705,11 +705,11 @@ public class BunchedMap<K,V> {
 
     private void flushEntryList(@Nonnull Transaction tr, @Nonnull byte[] subspaceKey,
                                 @Nonnull List<Map.Entry<K,V>> currentEntryList,
-                                @Nonnull AtomicReference<K> lastKey) {
+                                @Nonnull AtomicReference<byte[]> nextBegin) {
         byte[] keyBytes = ByteArrayUtil.join(subspaceKey, serializer.serializeKey(currentEntryList.get(0).getKey()));
         writeEntryListWithoutChecking(tr, subspaceKey, keyBytes, null, keyBytes, currentEntryList,
                 serializer.serializeEntries(currentEntryList));
-        lastKey.set(currentEntryList.get(currentEntryList.size() - 1).getKey());
+        nextBegin.set(ByteArrayUtil.join(subspaceKey, serializer.serializeKey(currentEntryList.get(currentEntryList.size() - 1).getKey()), ZERO_ARRAY));
         currentEntryList.clear();
     }
 
@@ -727,7 +727,42 @@ public class BunchedMap<K,V> {
      *         the compaction across multiple transactions (<code>null</code> if finished)
      */
     @Nonnull
-    protected CompletableFuture<byte[]> compact(@Nonnull TransactionContext tcx, @Nonnull Subspace subspace,
+    public CompletableFuture<byte[]> compact(@Nonnull TransactionContext tcx, @Nonnull Subspace subspace,
+                                             int keyLimit, @Nullable byte[] continuation) {
+        return compact(tcx, subspace, null, keyLimit, continuation);
+    }
+
+    /**
+     * Compact the values within multiple maps into as few keys as possible. This is like
+     * {@link #compact(TransactionContext, Subspace, int, byte[]) compact()}, except that the
+     * provided subspace may contain multiple maps, with the map containing each key determined by
+     * the given {@link SubspaceSplitter}, in the same way as with the
+     * {@link #scanMulti(ReadTransaction, Subspace, SubspaceSplitter, byte[], byte[], byte[], int, boolean) scanMulti()}
+     * family of methods. Adjacent bunches within the same map are merged until they reach this map's
+     * bunch size, but bunches from different maps are never merged with each other. To keep the
+     * work done in any one transaction bounded, the caller should choose a <code>keyLimit</code>
+     * and then call this method again from new transactions with the returned continuation until
+     * it returns <code>null</code>.
+     *
+     * @param tcx database or transaction to use when compacting data
+     * @param subspace subspace within which the maps' data are located
+     * @param splitter object to determine which map each key belongs to
+     * @param keyLimit maximum number of database keys to read in a single transaction
+     * @param continuation the continuation returned from a previous call or <code>null</code>
+     *                     to start from the beginning of the subspace
+     * @return future that will complete with a continuation that can be used to complete
+     *         the compaction across multiple transactions (<code>null</code> if finished)
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> compactMulti(@Nonnull TransactionContext tcx, @Nonnull Subspace subspace,
+                                                  @Nonnull SubspaceSplitter<?> splitter,
+                                                  int keyLimit, @Nullable byte[] continuation) {
+        return compact(tcx, subspace, splitter, keyLimit, continuation);
+    }
+
+    @Nonnull
+    private CompletableFuture<byte[]> compact(@Nonnull TransactionContext tcx, @Nonnull Subspace subspace,
+                                              @Nullable SubspaceSplitter<?> splitter,
                                               int keyLimit, @Nullable byte[] continuation) {
         return tcx.runAsync(tr -> {
             byte[] subspaceKey = subspace.getKey();
@@ -739,21 +774,36 @@ public class BunchedMap<K,V> {
             // but it is just a heuristic to know when to split, so that's fine (I claim).
             AtomicInteger currentEntrySize = new AtomicInteger(0);
             AtomicInteger readKeys = new AtomicInteger(0);
+            AtomicReference<byte[]> currentSubspaceKey = new AtomicReference<>(subspaceKey);
             AtomicReference<byte[]> lastReadKeyBytes = new AtomicReference<>(null);
-            AtomicReference<K> lastKey = new AtomicReference<>(null);
+            AtomicReference<byte[]> nextBegin = new AtomicReference<>(null);
             return AsyncUtil.forEach(iterable, kv -> {
-                final K boundaryKey = serializer.deserializeKey(kv.getKey(), subspaceKey.length);
-                final List<Map.Entry<K,V>> entriesFromKey = serializer.deserializeEntries(boundaryKey, kv.getValue());
                 readKeys.incrementAndGet();
+                if (splitter != null) {
+                    final byte[] mapSubspaceKey = splitter.subspaceOf(kv.getKey()).getKey();
+                    if (!Arrays.equals(mapSubspaceKey, currentSubspaceKey.get())) {
+                        // Moving on to the next map. Bunches are never merged across maps.
+                        if (!currentEntryList.isEmpty()) {
+                            flushEntryList(tr, currentSubspaceKey.get(), currentEntryList, nextBegin);
+                            currentEntrySize.set(0);
+                        }
+                        currentSubspaceKey.set(mapSubspaceKey);
+                        lastReadKeyBytes.set(null);
+                    }
+                }
+                final byte[] mapSubspaceKey = currentSubspaceKey.get();
+                final K boundaryKey = serializer.deserializeKey(kv.getKey(), mapSubspaceKey.length);
+                final List<Map.Entry<K,V>> entriesFromKey = serializer.deserializeEntries(boundaryKey, kv.getValue());
                 if (entriesFromKey.size() >= bunchSize && currentEntryList.isEmpty()) {
                     // Nothing can be done. Just move on.
                     lastReadKeyBytes.set(null);
+                    nextBegin.set(ByteArrayUtil.join(kv.getKey(), ZERO_ARRAY));
                     return;
                 }
                 if (lastReadKeyBytes.get() == null) {
                     lastReadKeyBytes.set(kv.getKey());
                 }
-                final byte[] endKeyBytes = ByteArrayUtil.join(subspaceKey, serializer.serializeKey(entriesFromKey.get(entriesFromKey.size() - 1).getKey()), ZERO_ARRAY);
+                final byte[] endKeyBytes = ByteArrayUtil.join(mapSubspaceKey, serializer.serializeKey(entriesFromKey.get(entriesFromKey.size() - 1).getKey()), ZERO_ARRAY);
                 tr.addReadConflictRange(lastReadKeyBytes.get(), endKeyBytes);
                 tr.addWriteConflictRange(lastReadKeyBytes.get(), kv.getKey());
                 lastReadKeyBytes.set(endKeyBytes);
@@ -762,23 +812,29 @@ public class BunchedMap<K,V> {
                 for (Map.Entry<K, V> entry : entriesFromKey) {
                     byte[] serializedEntry = serializer.serializeEntry(entry);
                     if (currentEntrySize.get() + serializedEntry.length > MAX_VALUE_SIZE && !currentEntryList.isEmpty()) {
-                        flushEntryList(tr, subspaceKey, currentEntryList, lastKey);
+                        flushEntryList(tr, mapSubspaceKey, currentEntryList, nextBegin);
                         currentEntrySize.set(0);
                     }
                     currentEntryList.add(entry);
                     currentEntrySize.addAndGet(serializedEntry.length);
                     if (currentEntryList.size() == bunchSize) {
-                        flushEntryList(tr, subspaceKey, currentEntryList, lastKey);
+                        flushEntryList(tr, mapSubspaceKey, currentEntryList, nextBegin);
                         currentEntrySize.set(0);
                     }
                 }
             }, tr.getExecutor()).thenApply(vignore -> {
                 if (!currentEntryList.isEmpty()) {
-                    flushEntryList(tr, subspaceKey, currentEntryList, lastKey);
+                    final byte[] partialBunchKey = ByteArrayUtil.join(currentSubspaceKey.get(), serializer.serializeKey(currentEntryList.get(0).getKey()));
+                    flushEntryList(tr, currentSubspaceKey.get(), currentEntryList, nextBegin);
+                    if (keyLimit > 1) {
+                        // Resume from the start of this under-full bunch so that the next transaction can merge it
+                        // with the bunches that follow it. With a limit of one key, this would never make progress.
+                        nextBegin.set(partialBunchKey);
+                    }
                 }
                 // Return a valid continuation if there might be more keys
-                if (lastKey.get() != null && keyLimit != ReadTransaction.ROW_LIMIT_UNLIMITED && readKeys.get() == keyLimit) {
-                    return ByteArrayUtil.join(subspaceKey, serializer.serializeKey(lastKey.get()), ZERO_ARRAY);
+                if (nextBegin.get() != null && keyLimit != ReadTransaction.ROW_LIMIT_UNLIMITED && readKeys.get() == keyLimit) {
+                    return nextBegin.get();
                 } else {
                     return null;
                 }
@@ -171,6 +171,137 @@ public class RankedSetTest extends FDBTestBase {
         });
     }
 
+    @Test
+    public void addAllAndRemoveAll() {
+        final List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            keys.add(Tuple.from(i * 2).pack());
+        }
+        final List<byte[]> shuffled = new ArrayList<>(keys);
+        Collections.shuffle(shuffled);
+        db.run(tr -> {
+            RankedSet rs = newRankedSet();
+            // Some keys are already present.
+            for (int i = 0; i < keys.size(); i += 7) {
+                assertTrue(rs.add(tr, keys.get(i)).join());
+            }
+            final List<Boolean> added = rs.addAll(tr, shuffled).join();
+            for (int i = 0; i < shuffled.size(); i++) {
+                assertEquals(Tuple.fromBytes(shuffled.get(i)).getLong(0) % 14 != 0, added.get(i));
+            }
+            assertTrue(rs.checkConsistency(tr).isConsistent());
+            assertEquals(keys.size(), rs.size(tr).join().intValue());
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(i, rs.rank(tr, keys.get(i)).join().intValue());
+            }
+
+            // Remove every third key, along with some that are not present.
+            final List<byte[]> toRemove = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i += 3) {
+                toRemove.add(keys.get(i));
+                toRemove.add(Tuple.from(i * 2 + 1).pack());
+            }
+            final List<Boolean> removed = rs.removeAll(tr, toRemove).join();
+            for (int i = 0; i < toRemove.size(); i++) {
+                assertEquals(i % 2 == 0, removed.get(i));
+            }
+            assertTrue(rs.checkConsistency(tr).isConsistent());
+            final List<byte[]> remaining = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                if (i % 3 != 0) {
+                    remaining.add(keys.get(i));
+                }
+            }
+            assertEquals(remaining.size(), rs.size(tr).join().intValue());
+            for (int i = 0; i < remaining.size(); i++) {
+                assertArrayEquals(remaining.get(i), rs.getNth(tr, i).join());
+            }
+            return null;
+        });
+    }
+
+    @Test
+    public void addAllAndRemoveAllDuplicates() {
+        final List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j <= i % 3; j++) {
+                keys.add(Tuple.from(i).pack());
+            }
+        }
+        config = RankedSet.newConfigBuilder().setCountDuplicates(true).build();
+        db.run(tr -> {
+            RankedSet rs = newRankedSet();
+            assertTrue(rs.addAll(tr, keys).join().stream().allMatch(b -> b));
+            assertTrue(rs.checkConsistency(tr).isConsistent());
+            assertEquals(keys.size(), rs.size(tr).join().intValue());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i % 3 + 1, rs.count(tr, Tuple.from(i).pack()).join().intValue());
+            }
+            // Removing two of each leaves only those that were there three times.
+            final List<byte[]> toRemove = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                toRemove.add(Tuple.from(i).pack());
+                toRemove.add(Tuple.from(i).pack());
+            }
+            final List<Boolean> removed = rs.removeAll(tr, toRemove).join();
+            for (int i = 0; i < 50; i++) {
+                assertTrue(removed.get(i * 2));
+                assertEquals(i % 3 != 0, removed.get(i * 2 + 1));
+            }
+            assertTrue(rs.checkConsistency(tr).isConsistent());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i % 3 == 2 ? 1 : 0, rs.count(tr, Tuple.from(i).pack()).join().intValue());
+            }
+            return null;
+        });
+    }
+
+    @Test
+    public void cachedLevels() {
+        config = RankedSet.newConfigBuilder().setTrackChanges(true).build();
+        final RankedSetLevelCache cache = new RankedSetLevelCache(10, 2);
+        final RankedSet rs = new RankedSet(rsSubspace, ForkJoinPool.commonPool(), config, cache);
+        rs.init(db).join();
+        final List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(Tuple.from(i * 2).pack());
+        }
+        rs.addAll(db, keys).join();
+
+        // The first lookup fills the cache and later ones use it.
+        for (int i = 0; i < keys.size(); i += 97) {
+            final int index = i;
+            db.read(tr -> {
+                assertEquals(index, rs.rank(tr, keys.get(index)).join().intValue());
+                assertArrayEquals(keys.get(index), rs.getNth(tr, index).join());
+                return null;
+            });
+        }
+        assertEquals(1, cache.getStats().missCount());
+        assertTrue(cache.getStats().hitCount() > 0);
+
+        // A change in another transaction makes it read the levels again.
+        final byte[] first = Tuple.from(-1).pack();
+        assertTrue(rs.add(db, first).join());
+        db.read(tr -> {
+            assertEquals(1, rs.rank(tr, keys.get(0)).join().intValue());
+            assertArrayEquals(first, rs.getNth(tr, 0).join());
+            return null;
+        });
+        assertEquals(2, cache.getStats().missCount());
+
+        // A transaction that has changed the set does not use the cache.
+        final long hits = cache.getStats().hitCount();
+        db.run(tr -> {
+            assertTrue(rs.remove(tr, first).join());
+            assertEquals(0, rs.rank(tr, keys.get(0)).join().intValue());
+            assertArrayEquals(keys.get(1), rs.getNth(tr, 1).join());
+            return null;
+        });
+        assertEquals(hits, cache.getStats().hitCount());
+        assertEquals(2, cache.getStats().missCount());
+    }
+
     @Test
     public void concurrentAdd() throws Exception {
         // 20 does go onto level 1, 30 and 40 do not. There should be no reason for them to conflict on level 0.
@@ -587,4 +587,52 @@ public class BunchedMapScanTest extends FDBTestBase {
         scanTagAligned(reversed, keyLists);
 
     }
+
+    @Test
+    public void compactMulti() throws InterruptedException, ExecutionException {
+        final List<Subspace> compactedSubspaces = subSubspaces.subList(0, 5);
+        db.run(tr -> {
+            tr.clear(bmSubspace.range());
+            for (Subspace subspace : compactedSubspaces) {
+                keys.subList(0, 100).forEach(k -> map.put(tr, subspace, k, value).join());
+            }
+            return null;
+        });
+        // Remove most of the keys so that there are many under-full bunches.
+        final List<Tuple> remainingKeys = IntStream.range(0, 100).filter(i -> i % 3 == 0).mapToObj(keys::get).collect(Collectors.toList());
+        db.run(tr -> {
+            for (int i = 0; i < 100; i++) {
+                if (i % 3 != 0) {
+                    for (Subspace subspace : compactedSubspaces) {
+                        map.remove(tr, subspace, keys.get(i)).join();
+                    }
+                }
+            }
+            return null;
+        });
+        final int expectedBunches = (remainingKeys.size() + map.getBunchSize() - 1) / map.getBunchSize();
+        for (Subspace subspace : compactedSubspaces) {
+            assertTrue(db.run(tr -> tr.getRange(subspace.range()).asList().join()).size() > expectedBunches);
+        }
+
+        // Compact all of the maps a few keys at a time.
+        byte[] continuation = null;
+        int transactionCount = 0;
+        do {
+            final byte[] currentContinuation = continuation;
+            continuation = map.compactMulti(db, bmSubspace, splitter, 7, currentContinuation).get();
+            transactionCount++;
+        } while (continuation != null);
+        assertTrue(transactionCount > 1);
+
+        try (Transaction tr = db.createTransaction()) {
+            for (Subspace subspace : compactedSubspaces) {
+                map.verifyIntegrity(tr, subspace).get();
+                assertEquals(expectedBunches, tr.getRange(subspace.range()).asList().get().size());
+                final List<Tuple> mapKeys = new ArrayList<>();
+                AsyncUtil.forEachRemaining(map.scan(tr, subspace), entry -> mapKeys.add(entry.getKey())).get();
+                assertEquals(remainingKeys, mapKeys);
+            }
+        }
+    }
 }
@@ -43,6 +43,11 @@ public class ExecuteProperties {
      * A constant representing that no time limit is set.
      */
     public static final long UNLIMITED_TIME = 0L;
+    /**
+     * A constant representing that no limit is set on the memory used by unordered distinct plans.
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final long UNLIMITED_DISTINCT_MEMORY = 0L;
     /**
      * A basic set of properties for an unlimited query/scan execution with serializable isolation.
      */
@@ -74,8 +79,12 @@ public class ExecuteProperties {
 
     private final CursorStreamingMode defaultCursorStreamingMode;
 
+    // a limit on the memory used to find duplicates by unordered distinct plans.
+    private final long distinctMemoryLimit;
+
     private ExecuteProperties(int skip, int rowLimit, @Nonnull IsolationLevel isolationLevel, long timeLimit,
-                              @Nonnull ExecuteState state, boolean failOnScanLimitReached, @Nonnull CursorStreamingMode defaultCursorStreamingMode) {
+                              @Nonnull ExecuteState state, boolean failOnScanLimitReached, @Nonnull CursorStreamingMode defaultCursorStreamingMode,
+                              long distinctMemoryLimit) {
         this.skip = skip;
         this.rowLimit = rowLimit;
         this.isolationLevel = isolationLevel;
@@ -83,6 +92,7 @@ public class ExecuteProperties {
         this.state = state;
         this.failOnScanLimitReached = failOnScanLimitReached;
         this.defaultCursorStreamingMode = defaultCursorStreamingMode;
+        this.distinctMemoryLimit = distinctMemoryLimit;
     }
 
     @Nonnull
@@ -99,7 +109,7 @@ public class ExecuteProperties {
         if (skip == this.skip) {
             return this;
         }
-        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -121,7 +131,7 @@ public class ExecuteProperties {
         if (newLimit == this.rowLimit) {
             return this;
         }
-        return copy(skip, newLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, newLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -168,7 +178,7 @@ public class ExecuteProperties {
      */
     @Nonnull
     public ExecuteProperties setState(@Nonnull ExecuteState newState) {
-        return copy(skip, rowLimit, timeLimit, isolationLevel, newState, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, newState, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -177,7 +187,7 @@ public class ExecuteProperties {
      */
     @Nonnull
     public ExecuteProperties clearState() {
-        return copy(skip, rowLimit, timeLimit, isolationLevel, new ExecuteState(), failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, new ExecuteState(), failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -193,7 +203,7 @@ public class ExecuteProperties {
         if (failOnScanLimitReached == this.failOnScanLimitReached) {
             return this;
         }
-        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     @Nonnull
@@ -201,7 +211,7 @@ public class ExecuteProperties {
         if (getReturnedRowLimit() == ReadTransaction.ROW_LIMIT_UNLIMITED) {
             return this;
         }
-        return copy(skip, ReadTransaction.ROW_LIMIT_UNLIMITED, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, ReadTransaction.ROW_LIMIT_UNLIMITED, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -213,7 +223,7 @@ public class ExecuteProperties {
         if (getTimeLimit() == UNLIMITED_TIME && getReturnedRowLimit() == ReadTransaction.ROW_LIMIT_UNLIMITED ) {
             return this;
         }
-        return copy(skip, ReadTransaction.ROW_LIMIT_UNLIMITED, UNLIMITED_TIME, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, ReadTransaction.ROW_LIMIT_UNLIMITED, UNLIMITED_TIME, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -225,7 +235,7 @@ public class ExecuteProperties {
         if (skip == 0 && rowLimit == ReadTransaction.ROW_LIMIT_UNLIMITED) {
             return this;
         }
-        return copy(0, ReadTransaction.ROW_LIMIT_UNLIMITED, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(0, ReadTransaction.ROW_LIMIT_UNLIMITED, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -238,7 +248,7 @@ public class ExecuteProperties {
             return this;
         }
         return copy(0, rowLimit == ReadTransaction.ROW_LIMIT_UNLIMITED ? ReadTransaction.ROW_LIMIT_UNLIMITED : rowLimit + skip,
-                timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+                timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
@@ -264,6 +274,9 @@ public class ExecuteProperties {
         if (other.timeLimit != UNLIMITED_TIME) {
             builder.setTimeLimit(other.timeLimit);
         }
+        if (other.distinctMemoryLimit != UNLIMITED_DISTINCT_MEMORY) {
+            builder.setDistinctMemoryLimit(other.distinctMemoryLimit);
+        }
 
         if (other.state.getRecordScanLimiter().isEnforcing() || other.state.getByteScanLimiter().isEnforcing()) {
             builder.setState(other.state);
@@ -289,7 +302,38 @@ public class ExecuteProperties {
         if (defaultCursorStreamingMode == this.defaultCursorStreamingMode) {
             return this;
         }
-        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
+    }
+
+    /**
+     * Get the limit on the memory used by an unordered distinct plan, such as
+     * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan}, to remember
+     * the records it has already returned. This will return {@link #UNLIMITED_DISTINCT_MEMORY} if there is no limit.
+     * When the limit is reached, the plan stops early with
+     * {@link com.apple.foundationdb.record.RecordCursor.NoNextReason#SCAN_LIMIT_REACHED}, or throws a
+     * {@link ScanLimitReachedException} if {@link #isFailOnScanLimitReached()}. As with any other continuation from such
+     * a plan, records returned before the limit was reached may be returned again after continuing.
+     * @return the approximate maximum number of bytes to use for finding duplicates
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public long getDistinctMemoryLimit() {
+        return distinctMemoryLimit;
+    }
+
+    /**
+     * Set the limit on the memory used by an unordered distinct plan.
+     * @param distinctMemoryLimit the approximate maximum number of bytes or {@link #UNLIMITED_DISTINCT_MEMORY}
+     * @return a new <code>ExecuteProperties</code> with the given limit
+     * @see #getDistinctMemoryLimit()
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public ExecuteProperties setDistinctMemoryLimit(long distinctMemoryLimit) {
+        final long newLimit = validateDistinctMemoryLimit(distinctMemoryLimit);
+        if (newLimit == this.distinctMemoryLimit) {
+            return this;
+        }
+        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, newLimit);
     }
 
     /**
@@ -299,11 +343,12 @@ public class ExecuteProperties {
      */
     @Nonnull
     public ExecuteProperties resetState() {
-        return copy(skip, rowLimit, timeLimit, isolationLevel, state.reset(), failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, state.reset(), failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     /**
      * Create a new instance with these fields, copying any additional fields from subclasses.
+     * The new instance has no distinct memory limit.
      * @param skip skip count
      * @param rowLimit returned row limit
      * @param timeLimit time limit
@@ -312,11 +357,34 @@ public class ExecuteProperties {
      * @param failOnScanLimitReached fail on scan limit reached
      * @param defaultCursorStreamingMode default streaming mode
      * @return a new properties with the given fields changed and other fields copied from this properties
+     * @deprecated use {@link #copy(int, int, long, IsolationLevel, ExecuteState, boolean, CursorStreamingMode, long)} instead
      */
+    @Deprecated
+    @API(API.Status.DEPRECATED)
     @Nonnull
     protected ExecuteProperties copy(int skip, int rowLimit, long timeLimit, @Nonnull IsolationLevel isolationLevel,
                                      @Nonnull ExecuteState state, boolean failOnScanLimitReached, CursorStreamingMode defaultCursorStreamingMode) {
-        return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode, UNLIMITED_DISTINCT_MEMORY);
+    }
+
+    /**
+     * Create a new instance with these fields, copying any additional fields from subclasses.
+     * @param skip skip count
+     * @param rowLimit returned row limit
+     * @param timeLimit time limit
+     * @param isolationLevel isolation level
+     * @param state execute state
+     * @param failOnScanLimitReached fail on scan limit reached
+     * @param defaultCursorStreamingMode default streaming mode
+     * @param distinctMemoryLimit memory limit for unordered distinct plans
+     * @return a new properties with the given fields changed and other fields copied from this properties
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    protected ExecuteProperties copy(int skip, int rowLimit, long timeLimit, @Nonnull IsolationLevel isolationLevel,
+                                     @Nonnull ExecuteState state, boolean failOnScanLimitReached, CursorStreamingMode defaultCursorStreamingMode,
+                                     long distinctMemoryLimit) {
+        return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
     }
 
     @Nonnull
@@ -331,6 +399,13 @@ public class ExecuteProperties {
         return rowLimit == Integer.MAX_VALUE ? ReadTransaction.ROW_LIMIT_UNLIMITED : rowLimit;
     }
 
+    private static long validateDistinctMemoryLimit(final long distinctMemoryLimit) {
+        if (distinctMemoryLimit < 0L) {
+            throw new RecordCoreException("Invalid distinct memory limit specified: " + distinctMemoryLimit);
+        }
+        return distinctMemoryLimit;
+    }
+
     private static long validateAndNormalizeTimeLimit(final long timeLimit) {
         if (timeLimit < 0L) {
             throw new RecordCoreException("Invalid time limit specified: " + timeLimit);
@@ -367,6 +442,9 @@ public class ExecuteProperties {
         if (timeLimit != UNLIMITED_TIME) {
             components.add(String.format("timeLimit %d ms", timeLimit));
         }
+        if (distinctMemoryLimit != UNLIMITED_DISTINCT_MEMORY) {
+            components.add(String.format("distinctMemoryLimit %d bytes", distinctMemoryLimit));
+        }
         if (failOnScanLimitReached) {
             components.add("fail on scan limit");
         }
@@ -390,6 +468,7 @@ public class ExecuteProperties {
         private ExecuteState executeState = null;
         private boolean failOnScanLimitReached = false;
         private CursorStreamingMode defaultCursorStreamingMode = CursorStreamingMode.ITERATOR;
+        private long distinctMemoryLimit = UNLIMITED_DISTINCT_MEMORY;
 
         private Builder() {
         }
@@ -402,6 +481,7 @@ public class ExecuteProperties {
             this.executeState = executeProperties.state;
             this.failOnScanLimitReached = executeProperties.failOnScanLimitReached;
             this.defaultCursorStreamingMode = executeProperties.defaultCursorStreamingMode;
+            this.distinctMemoryLimit = executeProperties.distinctMemoryLimit;
         }
 
         @Nonnull
@@ -562,6 +642,24 @@ public class ExecuteProperties {
             return this;
         }
 
+        /**
+         * Set the limit on the memory used by an unordered distinct plan.
+         * @param distinctMemoryLimit the approximate maximum number of bytes or {@link #UNLIMITED_DISTINCT_MEMORY}
+         * @return an updated builder
+         * @see ExecuteProperties#getDistinctMemoryLimit()
+         */
+        @API(API.Status.EXPERIMENTAL)
+        @Nonnull
+        public Builder setDistinctMemoryLimit(long distinctMemoryLimit) {
+            this.distinctMemoryLimit = validateDistinctMemoryLimit(distinctMemoryLimit);
+            return this;
+        }
+
+        @API(API.Status.EXPERIMENTAL)
+        public long getDistinctMemoryLimit() {
+            return distinctMemoryLimit;
+        }
+
         @Nonnull
         public ExecuteProperties build() {
             final ExecuteState state;
@@ -576,7 +674,7 @@ public class ExecuteProperties {
             } else {
                 state = new ExecuteState(RecordScanLimiterFactory.enforce(scannedRecordsLimit), ByteScanLimiterFactory.enforce(scannedBytesLimit));
             }
-            return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode);
+            return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode, distinctMemoryLimit);
         }
     }
 }
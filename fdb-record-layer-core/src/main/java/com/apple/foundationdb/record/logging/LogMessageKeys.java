@@ -42,6 +42,7 @@ public enum LogMessageKeys {
     FUTURE_COMPLETED("future_completed"),
     SCAN_PROPERTIES("scan_properties"),
     READ_VERSION("read_version"),
+    TRANSACTION_PRIORITY("transaction_priority"),
     OLD("old"),
     NEW("new"),
     MESSAGE("message"),
@@ -81,6 +81,12 @@ public class IndexOptions {
      * It will only be possible to determine that an indexed field contains the token someplace.
      */
     public static final String TEXT_OMIT_POSITIONS_OPTION = "textOmitPositions";
+    /**
+     * If {@code "true"}, a {@link IndexTypes#TEXT} index will buffer token updates in the transaction and write them
+     * out sorted by token just before commit, so that each bunch of the index is read and written once.
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String TEXT_BUFFER_UPDATES_OPTION = "textBufferUpdates";
 
     /**
      * The number of levels in the {@link IndexTypes#RANK} skip list {@link com.apple.foundationdb.async.RankedSet}.
@@ -103,6 +109,17 @@ public class IndexOptions {
      */
     public static final String RANK_COUNT_DUPLICATES = "rankCountDuplicates";
 
+    /**
+     * Whether the {@link IndexTypes#RANK} skip list {@link com.apple.foundationdb.async.RankedSet} records a version for each change,
+     * so that its coarser levels can be kept in the database's {@link com.apple.foundationdb.async.RankedSetLevelCache}.
+     *
+     * The default is {@code false}. Changing this option requires the index to be rebuilt, since a set changed while
+     * it was not tracked would leave an out-of-date version behind.
+     * @see com.apple.foundationdb.async.RankedSet.Config#isTrackChanges()
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String RANK_TRACK_CHANGES = "rankTrackChanges";
+
     /**
      * Size of each position bitmap for {@link IndexTypes#BITMAP_VALUE} indexes.
      *
@@ -110,6 +127,14 @@ public class IndexOptions {
      */
     public static final String BITMAP_VALUE_ENTRY_SIZE_OPTION = "bitmapValueEntrySize";
 
+    /**
+     * If {@code "true"}, a {@link IndexTypes#BITMAP_VALUE} index will store its bitmaps compressed, as sorted positions or runs
+     * when that is smaller. This saves space for sparse positions, but updates must then read and rewrite each entry.
+     * @see com.apple.foundationdb.record.provider.foundationdb.indexes.CompressedBitmap
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String BITMAP_VALUE_COMPRESSED_OPTION = "bitmapValueCompressed";
+
     /**
      * Whether to remove index entry for {@link IndexTypes#COUNT} type indexes when they decrement to zero.
      *
@@ -122,6 +147,17 @@ public class IndexOptions {
      */
     public static final String CLEAR_WHEN_ZERO = "clearWhenZero";
 
+    /**
+     * The number of keys across which each group of an atomic mutation index such as {@link IndexTypes#COUNT} or {@link IndexTypes#SUM}
+     * is spread, choosing the key for each record by the hash of its primary key.
+     *
+     * This avoids a single hot key for each group when many records in the same group are updated concurrently, at the cost
+     * of reading all the keys of a group when evaluating its aggregate. Changing this option requires the index to be rebuilt.
+     * The default is {@code 1}, that is, one key per group.
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String AGGREGATE_SHARDS_OPTION = "aggregateShards";
+
     /**
      * Size of the portion of the grouping keys enumerated after the extrema by {@link IndexTypes#PERMUTED_MIN} and {@link IndexTypes#PERMUTED_MAX} indexes.
      */
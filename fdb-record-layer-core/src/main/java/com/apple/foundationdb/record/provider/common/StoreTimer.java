@@ -42,8 +42,9 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -68,6 +69,7 @@ public class StoreTimer {
     protected long lastReset;
     @Nonnull
     protected final UUID uuid;
+    private volatile boolean histogramsEnabled;
 
     /**
      * Confirm that there is no naming conflict among the event names that will be used.
@@ -133,7 +135,17 @@ public class StoreTimer {
 
                 // Do not add events that weren't changed since the snapshot
                 if (count > 0) {
-                    differenceCounters.put(event, new Counter(count, counter.getTimeNanos() - snapShotCounter.getTimeNanos()));
+                    @Nullable final Histogram histogram = counter.getHistogram();
+                    @Nullable final Histogram snapshotHistogram = snapShotCounter.getHistogram();
+                    @Nullable final Histogram differenceHistogram;
+                    if (histogram == null) {
+                        differenceHistogram = null;
+                    } else if (snapshotHistogram == null) {
+                        differenceHistogram = histogram.copy();
+                    } else {
+                        differenceHistogram = histogram.difference(snapshotHistogram);
+                    }
+                    differenceCounters.put(event, new Counter(count, counter.getTimeNanos() - snapShotCounter.getTimeNanos(), differenceHistogram));
                 }
             }
         }
@@ -171,7 +183,7 @@ public class StoreTimer {
             return counter;
         } else {
             if (createIfNotExists) {
-                return MapUtils.computeIfAbsent(counters, event, evignore -> new Counter());
+                return MapUtils.computeIfAbsent(counters, event, this::newCounter);
             }
             return counters.get(event);
         }
@@ -374,10 +386,15 @@ public class StoreTimer {
 
     /**
      * Contains the number of occurrences and cummulative time spent on an associated {@link StoreTimer.Event}.
+     * If the timer that created the counter {@linkplain #setHistogramsEnabled(boolean) records histograms}, the
+     * counter also keeps a {@link Histogram} of the individual times recorded.
      */
     public static class Counter {
-        private final AtomicLong timeNanos;
-        private final AtomicInteger count;
+        // Adders rather than atomics, as the same counter is commonly updated by many threads at once.
+        private final LongAdder timeNanos;
+        private final LongAdder count;
+        @Nullable
+        private volatile Histogram histogram;
         private boolean immutable;
 
         private Counter() {
@@ -390,6 +407,10 @@ public class StoreTimer {
 
         private Counter(Counter counter, boolean immutable) {
             this(counter.getCount(), counter.getTimeNanos(), immutable);
+            final Histogram counterHistogram = counter.getHistogram();
+            if (counterHistogram != null) {
+                this.histogram = counterHistogram.copy();
+            }
         }
 
         private Counter(boolean immutable) {
@@ -401,18 +422,25 @@ public class StoreTimer {
         }
 
         private Counter(int count, long timeNanos, boolean immutable) {
-            this.count = new AtomicInteger(count);
-            this.timeNanos = new AtomicLong(timeNanos);
+            this.count = new LongAdder();
+            this.count.add(count);
+            this.timeNanos = new LongAdder();
+            this.timeNanos.add(timeNanos);
             this.immutable = immutable;
         }
 
+        private Counter(int count, long timeNanos, @Nullable Histogram histogram) {
+            this(count, timeNanos, false);
+            this.histogram = histogram;
+        }
+
         /**
          * Get the number of occurrences of the associated event.
          *
          * @return the number of occurrences of the associated event
          */
         public int getCount() {
-            return count.get();
+            return count.intValue();
         }
 
         /**
@@ -421,7 +449,18 @@ public class StoreTimer {
          * @return the cumulative time spent on the associated event
          */
         public long getTimeNanos() {
-            return timeNanos.get();
+            return timeNanos.sum();
+        }
+
+        /**
+         * Get the distribution of the individual times recorded for the associated event.
+         *
+         * @return the histogram of recorded times or {@code null} if histograms are not being recorded
+         */
+        @API(API.Status.EXPERIMENTAL)
+        @Nullable
+        public Histogram getHistogram() {
+            return histogram;
         }
 
         /**
@@ -431,8 +470,12 @@ public class StoreTimer {
          */
         public void record(long timeDifference) {
             checkImmutable();
-            timeNanos.addAndGet(timeDifference);
-            count.incrementAndGet();
+            timeNanos.add(timeDifference);
+            count.increment();
+            final Histogram currentHistogram = histogram;
+            if (currentHistogram != null) {
+                currentHistogram.record(timeDifference);
+            }
         }
 
         /**
@@ -442,7 +485,7 @@ public class StoreTimer {
          */
         public void increment(int amount) {
             checkImmutable();
-            count.addAndGet(amount);
+            count.add(amount);
         }
 
         /**
@@ -452,8 +495,17 @@ public class StoreTimer {
          */
         public void add(@Nonnull Counter counter) {
             checkImmutable();
-            timeNanos.addAndGet(counter.getTimeNanos());
-            count.addAndGet(counter.getCount());
+            timeNanos.add(counter.getTimeNanos());
+            count.add(counter.getCount());
+            final Histogram counterHistogram = counter.getHistogram();
+            if (counterHistogram != null) {
+                synchronized (this) {
+                    if (histogram == null) {
+                        histogram = new Histogram();
+                    }
+                }
+                histogram.add(counterHistogram);
+            }
         }
 
         /**
@@ -475,6 +527,173 @@ public class StoreTimer {
         }
     }
 
+    /**
+     * A distribution of the times recorded for an event, from which percentiles can be estimated.
+     *
+     * <p>
+     * Times are recorded with microsecond resolution into logarithmically sized buckets, each covering a range of
+     * values whose width is at most 1/16th of its lower bound. So, any percentile is reported with an error of at most
+     * about 6% (or one microsecond). The buckets are updated with atomic operations, making recording cheap and safe
+     * from multiple threads, and a histogram always occupies the same, fixed amount of memory.
+     * </p>
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+        // Times above about 71 minutes are all placed in the top bucket.
+        private static final int MAX_EXPONENT = 31;
+        private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+        private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+        @Nonnull
+        private final AtomicLongArray buckets;
+        @Nonnull
+        private final LongAccumulator maxNanos;
+
+        /**
+         * Create a new, empty histogram.
+         */
+        public Histogram() {
+            this.buckets = new AtomicLongArray(BUCKET_COUNT);
+            this.maxNanos = new LongAccumulator(Math::max, 0L);
+        }
+
+        private static int bucketIndex(long micros) {
+            if (micros < SUB_BUCKET_COUNT) {
+                return (int)Math.max(micros, 0L);
+            }
+            final long value = Math.min(micros, MAX_MICROS);
+            final int exponent = 63 - Long.numberOfLeadingZeros(value);
+            final int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+        }
+
+        private static long bucketUpperBoundMicros(int index) {
+            if (index < SUB_BUCKET_COUNT) {
+                return index;
+            }
+            final int shift = index / SUB_BUCKET_COUNT - 1;
+            final long lowerBound = (long)(SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+            return lowerBound + (1L << shift) - 1;
+        }
+
+        /**
+         * Record a single time.
+         *
+         * @param timeNanos the time in nanoseconds
+         */
+        public void record(long timeNanos) {
+            buckets.incrementAndGet(bucketIndex(timeNanos / 1000L));
+            maxNanos.accumulate(timeNanos);
+        }
+
+        /**
+         * Add all of the times recorded in another histogram to this one.
+         *
+         * @param histogram the histogram to add
+         */
+        public void add(@Nonnull Histogram histogram) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                final long bucketCount = histogram.buckets.get(i);
+                if (bucketCount != 0L) {
+                    buckets.addAndGet(i, bucketCount);
+                }
+            }
+            maxNanos.accumulate(histogram.getMaxNanos());
+        }
+
+        /**
+         * Create a copy of this histogram.
+         *
+         * @return a new histogram with the same recorded times
+         */
+        @Nonnull
+        public Histogram copy() {
+            final Histogram result = new Histogram();
+            result.add(this);
+            return result;
+        }
+
+        /**
+         * Create a histogram of the times recorded in this histogram but not in an earlier copy of it.
+         * As the maximum time of the difference cannot be known exactly, it is estimated from this histogram.
+         *
+         * @param earlier an earlier copy of this histogram
+         * @return a new histogram with the difference in recorded times
+         */
+        @Nonnull
+        public Histogram difference(@Nonnull Histogram earlier) {
+            final Histogram result = new Histogram();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                final long bucketCount = buckets.get(i) - earlier.buckets.get(i);
+                if (bucketCount > 0L) {
+                    result.buckets.set(i, bucketCount);
+                }
+            }
+            result.maxNanos.accumulate(getMaxNanos());
+            return result;
+        }
+
+        /**
+         * Get the number of times recorded.
+         *
+         * @return the number of times recorded
+         */
+        public long getCount() {
+            long total = 0L;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                total += buckets.get(i);
+            }
+            return total;
+        }
+
+        /**
+         * Get the largest time recorded.
+         *
+         * @return the largest time recorded in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Get an estimate of the time at the given percentile. This is the upper bound of the bucket containing
+         * the given percentile, so at least the given percentage of the recorded times are no larger than it.
+         *
+         * @param percentile the percentile, between {@code 0.0} and {@code 100.0}
+         * @return the estimated time at the given percentile in nanoseconds or {@code 0} if no times have been recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) {
+                throw new RecordCoreArgumentException("percentile out of range")
+                        .addLogInfo("percentile", percentile);
+            }
+            final long[] counts = new long[BUCKET_COUNT];
+            long total = 0L;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0L) {
+                return 0L;
+            }
+            final long target = Math.max(1L, (long)Math.ceil(percentile / 100.0 * total));
+            long seen = 0L;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    if (i == BUCKET_COUNT - 1) {
+                        // The top bucket has no upper bound.
+                        return getMaxNanos();
+                    }
+                    return Math.min(bucketUpperBoundMicros(i) * 1000L + 999L, getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+    }
+
     public StoreTimer() {
         counters = new ConcurrentHashMap<>();
         timeoutCounters = new ConcurrentHashMap<>();
@@ -482,6 +701,38 @@ public class StoreTimer {
         uuid = UUID.randomUUID();
     }
 
+    /**
+     * Set whether this timer keeps a {@link Histogram} of the individual times recorded for each event, in addition
+     * to their count and total time. Histograms allow estimating percentiles of the times (see
+     * {@link #getHistogram(Event)}), but each one takes a few kilobytes of memory, so they are off by default.
+     * Changing this setting only affects events first recorded after the change (or after the next {@link #reset()}).
+     *
+     * @param histogramsEnabled whether to record histograms
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setHistogramsEnabled(boolean histogramsEnabled) {
+        this.histogramsEnabled = histogramsEnabled;
+    }
+
+    /**
+     * Get whether this timer keeps a {@link Histogram} of the individual times recorded for each event.
+     *
+     * @return whether histograms are recorded
+     * @see #setHistogramsEnabled(boolean)
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public boolean isHistogramsEnabled() {
+        return histogramsEnabled;
+    }
+
+    @Nonnull
+    private Counter newCounter(@Nonnull Event event) {
+        if (histogramsEnabled && !(event instanceof Count)) {
+            return new Counter(0, 0L, new Histogram());
+        }
+        return new Counter();
+    }
+
     /**
      * Get the UUID of this timer.
      *
@@ -583,6 +834,21 @@ public class StoreTimer {
         getCounter(event, true).increment(amount);
     }
 
+    /**
+     * Get the distribution of the individual times recorded for an event.
+     *
+     * @param event the event of interest
+     * @return the histogram of times recorded for the event or {@code null} if the event has not been recorded
+     * or histograms are not enabled
+     * @see #setHistogramsEnabled(boolean)
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nullable
+    public Histogram getHistogram(@Nonnull Event event) {
+        @Nullable Counter counter = getCounter(event, false);
+        return counter == null ? null : counter.getHistogram();
+    }
+
     /**
      * Get the total time spent for a given event.
      *
@@ -676,9 +942,15 @@ public class StoreTimer {
         for (Map.Entry<Event, Counter> entry : counters.entrySet()) {
             Event event = entry.getKey();
             Counter counter = entry.getValue();
-            result.put(event.logKeyWithSuffix("_count"), counter.count.get());
+            result.put(event.logKeyWithSuffix("_count"), counter.getCount());
             if (!(event instanceof Count)) {
-                result.put(event.logKeyWithSuffix("_micros"), counter.timeNanos.get() / 1000L);
+                result.put(event.logKeyWithSuffix("_micros"), counter.getTimeNanos() / 1000L);
+                @Nullable Histogram histogram = counter.getHistogram();
+                if (histogram != null) {
+                    result.put(event.logKeyWithSuffix("_p50_micros"), histogram.getValueAtPercentile(50.0) / 1000L);
+                    result.put(event.logKeyWithSuffix("_p99_micros"), histogram.getValueAtPercentile(99.0) / 1000L);
+                    result.put(event.logKeyWithSuffix("_p999_micros"), histogram.getValueAtPercentile(99.9) / 1000L);
+                }
             }
         }
 
@@ -691,9 +963,9 @@ public class StoreTimer {
         for (Aggregate aggregate : getAggregates()) {
             @Nullable Counter counter = aggregate.compute(this);
             if (counter != null) {
-                result.put(aggregate.logKeyWithSuffix("_count"), counter.count.get());
+                result.put(aggregate.logKeyWithSuffix("_count"), counter.getCount());
                 if (!(aggregate instanceof Count)) {
-                    result.put(aggregate.logKeyWithSuffix("_micros"), counter.timeNanos.get() / 1000L);
+                    result.put(aggregate.logKeyWithSuffix("_micros"), counter.getTimeNanos() / 1000L);
                 }
             }
         }
@@ -180,10 +180,14 @@ public final class StoreTimerSnapshot {
     public static class CounterSnapshot {
         private final long timeNanos;
         private final int count;
+        @Nullable
+        private final StoreTimer.Histogram histogram;
 
         private CounterSnapshot(@Nonnull StoreTimer.Counter c) {
             timeNanos = c.getTimeNanos();
             count = c.getCount();
+            final StoreTimer.Histogram counterHistogram = c.getHistogram();
+            histogram = counterHistogram == null ? null : counterHistogram.copy();
         }
 
         /**
@@ -215,5 +219,17 @@ public final class StoreTimerSnapshot {
         public long getTimeNanos() {
             return timeNanos;
         }
+
+        /**
+         * Get the distribution of the times recorded for the associated event.
+         * The returned histogram is a copy taken with the snapshot and should not be modified.
+         *
+         * @return the histogram of recorded times or {@code null} if the timer was not recording histograms
+         */
+        @API(API.Status.EXPERIMENTAL)
+        @Nullable
+        public StoreTimer.Histogram getHistogram() {
+            return histogram;
+        }
     }
 }
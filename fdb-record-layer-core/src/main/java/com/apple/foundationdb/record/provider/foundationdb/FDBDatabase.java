@@ -25,6 +25,7 @@ import com.apple.foundationdb.FDB;
 import com.apple.foundationdb.FDBException;
 import com.apple.foundationdb.Transaction;
 import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.RankedSetLevelCache;
 import com.apple.foundationdb.record.AsyncLoadingCache;
 import com.apple.foundationdb.record.LoggableTimeoutException;
 import com.apple.foundationdb.record.RecordCoreException;
@@ -34,8 +35,10 @@ import com.apple.foundationdb.record.logging.KeyValueLogMessage;
 import com.apple.foundationdb.record.logging.LogMessageKeys;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.keyspace.LocatableResolver;
+import com.apple.foundationdb.record.provider.foundationdb.keyspace.ResolvedKeySpacePathCache;
 import com.apple.foundationdb.record.provider.foundationdb.keyspace.ResolverResult;
 import com.apple.foundationdb.record.provider.foundationdb.keyspace.ScopedValue;
+import com.apple.foundationdb.record.provider.foundationdb.leaderboard.TimeWindowLeaderboardDirectoryCache;
 import com.apple.foundationdb.record.provider.foundationdb.storestate.FDBRecordStoreStateCache;
 import com.apple.foundationdb.record.provider.foundationdb.storestate.PassThroughRecordStoreStateCache;
 import com.apple.foundationdb.tuple.Tuple;
@@ -134,6 +137,16 @@ public class FDBDatabase {
     private final long reverseDirectoryMaxMillisPerTransaction;
     @Nonnull
     private FDBRecordStoreStateCache storeStateCache = PassThroughRecordStoreStateCache.instance();
+    @Nullable
+    private volatile FDBRecordCache recordCache;
+    @Nullable
+    private volatile TimeWindowLeaderboardDirectoryCache leaderboardDirectoryCache;
+    @Nullable
+    private volatile RankedSetLevelCache rankedSetLevelCache;
+    @Nullable
+    private volatile ResolvedKeySpacePathCache resolvedKeySpacePathCache;
+    @Nonnull
+    private final FDBReadVersionPrefetcher readVersionPrefetcher;
     private final Supplier<Boolean> transactionIsTracedSupplier;
     private final long warnAndCloseOpenContextsAfterSeconds;
     // The number of cache entries to maintain in memory
@@ -184,6 +197,7 @@ public class FDBDatabase {
         this.latencyInjector = factory.getLatencyInjector();
         this.datacenterId = factory.getDatacenterId();
         this.localityProvider = factory.getLocalityProvider();
+        this.readVersionPrefetcher = new FDBReadVersionPrefetcher(this, factory.getReadVersionPrefetchIntervalMillis());
     }
 
     /**
@@ -434,19 +448,33 @@ public class FDBDatabase {
 
         FDBRecordContext context = new FDBRecordContext(this, transaction, contextConfig);
         final WeakReadSemantics weakReadSemantics = context.getWeakReadSemantics();
-        if (isTrackLastSeenVersion() && (weakReadSemantics != null)) {
-            Pair<Long, Long> pair = lastSeenFDBVersion.get();
-            if (pair != initialVersionPair) {
-                long version = pair.getLeft();
-                long versionTimeMillis = pair.getRight();
-                // If the following condition holds, a subsequent getReadVersion (on this transaction) returns version,
-                // otherwise getReadVersion does not use the cached value and results in a GRV call to FDB
-                if (version >= weakReadSemantics.getMinVersion() &&
-                        (System.currentTimeMillis() - versionTimeMillis) <= weakReadSemantics.getStalenessBoundMillis()) {
-                    context.setReadVersion(version);
-                    context.increment(FDBStoreTimer.Counts.SET_READ_VERSION_TO_LAST_SEEN);
+        if (weakReadSemantics != null) {
+            long lastSeenVersion = -1L;
+            if (isTrackLastSeenVersion()) {
+                Pair<Long, Long> pair = lastSeenFDBVersion.get();
+                if (pair != initialVersionPair) {
+                    long version = pair.getLeft();
+                    long versionTimeMillis = pair.getRight();
+                    // If the following condition holds, a subsequent getReadVersion (on this transaction) returns version,
+                    // otherwise getReadVersion does not use the cached value and results in a GRV call to FDB
+                    if (version >= weakReadSemantics.getMinVersion() &&
+                            (System.currentTimeMillis() - versionTimeMillis) <= weakReadSemantics.getStalenessBoundMillis()) {
+                        lastSeenVersion = version;
+                    }
                 }
             }
+            Long prefetchedVersion = null;
+            if (readVersionPrefetcher.getRefreshIntervalMillis() > 0) {
+                prefetchedVersion = readVersionPrefetcher.getPrefetchedReadVersion(context.getPriority(), weakReadSemantics);
+            }
+            // Use whichever of the two versions is more recent
+            if (prefetchedVersion != null && prefetchedVersion > lastSeenVersion) {
+                context.setReadVersion(prefetchedVersion);
+                context.increment(FDBStoreTimer.Counts.SET_READ_VERSION_TO_PREFETCHED);
+            } else if (lastSeenVersion >= 0L) {
+                context.setReadVersion(lastSeenVersion);
+                context.increment(FDBStoreTimer.Counts.SET_READ_VERSION_TO_LAST_SEEN);
+            }
         }
 
         if (warnAndCloseOpenContextsAfterSeconds > 0) {
@@ -669,6 +697,10 @@ public class FDBDatabase {
     @API(API.Status.INTERNAL)
     public void clearForwardDirectoryCache() {
         directoryCache.invalidateAll();
+        final ResolvedKeySpacePathCache currentResolvedKeySpacePathCache = resolvedKeySpacePathCache;
+        if (currentResolvedKeySpacePathCache != null) {
+            currentResolvedKeySpacePathCache.clear();
+        }
     }
 
     @VisibleForTesting
@@ -704,6 +736,124 @@ public class FDBDatabase {
         this.storeStateCache = storeStateCache;
     }
 
+    /**
+     * Get the record cache for this database. This cache is shared by all record stores opened against this
+     * database and is used to serve records across transactions.
+     *
+     * @return the record cache for this database or {@code null} if records are not cached
+     * @see FDBRecordCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nullable
+    public FDBRecordCache getRecordCache() {
+        return recordCache;
+    }
+
+    /**
+     * Set the record cache for this database. The provided cache will be used by all record stores opened
+     * against this database. Note that the record cache should <em>not</em> be shared with a different database.
+     *
+     * @param recordCache the record cache or {@code null} to disable caching records
+     * @see FDBRecordCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setRecordCache(@Nullable FDBRecordCache recordCache) {
+        this.recordCache = recordCache;
+    }
+
+    /**
+     * Get the leaderboard directory cache for this database. This cache is shared by all record stores opened
+     * against this database and is used to avoid reading the directory of a time window leaderboard index in
+     * every transaction that uses it.
+     *
+     * @return the leaderboard directory cache for this database or {@code null} if directories are not cached
+     * @see TimeWindowLeaderboardDirectoryCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nullable
+    public TimeWindowLeaderboardDirectoryCache getLeaderboardDirectoryCache() {
+        return leaderboardDirectoryCache;
+    }
+
+    /**
+     * Set the leaderboard directory cache for this database. Note that the cache should <em>not</em> be shared
+     * with a different database.
+     *
+     * @param leaderboardDirectoryCache the leaderboard directory cache or {@code null} to disable caching directories
+     * @see TimeWindowLeaderboardDirectoryCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setLeaderboardDirectoryCache(@Nullable TimeWindowLeaderboardDirectoryCache leaderboardDirectoryCache) {
+        this.leaderboardDirectoryCache = leaderboardDirectoryCache;
+    }
+
+    /**
+     * Get the ranked set level cache for this database. This cache is shared by all record stores opened
+     * against this database and is used to avoid reading the coarser levels of the ranked sets of rank indexes
+     * with the {@link com.apple.foundationdb.record.metadata.IndexOptions#RANK_TRACK_CHANGES} option on every lookup.
+     *
+     * @return the ranked set level cache for this database or {@code null} if levels are not cached
+     * @see RankedSetLevelCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nullable
+    public RankedSetLevelCache getRankedSetLevelCache() {
+        return rankedSetLevelCache;
+    }
+
+    /**
+     * Set the ranked set level cache for this database. Note that the cache should <em>not</em> be shared
+     * with a different database.
+     *
+     * @param rankedSetLevelCache the ranked set level cache or {@code null} to disable caching levels
+     * @see RankedSetLevelCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setRankedSetLevelCache(@Nullable RankedSetLevelCache rankedSetLevelCache) {
+        this.rankedSetLevelCache = rankedSetLevelCache;
+    }
+
+    /**
+     * Get the resolved key space path cache for this database. This cache is shared by all transactions against
+     * this database and is used to avoid resolving every element of a {@link com.apple.foundationdb.record.provider.foundationdb.keyspace.KeySpacePath}
+     * each time it is converted to a tuple or subspace, such as when opening a record store.
+     *
+     * @return the resolved key space path cache for this database or {@code null} if paths are not cached
+     * @see ResolvedKeySpacePathCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nullable
+    public ResolvedKeySpacePathCache getResolvedKeySpacePathCache() {
+        return resolvedKeySpacePathCache;
+    }
+
+    /**
+     * Set the resolved key space path cache for this database. Note that the cache should <em>not</em> be shared
+     * with a different database.
+     *
+     * @param resolvedKeySpacePathCache the resolved key space path cache or {@code null} to disable caching paths
+     * @see ResolvedKeySpacePathCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setResolvedKeySpacePathCache(@Nullable ResolvedKeySpacePathCache resolvedKeySpacePathCache) {
+        this.resolvedKeySpacePathCache = resolvedKeySpacePathCache;
+    }
+
+    /**
+     * Get the source of read versions for this database. This can be used to get read versions that are shared
+     * between concurrent callers. If the factory was configured with a
+     * {@linkplain FDBDatabaseFactory#setReadVersionPrefetchIntervalMillis(long) prefetch interval}, contexts opened
+     * with {@link WeakReadSemantics} will also start from the read versions it prefetches when they are recent enough.
+     *
+     * @return the read version prefetcher for this database
+     * @see FDBReadVersionPrefetcher
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public FDBReadVersionPrefetcher getReadVersionPrefetcher() {
+        return readVersionPrefetcher;
+    }
+
     @VisibleForTesting
     @API(API.Status.INTERNAL)
     public void clearCaches() {
@@ -711,6 +861,18 @@ public class FDBDatabase {
         clearForwardDirectoryCache();
         clearReverseDirectoryCache();
         storeStateCache.clear();
+        final FDBRecordCache currentRecordCache = recordCache;
+        if (currentRecordCache != null) {
+            currentRecordCache.clear();
+        }
+        final TimeWindowLeaderboardDirectoryCache currentLeaderboardDirectoryCache = leaderboardDirectoryCache;
+        if (currentLeaderboardDirectoryCache != null) {
+            currentLeaderboardDirectoryCache.clear();
+        }
+        final RankedSetLevelCache currentRankedSetLevelCache = rankedSetLevelCache;
+        if (currentRankedSetLevelCache != null) {
+            currentRankedSetLevelCache.clear();
+        }
     }
 
     public synchronized void close() {
@@ -719,6 +881,7 @@ public class FDBDatabase {
             database = null;
             opened = false;
             directoryCacheVersion.set(0);
+            readVersionPrefetcher.close();
             clearCaches();
             reverseDirectoryInMemoryCache.invalidateAll();
         }
@@ -763,6 +926,22 @@ public class FDBDatabase {
         return new FDBDatabaseRunnerImpl(this, contextConfigBuilder);
     }
 
+    /**
+     * Create an {@link FDBGroupCommitter} that combines small units of work into shared transactions against
+     * this database.
+     * @param contextConfigBuilder options for contexts opened by the group committer
+     * @param maxBatchSize the maximum number of units of work to combine into a single transaction
+     * @param maxDelayMillis the maximum amount of time to wait for more units of work before running a batch
+     * @return a new group committer
+     * @see FDBGroupCommitter
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public FDBGroupCommitter newGroupCommitter(@Nonnull FDBRecordContextConfig.Builder contextConfigBuilder,
+                                               int maxBatchSize, long maxDelayMillis) {
+        return new FDBGroupCommitter(newRunner(contextConfigBuilder), maxBatchSize, maxDelayMillis);
+    }
+
     /**
      * Create an {@link FDBDatabaseRunner} for use against this database.
      * @return a new runner
@@ -133,6 +133,8 @@ public class FDBDatabaseFactory {
     private Supplier<BlockingInAsyncDetection> blockingInAsyncDetectionSupplier = () -> BlockingInAsyncDetection.DISABLED;
     @Nonnull
     private FDBRecordStoreStateCacheFactory storeStateCacheFactory = PassThroughRecordStoreStateCacheFactory.instance();
+    private long recordCacheMaxSize;
+    private long readVersionPrefetchIntervalMillis;
 
     @Nonnull
     private Function<FDBLatencySource, Long> latencyInjector = DEFAULT_LATENCY_INJECTOR;
@@ -723,6 +725,60 @@ public class FDBDatabaseFactory {
         this.storeStateCacheFactory = storeStateCacheFactory;
     }
 
+    /**
+     * Get the maximum number of records kept in the {@link FDBRecordCache} of each {@link FDBDatabase} produced by
+     * this factory. A value of zero (the default) means that records are not cached across transactions.
+     *
+     * @return the maximum size of the record cache of each database
+     * @see #setRecordCacheMaxSize(long)
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public long getRecordCacheMaxSize() {
+        return recordCacheMaxSize;
+    }
+
+    /**
+     * Set the maximum number of records kept in the {@link FDBRecordCache} of each {@link FDBDatabase} produced by
+     * this factory. Setting this to a positive value enables caching deserialized records across transactions.
+     * This only affects databases that have not yet been produced by this factory.
+     *
+     * @param recordCacheMaxSize the maximum size of the record cache of each database or zero to disable the cache
+     * @see FDBRecordCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setRecordCacheMaxSize(long recordCacheMaxSize) {
+        this.recordCacheMaxSize = recordCacheMaxSize;
+    }
+
+    /**
+     * Get the interval at which databases produced by this factory refresh the read versions used by contexts
+     * opened with {@link FDBDatabase.WeakReadSemantics}. A value of zero (the default) means that read versions
+     * are not prefetched.
+     *
+     * @return the read version prefetch interval in milliseconds
+     * @see #setReadVersionPrefetchIntervalMillis(long)
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public long getReadVersionPrefetchIntervalMillis() {
+        return readVersionPrefetchIntervalMillis;
+    }
+
+    /**
+     * Set the interval at which databases produced by this factory refresh the read versions used by contexts
+     * opened with {@link FDBDatabase.WeakReadSemantics}. If set to a positive value, each database keeps a recent
+     * read version for each {@link FDBTransactionPriority} in use, and a context whose weak read semantics allow
+     * that version will start with it instead of getting a read version from the database. The interval should
+     * therefore be comfortably less than the staleness bound of those semantics. This only affects databases that
+     * have not yet been produced by this factory.
+     *
+     * @param readVersionPrefetchIntervalMillis the read version prefetch interval in milliseconds or zero to disable prefetching
+     * @see FDBReadVersionPrefetcher
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setReadVersionPrefetchIntervalMillis(long readVersionPrefetchIntervalMillis) {
+        this.readVersionPrefetchIntervalMillis = readVersionPrefetchIntervalMillis;
+    }
+
     @Nonnull
     public synchronized FDBDatabase getDatabase(@Nullable String clusterFile) {
         FDBDatabase database = databases.get(clusterFile);
@@ -733,6 +789,9 @@ public class FDBDatabaseFactory {
             database.setResolverStateRefreshTimeMillis(getStateRefreshTimeMillis());
             database.setDatacenterId(getDatacenterId());
             database.setStoreStateCache(storeStateCacheFactory.getCache(database));
+            if (recordCacheMaxSize > 0) {
+                database.setRecordCache(new FDBRecordCache(recordCacheMaxSize));
+            }
             databases.put(clusterFile, database);
         }
         return database;
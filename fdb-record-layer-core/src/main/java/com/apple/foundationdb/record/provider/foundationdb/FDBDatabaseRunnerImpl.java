@@ -233,6 +233,10 @@ public class FDBDatabaseRunnerImpl implements FDBDatabaseRunner {
 
                 if (currAttempt + 1 < getMaxAttempts() && retry) {
                     long delay = (long)(Math.random() * currDelay);
+                    final FDBStoreTimer timer = getTimer();
+                    if (timer != null) {
+                        timer.increment(FDBStoreTimer.Counts.RETRY_TRANSACTION);
+                    }
 
                     if (LOGGER.isWarnEnabled()) {
                         final KeyValueLogMessage message = KeyValueLogMessage.build("Retrying FDB Exception",
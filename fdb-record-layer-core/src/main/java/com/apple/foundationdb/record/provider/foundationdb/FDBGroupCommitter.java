@@ -0,0 +1,323 @@
+/*
+ * FDBGroupCommitter.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.async.MoreAsyncUtil;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Combines small, independent units of work from many callers into shared transactions.
+ *
+ * <p>
+ * Each unit of work passed to {@link #submit(Function)} is queued until either {@link #getMaxBatchSize()} units have
+ * been queued or {@link #getMaxDelayMillis()} has passed since the first of them was queued. The queued units are then
+ * run one after another in a single transaction, which is committed once all of them have completed, and the future
+ * returned to each caller is completed with the result of its unit.
+ * </p>
+ *
+ * <p>
+ * If one unit fails with a non-retriable error, the shared transaction is abandoned, that unit's future is
+ * completed exceptionally, and the remaining units are run again in a new transaction. If the shared transaction
+ * cannot be committed (for example, because of a conflict or because it has become too large) or fails with a
+ * retriable error, the batch is split in half and each half is run separately. A unit that is left on its own is
+ * run with the retry loop of {@link FDBDatabaseRunner#runAsync(Function)}.
+ * </p>
+ *
+ * <p>
+ * As with {@link FDBDatabaseRunner#runAsync(Function)}, units of work may therefore be run more than once and must not
+ * have side effects outside of the transaction. Also, because the units in a batch share a transaction, they should
+ * not depend on one another and should each only do a small amount of work. Counter updates using atomic mutations
+ * and single-record saves of distinct records are typical candidates. Units that read and write the same keys will
+ * frequently conflict with one another and are better run in their own transactions.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class FDBGroupCommitter implements AutoCloseable {
+    /**
+     * The default maximum number of units of work to combine into a single transaction.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    /**
+     * The default maximum amount of time to wait for more units of work before running a batch.
+     */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 2L;
+
+    @Nonnull
+    private final FDBDatabaseRunner runner;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    @Nullable
+    private List<Work<?>> pending;
+    private boolean closed;
+
+    /**
+     * Create a new group committer.
+     * @param runner the runner used to open the shared transactions and to retry individual units of work
+     * @param maxBatchSize the maximum number of units of work to combine into a single transaction
+     * @param maxDelayMillis the maximum amount of time to wait for more units of work before running a batch
+     */
+    public FDBGroupCommitter(@Nonnull FDBDatabaseRunner runner, int maxBatchSize, long maxDelayMillis) {
+        if (maxBatchSize < 1) {
+            throw new RecordCoreException("group commit batch size must be positive");
+        }
+        this.runner = runner;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Get the runner used by this group committer.
+     * @return the runner
+     */
+    @Nonnull
+    public FDBDatabaseRunner getRunner() {
+        return runner;
+    }
+
+    /**
+     * Get the maximum number of units of work combined into a single transaction.
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Get the maximum amount of time to wait for more units of work before running a batch.
+     * @return the maximum delay in milliseconds
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Queue a unit of work to be run in a shared transaction.
+     * @param work the unit of work to run
+     * @param <T> the type of the result of the unit of work
+     * @return a future that will be completed with the result of the unit of work once the transaction in which it
+     * ran has been committed
+     */
+    @Nonnull
+    public <T> CompletableFuture<T> submit(@Nonnull Function<? super FDBRecordContext, CompletableFuture<? extends T>> work) {
+        final Work<T> item = new Work<>(work);
+        final List<Work<?>> batch;
+        final boolean first;
+        final boolean full;
+        synchronized (this) {
+            if (closed) {
+                throw new RecordCoreException("group committer is closed");
+            }
+            first = pending == null;
+            if (first) {
+                pending = new ArrayList<>();
+            }
+            batch = pending;
+            batch.add(item);
+            full = batch.size() >= maxBatchSize;
+            if (full) {
+                pending = null;
+            }
+        }
+        if (full) {
+            startBatch(batch);
+        } else if (first) {
+            MoreAsyncUtil.delayedFuture(maxDelayMillis, TimeUnit.MILLISECONDS).thenRun(() -> flush(batch));
+        }
+        return item.future;
+    }
+
+    /**
+     * Run any queued units of work without waiting for the batch to fill up.
+     */
+    public void flush() {
+        final List<Work<?>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = null;
+        }
+        if (batch != null) {
+            startBatch(batch);
+        }
+    }
+
+    private void flush(@Nonnull List<Work<?>> batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                // Already run because it filled up or was flushed explicitly.
+                return;
+            }
+            pending = null;
+        }
+        startBatch(batch);
+    }
+
+    /**
+     * Stop accepting new units of work and run any that are queued. Transactions that are already in progress
+     * are allowed to complete. This does not close the underlying runner.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+    }
+
+    private void startBatch(@Nonnull List<Work<?>> batch) {
+        // Run on the executor rather than the thread that filled the batch or the delay's timer thread.
+        runner.getExecutor().execute(() -> runBatch(batch));
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> runBatch(@Nonnull List<Work<?>> batch) {
+        if (batch.isEmpty()) {
+            return AsyncUtil.DONE;
+        }
+        if (batch.size() == 1) {
+            return batch.get(0).runAlone();
+        }
+        increment(FDBStoreTimer.Counts.GROUP_COMMIT_TRANSACTION);
+        final FDBRecordContext context;
+        try {
+            context = runner.openContext();
+        } catch (RuntimeException e) {
+            failAll(batch, e);
+            return AsyncUtil.DONE;
+        }
+        final Iterator<Work<?>> iter = batch.iterator();
+        return AsyncUtil.whileTrue(() -> {
+            if (!iter.hasNext()) {
+                return AsyncUtil.READY_FALSE;
+            }
+            return iter.next().runIn(context).thenApply(vignore -> true);
+        }, runner.getExecutor()).thenCompose(vignore -> context.commitAsync()).handle((vignore, err) -> {
+            context.close();
+            if (err == null) {
+                batch.forEach(Work::complete);
+                return AsyncUtil.DONE;
+            }
+            final Work<?> failed = batch.stream().filter(item -> item.error != null).findFirst().orElse(null);
+            if (failed == null || FDBExceptions.isRetriable(err)) {
+                // The shared transaction itself failed, so try again with smaller transactions.
+                return split(batch);
+            }
+            failed.fail(err);
+            final List<Work<?>> remaining = new ArrayList<>(batch);
+            remaining.remove(failed);
+            return runBatch(remaining);
+        }).thenCompose(Function.identity()).exceptionally(err -> {
+            failAll(batch, err);
+            return null;
+        });
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> split(@Nonnull List<Work<?>> batch) {
+        increment(FDBStoreTimer.Counts.GROUP_COMMIT_SPLIT);
+        final int mid = batch.size() / 2;
+        return CompletableFuture.allOf(runBatch(batch.subList(0, mid)), runBatch(batch.subList(mid, batch.size())));
+    }
+
+    private void failAll(@Nonnull List<Work<?>> batch, @Nonnull Throwable err) {
+        for (Work<?> item : batch) {
+            item.fail(err);
+        }
+    }
+
+    private void increment(@Nonnull StoreTimer.Count count) {
+        final FDBStoreTimer timer = runner.getTimer();
+        if (timer != null) {
+            timer.increment(count);
+        }
+    }
+
+    /**
+     * A single unit of work along with the future returned to its caller.
+     * @param <T> the type of the result of the unit of work
+     */
+    private class Work<T> {
+        @Nonnull
+        private final Function<? super FDBRecordContext, CompletableFuture<? extends T>> work;
+        @Nonnull
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        @Nullable
+        private T result;
+        @Nullable
+        private Throwable error;
+
+        private Work(@Nonnull Function<? super FDBRecordContext, CompletableFuture<? extends T>> work) {
+            this.work = work;
+        }
+
+        @Nonnull
+        private CompletableFuture<Void> runIn(@Nonnull FDBRecordContext context) {
+            result = null;
+            error = null;
+            CompletableFuture<? extends T> workFuture;
+            try {
+                workFuture = work.apply(context);
+            } catch (RuntimeException e) {
+                final CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                workFuture = failed;
+            }
+            return workFuture.whenComplete((val, err) -> {
+                if (err == null) {
+                    result = val;
+                } else {
+                    error = err;
+                }
+            }).thenApply(vignore -> null);
+        }
+
+        @Nonnull
+        private CompletableFuture<Void> runAlone() {
+            return runner.runAsync(work).handle((val, err) -> {
+                if (err == null) {
+                    future.complete(val);
+                } else {
+                    future.completeExceptionally(err);
+                }
+                return null;
+            });
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+
+        private void fail(@Nonnull Throwable err) {
+            future.completeExceptionally(runner.getDatabase().mapAsyncToSyncException(err));
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * FDBReadVersionPrefetcher.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.MoreAsyncUtil;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.logging.KeyValueLogMessage;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Source of read versions for an {@link FDBDatabase} that coalesces concurrent requests and can keep a recent read
+ * version for each {@link FDBTransactionPriority} refreshed in the background.
+ *
+ * <p>
+ * Requests made through {@link #getReadVersionAsync(FDBTransactionPriority)} share get-read-version calls to the
+ * database. Only one call per priority is outstanding at any time, and requests that arrive while a call is
+ * outstanding are all satisfied by the next call, which is started once the outstanding one completes. Because
+ * that call is only started after the requests were made, the returned version is still at least as new as any
+ * transaction that committed before the request, so coalescing does not weaken consistency.
+ * </p>
+ *
+ * <p>
+ * If a positive refresh interval is configured (see {@link FDBDatabaseFactory#setReadVersionPrefetchIntervalMillis(long)}),
+ * the versions of priorities that have recently been asked for are also refreshed periodically. A context opened
+ * with {@link FDBDatabase.WeakReadSemantics} can then start with the prefetched version of its priority if that version
+ * is within the semantics' staleness bound, avoiding a round trip to the database entirely.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class FDBReadVersionPrefetcher {
+    @Nonnull
+    private static final Logger LOGGER = LoggerFactory.getLogger(FDBReadVersionPrefetcher.class);
+
+    @Nonnull
+    private final FDBDatabase database;
+    private final long refreshIntervalMillis;
+    @Nonnull
+    private final Map<FDBTransactionPriority, PriorityState> states;
+    // Incremented whenever background refreshing is started or stopped so that a stale refresh loop stops itself.
+    private long refreshGeneration;
+    private boolean refreshing;
+
+    FDBReadVersionPrefetcher(@Nonnull FDBDatabase database, long refreshIntervalMillis) {
+        this.database = database;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.states = new EnumMap<>(FDBTransactionPriority.class);
+        for (FDBTransactionPriority priority : FDBTransactionPriority.values()) {
+            states.put(priority, new PriorityState(priority));
+        }
+    }
+
+    /**
+     * Get the interval at which read versions are refreshed in the background. A value of zero or less means that
+     * read versions are only fetched on demand.
+     * @return the refresh interval in milliseconds
+     */
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    /**
+     * Get a read version at the given priority. The version is at least as new as the committed version of any
+     * transaction that finished committing before this method was called.
+     * @param priority the priority at which to get the read version
+     * @return a future that will contain a read version
+     */
+    @Nonnull
+    public CompletableFuture<Long> getReadVersionAsync(@Nonnull FDBTransactionPriority priority) {
+        return states.get(priority).request();
+    }
+
+    /**
+     * Get the most recent read version fetched at the given priority, if it satisfies the given semantics.
+     * Calling this also marks the priority as in use, so that it will be refreshed in the background
+     * if a refresh interval is configured.
+     * @param priority the priority of the transaction that would use the version
+     * @param weakReadSemantics the semantics that the version must satisfy
+     * @return a version satisfying the given semantics or {@code null} if there is none
+     */
+    @Nullable
+    public Long getPrefetchedReadVersion(@Nonnull FDBTransactionPriority priority, @Nonnull FDBDatabase.WeakReadSemantics weakReadSemantics) {
+        final PriorityState state = states.get(priority);
+        state.used = true;
+        startRefreshing();
+        final Pair<Long, Long> versionAndTime = state.latest.get();
+        if (versionAndTime == null) {
+            if (refreshIntervalMillis > 0) {
+                // Start fetching right away rather than waiting for the next refresh.
+                state.request();
+            }
+            return null;
+        }
+        final long version = versionAndTime.getLeft();
+        final long versionTimeMillis = versionAndTime.getRight();
+        if (version >= weakReadSemantics.getMinVersion() &&
+                (System.currentTimeMillis() - versionTimeMillis) <= weakReadSemantics.getStalenessBoundMillis()) {
+            return version;
+        }
+        return null;
+    }
+
+    /**
+     * Stop refreshing read versions in the background and forget any prefetched versions.
+     */
+    public void close() {
+        synchronized (this) {
+            refreshing = false;
+            refreshGeneration++;
+        }
+        for (PriorityState state : states.values()) {
+            state.latest.set(null);
+            state.used = false;
+        }
+    }
+
+    private synchronized void startRefreshing() {
+        if (refreshIntervalMillis > 0 && !refreshing) {
+            refreshing = true;
+            scheduleRefresh(++refreshGeneration);
+        }
+    }
+
+    private synchronized boolean isRefreshing(long generation) {
+        return refreshing && refreshGeneration == generation;
+    }
+
+    private void scheduleRefresh(long generation) {
+        MoreAsyncUtil.delayedFuture(refreshIntervalMillis, TimeUnit.MILLISECONDS).thenRun(() -> {
+            if (!isRefreshing(generation)) {
+                return;
+            }
+            for (PriorityState state : states.values()) {
+                // Only refresh priorities that have been used since the last refresh to avoid
+                // issuing get-read-version requests on behalf of an idle database.
+                if (state.used) {
+                    state.used = false;
+                    state.request();
+                }
+            }
+            scheduleRefresh(generation);
+        });
+    }
+
+    @Nonnull
+    private CompletableFuture<Long> fetchReadVersion(@Nonnull FDBTransactionPriority priority) {
+        final Transaction transaction = database.database().createTransaction(database.getExecutor());
+        switch (priority) {
+            case BATCH:
+                transaction.options().setPriorityBatch();
+                break;
+            case DEFAULT:
+                break;
+            case SYSTEM_IMMEDIATE:
+                transaction.options().setPrioritySystemImmediate();
+                break;
+            default:
+                transaction.close();
+                throw new RecordCoreArgumentException("unknown priority level " + priority);
+        }
+        return transaction.getReadVersion().whenComplete((vignore, err) -> transaction.close());
+    }
+
+    /**
+     * Outstanding and most recent read version request at a single priority.
+     */
+    private class PriorityState {
+        @Nonnull
+        private final FDBTransactionPriority priority;
+        @Nonnull
+        private final AtomicReference<Pair<Long, Long>> latest = new AtomicReference<>();
+        @Nullable
+        private CompletableFuture<Long> outstanding;
+        @Nullable
+        private CompletableFuture<Long> waiting;
+        private volatile boolean used;
+
+        private PriorityState(@Nonnull FDBTransactionPriority priority) {
+            this.priority = priority;
+        }
+
+        @Nonnull
+        private synchronized CompletableFuture<Long> request() {
+            if (outstanding == null) {
+                outstanding = new CompletableFuture<>();
+                final CompletableFuture<Long> result = outstanding;
+                database.getExecutor().execute(() -> fetch(result));
+                return result;
+            }
+            if (waiting == null) {
+                waiting = new CompletableFuture<>();
+            }
+            return waiting;
+        }
+
+        private void fetch(@Nonnull CompletableFuture<Long> result) {
+            final long startTimeMillis = System.currentTimeMillis();
+            CompletableFuture<Long> future;
+            try {
+                future = fetchReadVersion(priority);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((version, err) -> {
+                if (err == null) {
+                    // The version is at least as new as the start time, which is thus a conservative estimate for its age.
+                    latest.accumulateAndGet(new ImmutablePair<>(version, startTimeMillis),
+                            (existing, update) -> existing == null || existing.getLeft() < update.getLeft() ? update : existing);
+                } else if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(KeyValueLogMessage.of("unable to get read version", LogMessageKeys.TRANSACTION_PRIORITY, priority), err);
+                }
+                final CompletableFuture<Long> next;
+                synchronized (this) {
+                    next = waiting;
+                    waiting = null;
+                    outstanding = next;
+                }
+                if (next != null) {
+                    fetch(next);
+                }
+                if (err == null) {
+                    result.complete(version);
+                } else {
+                    result.completeExceptionally(err);
+                }
+            });
+        }
+    }
+}
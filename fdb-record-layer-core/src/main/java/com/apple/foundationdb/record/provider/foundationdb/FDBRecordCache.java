@@ -0,0 +1,313 @@
+/*
+ * FDBRecordCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.protobuf.Message;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide cache of deserialized {@link FDBStoredRecord}s that is shared by all transactions against a
+ * single {@link FDBDatabase}. Entries are keyed by the subspace of the record store's records and the record's
+ * primary key, and each entry remembers the read version at which the record was observed.
+ *
+ * <p>
+ * An entry is only returned from {@link FDBRecordStore#loadRecordAsync(Tuple)} if it can be shown to be
+ * consistent with the reading transaction:
+ * </p>
+ * <ul>
+ *     <li>If the entry was read at exactly the transaction's read version, it is used.</li>
+ *     <li>If the record store keeps record versions and the record's version still matches the one stored in the
+ *     database, the entry is used. This still requires a (small) read, but skips reading and deserializing the
+ *     record itself.</li>
+ *     <li>If the transaction was opened with {@link FDBDatabase.WeakReadSemantics}, a snapshot read may use an
+ *     entry read before the transaction's read version, as long as it is at or after the minimum version of those
+ *     semantics and its read version is within their staleness bound of the transaction's. The staleness is
+ *     estimated from the difference in versions, which the database advances about a million per second.</li>
+ * </ul>
+ *
+ * <p>
+ * An entry read after the transaction's read version is never used, since it might include changes that
+ * the transaction cannot see.
+ * </p>
+ *
+ * <p>
+ * Records written by a transaction are never served from the cache within that transaction. When a transaction
+ * that saved or deleted records commits, the corresponding entries are invalidated as of the committed version,
+ * which prevents concurrent readers at older versions from re-populating the cache with superseded values.
+ * Changes made by other processes are only picked up through the mechanisms listed above, so entries served
+ * under weak read semantics may be as stale as the staleness bound allows.
+ * </p>
+ *
+ * <p>
+ * The cache is off by default. It can be enabled for all databases produced by a factory through
+ * {@link FDBDatabaseFactory#setRecordCacheMaxSize(long)} or for a single database with
+ * {@link FDBDatabase#setRecordCache(FDBRecordCache)}.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class FDBRecordCache {
+    /**
+     * Default maximum number of records to cache.
+     */
+    public static final long DEFAULT_MAX_SIZE = 10_000L;
+
+    /**
+     * Name of the post-commit hook used to invalidate records written by a transaction.
+     */
+    static final String INVALIDATION_POST_COMMIT_NAME = "recordCacheInvalidation";
+
+    // The rate at which the database nominally advances its version. Recoveries only make it jump ahead, which
+    // makes entries look staler than they are, not fresher.
+    private static final long VERSIONS_PER_MILLISECOND = 1_000L;
+
+    @Nonnull
+    private final Cache<Pair<Subspace, Tuple>, Entry> cache;
+    // Per-store versions below which cached entries are known to be superseded, e.g., by deleteAllRecords.
+    @Nonnull
+    private final Map<Subspace, Long> storeInvalidationVersions = new ConcurrentHashMap<>();
+
+    public FDBRecordCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public FDBRecordCache(long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get a cached entry for the given record. Entries that have been invalidated are not returned.
+     * @param recordsSubspace the subspace of the record store's records
+     * @param primaryKey the primary key of the record
+     * @return the cached entry or {@code null} if there is none
+     */
+    @Nullable
+    Entry get(@Nonnull Subspace recordsSubspace, @Nonnull Tuple primaryKey) {
+        final Entry entry = cache.getIfPresent(Pair.of(recordsSubspace, primaryKey));
+        if (entry == null || entry.record == null || entry.readVersion < getStoreInvalidationVersion(recordsSubspace)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Add a record to the cache that was read at the given version. If the cache already contains an entry for
+     * the record at the same or a later version (including an invalidation), the cache is left unchanged.
+     * @param recordsSubspace the subspace of the record store's records
+     * @param metaData the meta-data used to deserialize the record
+     * @param record the record
+     * @param readVersion the read version at which the record was read
+     */
+    void put(@Nonnull Subspace recordsSubspace, @Nonnull RecordMetaData metaData,
+             @Nonnull FDBStoredRecord<Message> record, long readVersion) {
+        if (readVersion < getStoreInvalidationVersion(recordsSubspace)) {
+            return;
+        }
+        final Entry entry = new Entry(metaData, record, readVersion);
+        cache.asMap().merge(Pair.of(recordsSubspace, record.getPrimaryKey()), entry,
+                (existing, added) -> existing.readVersion >= added.readVersion ? existing : added);
+    }
+
+    /**
+     * Invalidate the cached value of a record that was changed in a transaction committed at the given version.
+     * @param recordsSubspace the subspace of the record store's records
+     * @param primaryKey the primary key of the record
+     * @param committedVersion the version at which the change was committed
+     */
+    void invalidate(@Nonnull Subspace recordsSubspace, @Nonnull Tuple primaryKey, long committedVersion) {
+        final Entry tombstone = new Entry(null, null, committedVersion);
+        cache.asMap().merge(Pair.of(recordsSubspace, primaryKey), tombstone,
+                (existing, added) -> existing.readVersion > added.readVersion ? existing : added);
+    }
+
+    /**
+     * Invalidate all cached records of a record store that was changed in a transaction committed at the given version.
+     * @param recordsSubspace the subspace of the record store's records
+     * @param committedVersion the version at which the change was committed
+     */
+    void invalidateAll(@Nonnull Subspace recordsSubspace, long committedVersion) {
+        storeInvalidationVersions.merge(recordsSubspace, committedVersion, Math::max);
+        cache.asMap().keySet().removeIf(key -> key.getLeft().equals(recordsSubspace));
+    }
+
+    private long getStoreInvalidationVersion(@Nonnull Subspace recordsSubspace) {
+        return storeInvalidationVersions.getOrDefault(recordsSubspace, 0L);
+    }
+
+    /**
+     * Note that a transaction changed the given record. The record will not be served from the cache
+     * for the remainder of the transaction and will be invalidated once the transaction commits.
+     * @param context the transaction that changed the record
+     * @param recordsSubspace the subspace of the record store's records
+     * @param primaryKey the primary key of the changed record or {@code null} if all records may have changed
+     */
+    void addWrite(@Nonnull FDBRecordContext context, @Nonnull Subspace recordsSubspace, @Nullable Tuple primaryKey) {
+        getInvalidation(context, true).addWrite(recordsSubspace, primaryKey);
+    }
+
+    /**
+     * Get whether the given transaction has changed the given record.
+     * @param context the transaction to check
+     * @param recordsSubspace the subspace of the record store's records
+     * @param primaryKey the primary key of the record
+     * @return whether the transaction changed the record
+     */
+    boolean hasWrite(@Nonnull FDBRecordContext context, @Nonnull Subspace recordsSubspace, @Nonnull Tuple primaryKey) {
+        final Invalidation invalidation = getInvalidation(context, false);
+        return invalidation != null && invalidation.hasWrite(recordsSubspace, primaryKey);
+    }
+
+    @Nullable
+    private Invalidation getInvalidation(@Nonnull FDBRecordContext context, boolean create) {
+        if (create) {
+            return (Invalidation)context.getOrCreatePostCommit(INVALIDATION_POST_COMMIT_NAME, name -> new Invalidation(context));
+        } else {
+            return (Invalidation)context.getPostCommit(INVALIDATION_POST_COMMIT_NAME);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        cache.invalidateAll();
+        storeInvalidationVersions.clear();
+    }
+
+    /**
+     * Get the approximate number of entries in the cache.
+     * @return the number of cached entries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get statistics about this cache's hit and eviction rates.
+     * @return the cache statistics
+     */
+    @Nonnull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * A cached record along with the version at which it was read.
+     */
+    static class Entry {
+        @Nullable
+        private final RecordMetaData metaData;
+        @Nullable
+        private final FDBStoredRecord<Message> record;
+        private final long readVersion;
+
+        private Entry(@Nullable RecordMetaData metaData, @Nullable FDBStoredRecord<Message> record, long readVersion) {
+            this.metaData = metaData;
+            this.record = record;
+            this.readVersion = readVersion;
+        }
+
+        @Nullable
+        public RecordMetaData getMetaData() {
+            return metaData;
+        }
+
+        @Nullable
+        public FDBStoredRecord<Message> getRecord() {
+            return record;
+        }
+
+        public long getReadVersion() {
+            return readVersion;
+        }
+
+        /**
+         * Get whether this entry can be used by a transaction at the given read version with the given weak read semantics.
+         * @param transactionReadVersion the read version of the transaction
+         * @param weakReadSemantics the transaction's weak read semantics
+         * @return {@code true} if this entry was read no later than the transaction and is not too stale for it
+         */
+        public boolean isWithinStalenessBound(long transactionReadVersion, @Nonnull FDBDatabase.WeakReadSemantics weakReadSemantics) {
+            return readVersion <= transactionReadVersion && readVersion >= weakReadSemantics.getMinVersion() &&
+                   (transactionReadVersion - readVersion) / VERSIONS_PER_MILLISECOND <= weakReadSemantics.getStalenessBoundMillis();
+        }
+    }
+
+    /**
+     * Post-commit hook that tracks the records changed by a transaction and invalidates them once it commits.
+     */
+    private class Invalidation implements FDBRecordContext.PostCommit {
+        @Nonnull
+        private final FDBRecordContext context;
+        @Nonnull
+        private final Set<Pair<Subspace, Tuple>> records = new HashSet<>();
+        @Nonnull
+        private final Set<Subspace> stores = new HashSet<>();
+
+        private Invalidation(@Nonnull FDBRecordContext context) {
+            this.context = context;
+        }
+
+        private synchronized void addWrite(@Nonnull Subspace recordsSubspace, @Nullable Tuple primaryKey) {
+            if (primaryKey == null) {
+                stores.add(recordsSubspace);
+            } else {
+                records.add(Pair.of(recordsSubspace, primaryKey));
+            }
+        }
+
+        private synchronized boolean hasWrite(@Nonnull Subspace recordsSubspace, @Nonnull Tuple primaryKey) {
+            return stores.contains(recordsSubspace) || records.contains(Pair.of(recordsSubspace, primaryKey));
+        }
+
+        @Override
+        public synchronized CompletableFuture<Void> get() {
+            final long committedVersion = context.getCommittedVersion();
+            for (Subspace recordsSubspace : stores) {
+                invalidateAll(recordsSubspace, committedVersion);
+            }
+            for (Pair<Subspace, Tuple> key : records) {
+                if (!stores.contains(key.getLeft())) {
+                    invalidate(key.getLeft(), key.getRight(), committedVersion);
+                }
+            }
+            return AsyncUtil.DONE;
+        }
+    }
+}
@@ -148,6 +148,8 @@ public class FDBRecordContext extends FDBTransactionContext implements AutoClose
     @Nonnull
     private final FDBTransactionPriority priority;
     private final long timeoutMillis;
+    @Nonnull
+    private final FDBRecordContextConfig config;
     @Nullable
     private Consumer<FDBStoreTimer.Wait> hookForAsyncToSync = null;
     @Nonnull
@@ -164,6 +166,7 @@ public class FDBRecordContext extends FDBTransactionContext implements AutoClose
                                @Nonnull Transaction transaction,
                                @Nonnull FDBRecordContextConfig config) {
         super(fdb, transaction, config.getTimer());
+        this.config = config;
         this.transactionCreateTime = System.currentTimeMillis();
         this.localVersion = new AtomicInteger(0);
         this.localVersionCache = new ConcurrentSkipListMap<>(ByteArrayUtil::compareUnsigned);
@@ -1235,6 +1238,18 @@ public class FDBRecordContext extends FDBTransactionContext implements AutoClose
         return priority;
     }
 
+    /**
+     * Get the configuration with which this context was opened. This can be used to open another context with the
+     * same timer, priority and other settings as this one.
+     *
+     * @return the configuration used to open this context
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public FDBRecordContextConfig getConfig() {
+        return config;
+    }
+
     public void setHookForAsyncToSync(@Nonnull Consumer<FDBStoreTimer.Wait> hook) {
         this.hookForAsyncToSync = hook;
     }
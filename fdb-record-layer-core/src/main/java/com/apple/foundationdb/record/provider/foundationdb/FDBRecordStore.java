@@ -479,6 +479,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         final FDBRecordVersion splitVersion = useOldVersionFormat() ? null : version;
         final SplitHelper.SizeInfo sizeInfo = new SplitHelper.SizeInfo();
         preloadCache.invalidate(primaryKey); // clear out cache of older value if present
+        addRecordCacheWrite(primaryKey);
         SplitHelper.saveWithSplit(context, recordsSubspace(), recordBuilder.getPrimaryKey(), serialized, splitVersion, metaData.isSplitLongRecords(), omitUnsplitRecordSuffix, true, oldSizeInfo, sizeInfo);
         countKeysAndValues(FDBStoreTimer.Counts.SAVE_RECORD_KEY, FDBStoreTimer.Counts.SAVE_RECORD_KEY_BYTES, FDBStoreTimer.Counts.SAVE_RECORD_VALUE_BYTES, sizeInfo);
         recordBuilder.setSize(sizeInfo);
@@ -632,9 +633,10 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
             }
             final Map<RecordType, Collection<IndexMaintainer>> maintainers = getSyntheticMaintainers(plan.getSyntheticRecordTypes());
             final Map<Tuple, FDBSyntheticRecord> oldRecords = new ConcurrentHashMap<>();
-            CompletableFuture<Void> future = plan.execute(this, oldRecord).forEach(syntheticRecord -> oldRecords.put(syntheticRecord.getPrimaryKey(), syntheticRecord));
+            CompletableFuture<Void> future = plan.executeAll(this, oldRecord).thenAccept(syntheticRecords -> syntheticRecords.forEach(syntheticRecord -> oldRecords.put(syntheticRecord.getPrimaryKey(), syntheticRecord)));
             @Nonnull final FDBStoredRecord<M> theNewRecord = newRecord; // @SpotBugsSuppressWarnings("NP_PARAMETER_MUST_BE_NONNULL_BUT_MARKED_AS_NULLABLE", justification = "https://github.com/spotbugs/spotbugs/issues/552")
-            future = future.thenCompose(v -> plan.execute(this, theNewRecord).forEachAsync(syntheticRecord -> runSyntheticMaintainers(maintainers, oldRecords.remove(syntheticRecord.getPrimaryKey()), syntheticRecord), pipelineSize));
+            future = future.thenCompose(v -> plan.executeAll(this, theNewRecord)).thenCompose(syntheticRecords -> RecordCursor.fromList(getExecutor(), syntheticRecords)
+                    .forEachAsync(syntheticRecord -> runSyntheticMaintainers(maintainers, oldRecords.remove(syntheticRecord.getPrimaryKey()), syntheticRecord), pipelineSize));
             future = future.thenCompose(v -> {
                 // Any synthetic record that was generated by the plan on the old record but not by the plan on the new record needs to be removed from its indexes.
                 final List<CompletableFuture<Void>> subFutures = new ArrayList<>();
@@ -658,14 +660,16 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                 final SyntheticRecordFromStoredRecordPlan plan = planner.fromStoredType(oldRecord.getRecordType(), true);
                 if (plan != null) {
                     final Map<RecordType, Collection<IndexMaintainer>> maintainers = getSyntheticMaintainers(plan.getSyntheticRecordTypes());
-                    futures.add(plan.execute(this, oldRecord).forEachAsync(syntheticRecord -> runSyntheticMaintainers(maintainers, syntheticRecord, null), pipelineSize));
+                    futures.add(plan.executeAll(this, oldRecord).thenCompose(syntheticRecords -> RecordCursor.fromList(getExecutor(), syntheticRecords)
+                            .forEachAsync(syntheticRecord -> runSyntheticMaintainers(maintainers, syntheticRecord, null), pipelineSize)));
                 }
             }
             if (newRecord != null) {
                 final SyntheticRecordFromStoredRecordPlan plan = planner.fromStoredType(newRecord.getRecordType(), true);
                 if (plan != null) {
                     final Map<RecordType, Collection<IndexMaintainer>> maintainers = getSyntheticMaintainers(plan.getSyntheticRecordTypes());
-                    futures.add(plan.execute(this, newRecord).forEachAsync(syntheticRecord -> runSyntheticMaintainers(maintainers, null, syntheticRecord), pipelineSize));
+                    futures.add(plan.executeAll(this, newRecord).thenCompose(syntheticRecords -> RecordCursor.fromList(getExecutor(), syntheticRecords)
+                            .forEachAsync(syntheticRecord -> runSyntheticMaintainers(maintainers, null, syntheticRecord), pipelineSize)));
                 }
             }
         }
@@ -850,7 +854,23 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                                                                                         @Nonnull ExecuteState executeState,
                                                                                         final boolean snapshot) {
         final RecordMetaData metaData = metaDataProvider.getRecordMetaData();
+        final FDBRecordCache recordCache = context.getDatabase().getRecordCache();
+        if (recordCache != null && typedSerializer == serializer && !recordCache.hasWrite(context, recordsSubspace(), primaryKey)) {
+            // Only records read with the store's own serializer are cached, so M is known to be Message here.
+            @SuppressWarnings("unchecked")
+            CompletableFuture<FDBStoredRecord<M>> result = (CompletableFuture<FDBStoredRecord<M>>)(CompletableFuture<?>)
+                    loadCachedRecord(recordCache, primaryKey, metaData, executeState, snapshot);
+            return context.instrument(FDBStoreTimer.Events.LOAD_RECORD, result);
+        }
+        return context.instrument(FDBStoreTimer.Events.LOAD_RECORD, loadUncachedRecord(typedSerializer, primaryKey, metaData, executeState, snapshot));
+    }
 
+    @Nonnull
+    private <M extends Message> CompletableFuture<FDBStoredRecord<M>> loadUncachedRecord(@Nonnull RecordSerializer<M> typedSerializer,
+                                                                                         @Nonnull final Tuple primaryKey,
+                                                                                         @Nonnull RecordMetaData metaData,
+                                                                                         @Nonnull ExecuteState executeState,
+                                                                                         final boolean snapshot) {
         final Optional<CompletableFuture<FDBRecordVersion>> versionFutureOptional;
         if (useOldVersionFormat()) {
             versionFutureOptional = loadRecordVersionAsync(primaryKey);
@@ -868,7 +888,79 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                     return rawRecord == null ? CompletableFuture.completedFuture(null) :
                             deserializeRecord(typedSerializer, rawRecord, metaData, versionFutureOptional);
                 });
-        return context.instrument(FDBStoreTimer.Events.LOAD_RECORD, result);
+        return result;
+    }
+
+    /**
+     * Load a record, using the database's {@link FDBRecordCache} if a cached copy is consistent with this transaction.
+     * See {@link FDBRecordCache} for the conditions under which cached records are used.
+     */
+    @Nonnull
+    private CompletableFuture<FDBStoredRecord<Message>> loadCachedRecord(@Nonnull FDBRecordCache recordCache,
+                                                                         @Nonnull final Tuple primaryKey,
+                                                                         @Nonnull RecordMetaData metaData,
+                                                                         @Nonnull ExecuteState executeState,
+                                                                         final boolean snapshot) {
+        final Subspace recordsSubspace = recordsSubspace();
+        final FDBRecordCache.Entry entry = recordCache.get(recordsSubspace, primaryKey);
+        if (entry == null || entry.getMetaData() != metaData) {
+            return loadAndCacheRecord(recordCache, primaryKey, metaData, executeState, snapshot);
+        }
+        final FDBStoredRecord<Message> cachedRecord = entry.getRecord();
+        final FDBDatabase.WeakReadSemantics weakReadSemantics = context.getWeakReadSemantics();
+        return context.getReadVersionAsync().thenCompose(readVersion -> {
+            if (entry.getReadVersion() == readVersion) {
+                if (!snapshot) {
+                    addRecordReadConflict(primaryKey);
+                }
+                increment(FDBStoreTimer.Counts.RECORD_CACHE_HIT);
+                return CompletableFuture.completedFuture(cachedRecord);
+            }
+            // An entry read before this transaction is only as stale as weak read semantics allow, but one read after
+            // it may hold changes that this transaction must not see.
+            if (snapshot && weakReadSemantics != null && entry.isWithinStalenessBound(readVersion, weakReadSemantics)) {
+                increment(FDBStoreTimer.Counts.RECORD_CACHE_HIT);
+                return CompletableFuture.completedFuture(cachedRecord);
+            }
+            if (cachedRecord != null && metaData.isStoreRecordVersions() && cachedRecord.hasVersion() && cachedRecord.getVersion().isComplete()) {
+                final Optional<CompletableFuture<FDBRecordVersion>> storedVersionFuture = loadRecordVersionAsync(primaryKey, snapshot);
+                if (storedVersionFuture.isPresent()) {
+                    return storedVersionFuture.get().thenCompose(storedVersion -> {
+                        if (cachedRecord.getVersion().equals(storedVersion)) {
+                            if (!snapshot) {
+                                addRecordReadConflict(primaryKey);
+                            }
+                            increment(FDBStoreTimer.Counts.RECORD_CACHE_HIT);
+                            recordCache.put(recordsSubspace, metaData, cachedRecord, readVersion);
+                            return CompletableFuture.completedFuture(cachedRecord);
+                        }
+                        return loadAndCacheRecord(recordCache, primaryKey, metaData, executeState, snapshot);
+                    });
+                }
+            }
+            return loadAndCacheRecord(recordCache, primaryKey, metaData, executeState, snapshot);
+        });
+    }
+
+    @Nonnull
+    private CompletableFuture<FDBStoredRecord<Message>> loadAndCacheRecord(@Nonnull FDBRecordCache recordCache,
+                                                                           @Nonnull final Tuple primaryKey,
+                                                                           @Nonnull RecordMetaData metaData,
+                                                                           @Nonnull ExecuteState executeState,
+                                                                           final boolean snapshot) {
+        increment(FDBStoreTimer.Counts.RECORD_CACHE_MISS);
+        return loadUncachedRecord(serializer, primaryKey, metaData, executeState, snapshot).thenCompose(storedRecord -> {
+            if (storedRecord == null || (storedRecord.hasVersion() && !storedRecord.getVersion().isComplete())) {
+                return CompletableFuture.completedFuture(storedRecord);
+            }
+            return context.getReadVersionAsync().thenApply(readVersion -> {
+                // A write in this transaction after the load was issued means the loaded value may not be committed.
+                if (!recordCache.hasWrite(context, recordsSubspace(), primaryKey)) {
+                    recordCache.put(recordsSubspace(), metaData, storedRecord, readVersion);
+                }
+                return storedRecord;
+            });
+        });
     }
 
     /**
@@ -1245,6 +1337,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     protected <M extends Message> CompletableFuture<Boolean> deleteTypedRecord(@Nonnull RecordSerializer<M> typedSerializer,
                                                                                @Nonnull Tuple primaryKey) {
         preloadCache.invalidate(primaryKey);
+        addRecordCacheWrite(primaryKey);
         final RecordMetaData metaData = metaDataProvider.getRecordMetaData();
         CompletableFuture<Boolean> result = loadTypedRecord(typedSerializer, primaryKey, false).thenCompose(oldRecord -> {
             if (oldRecord == null) {
@@ -1315,12 +1408,35 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         context.setDirtyStoreState(true);
         final Transaction transaction = context.ensureActive();
         transaction.clear(subspace.range());
+        final FDBRecordCache recordCache = context.getDatabase().getRecordCache();
+        if (recordCache != null) {
+            recordCache.addWrite(context, subspace.subspace(Tuple.from(RECORD_KEY)), null);
+        }
+    }
+
+    /**
+     * Note a change to a record (or to all records if {@code primaryKey} is {@code null}) for the database's
+     * {@link FDBRecordCache}, if there is one.
+     * @param primaryKey the primary key of the changed record or {@code null} for all records
+     */
+    private void addRecordCacheWrite(@Nullable Tuple primaryKey) {
+        final FDBRecordCache recordCache = context.getDatabase().getRecordCache();
+        if (recordCache != null) {
+            recordCache.addWrite(context, recordsSubspace(), primaryKey);
+        }
     }
 
     @Override
     public void deleteAllRecords() {
         preloadCache.invalidateAll();
+        addRecordCacheWrite(null);
         Transaction tr = ensureContextActive();
+        // Updates buffered earlier in the transaction must not be written after the clear.
+        final List<CompletableFuture<Void>> discards = new ArrayList<>();
+        for (Index index : getRecordMetaData().getAllIndexes()) {
+            discards.add(getIndexMaintainer(index).discardBufferedUpdates());
+        }
+        context.asyncToSync(FDBStoreTimer.Waits.WAIT_DISCARD_BUFFERED_INDEX_UPDATES, AsyncUtil.whenAll(discards));
 
         // Clear out all data except for the store header key and the index state space.
         // Those two subspaces are determined by the configuration of the record store rather then
@@ -1333,6 +1449,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     @Override
     public CompletableFuture<Void> deleteRecordsWhereAsync(@Nonnull QueryComponent component) {
         preloadCache.invalidateAll();
+        addRecordCacheWrite(null);
         return new RecordsWhereDeleter(component).run();
     }
 
@@ -2138,7 +2255,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     @Nonnull
     public CompletableFuture<Void> clearAndMarkIndexWriteOnly(@Nonnull Index index) {
         return markIndexWriteOnly(index)
-                .thenRun(() -> clearIndexData(index));
+                .thenCompose(vignore -> clearIndexData(index));
     }
 
     /**
@@ -2518,11 +2635,11 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
      */
     @Nonnull
     public CompletableFuture<Boolean> markIndexDisabled(@Nonnull Index index) {
-        return markIndexNotReadable(index.getName(), IndexState.DISABLED).thenApply(changed -> {
+        return markIndexNotReadable(index.getName(), IndexState.DISABLED).thenCompose(changed -> {
             if (changed) {
-                clearIndexData(index);
+                return clearIndexData(index).thenApply(vignore -> true);
             }
-            return changed;
+            return AsyncUtil.READY_FALSE;
         });
     }
 
@@ -3585,7 +3702,13 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     // Clear the data associated with a given index. This is only safe to do if one is
     // either going to rebuild it or disable it. It is therefore package private.
     // TODO: Better to go through the index maintainer?
-    void clearIndexData(@Nonnull Index index) {
+    @Nonnull
+    CompletableFuture<Void> clearIndexData(@Nonnull Index index) {
+        // Updates buffered earlier in the transaction, including any being written now, must not land after the clear.
+        return getIndexMaintainer(index).discardBufferedUpdates().thenRun(() -> clearIndexDataNow(index));
+    }
+
+    private void clearIndexDataNow(@Nonnull Index index) {
         Transaction tr = ensureContextActive();
         tr.clear(Range.startsWith(indexSubspace(index).pack())); // startsWith to handle ungrouped aggregate indexes
         tr.clear(indexSecondarySubspace(index).range());
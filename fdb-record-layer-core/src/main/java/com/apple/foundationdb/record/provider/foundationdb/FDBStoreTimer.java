@@ -200,6 +200,8 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         TIME_WINDOW_LEADERBOARD_GET_SUB_DIRECTORY("leaderboard get sub-directory"),
         /** The amount of time spent in {@link com.apple.foundationdb.record.provider.foundationdb.leaderboard.TimeWindowLeaderboardSaveSubDirectory}. */
         TIME_WINDOW_LEADERBOARD_SAVE_SUB_DIRECTORY("leaderboard save sub-directory"),
+        /** The amount of time spent in {@link com.apple.foundationdb.record.provider.foundationdb.indexes.TextIndexCompaction}. */
+        TEXT_INDEX_COMPACTION("text index compaction"),
         /** The total number of timeouts that have happened during asyncToSync and their durations. */
         TIMEOUTS("timeouts"),
         /** Total number and duration of commits. */
@@ -328,6 +330,8 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         WAIT_RECORD_EXISTS("wait to check if a record exists"),
         /** Wait for deleting a record. */
         WAIT_DELETE_RECORD("wait for delete record"),
+        /** Wait for index updates buffered in the transaction to be discarded before clearing index data. */
+        WAIT_DISCARD_BUFFERED_INDEX_UPDATES("wait for discarding buffered index updates"),
         /** Wait for resolving directory layer entries. */
         WAIT_DIRECTORY_RESOLVE("wait for directory resolve"),
         /** Wait for check version on a record store. */
@@ -443,12 +447,18 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         CLOSE_CONTEXT("close record context", false),
         /** The number of times a record context is closed because it has been open for a long time. */
         CLOSE_CONTEXT_OPEN_TOO_LONG("close record context open too long", false),
+        /** The number of times a transaction run by an {@link FDBDatabaseRunner} is retried after a retriable error. */
+        RETRY_TRANSACTION("retry transaction", false),
         /** The number of times a record store is created in the database. */
         CREATE_RECORD_STORE("create record store", false),
         /** The number of times the store state cache returned a cached result. */
         STORE_STATE_CACHE_HIT("store info cache hit", false),
         /** The number of times the store state cache was unable to return a cached result. */
         STORE_STATE_CACHE_MISS("store info cache miss", false),
+        /** The number of times the {@link FDBRecordCache} returned a cached record. */
+        RECORD_CACHE_HIT("record cache hit", false),
+        /** The number of times the {@link FDBRecordCache} was unable to return a cached record. */
+        RECORD_CACHE_MISS("record cache miss", false),
         /** The number of record key-value pairs saved. */
         SAVE_RECORD_KEY("number of record keys saved", false),
         /** The size of keys for record key-value pairs saved. */
@@ -497,6 +507,8 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         DELETE_INDEX_KEY_BYTES("number of index key bytes deleted", true),
         /** The size of values for index key-value pairs deleted. */
         DELETE_INDEX_VALUE_BYTES("number of index value bytes deleted", true),
+        /** The number of text index updates written out from a per-transaction buffer. */
+        TEXT_INDEX_BUFFERED_UPDATE("number of buffered text index updates", false),
         /** The previous size of values for record key-value pairs that are updated. */
         REPLACE_RECORD_VALUE_BYTES("number of record value bytes replaced", true),
         /** The number of reverse directory cache misses.  */
@@ -513,6 +525,8 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         PLAN_IN_PARAMETER("number of in plans with parameters", false),
         /** The number of query plans that include an {@code IN} with literal values. */
         PLAN_IN_VALUES("number of in plans with values", false),
+        /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryInUnionPlan}. */
+        PLAN_IN_UNION("number of in union plans", false),
         /** The number of query plans that include an {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan}. */
         PLAN_INTERSECTION("number of intersection plans", false),
         /** The number of query plans that include a loading records directly by their primary keys. */
@@ -571,6 +585,12 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         QUERY_DISCARDED("number of records loaded but filtered out", false),
         /** The number of times the read version was taken from the cache of the last seen version. */
         SET_READ_VERSION_TO_LAST_SEEN("set read version to last seen version", false),
+        /** The number of times the read version was taken from the versions prefetched by the {@link FDBReadVersionPrefetcher}. */
+        SET_READ_VERSION_TO_PREFETCHED("set read version to prefetched version", false),
+        /** The number of transactions shared by several units of work submitted to an {@link FDBGroupCommitter}. */
+        GROUP_COMMIT_TRANSACTION("group commit transaction", false),
+        /** The number of times an {@link FDBGroupCommitter} split a batch of work after its shared transaction failed. */
+        GROUP_COMMIT_SPLIT("group commit split", false),
         /** The number of records scanned by {@link OnlineIndexer}. */
         ONLINE_INDEX_BUILDER_RECORDS_SCANNED("number of records scanned by online index build", false),
         /** The number of records indexed by {@link OnlineIndexer}. */
@@ -585,6 +605,18 @@ public class FDBStoreTimer extends StoreTimer implements EventKeeper {
         TIME_WINDOW_LEADERBOARD_DELETE_WINDOW("number of leaderboard windows deleted", false),
         /** The number of times that a leaderboard needs to be rebuilt because a window was added after a score it should contain. */
         TIME_WINDOW_LEADERBOARD_OVERLAPPING_CHANGED("number of leaderboard conditional rebuilds", false),
+        /** The number of times that a leaderboard directory was served from the {@link com.apple.foundationdb.record.provider.foundationdb.leaderboard.TimeWindowLeaderboardDirectoryCache}. */
+        TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_HIT("leaderboard directory cache hit", false),
+        /** The number of times that a leaderboard directory had to be read despite a {@link com.apple.foundationdb.record.provider.foundationdb.leaderboard.TimeWindowLeaderboardDirectoryCache}. */
+        TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS("leaderboard directory cache miss", false),
+        /** The number of times that the coarser levels of a ranked set were served from the {@link com.apple.foundationdb.async.RankedSetLevelCache}. */
+        RANKED_SET_LEVEL_CACHE_HIT("ranked set level cache hit", false),
+        /** The number of times that the coarser levels of a ranked set had to be read despite a {@link com.apple.foundationdb.async.RankedSetLevelCache}. */
+        RANKED_SET_LEVEL_CACHE_MISS("ranked set level cache miss", false),
+        /** The number of times that a resolved key space path was served from the {@link com.apple.foundationdb.record.provider.foundationdb.keyspace.ResolvedKeySpacePathCache}. */
+        KEYSPACE_PATH_CACHE_HIT("key space path cache hit", false),
+        /** The number of times that a key space path had to be resolved despite a {@link com.apple.foundationdb.record.provider.foundationdb.keyspace.ResolvedKeySpacePathCache}. */
+        KEYSPACE_PATH_CACHE_MISS("key space path cache miss", false),
         /** The number of times that an index entry does not point to a valid record. */
         BAD_INDEX_ENTRY("number of occurrences of bad index entries", false),
         /** The number of record keys repaired by {@link FDBRecordStore#repairRecordKeys(byte[], com.apple.foundationdb.record.ScanProperties)}. */
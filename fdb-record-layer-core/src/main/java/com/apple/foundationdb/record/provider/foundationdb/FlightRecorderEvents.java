@@ -0,0 +1,139 @@
+/*
+ * FlightRecorderEvents.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The Flight Recorder events emitted by {@link FlightRecorderStoreTimer}.
+ *
+ * <p>
+ * This is the only class that refers to {@code jdk.jfr}, so that it is only loaded once the timer has checked that
+ * the API is present. Whether each event type is enabled is checked before any event is allocated.
+ * </p>
+ */
+@API(API.Status.INTERNAL)
+final class FlightRecorderEvents {
+    private static final String CATEGORY = "FoundationDB Record Layer";
+
+    private static final EventType TIMED_EVENT_TYPE = EventType.getEventType(TimedEvent.class);
+    private static final EventType TIMEOUT_EVENT_TYPE = EventType.getEventType(TimeoutEvent.class);
+    private static final EventType COUNT_EVENT_TYPE = EventType.getEventType(CountEvent.class);
+
+    private FlightRecorderEvents() {
+    }
+
+    static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    static void timed(@Nonnull StoreTimer.Event event, long timeDifferenceNanos) {
+        if (TIMED_EVENT_TYPE.isEnabled()) {
+            final TimedEvent jfrEvent = new TimedEvent();
+            jfrEvent.set(event, timeDifferenceNanos);
+            jfrEvent.commit();
+        }
+    }
+
+    static void timeout(@Nonnull StoreTimer.Wait event, long timeDifferenceNanos) {
+        if (TIMEOUT_EVENT_TYPE.isEnabled()) {
+            final TimeoutEvent jfrEvent = new TimeoutEvent();
+            jfrEvent.set(event, timeDifferenceNanos);
+            jfrEvent.commit();
+        }
+    }
+
+    static void count(@Nonnull StoreTimer.Count event, int amount) {
+        if (COUNT_EVENT_TYPE.isEnabled()) {
+            final CountEvent jfrEvent = new CountEvent();
+            jfrEvent.set(event);
+            jfrEvent.amount = amount;
+            jfrEvent.commit();
+        }
+    }
+
+    /**
+     * Fields common to all of the emitted events.
+     */
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class RecordLayerEvent extends jdk.jfr.Event {
+        @Label("Name")
+        @Description("The name of the store timer event")
+        String name;
+        @Label("Title")
+        String title;
+        @Label("Kind")
+        @Description("Whether the store timer event is an event, a wait, a detail event or a count")
+        String kind;
+
+        void set(@Nonnull StoreTimer.Event event) {
+            name = event.name();
+            title = event.title();
+            kind = FlightRecorderStoreTimer.kind(event);
+        }
+    }
+
+    /**
+     * An event or wait that took some amount of time.
+     */
+    @Name("com.apple.foundationdb.record.TimedEvent")
+    @Label("Record Layer Event")
+    static class TimedEvent extends RecordLayerEvent {
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        void set(@Nonnull StoreTimer.Event event, long timeDifferenceNanos) {
+            set(event);
+            elapsed = timeDifferenceNanos;
+        }
+    }
+
+    /**
+     * A wait that timed out.
+     */
+    @Name("com.apple.foundationdb.record.TimeoutEvent")
+    @Label("Record Layer Timeout")
+    static class TimeoutEvent extends TimedEvent {
+    }
+
+    /**
+     * An event that was counted.
+     */
+    @Name("com.apple.foundationdb.record.CountEvent")
+    @Label("Record Layer Count")
+    static class CountEvent extends RecordLayerEvent {
+        @Label("Amount")
+        int amount;
+    }
+}
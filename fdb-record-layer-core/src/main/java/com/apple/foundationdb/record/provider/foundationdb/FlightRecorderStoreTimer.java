@@ -0,0 +1,120 @@
+/*
+ * FlightRecorderStoreTimer.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link FDBStoreTimer} that also emits a JDK Flight Recorder event for each event it records.
+ *
+ * <p>
+ * Timed events and waits are emitted as {@code com.apple.foundationdb.record.TimedEvent} events, timeouts as
+ * {@code com.apple.foundationdb.record.TimeoutEvent} events, and counts as {@code com.apple.foundationdb.record.CountEvent}
+ * events. This includes the events that mark the lifecycle of a transaction, such as
+ * {@link FDBStoreTimer.Counts#OPEN_CONTEXT}, {@link FDBStoreTimer.Events#COMMIT} and
+ * {@link FDBStoreTimer.Counts#RETRY_TRANSACTION}, as well as query planning ({@link FDBStoreTimer.Events#PLAN_QUERY})
+ * and the counts of the kinds of plans that are executed. Each event is tagged with the name of the timer event
+ * and the kind of event it is, so that a recording can be correlated with the totals kept by the timer.
+ * </p>
+ *
+ * <p>
+ * Events are only created when the corresponding event type is enabled in a running recording, so the additional
+ * cost over an ordinary {@link FDBStoreTimer} is small when no recording is in progress. Because the durations
+ * are only known once the timed operation has completed, the elapsed time is recorded in an explicit field of the
+ * event rather than as the event's own duration.
+ * </p>
+ *
+ * <p>
+ * The {@code jdk.jfr} API is not present in older Java 8 runtimes. On those, or when Flight Recorder is disabled,
+ * this timer behaves just like an ordinary {@link FDBStoreTimer}. See {@link #isFlightRecorderAvailable()}.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class FlightRecorderStoreTimer extends FDBStoreTimer {
+    @Nonnull
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecorderStoreTimer.class);
+
+    private static final boolean FLIGHT_RECORDER_AVAILABLE = checkFlightRecorderAvailable();
+
+    /**
+     * Get whether this JVM supports Flight Recorder events, so that this timer will emit them.
+     * @return {@code true} if Flight Recorder events can be emitted
+     */
+    public static boolean isFlightRecorderAvailable() {
+        return FLIGHT_RECORDER_AVAILABLE;
+    }
+
+    private static boolean checkFlightRecorderAvailable() {
+        try {
+            // Only refer to the class that uses jdk.jfr once it is known to be there.
+            Class.forName("jdk.jfr.FlightRecorder", false, FlightRecorderStoreTimer.class.getClassLoader());
+            return FlightRecorderEvents.isAvailable();
+        } catch (ClassNotFoundException | LinkageError ex) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Flight Recorder is not available", ex);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void record(StoreTimer.Event event, long timeDifferenceNanos) {
+        super.record(event, timeDifferenceNanos);
+        if (FLIGHT_RECORDER_AVAILABLE) {
+            FlightRecorderEvents.timed(event, timeDifferenceNanos);
+        }
+    }
+
+    @Override
+    public void recordTimeout(StoreTimer.Wait event, long startTime) {
+        final long timeDifferenceNanos = System.nanoTime() - startTime;
+        super.recordTimeout(event, startTime);
+        if (FLIGHT_RECORDER_AVAILABLE) {
+            FlightRecorderEvents.timeout(event, timeDifferenceNanos);
+        }
+    }
+
+    @Override
+    public void increment(@Nonnull StoreTimer.Count event, int amount) {
+        super.increment(event, amount);
+        if (FLIGHT_RECORDER_AVAILABLE) {
+            FlightRecorderEvents.count(event, amount);
+        }
+    }
+
+    @Nonnull
+    static String kind(@Nonnull StoreTimer.Event event) {
+        if (event instanceof StoreTimer.Wait) {
+            return "wait";
+        } else if (event instanceof StoreTimer.Count) {
+            return "count";
+        } else if (event instanceof StoreTimer.DetailEvent) {
+            return "detail";
+        } else {
+            return "event";
+        }
+    }
+}
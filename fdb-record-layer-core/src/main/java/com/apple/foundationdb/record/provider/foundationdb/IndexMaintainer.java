@@ -22,6 +22,7 @@ package com.apple.foundationdb.record.provider.foundationdb;
 
 import com.apple.foundationdb.Transaction;
 import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.AsyncUtil;
 import com.apple.foundationdb.record.EvaluationContext;
 import com.apple.foundationdb.record.IndexEntry;
 import com.apple.foundationdb.record.IndexScanType;
@@ -41,6 +42,7 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -106,6 +108,46 @@ public abstract class IndexMaintainer {
     public abstract <M extends Message> CompletableFuture<Void> update(@Nullable FDBIndexableRecord<M> oldRecord,
                                                                        @Nullable FDBIndexableRecord<M> newRecord);
 
+    /**
+     * Add several new records to the index, as when building it.
+     * By default, this just calls {@link #update} for each record in turn. Index maintainers that can share work
+     * between records, such as one that updates a persistent data structure, can override it to do them together.
+     * @param records the records to add
+     * @param <M> type of message
+     * @return a future that is complete when the records have been added
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public <M extends Message> CompletableFuture<Void> addAll(@Nonnull List<? extends FDBIndexableRecord<M>> records) {
+        CompletableFuture<Void> future = AsyncUtil.DONE;
+        for (FDBIndexableRecord<M> rec : records) {
+            future = future.thenCompose(vignore -> update(null, rec));
+        }
+        return future;
+    }
+
+    /**
+     * Get the number of records that an online index build should pass to {@link #addAll} at a time.
+     * The build only checks the size of the transaction between batches.
+     * @return the number of records to add together, which is {@code 1} unless {@link #addAll} is overridden
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public int getBuildBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Drop any updates to the index that have been buffered in this transaction but not yet written, because the
+     * index's data is about to be cleared. By default, updates are written as they are made, so there is nothing to do.
+     * @return a future that is complete when no buffered update, including one already being written, can still
+     * be applied to the index
+     */
+    @API(API.Status.INTERNAL)
+    @Nonnull
+    public CompletableFuture<Void> discardBufferedUpdates() {
+        return AsyncUtil.DONE;
+    }
+
 
     /**
      * Scans through the list of uniqueness violations within the database.
@@ -50,6 +50,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -242,17 +243,21 @@ public abstract class IndexingBase {
             if (!shouldBuild) {
                 return AsyncUtil.READY_FALSE; // do not index
             }
+            CompletableFuture<Void> clearFuture = AsyncUtil.DONE;
             if (shouldClear) {
-                store.clearIndexData(index);
+                clearFuture = store.clearIndexData(index);
                 forceStampOverwrite = true; // The code can work without this line, but it'll save probing the missing ranges
             }
-            if (shouldMarkWriteOnly || shouldClear) {
-                // a fresh build
-                return store.markIndexWriteOnly(index).thenCompose(ignore -> setIndexingTypeOrThrow(store, false)).thenApply(ignore -> true);
-            } else {
-                // a continuation of another session
-                return setIndexingTypeOrThrow(store, true).thenApply(ignore -> true);
-            }
+            final boolean freshBuild = shouldMarkWriteOnly || shouldClear;
+            return clearFuture.thenCompose(vignore -> {
+                if (freshBuild) {
+                    // a fresh build
+                    return store.markIndexWriteOnly(index).thenCompose(ignore -> setIndexingTypeOrThrow(store, false)).thenApply(ignore -> true);
+                } else {
+                    // a continuation of another session
+                    return setIndexingTypeOrThrow(store, true).thenApply(ignore -> true);
+                }
+            });
         }), common.indexLogMessageKeyValues("IndexingBase::handleIndexingState")
         ).thenCompose(doIndex ->
                 doIndex ?
@@ -463,6 +468,9 @@ public abstract class IndexingBase {
         // Copying the state also guards against changes made by other online building from check version.
         // TODO: need some state to avoid generating the same synthetic record via more than one self-join path for non-idempotent indexes.
         AtomicLong recordsScannedCounter = new AtomicLong();
+        // Records that have been scanned but not yet given to the maintainer, when it can add several at once.
+        final int batchSize = syntheticPlan == null ? maintainer.getBuildBatchSize() : 1;
+        final List<FDBStoredRecord<Message>> batch = new ArrayList<>(batchSize);
 
         final AtomicReference<RecordCursorResult<T>> nextResult = new AtomicReference<>(null);
         return AsyncUtil.whileTrue(() -> cursor.onNext().thenCompose(result -> {
@@ -482,7 +490,7 @@ public abstract class IndexingBase {
                 if (!result.getNoNextReason().isSourceExhausted()) {
                     nextResultCont.set(nextResult.get());
                     hasMore.set(true);
-                    return AsyncUtil.READY_FALSE;
+                    return addBatch(maintainer, batch).thenApply(vignore -> false);
                 }
                 // source is exhausted, fall down to handle the last item and return with hasMore=false
                 currResult = nextResult.get();
@@ -503,7 +511,7 @@ public abstract class IndexingBase {
                 // This record is not our type, swipe left
                 if (isExhausted) {
                     hasMore.set(false);
-                    return AsyncUtil.READY_FALSE;
+                    return addBatch(maintainer, batch).thenApply(vignore -> false);
                 }
                 return AsyncUtil.READY_TRUE;
             }
@@ -513,7 +521,16 @@ public abstract class IndexingBase {
             }
             timerIncrement(timer, FDBStoreTimer.Counts.ONLINE_INDEX_BUILDER_RECORDS_INDEXED);
 
-            final CompletableFuture<Void> updateMaintainer = updateMaintainerBuilder(syntheticPlan, rec, maintainer, store);
+            final CompletableFuture<Void> updateMaintainer;
+            if (syntheticPlan == null) {
+                batch.add(rec);
+                if (!isExhausted && batch.size() < batchSize) {
+                    return AsyncUtil.READY_TRUE;
+                }
+                updateMaintainer = addBatch(maintainer, batch);
+            } else {
+                updateMaintainer = updateMaintainerBuilder(syntheticPlan, rec, maintainer, store);
+            }
             if (isExhausted) {
                 // we've just processed the last item
                 hasMore.set(false);
@@ -549,30 +566,35 @@ public abstract class IndexingBase {
                                                                    FDBStoredRecord<Message> rec,
                                                                    IndexMaintainer maintainer,
                                                                    FDBRecordStore store) {
-        // helper function to reduce complexity
-        if (syntheticPlan == null) {
-            return maintainer.update(null, rec);
-        }
         // Pipeline size is 1, since not all maintainers are thread-safe.
         return syntheticPlan.execute(store, rec).forEachAsync(syntheticRecord -> maintainer.update(null, syntheticRecord), 1);
     }
 
+    private static CompletableFuture<Void> addBatch(IndexMaintainer maintainer, List<FDBStoredRecord<Message>> batch) {
+        if (batch.isEmpty()) {
+            return AsyncUtil.DONE;
+        }
+        final List<FDBStoredRecord<Message>> records = new ArrayList<>(batch);
+        batch.clear();
+        return records.size() == 1 ? maintainer.update(null, records.get(0)) : maintainer.addAll(records);
+    }
+
     // rebuildIndexAsyc - builds the whole index inline (without commiting)
     @Nonnull
     public CompletableFuture<Void> rebuildIndexAsync(@Nonnull FDBRecordStore store) {
         Index index = common.getIndex();
         Transaction tr = store.ensureContextActive();
-        store.clearIndexData(index);
-
-        // Clear the associated range set (done as part of clearIndexData above) and make it instead equal to
-        // the complete range. This isn't super necessary, but it is done
-        // to avoid (1) concurrent OnlineIndexBuilders doing more work and
-        // (2) to allow for write-only indexes to continue to do the right thing.
-        RangeSet rangeSet = new RangeSet(store.indexRangeSubspace(index));
-        CompletableFuture<Boolean> rangeFuture = rangeSet.insertRange(tr, null, null);
-        CompletableFuture<Void> buildFuture = rebuildIndexInternalAsync(store);
-
-        return CompletableFuture.allOf(rangeFuture, buildFuture);
+        return store.clearIndexData(index).thenCompose(vignore -> {
+            // Clear the associated range set (done as part of clearIndexData above) and make it instead equal to
+            // the complete range. This isn't super necessary, but it is done
+            // to avoid (1) concurrent OnlineIndexBuilders doing more work and
+            // (2) to allow for write-only indexes to continue to do the right thing.
+            RangeSet rangeSet = new RangeSet(store.indexRangeSubspace(index));
+            CompletableFuture<Boolean> rangeFuture = rangeSet.insertRange(tr, null, null);
+            CompletableFuture<Void> buildFuture = rebuildIndexInternalAsync(store);
+
+            return CompletableFuture.allOf(rangeFuture, buildFuture);
+        });
     }
 
     abstract CompletableFuture<Void> rebuildIndexInternalAsync(FDBRecordStore store);
@@ -48,6 +48,7 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
@@ -62,21 +63,33 @@ import java.util.function.BiFunction;
 @API(API.Status.MAINTAINED)
 public class AtomicMutationIndexMaintainer extends StandardIndexMaintainer {
     protected final AtomicMutation mutation;
+    private final int shards;
 
     public AtomicMutationIndexMaintainer(IndexMaintainerState state) {
-        super(state);
-        mutation = getAtomicMutation(state.index);
+        this(state, getAtomicMutation(state.index));
     }
 
     protected AtomicMutationIndexMaintainer(IndexMaintainerState state, AtomicMutation mutation) {
         super(state);
         this.mutation = mutation;
+        this.shards = getShards(state.index);
     }
 
     protected static boolean getClearWhenZero(@Nonnull Index index) {
         return index.getBooleanOption(IndexOptions.CLEAR_WHEN_ZERO, false);
     }
 
+    /**
+     * Get the number of keys across which each group of the given index is spread.
+     * @param index the index
+     * @return the value of the {@link IndexOptions#AGGREGATE_SHARDS_OPTION} option, or {@code 1} if not sharded
+     */
+    @API(API.Status.EXPERIMENTAL)
+    protected static int getShards(@Nonnull Index index) {
+        final String option = index.getOption(IndexOptions.AGGREGATE_SHARDS_OPTION);
+        return option == null ? 1 : Integer.parseInt(option);
+    }
+
     @SuppressWarnings({"deprecation","squid:CallToDeprecatedMethod"})
     protected static AtomicMutation getAtomicMutation(@Nonnull Index index) {
         if (IndexTypes.COUNT.equals(index.getType())) {
@@ -118,6 +131,14 @@ public class AtomicMutationIndexMaintainer extends StandardIndexMaintainer {
         if (scanType != IndexScanType.BY_GROUP) {
             throw new RecordCoreException("Can only scan aggregate index by group.");
         }
+        if (shards > 1) {
+            // The skip and limit apply to combined groups, not to shards.
+            final ExecuteProperties executeProperties = scanProperties.getExecuteProperties();
+            final ScanProperties shardScanProperties = scanProperties.with(ExecuteProperties::clearSkipAndLimit);
+            return new ShardedAggregateCursor(innerContinuation -> scan(range, innerContinuation, shardScanProperties),
+                    state.index, mutation.getAggregator(), continuation)
+                    .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+        }
         return scan(range, continuation, scanProperties);
     }
 
@@ -155,7 +176,7 @@ public class AtomicMutationIndexMaintainer extends StandardIndexMaintainer {
                 }
             }
 
-            final byte[] key = state.indexSubspace.pack(groupKey);
+            final byte[] key = state.indexSubspace.pack(shards > 1 ? groupKey.add(getShard(savedRecord)) : groupKey);
             if (AtomicMutation.Standard.MAX_EVER_VERSION.equals(mutation)) {
                 if (groupedValue.getKey().hasIncompleteVersionstamp()) {
                     // With an incomplete versionstamp, we need to call SET_VERSIONSTAMPED_VALUE.
@@ -182,6 +203,11 @@ public class AtomicMutationIndexMaintainer extends StandardIndexMaintainer {
         return AsyncUtil.DONE;
     }
 
+    // The same record must always use the same shard, even in another process, so that removing it undoes what adding it did.
+    private <M extends Message> int getShard(@Nonnull FDBIndexableRecord<M> savedRecord) {
+        return Math.floorMod(Arrays.hashCode(savedRecord.getPrimaryKey().pack()), shards);
+    }
+
     @Override
     protected Tuple decodeValue(@Nonnull byte[] value) {
         switch (mutation.getMutationType()) {
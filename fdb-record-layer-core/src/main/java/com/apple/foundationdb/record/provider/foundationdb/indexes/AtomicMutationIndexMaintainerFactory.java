@@ -23,6 +23,7 @@ package com.apple.foundationdb.record.provider.foundationdb.indexes;
 import com.apple.foundationdb.annotation.API;
 import com.apple.foundationdb.record.logging.LogMessageKeys;
 import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexOptions;
 import com.apple.foundationdb.record.metadata.IndexTypes;
 import com.apple.foundationdb.record.metadata.IndexValidator;
 import com.apple.foundationdb.record.metadata.MetaDataException;
@@ -112,6 +113,23 @@ public class AtomicMutationIndexMaintainerFactory implements IndexMaintainerFact
                 if (AtomicMutationIndexMaintainer.getClearWhenZero(index) && mutation.getCompareAndClearParam() == null) {
                     throw new MetaDataException(String.format("%s index does not support clearWhenZero", index.getType()));
                 }
+                if (index.getOption(IndexOptions.AGGREGATE_SHARDS_OPTION) != null) {
+                    if (!mutation.hasLongValue()) {
+                        throw new MetaDataException(String.format("%s index does not support aggregateShards", index.getType()),
+                                LogMessageKeys.INDEX_NAME, index.getName());
+                    }
+                    final int shards;
+                    try {
+                        shards = AtomicMutationIndexMaintainer.getShards(index);
+                    } catch (NumberFormatException ex) {
+                        throw new MetaDataException("aggregate shards must be an integer",
+                                LogMessageKeys.INDEX_NAME, index.getName());
+                    }
+                    if (shards < 1) {
+                        throw new MetaDataException("aggregate shards must be positive",
+                                LogMessageKeys.INDEX_NAME, index.getName());
+                    }
+                }
             }
 
             // NOTE: There is no override of validateChangedOptions for CLEAR_WHEN_ZERO.
@@ -36,6 +36,7 @@ import com.apple.foundationdb.record.RecordIndexUniquenessViolation;
 import com.apple.foundationdb.record.ScanProperties;
 import com.apple.foundationdb.record.TupleRange;
 import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
 import com.apple.foundationdb.record.metadata.IndexOptions;
 import com.apple.foundationdb.record.metadata.MetaDataException;
@@ -44,9 +45,11 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.IndexFunctionHelper;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
 import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil2;
 import com.apple.foundationdb.tuple.Tuple;
 import com.apple.foundationdb.tuple.TupleHelpers;
 import com.google.protobuf.Message;
+import org.apache.commons.lang3.tuple.Pair;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -56,6 +59,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * An index maintainer for storing bitmaps of which records meet a specific condition.
@@ -84,6 +88,15 @@ import java.util.concurrent.CompletableFuture;
  * A separate unique index on the position field, if it is not the primary key, is therefore generally preferable.
  * </p>
  *
+ * <p>
+ * If the {@value IndexOptions#BITMAP_VALUE_COMPRESSED_OPTION} option is set, each bitmap is instead stored as a
+ * {@link CompressedBitmap}, which takes much less space when positions are sparse. The cost is that updates can no longer
+ * be done with atomic mutations: each update reads and rewrites the whole entry, so concurrent updates to positions
+ * within the same entry will conflict. Index entries returned by a scan then hold the serialized compressed bitmap,
+ * which can be decoded with {@link CompressedBitmap#deserialize}, while the aggregate function still returns an
+ * uncompressed bitmap.
+ * </p>
+ *
  */
 @API(API.Status.EXPERIMENTAL)
 public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
@@ -94,6 +107,7 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
 
     private final int entrySize;
     private final boolean unique;
+    private final boolean compressed;
 
     public BitmapValueIndexMaintainer(IndexMaintainerState state) {
         super(state);
@@ -104,6 +118,17 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
                     .addLogInfo("entrySize", entrySize, "maxEntrySize", MAX_ENTRY_SIZE);
         }
         unique = state.index.isUnique();
+        compressed = isCompressed(state.index);
+    }
+
+    /**
+     * Get whether the given index stores its bitmaps as {@link CompressedBitmap}s.
+     * @param index a {@code BITMAP_VALUE} index
+     * @return {@code true} if the bitmaps of the index are compressed
+     * @see IndexOptions#BITMAP_VALUE_COMPRESSED_OPTION
+     */
+    public static boolean isCompressed(@Nonnull Index index) {
+        return index.getBooleanOption(IndexOptions.BITMAP_VALUE_COMPRESSED_OPTION, false);
     }
 
     @Nonnull
@@ -145,6 +170,10 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
         } else {
             endPosition = Long.MAX_VALUE;
         }
+        if (compressed) {
+            return scan(range, continuation, scanProperties).map(indexEntry -> trimCompressed(indexEntry, groupPrefixSize, startPosition, endPosition))
+                    .filter(Optional::isPresent).map(Optional::get);
+        }
         return scan(range, continuation, scanProperties).map(indexEntry -> {
             final long entryStart = indexEntry.getKey().getLong(groupPrefixSize);
             final byte[] entryBitmap = indexEntry.getValue().getBytes(0);
@@ -173,13 +202,32 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
         }).filter(Optional::isPresent).map(Optional::get);
     }
 
+    @Nonnull
+    private static Optional<IndexEntry> trimCompressed(@Nonnull IndexEntry indexEntry, int groupPrefixSize, long startPosition, long endPosition) {
+        final long entryStart = indexEntry.getKey().getLong(groupPrefixSize);
+        final CompressedBitmap entryBitmap = CompressedBitmap.deserialize(indexEntry.getValue().getBytes(0));
+        final long entryEnd = entryStart + entryBitmap.getSize();
+        if (entryStart >= startPosition && entryEnd <= endPosition) {
+            return Optional.of(indexEntry);
+        }
+        final long trimmedStart = Math.max(entryStart, startPosition);
+        final long trimmedEnd = Math.min(entryEnd, endPosition);
+        if (trimmedStart < trimmedEnd) {
+            final Tuple trimmedKey = indexEntry.getKey().popBack().add(trimmedStart);
+            final CompressedBitmap trimmedBitmap = entryBitmap.subset((int)(trimmedStart - entryStart), (int)(trimmedEnd - entryStart));
+            return Optional.of(new IndexEntry(indexEntry.getIndex(), trimmedKey, Tuple.from(trimmedBitmap.serialize())));
+        } else {
+            return Optional.empty();
+        }
+    }
+
     @Override
     @Nonnull
     protected <M extends Message> CompletableFuture<Void> updateIndexKeys(@Nonnull final FDBIndexableRecord<M> savedRecord,
                                                                           final boolean remove,
                                                                           @Nonnull final List<IndexEntry> indexEntries) {
         final int groupPrefixSize = getGroupingCount();
-        final List<CompletableFuture<Void>> futures = unique && !remove ? new ArrayList<>(indexEntries.size()) : null;
+        final List<CompletableFuture<Void>> futures = (unique && !remove) || compressed ? new ArrayList<>(indexEntries.size()) : null;
         for (IndexEntry indexEntry : indexEntries) {
             final long startTime = System.nanoTime();
             final Tuple groupKey = TupleHelpers.subTuple(indexEntry.getKey(), 0, groupPrefixSize);
@@ -198,6 +246,11 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
             final int offset = (int)Math.floorMod(position, (long)entrySize);
             position -= offset;
             final byte[] key = state.indexSubspace.pack(groupKey.add(position));
+            if (compressed) {
+                final CompletableFuture<Void> future = getUpdateQueue().enqueue(() -> updateCompressed(savedRecord, indexEntry, key, offset, remove, startTime));
+                futures.add(future);
+                continue;
+            }
             // This has to be the same size every time, with all the unset bits, or else it gets truncated.
             // We really could use a new mutation that took a linear bit position to set / clear and only did length extension or something like that.
             final byte[] bitmap = new byte[(entrySize + 7) / 8];
@@ -239,6 +292,64 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
         return futures != null ? AsyncUtil.whenAll(futures) : AsyncUtil.DONE;
     }
 
+    // Read, modify and write back a compressed entry. The read is not a snapshot read, so this will conflict with
+    // any concurrent change to the same entry.
+    @Nonnull
+    private <M extends Message> CompletableFuture<Void> updateCompressed(@Nonnull FDBIndexableRecord<M> savedRecord, @Nonnull IndexEntry indexEntry,
+                                                                         @Nonnull byte[] key, int offset, boolean remove, long startTime) {
+        return state.transaction.get(key).thenAccept(existing -> {
+            final CompressedBitmap bitmap = existing == null ? CompressedBitmap.empty(entrySize) : CompressedBitmap.deserialize(existing);
+            final boolean changed;
+            if (remove) {
+                changed = bitmap.remove(offset);
+            } else {
+                changed = bitmap.add(offset);
+                if (!changed && unique) {
+                    throw new RecordIndexUniquenessViolation(state.index, indexEntry, savedRecord.getPrimaryKey(),
+                            null);  // Unfortunately, we don't know the other key.
+                }
+            }
+            if (changed) {
+                if (bitmap.isEmpty()) {
+                    state.transaction.clear(key);
+                } else {
+                    state.transaction.set(key, bitmap.serialize());
+                }
+            }
+            if (state.store.getTimer() != null) {
+                state.store.getTimer().recordSinceNanoTime(FDBStoreTimer.Events.MUTATE_INDEX_ENTRY, startTime);
+            }
+        });
+    }
+
+    // Updates to compressed entries are read-modify-write, so two of them to the same entry within a transaction
+    // must not be interleaved. To keep this simple, all such updates to the index in the transaction are done in order.
+    @Nonnull
+    private UpdateQueue getUpdateQueue() {
+        final String name = "bitmapValueUpdates$" + ByteArrayUtil2.toHexString(state.indexSubspace.getKey());
+        synchronized (state.context) {
+            UpdateQueue queue = state.context.getInSession(name, UpdateQueue.class);
+            if (queue == null) {
+                queue = new UpdateQueue();
+                state.context.putInSessionIfAbsent(name, queue);
+            }
+            return queue;
+        }
+    }
+
+    private static class UpdateQueue {
+        @Nonnull
+        private CompletableFuture<Void> tail = AsyncUtil.DONE;
+
+        @Nonnull
+        public synchronized CompletableFuture<Void> enqueue(@Nonnull Supplier<CompletableFuture<Void>> update) {
+            // An earlier failure is reported to its own caller; it should not prevent later updates.
+            final CompletableFuture<Void> result = tail.exceptionally(err -> null).thenCompose(vignore -> update.get());
+            tail = result;
+            return result;
+        }
+    }
+
     @Override
     @Nonnull
     protected Tuple decodeValue(@Nonnull byte[] value) {
@@ -274,6 +385,11 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
                 size = (int)(endPosition - startPosition);
             }
         }
+        if (compressed) {
+            return cursor.reduce(new BitmapAggregator(startPosition, size),
+                    (combined, kv) -> combined.append(kv.getKey().getLong(kv.getKeySize() - 1), CompressedBitmap.deserialize(kv.getValue().getBytes(0))))
+                    .thenApply(combined -> Tuple.from(combined.asByteArray()));
+        }
         return cursor.reduce(new BitmapAggregator(startPosition, size), (combined, kv) -> combined.append(kv.getKey().getLong(kv.getKeySize() - 1), kv.getValue().getBytes(0)))
                 .thenApply(combined -> Tuple.from(combined.asByteArray()));
     }
@@ -281,6 +397,10 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
     private static class BitmapAggregator {
         private final long offset;
         private ByteBuffer buffer;
+        // Compressed bitmaps are kept as they are, by byte position, until the result is needed.
+        @Nullable
+        private List<Pair<Integer, CompressedBitmap>> compressedBitmaps;
+        private int compressedLength;
 
         public BitmapAggregator() {
             this(0, DEFAULT_ENTRY_SIZE);
@@ -292,6 +412,29 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
         }
 
         public BitmapAggregator append(long position, @Nonnull byte[] bytes) {
+            int bytePosition = bytePosition(position);
+            if (bytePosition + bytes.length > buffer.capacity()) {
+                ByteBuffer newBuffer = ByteBuffer.allocate(bytePosition + bytes.length);
+                buffer.flip();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+            }
+            buffer.position(bytePosition);
+            buffer.put(bytes);
+            return this;
+        }
+
+        public BitmapAggregator append(long position, @Nonnull CompressedBitmap bitmap) {
+            int bytePosition = bytePosition(position);
+            if (compressedBitmaps == null) {
+                compressedBitmaps = new ArrayList<>();
+            }
+            compressedBitmaps.add(Pair.of(bytePosition, bitmap));
+            compressedLength = Math.max(compressedLength, bytePosition + (bitmap.getSize() + 7) / 8);
+            return this;
+        }
+
+        private int bytePosition(long position) {
             position -= offset;
             if (position < 0) {
                 throw new RecordCoreException("For negative positions, must specify negative range start");
@@ -302,20 +445,19 @@ public class BitmapValueIndexMaintainer extends StandardIndexMaintainer {
             if (position > (long)Integer.MAX_VALUE * 8) {
                 throw new RecordCoreException("For large positions, must specify large range start");
             }
-            int bytePosition = (int)(position / 8);
-            if (bytePosition + bytes.length > buffer.capacity()) {
-                ByteBuffer newBuffer = ByteBuffer.allocate(bytePosition + bytes.length);
-                buffer.flip();
-                newBuffer.put(buffer);
-                buffer = newBuffer;
-            }
-            buffer.position(bytePosition);
-            buffer.put(bytes);
-            return this;
+            return (int)(position / 8);
         }
 
         @Nonnull
         public byte[] asByteArray() {
+            if (compressedBitmaps != null) {
+                final byte[] result = compressedLength > buffer.capacity() ? Arrays.copyOf(buffer.array(), compressedLength) : buffer.array();
+                for (Pair<Integer, CompressedBitmap> entry : compressedBitmaps) {
+                    final int bitPosition = entry.getLeft() * 8;
+                    entry.getRight().forEach(bit -> result[(bitPosition + bit) / 8] |= (byte)(1 << ((bitPosition + bit) % 8)));
+                }
+                return result;
+            }
             return buffer.array();
         }
     }
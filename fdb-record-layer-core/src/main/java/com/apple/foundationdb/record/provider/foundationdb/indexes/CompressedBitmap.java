@@ -0,0 +1,638 @@
+/*
+ * CompressedBitmap.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.RecordCoreException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A fixed-size bitmap that is held in one of two forms depending on how many bits are set, in the style
+ * of a <a href="https://roaringbitmap.org/">Roaring bitmap</a> container.
+ *
+ * <ul>
+ *     <li>An <em>array</em> container holds the sorted positions of the set bits. This is used while the
+ *     bitmap is sparse.</li>
+ *     <li>A <em>bitmap</em> container holds one bit per position. This is used once the bitmap is dense
+ *     enough that the array would be larger.</li>
+ * </ul>
+ *
+ * <p>
+ * When {@linkplain #serialize serialized}, a bitmap additionally may be written as a list of <em>runs</em> of
+ * consecutive set bits, whichever of the three encodings is smallest. Bit-wise operations between two bitmaps
+ * work on the containers directly, so that, for instance, intersecting two sparse bitmaps only costs in
+ * proportion to the number of bits that are set.
+ * </p>
+ *
+ * <p>
+ * The bits are numbered the same way as in the uncompressed form used by {@link BitmapValueIndexMaintainer}:
+ * bit {@code i} is bit {@code i % 8} of byte {@code i / 8}.
+ * </p>
+ *
+ * @see com.apple.foundationdb.record.metadata.IndexOptions#BITMAP_VALUE_COMPRESSED_OPTION
+ */
+@API(API.Status.EXPERIMENTAL)
+public class CompressedBitmap {
+    private static final byte ARRAY_CONTAINER = 0;
+    private static final byte BITMAP_CONTAINER = 1;
+    private static final byte RUN_CONTAINER = 2;
+
+    private final int size;
+    private int cardinality;
+    // Exactly one of these is non-null at any time.
+    @Nullable
+    private int[] positions;
+    @Nullable
+    private long[] words;
+
+    private CompressedBitmap(int size, int cardinality, @Nullable int[] positions, @Nullable long[] words) {
+        this.size = size;
+        this.cardinality = cardinality;
+        this.positions = positions;
+        this.words = words;
+    }
+
+    /**
+     * Create a bitmap with no bits set.
+     * @param size the number of bits in the bitmap
+     * @return a new empty bitmap
+     */
+    @Nonnull
+    public static CompressedBitmap empty(int size) {
+        if (size < 0) {
+            throw new RecordCoreArgumentException("bitmap size cannot be negative")
+                    .addLogInfo("size", size);
+        }
+        return new CompressedBitmap(size, 0, new int[0], null);
+    }
+
+    /**
+     * Create a bitmap from its uncompressed form, one bit per position.
+     * @param bitmap the uncompressed bitmap
+     * @return a new bitmap with the same bits set and a size of eight times the length of {@code bitmap}
+     */
+    @Nonnull
+    public static CompressedBitmap fromBytes(@Nonnull byte[] bitmap) {
+        final long[] words = new long[wordCount(bitmap.length * 8)];
+        for (int i = 0; i < bitmap.length; i++) {
+            words[i / 8] |= (bitmap[i] & 0xFFL) << (8 * (i % 8));
+        }
+        return fromWords(bitmap.length * 8, words);
+    }
+
+    /**
+     * Decode a bitmap written by {@link #serialize}.
+     * @param bytes the serialized bitmap
+     * @return the deserialized bitmap
+     */
+    @Nonnull
+    public static CompressedBitmap deserialize(@Nonnull byte[] bytes) {
+        final Reader reader = new Reader(bytes);
+        final byte kind = reader.readByte();
+        final int size = reader.readVarInt();
+        switch (kind) {
+            case ARRAY_CONTAINER: {
+                final int cardinality = reader.readVarInt();
+                final int[] positions = new int[cardinality];
+                int position = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    position += reader.readVarInt();
+                    positions[i] = position;
+                }
+                return new CompressedBitmap(size, cardinality, positions, null);
+            }
+            case BITMAP_CONTAINER: {
+                final long[] words = new long[wordCount(size)];
+                for (int i = 0; i < (size + 7) / 8; i++) {
+                    words[i / 8] |= (reader.readByte() & 0xFFL) << (8 * (i % 8));
+                }
+                return fromWords(size, words);
+            }
+            case RUN_CONTAINER: {
+                final int runCount = reader.readVarInt();
+                final long[] words = new long[wordCount(size)];
+                int start = 0;
+                for (int i = 0; i < runCount; i++) {
+                    start += reader.readVarInt();
+                    final int end = start + reader.readVarInt() + 1;
+                    setRange(words, start, end);
+                    start = end;
+                }
+                return fromWords(size, words);
+            }
+            default:
+                throw new RecordCoreException("unknown compressed bitmap container")
+                        .addLogInfo("kind", kind);
+        }
+    }
+
+    /**
+     * Encode this bitmap using whichever of the array, bitmap or run encodings is smallest.
+     * @return the serialized form of this bitmap
+     * @see #deserialize
+     */
+    @Nonnull
+    public byte[] serialize() {
+        final int bitmapSize = (size + 7) / 8;
+        final int[] arraySize = {varIntSize(cardinality)};
+        final int[] runSize = {0};
+        final int[] runs = {0, -1, -1}; // count, start and end of current run
+        final int[] last = {0};
+        forEach(position -> {
+            arraySize[0] += varIntSize(position - last[0]);
+            last[0] = position;
+            if (position == runs[2]) {
+                runs[2]++;
+            } else {
+                if (runs[1] >= 0) {
+                    runSize[0] += varIntSize(runs[2] - runs[1] - 1);
+                }
+                runSize[0] += varIntSize(position - Math.max(runs[2], 0));
+                runs[0]++;
+                runs[1] = position;
+                runs[2] = position + 1;
+            }
+        });
+        if (runs[1] >= 0) {
+            runSize[0] += varIntSize(runs[2] - runs[1] - 1);
+        }
+        runSize[0] += varIntSize(runs[0]);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(bitmapSize, Math.min(arraySize[0], runSize[0])) + 6);
+        if (runSize[0] < arraySize[0] && runSize[0] < bitmapSize) {
+            out.write(RUN_CONTAINER);
+            writeVarInt(out, size);
+            writeVarInt(out, runs[0]);
+            final int[] prevEnd = {0};
+            final int[] runStart = {-1};
+            final int[] runEnd = {-1};
+            forEach(position -> {
+                if (position == runEnd[0]) {
+                    runEnd[0]++;
+                } else {
+                    if (runStart[0] >= 0) {
+                        writeVarInt(out, runStart[0] - prevEnd[0]);
+                        writeVarInt(out, runEnd[0] - runStart[0] - 1);
+                        prevEnd[0] = runEnd[0];
+                    }
+                    runStart[0] = position;
+                    runEnd[0] = position + 1;
+                }
+            });
+            if (runStart[0] >= 0) {
+                writeVarInt(out, runStart[0] - prevEnd[0]);
+                writeVarInt(out, runEnd[0] - runStart[0] - 1);
+            }
+        } else if (arraySize[0] < bitmapSize) {
+            out.write(ARRAY_CONTAINER);
+            writeVarInt(out, size);
+            writeVarInt(out, cardinality);
+            final int[] prev = {0};
+            forEach(position -> {
+                writeVarInt(out, position - prev[0]);
+                prev[0] = position;
+            });
+        } else {
+            out.write(BITMAP_CONTAINER);
+            writeVarInt(out, size);
+            final byte[] bitmap = toBytes();
+            out.write(bitmap, 0, bitmap.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get the uncompressed form of this bitmap, one bit per position.
+     * @return a byte array of {@code (size + 7) / 8} bytes
+     */
+    @Nonnull
+    public byte[] toBytes() {
+        final byte[] bitmap = new byte[(size + 7) / 8];
+        if (words != null) {
+            for (int i = 0; i < bitmap.length; i++) {
+                bitmap[i] = (byte)(words[i / 8] >>> (8 * (i % 8)));
+            }
+        } else {
+            forEach(position -> bitmap[position / 8] |= (byte)(1 << (position % 8)));
+        }
+        return bitmap;
+    }
+
+    /**
+     * Get the number of bits (set or not) in this bitmap.
+     * @return the size of this bitmap
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of set bits in this bitmap.
+     * @return the cardinality of this bitmap
+     */
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int position) {
+        if (position < 0 || position >= size) {
+            return false;
+        }
+        if (words != null) {
+            return (words[position / 64] & (1L << (position % 64))) != 0;
+        } else {
+            return Arrays.binarySearch(positions, 0, cardinality, position) >= 0;
+        }
+    }
+
+    /**
+     * Set a bit in this bitmap.
+     * @param position the position of the bit to set
+     * @return {@code true} if the bit was not already set
+     */
+    public boolean add(int position) {
+        checkPosition(position);
+        if (words != null) {
+            final long mask = 1L << (position % 64);
+            if ((words[position / 64] & mask) != 0) {
+                return false;
+            }
+            words[position / 64] |= mask;
+            cardinality++;
+            return true;
+        }
+        final int index = Arrays.binarySearch(positions, 0, cardinality, position);
+        if (index >= 0) {
+            return false;
+        }
+        final int insertionPoint = -(index + 1);
+        if (cardinality == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(4, cardinality * 2));
+        }
+        System.arraycopy(positions, insertionPoint, positions, insertionPoint + 1, cardinality - insertionPoint);
+        positions[insertionPoint] = position;
+        cardinality++;
+        optimize();
+        return true;
+    }
+
+    /**
+     * Clear a bit in this bitmap.
+     * @param position the position of the bit to clear
+     * @return {@code true} if the bit was set
+     */
+    public boolean remove(int position) {
+        checkPosition(position);
+        if (words != null) {
+            final long mask = 1L << (position % 64);
+            if ((words[position / 64] & mask) == 0) {
+                return false;
+            }
+            words[position / 64] &= ~mask;
+            cardinality--;
+            optimize();
+            return true;
+        }
+        final int index = Arrays.binarySearch(positions, 0, cardinality, position);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(positions, index + 1, positions, index, cardinality - index - 1);
+        cardinality--;
+        return true;
+    }
+
+    /**
+     * Compute the intersection of this bitmap with another of the same size.
+     * @param other the other bitmap
+     * @return a new bitmap with the bits that are set in both
+     */
+    @Nonnull
+    public CompressedBitmap and(@Nonnull CompressedBitmap other) {
+        checkSameSize(other);
+        if (words != null && other.words != null) {
+            final long[] result = new long[words.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = words[i] & other.words[i];
+            }
+            return fromWords(size, result);
+        }
+        if (words != null) {
+            return other.and(this);
+        }
+        // This one is an array, so the result is no bigger than it.
+        final int[] result = new int[cardinality];
+        int count = 0;
+        if (other.words != null) {
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(positions[i])) {
+                    result[count++] = positions[i];
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (positions[i] < other.positions[j]) {
+                    i++;
+                } else if (positions[i] > other.positions[j]) {
+                    j++;
+                } else {
+                    result[count++] = positions[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return new CompressedBitmap(size, count, result, null);
+    }
+
+    /**
+     * Compute the union of this bitmap with another of the same size.
+     * @param other the other bitmap
+     * @return a new bitmap with the bits that are set in either
+     */
+    @Nonnull
+    public CompressedBitmap or(@Nonnull CompressedBitmap other) {
+        checkSameSize(other);
+        if (positions != null && other.positions != null) {
+            final int[] result = new int[cardinality + other.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j >= other.cardinality || (i < cardinality && positions[i] < other.positions[j])) {
+                    result[count++] = positions[i++];
+                } else if (i >= cardinality || positions[i] > other.positions[j]) {
+                    result[count++] = other.positions[j++];
+                } else {
+                    result[count++] = positions[i];
+                    i++;
+                    j++;
+                }
+            }
+            final CompressedBitmap union = new CompressedBitmap(size, count, result, null);
+            union.optimize();
+            return union;
+        }
+        final long[] result = copyWords();
+        other.forEach(position -> result[position / 64] |= 1L << (position % 64));
+        return fromWords(size, result);
+    }
+
+    /**
+     * Compute the symmetric difference of this bitmap with another of the same size.
+     * @param other the other bitmap
+     * @return a new bitmap with the bits that are set in exactly one of the two
+     */
+    @Nonnull
+    public CompressedBitmap xor(@Nonnull CompressedBitmap other) {
+        checkSameSize(other);
+        if (positions != null && other.positions != null) {
+            final int[] result = new int[cardinality + other.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j >= other.cardinality || (i < cardinality && positions[i] < other.positions[j])) {
+                    result[count++] = positions[i++];
+                } else if (i >= cardinality || positions[i] > other.positions[j]) {
+                    result[count++] = other.positions[j++];
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+            final CompressedBitmap difference = new CompressedBitmap(size, count, result, null);
+            difference.optimize();
+            return difference;
+        }
+        final long[] result = copyWords();
+        other.forEach(position -> result[position / 64] ^= 1L << (position % 64));
+        return fromWords(size, result);
+    }
+
+    /**
+     * Compute the complement of this bitmap.
+     * @return a new bitmap with the bits that are not set in this one
+     */
+    @Nonnull
+    public CompressedBitmap not() {
+        final long[] result = copyWords();
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ~result[i];
+        }
+        if (size % 64 != 0) {
+            result[result.length - 1] &= (1L << (size % 64)) - 1;
+        }
+        return fromWords(size, result);
+    }
+
+    /**
+     * Get a range of this bitmap as a new bitmap.
+     * @param start the first position to include
+     * @param end the position after the last one to include
+     * @return a new bitmap of size {@code end - start}, whose bit {@code i} is bit {@code start + i} of this one
+     */
+    @Nonnull
+    public CompressedBitmap subset(int start, int end) {
+        if (start < 0 || end > size || start > end) {
+            throw new RecordCoreArgumentException("bitmap range out of bounds")
+                    .addLogInfo("start", start, "end", end, "size", size);
+        }
+        final CompressedBitmap result = empty(end - start);
+        forEach(position -> {
+            if (position >= start && position < end) {
+                result.add(position - start);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Call the given function on the position of each set bit, in order.
+     * @param consumer the function to call
+     */
+    public void forEach(@Nonnull IntConsumer consumer) {
+        if (words != null) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(i * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        } else {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(positions[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CompressedBitmap that = (CompressedBitmap)o;
+        return size == that.size && cardinality == that.cardinality && Arrays.equals(toBytes(), that.toBytes());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toBytes());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder str = new StringBuilder();
+        str.append(words != null ? "Bitmap" : "Array").append('[').append(size).append("]{");
+        forEach(position -> {
+            if (str.charAt(str.length() - 1) != '{') {
+                str.append(',');
+            }
+            str.append(position);
+        });
+        return str.append('}').toString();
+    }
+
+    // An array position takes as much space as 32 bitmap positions.
+    private boolean shouldBeArray(int cardinality) {
+        return cardinality <= size / 32;
+    }
+
+    private void optimize() {
+        if (words != null && shouldBeArray(cardinality)) {
+            final int[] newPositions = new int[cardinality];
+            final int[] count = {0};
+            forEach(position -> newPositions[count[0]++] = position);
+            positions = newPositions;
+            words = null;
+        } else if (positions != null && !shouldBeArray(cardinality)) {
+            words = copyWords();
+            positions = null;
+        }
+    }
+
+    @Nonnull
+    private long[] copyWords() {
+        if (words != null) {
+            return Arrays.copyOf(words, words.length);
+        }
+        final long[] result = new long[wordCount(size)];
+        forEach(position -> result[position / 64] |= 1L << (position % 64));
+        return result;
+    }
+
+    @Nonnull
+    private static CompressedBitmap fromWords(int size, @Nonnull long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        final CompressedBitmap bitmap = new CompressedBitmap(size, cardinality, null, words);
+        bitmap.optimize();
+        return bitmap;
+    }
+
+    private static int wordCount(int size) {
+        return (size + 63) / 64;
+    }
+
+    private static void setRange(@Nonnull long[] words, int start, int end) {
+        for (int i = start; i < end; i++) {
+            words[i / 64] |= 1L << (i % 64);
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new RecordCoreArgumentException("bitmap position out of bounds")
+                    .addLogInfo("position", position, "size", size);
+        }
+    }
+
+    private void checkSameSize(@Nonnull CompressedBitmap other) {
+        if (size != other.size) {
+            throw new RecordCoreArgumentException("bitmaps are not the same size")
+                    .addLogInfo("size", size, "otherSize", other.size);
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarInt(@Nonnull ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static class Reader {
+        @Nonnull
+        private final byte[] bytes;
+        private int offset;
+
+        Reader(@Nonnull byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        byte readByte() {
+            if (offset >= bytes.length) {
+                throw new RecordCoreException("compressed bitmap is truncated");
+            }
+            return bytes[offset++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = readByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
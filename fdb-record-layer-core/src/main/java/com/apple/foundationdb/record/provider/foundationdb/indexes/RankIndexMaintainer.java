@@ -45,16 +45,15 @@ import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.ByteArrayUtil;
 import com.apple.foundationdb.tuple.Tuple;
 import com.apple.foundationdb.tuple.TupleHelpers;
-import com.google.common.collect.Maps;
 import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Function;
 
 /**
  * An index maintainer for keeping a {@link RankedSet} of record field values.
@@ -123,6 +122,9 @@ import java.util.function.Function;
  */
 @API(API.Status.MAINTAINED)
 public class RankIndexMaintainer extends StandardIndexMaintainer {
+    // Number of records whose scores are added to ranked sets together when building the index.
+    private static final int BUILD_BATCH_SIZE = 20;
+
     private final RankedSet.Config config;
 
     public RankIndexMaintainer(IndexMaintainerState state) {
@@ -158,10 +160,45 @@ public class RankIndexMaintainer extends StandardIndexMaintainer {
     protected <M extends Message> CompletableFuture<Void> updateIndexKeys(@Nonnull final FDBIndexableRecord<M> savedRecord,
                                                                           final boolean remove,
                                                                           @Nonnull final List<IndexEntry> indexEntries) {
+        final List<CompletableFuture<Void>> ordinaryIndexFutures = new ArrayList<>(indexEntries.size());
+        final Map<Subspace, RankedSetUpdates> rankUpdates = new HashMap<>();
+        addIndexKeys(savedRecord, remove, indexEntries, ordinaryIndexFutures, rankUpdates);
+        return CompletableFuture.allOf(AsyncUtil.whenAll(ordinaryIndexFutures), updateRankedSets(rankUpdates, remove));
+    }
+
+    /**
+     * Add several new records to the index. The scores from all of the records that belong to the same ranked set are
+     * added to it with a single {@link RankedSet#addAll} call, which is cheaper than adding them one record at a time.
+     * @param records the records to add
+     * @param <M> type of message
+     * @return a future that is complete when the records have been added
+     */
+    @Override
+    @Nonnull
+    public <M extends Message> CompletableFuture<Void> addAll(@Nonnull List<? extends FDBIndexableRecord<M>> records) {
+        final List<CompletableFuture<Void>> ordinaryIndexFutures = new ArrayList<>();
+        final Map<Subspace, RankedSetUpdates> rankUpdates = new HashMap<>();
+        for (FDBIndexableRecord<M> rec : records) {
+            final List<IndexEntry> indexEntries = filteredIndexEntries(rec);
+            if (indexEntries != null && !indexEntries.isEmpty()) {
+                addIndexKeys(rec, false, indexEntries, ordinaryIndexFutures, rankUpdates);
+            }
+        }
+        return CompletableFuture.allOf(AsyncUtil.whenAll(ordinaryIndexFutures), updateRankedSets(rankUpdates, false));
+    }
+
+    @Override
+    public int getBuildBatchSize() {
+        return BUILD_BATCH_SIZE;
+    }
+
+    private <M extends Message> void addIndexKeys(@Nonnull final FDBIndexableRecord<M> savedRecord,
+                                                  final boolean remove,
+                                                  @Nonnull final List<IndexEntry> indexEntries,
+                                                  @Nonnull final List<CompletableFuture<Void>> ordinaryIndexFutures,
+                                                  @Nonnull final Map<Subspace, RankedSetUpdates> rankUpdates) {
         final int groupPrefixSize = getGroupingCount();
         final Subspace extraSubspace = getSecondarySubspace();
-        final List<CompletableFuture<Void>> ordinaryIndexFutures = new ArrayList<>(indexEntries.size());
-        final Map<Subspace, CompletableFuture<Void>> rankFutures = Maps.newHashMapWithExpectedSize(indexEntries.size());
         for (IndexEntry indexEntry : indexEntries) {
             // Maintain an ordinary B-tree index by score.
             CompletableFuture<Void> updateOrdinaryIndex = updateOneKeyAsync(savedRecord, remove, indexEntry);
@@ -179,19 +216,29 @@ public class RankIndexMaintainer extends StandardIndexMaintainer {
                 rankSubspace = extraSubspace;
                 scoreKey = indexEntry.getKey();
             }
-            // It is unsafe to have two concurrent updates to the same ranked set, so ensure that at most
-            // one update per grouping key is ongoing at any given time
-            final Function<Void, CompletableFuture<Void>> futureSupplier = vignore -> RankedSetIndexHelper.updateRankedSet(
-                    state, rankSubspace, config, indexEntry.getKey(), scoreKey, remove
-            );
-            CompletableFuture<Void> existingFuture = rankFutures.get(rankSubspace);
-            if (existingFuture == null) {
-                rankFutures.put(rankSubspace, futureSupplier.apply(null));
-            } else {
-                rankFutures.put(rankSubspace, existingFuture.thenCompose(futureSupplier));
-            }
+            final RankedSetUpdates updates = rankUpdates.computeIfAbsent(rankSubspace, k -> new RankedSetUpdates());
+            updates.valueKeys.add(indexEntry.getKey());
+            updates.scoreKeys.add(scoreKey);
         }
-        return CompletableFuture.allOf(AsyncUtil.whenAll(ordinaryIndexFutures), AsyncUtil.whenAll(rankFutures.values()));
+    }
+
+    private CompletableFuture<Void> updateRankedSets(@Nonnull Map<Subspace, RankedSetUpdates> rankUpdates, boolean remove) {
+        // It is unsafe to have two concurrent updates to the same ranked set, so all the updates
+        // for each grouping key are done together in a single batch.
+        final List<CompletableFuture<Void>> rankFutures = new ArrayList<>(rankUpdates.size());
+        for (Map.Entry<Subspace, RankedSetUpdates> entry : rankUpdates.entrySet()) {
+            rankFutures.add(RankedSetIndexHelper.updateRankedSet(
+                    state, entry.getKey(), config, entry.getValue().valueKeys, entry.getValue().scoreKeys, remove));
+        }
+        return AsyncUtil.whenAll(rankFutures);
+    }
+
+    /**
+     * The index entries to be applied to a single ranked set.
+     */
+    private static class RankedSetUpdates {
+        private final List<Tuple> valueKeys = new ArrayList<>();
+        private final List<Tuple> scoreKeys = new ArrayList<>();
     }
 
     @Override
@@ -90,6 +90,14 @@ public class RankIndexMaintainerFactory implements IndexMaintainerFactory {
                         }
                         changedOptions.remove(IndexOptions.RANK_COUNT_DUPLICATES);
                     }
+                    if (changedOptions.contains(IndexOptions.RANK_TRACK_CHANGES)) {
+                        // A set that was changed while not tracked would leave an out-of-date version key behind.
+                        if (oldOptions.isTrackChanges() != newOptions.isTrackChanges()) {
+                            throw new MetaDataException("rank track changes changed",
+                                    LogMessageKeys.INDEX_NAME, index.getName());
+                        }
+                        changedOptions.remove(IndexOptions.RANK_TRACK_CHANGES);
+                    }
                 }
                 super.validateChangedOptions(oldIndex, changedOptions);
             }
@@ -47,6 +47,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -75,6 +79,10 @@ public class RankedSetIndexHelper {
         if (duplicatesOption != null) {
             builder.setCountDuplicates(Boolean.parseBoolean(duplicatesOption));
         }
+        String trackChangesOption = index.getOption(IndexOptions.RANK_TRACK_CHANGES);
+        if (trackChangesOption != null) {
+            builder.setTrackChanges(Boolean.parseBoolean(trackChangesOption));
+        }
         return builder.build();
     }
 
@@ -271,6 +279,83 @@ public class RankedSetIndexHelper {
         return state.store.instrument(Events.RANKED_SET_UPDATE, result);
     }
 
+    /**
+     * Update a ranked set for several index entries at once. This has the same effect as calling
+     * {@link #updateRankedSet(IndexMaintainerState, Subspace, RankedSet.Config, Tuple, Tuple, boolean)} for each of
+     * them in turn, but uses {@link RankedSet#addAll} / {@link RankedSet#removeAll} to share the work between scores.
+     * @param state the index maintainer state
+     * @param rankSubspace the subspace of the ranked set
+     * @param config the ranked set config
+     * @param valueKeys the index entry keys
+     * @param scoreKeys the score keys to add or remove, one per value key
+     * @param remove {@code true} if removing from the ranked set
+     * @return a future that completes when the ranked set has been updated
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public static CompletableFuture<Void> updateRankedSet(@Nonnull IndexMaintainerState state,
+                                                          @Nonnull Subspace rankSubspace,
+                                                          @Nonnull RankedSet.Config config,
+                                                          @Nonnull List<Tuple> valueKeys,
+                                                          @Nonnull List<Tuple> scoreKeys,
+                                                          boolean remove) {
+        if (valueKeys.size() == 1) {
+            return updateRankedSet(state, rankSubspace, config, valueKeys.get(0), scoreKeys.get(0), remove);
+        }
+        final RankedSet rankedSet = new InstrumentedRankedSet(state, rankSubspace, config);
+        CompletableFuture<Void> result = init(state, rankedSet).thenCompose(v -> {
+            if (remove) {
+                if (config.isCountDuplicates()) {
+                    // Decrement counts and possibly remove.
+                    return removeAllFromRankedSet(state, rankedSet, packScores(scoreKeys));
+                } else {
+                    // Remove each distinct score that no one else has any more.
+                    final Map<Tuple, Tuple> distinctScores = new LinkedHashMap<>();
+                    for (int i = 0; i < valueKeys.size(); i++) {
+                        distinctScores.putIfAbsent(valueKeys.get(i), scoreKeys.get(i));
+                    }
+                    final List<CompletableFuture<Tuple>> unused = new ArrayList<>(distinctScores.size());
+                    for (Map.Entry<Tuple, Tuple> entry : distinctScores.entrySet()) {
+                        unused.add(state.transaction.getRange(state.indexSubspace.range(entry.getKey())).iterator().onHasNext()
+                                .thenApply(hasNext -> hasNext ? null : entry.getValue()));
+                    }
+                    return AsyncUtil.getAll(unused).thenCompose(unusedScores -> {
+                        final List<byte[]> scores = new ArrayList<>(unusedScores.size());
+                        for (Tuple scoreKey : unusedScores) {
+                            if (scoreKey != null) {
+                                scores.add(scoreKey.pack());
+                            }
+                        }
+                        return scores.isEmpty() ? AsyncUtil.DONE : removeAllFromRankedSet(state, rankedSet, scores);
+                    });
+                }
+            } else {
+                return rankedSet.addAll(state.transaction, packScores(scoreKeys)).thenApply(added -> null);
+            }
+        });
+        return state.store.instrument(Events.RANKED_SET_UPDATE, result);
+    }
+
+    @Nonnull
+    private static List<byte[]> packScores(@Nonnull List<Tuple> scoreKeys) {
+        final List<byte[]> scores = new ArrayList<>(scoreKeys.size());
+        for (Tuple scoreKey : scoreKeys) {
+            scores.add(scoreKey.pack());
+        }
+        return scores;
+    }
+
+    private static CompletableFuture<Void> removeAllFromRankedSet(@Nonnull IndexMaintainerState state, @Nonnull RankedSet rankedSet, @Nonnull List<byte[]> scores) {
+        return rankedSet.removeAll(state.transaction, scores).thenApply(exists -> {
+            // As with a single remove, a missing score is only okay while the index is write only.
+            if (exists.contains(false) && !state.store.isIndexWriteOnly(state.index)) {
+                throw new RecordCoreException("Score was not present in ranked set.",
+                        "rankSubspace", ByteArrayUtil2.loggable(rankedSet.getSubspace().getKey()));
+            }
+            return null;
+        });
+    }
+
     private static CompletableFuture<Void> removeFromRankedSet(@Nonnull IndexMaintainerState state, @Nonnull RankedSet rankedSet, @Nonnull byte[] score) {
         return rankedSet.remove(state.transaction, score).thenApply(exists -> {
             // It is okay if the score isn't in the ranked set yet if the index is
@@ -294,7 +379,7 @@ public class RankedSetIndexHelper {
         public InstrumentedRankedSet(@Nonnull IndexMaintainerState state,
                                      @Nonnull Subspace rankSubspace,
                                      @Nonnull Config config) {
-            super(rankSubspace, state.context.getExecutor(), config);
+            super(rankSubspace, state.context.getExecutor(), config, state.store.getContext().getDatabase().getRankedSetLevelCache());
             this.context = state.context;
         }
 
@@ -324,6 +409,11 @@ public class RankedSetIndexHelper {
             }
         }
 
+        @Override
+        protected void levelCacheLookup(boolean hit) {
+            context.increment(hit ? FDBStoreTimer.Counts.RANKED_SET_LEVEL_CACHE_HIT : FDBStoreTimer.Counts.RANKED_SET_LEVEL_CACHE_MISS);
+        }
+
         @Override
         protected int getKeyHash(final byte[] key) {
             final int hash = super.getKeyHash(key);
@@ -0,0 +1,216 @@
+/*
+ * ShardedAggregateCursor.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.ByteArrayContinuation;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorContinuation;
+import com.apple.foundationdb.record.RecordCursorProto;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.record.RecordCursorVisitor;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.tuple.ByteArrayUtil2;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A cursor that combines the entries for the shards of each group of a sharded {@link AtomicMutationIndexMaintainer}
+ * index into a single entry for the group.
+ *
+ * <p>
+ * The shard number is the last element of each entry's key, so the shards of a group are adjacent.
+ * If the inner cursor stops because of a limit in the middle of a group, the continuation carries the aggregate of
+ * the shards of that group seen so far, so that the scan always makes progress, however low the limit.
+ * </p>
+ */
+@API(API.Status.INTERNAL)
+class ShardedAggregateCursor implements RecordCursor<IndexEntry> {
+    @Nonnull
+    private final RecordCursor<IndexEntry> inner;
+    @Nonnull
+    private final Index index;
+    @Nonnull
+    private final BiFunction<Tuple, Tuple, Tuple> aggregator;
+    // The group that is being combined, if any.
+    @Nullable
+    private Tuple groupKey;
+    @Nullable
+    private Tuple groupValue;
+    @Nullable
+    private RecordCursorContinuation groupContinuation;
+    @Nullable
+    private RecordCursorResult<IndexEntry> innerEnd;
+    @Nullable
+    private RecordCursorResult<IndexEntry> nextResult;
+
+    ShardedAggregateCursor(@Nonnull Function<byte[], RecordCursor<IndexEntry>> innerFunction, @Nonnull Index index,
+                           @Nonnull BiFunction<Tuple, Tuple, Tuple> aggregator, @Nullable byte[] continuation) {
+        this.index = index;
+        this.aggregator = aggregator;
+        byte[] innerContinuation = null;
+        if (continuation != null) {
+            try {
+                RecordCursorProto.ShardedAggregateContinuation shardedContinuation = RecordCursorProto.ShardedAggregateContinuation.parseFrom(continuation);
+                if (shardedContinuation.hasContinuation()) {
+                    innerContinuation = shardedContinuation.getContinuation().toByteArray();
+                }
+                if (shardedContinuation.hasGroupKey()) {
+                    groupKey = Tuple.fromBytes(shardedContinuation.getGroupKey().toByteArray());
+                    groupValue = Tuple.fromBytes(shardedContinuation.getGroupValue().toByteArray());
+                    groupContinuation = ByteArrayContinuation.fromNullable(innerContinuation);
+                }
+            } catch (InvalidProtocolBufferException ex) {
+                throw new RecordCoreException("Error parsing ShardedAggregateCursor continuation", ex)
+                        .addLogInfo("raw_bytes", ByteArrayUtil2.loggable(continuation));
+            }
+        }
+        this.inner = innerFunction.apply(innerContinuation);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<RecordCursorResult<IndexEntry>> onNext() {
+        if (nextResult != null && !nextResult.hasNext()) {
+            return CompletableFuture.completedFuture(nextResult);
+        }
+        if (innerEnd != null) {
+            nextResult = RecordCursorResult.withoutNextValue(innerEnd);
+            return CompletableFuture.completedFuture(nextResult);
+        }
+        return AsyncUtil.whileTrue(() -> inner.onNext().thenApply(innerResult -> {
+            if (!innerResult.hasNext()) {
+                if (!innerResult.getNoNextReason().isSourceExhausted()) {
+                    // Stopped by a limit, possibly in the middle of the group, which the continuation then resumes.
+                    nextResult = RecordCursorResult.withoutNextValue(
+                            new ShardedAggregateCursorContinuation(innerResult.getContinuation(), groupKey, groupValue),
+                            innerResult.getNoNextReason());
+                } else if (groupKey != null) {
+                    nextResult = RecordCursorResult.withNextValue(new IndexEntry(index, groupKey, groupValue),
+                            new ShardedAggregateCursorContinuation(groupContinuation, null, null));
+                    innerEnd = innerResult;
+                } else {
+                    nextResult = RecordCursorResult.withoutNextValue(innerResult);
+                }
+                return false;
+            }
+            final IndexEntry entry = innerResult.get();
+            final Tuple entryGroupKey = TupleHelpers.subTuple(entry.getKey(), 0, entry.getKeySize() - 1);
+            if (groupKey != null && !groupKey.equals(entryGroupKey)) {
+                // Reached the next group, so the previous one is complete.
+                nextResult = RecordCursorResult.withNextValue(new IndexEntry(index, groupKey, groupValue),
+                        new ShardedAggregateCursorContinuation(groupContinuation, null, null));
+                groupKey = entryGroupKey;
+                groupValue = entry.getValue();
+                groupContinuation = innerResult.getContinuation();
+                return false;
+            }
+            if (groupKey == null) {
+                groupKey = entryGroupKey;
+                groupValue = entry.getValue();
+            } else {
+                groupValue = aggregator.apply(groupValue, entry.getValue());
+            }
+            groupContinuation = innerResult.getContinuation();
+            return true;
+        }), getExecutor()).thenApply(vignore -> nextResult);
+    }
+
+    @Override
+    public void close() {
+        inner.close();
+    }
+
+    @Nonnull
+    @Override
+    public Executor getExecutor() {
+        return inner.getExecutor();
+    }
+
+    @Override
+    public boolean accept(@Nonnull RecordCursorVisitor visitor) {
+        if (visitor.visitEnter(this)) {
+            inner.accept(visitor);
+        }
+        return visitor.visitLeave(this);
+    }
+
+    // The inner continuation together with the partial aggregate of the group that the inner cursor stopped in, if any.
+    private static class ShardedAggregateCursorContinuation implements RecordCursorContinuation {
+        @Nonnull
+        private final RecordCursorContinuation innerContinuation;
+        @Nullable
+        private final Tuple groupKey;
+        @Nullable
+        private final Tuple groupValue;
+        @Nullable
+        private byte[] cachedBytes;
+
+        private ShardedAggregateCursorContinuation(@Nonnull RecordCursorContinuation innerContinuation,
+                                                   @Nullable Tuple groupKey, @Nullable Tuple groupValue) {
+            this.innerContinuation = innerContinuation;
+            this.groupKey = groupKey;
+            this.groupValue = groupValue;
+        }
+
+        @Nullable
+        @Override
+        public byte[] toBytes() {
+            if (isEnd()) {
+                return null;
+            }
+            if (cachedBytes == null) {
+                final byte[] innerBytes = innerContinuation.toBytes();
+                if (innerBytes == null && groupKey == null) {
+                    // Nothing has been scanned yet.
+                    return null;
+                }
+                final RecordCursorProto.ShardedAggregateContinuation.Builder builder = RecordCursorProto.ShardedAggregateContinuation.newBuilder();
+                if (innerBytes != null) {
+                    builder.setContinuation(ByteString.copyFrom(innerBytes));
+                }
+                if (groupKey != null && groupValue != null) {
+                    builder.setGroupKey(ByteString.copyFrom(groupKey.pack()))
+                            .setGroupValue(ByteString.copyFrom(groupValue.pack()));
+                }
+                cachedBytes = builder.build().toByteArray();
+            }
+            return cachedBytes;
+        }
+
+        @Override
+        public boolean isEnd() {
+            return innerContinuation.isEnd();
+        }
+    }
+}
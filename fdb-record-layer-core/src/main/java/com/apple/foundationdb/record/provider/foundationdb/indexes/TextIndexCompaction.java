@@ -0,0 +1,58 @@
+/*
+ * TextIndexCompaction.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.foundationdb.IndexOperation;
+
+import javax.annotation.Nullable;
+
+/**
+ * Merge adjacent under-full bunches of a {@link TextIndexMaintainer text index} back together.
+ *
+ * Bunches are split as entries are inserted, but they are not merged again as entries are removed, so an index
+ * with a lot of churn can end up with many small bunches, which makes scans more expensive. This operation
+ * reads at most {@code keyLimit} keys of the index and re-writes them into as few bunches as possible. The
+ * {@link TextIndexCompactionResult} contains a continuation with which to resume compaction in a new transaction,
+ * so that compacting a large index can be spread out (and throttled) across many small transactions.
+ *
+ * @see com.apple.foundationdb.map.BunchedMap#compactMulti
+ */
+@API(API.Status.EXPERIMENTAL)
+public class TextIndexCompaction extends IndexOperation {
+    private final int keyLimit;
+    @Nullable
+    private final byte[] continuation;
+
+    public TextIndexCompaction(int keyLimit, @Nullable byte[] continuation) {
+        this.keyLimit = keyLimit;
+        this.continuation = continuation;
+    }
+
+    public int getKeyLimit() {
+        return keyLimit;
+    }
+
+    @Nullable
+    public byte[] getContinuation() {
+        return continuation;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * TextIndexCompactionResult.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.foundationdb.IndexOperationResult;
+
+import javax.annotation.Nullable;
+
+/**
+ * The result of a {@link TextIndexCompaction}.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class TextIndexCompactionResult extends IndexOperationResult {
+    @Nullable
+    private final byte[] continuation;
+
+    public TextIndexCompactionResult(@Nullable byte[] continuation) {
+        this.continuation = continuation;
+    }
+
+    /**
+     * Get the continuation from which to resume compaction.
+     * @return the continuation to pass to the next {@link TextIndexCompaction} or {@code null} if the whole index has been compacted
+     */
+    @Nullable
+    public byte[] getContinuation() {
+        return continuation;
+    }
+}
@@ -23,6 +23,7 @@ package com.apple.foundationdb.record.provider.foundationdb.indexes;
 import com.apple.foundationdb.annotation.API;
 import com.apple.foundationdb.KeyValue;
 import com.apple.foundationdb.Range;
+import com.apple.foundationdb.Transaction;
 import com.apple.foundationdb.async.AsyncUtil;
 import com.apple.foundationdb.map.BunchedMap;
 import com.apple.foundationdb.map.BunchedMapMultiIterator;
@@ -36,6 +37,7 @@ import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.ScanProperties;
 import com.apple.foundationdb.annotation.SpotBugsSuppressWarnings;
 import com.apple.foundationdb.record.TupleRange;
+import com.apple.foundationdb.record.cursors.LazyCursor;
 import com.apple.foundationdb.record.logging.KeyValueLogMessage;
 import com.apple.foundationdb.record.logging.LogMessageKeys;
 import com.apple.foundationdb.record.metadata.Index;
@@ -53,6 +55,8 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
+import com.apple.foundationdb.record.provider.foundationdb.IndexOperation;
+import com.apple.foundationdb.record.provider.foundationdb.IndexOperationResult;
 import com.apple.foundationdb.record.query.QueryToKeyMatcher;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.subspace.Subspace;
@@ -151,6 +155,7 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
     private final int tokenizerVersion;
     private final boolean addAggressiveConflictRanges;
     private final boolean omitPositionLists;
+    private final boolean bufferUpdates;
 
     /**
      * Get the text tokenizer associated with this index. This uses the
@@ -200,6 +205,10 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
         return index.getBooleanOption(IndexOptions.TEXT_OMIT_POSITIONS_OPTION, false);
     }
 
+    static boolean getIfBufferUpdates(@Nonnull Index index) {
+        return index.getBooleanOption(IndexOptions.TEXT_BUFFER_UPDATES_OPTION, false);
+    }
+
     // Gets the position of the text field this index is tokenizing from within the
     // index's expression. This is the first column of the index expression after
     // all grouping columns (or the first column if there are no grouping columns).
@@ -226,6 +235,7 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
         this.tokenizerVersion = getIndexTokenizerVersion(state.index);
         this.addAggressiveConflictRanges = getIfAddAggressiveConflictRanges(state.index);
         this.omitPositionLists = getIfOmitPositions(state.index);
+        this.bufferUpdates = getIfBufferUpdates(state.index);
     }
 
     private static int varIntSize(int val) {
@@ -335,6 +345,23 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
             state.context.ensureActive().addReadConflictRange(indexRange.begin, indexRange.end);
             state.context.ensureActive().addWriteConflictRange(indexRange.begin, indexRange.end);
         }
+        if (bufferUpdates) {
+            // Defer the writes until the buffer is flushed (at the latest, just before commit), at which point
+            // they are written out in key order so that each bunch is only read and written once.
+            final TextIndexUpdateBuffer buffer = TextIndexUpdateBuffer.getOrCreate(state);
+            for (Map.Entry<String, List<Integer>> tokenEntry : positionMap.entrySet()) {
+                final Tuple subspaceTuple = groupingKey == null ? Tuple.from(tokenEntry.getKey()) : groupingKey.add(tokenEntry.getKey());
+                if (remove) {
+                    buffer.remove(subspaceTuple, groupedKey);
+                } else {
+                    buffer.put(subspaceTuple, groupedKey, omitPositionLists ? Collections.emptyList() : tokenEntry.getValue());
+                }
+            }
+            if (state.store.getTimer() != null) {
+                state.store.getTimer().recordSinceNanoTime(indexUpdateEvent, startTime);
+            }
+            return AsyncUtil.DONE;
+        }
         final BunchedMap<Tuple, List<Integer>> bunchedMap = getBunchedMap(state.context);
         CompletableFuture<Void> tokenInsertFuture = RecordCursor.fromIterator(state.context.getExecutor(), positionMap.entrySet().iterator())
                 .forEachAsync((Map.Entry<String, List<Integer>> tokenEntry) -> {
@@ -505,6 +532,56 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
         }
     }
 
+    /**
+     * Delete all index data with the given prefix. If updates to this index are being buffered, these are
+     * written out first so that none of them end up being written after the range has been cleared.
+     *
+     * @param tr transaction in which to access the database
+     * @param prefix prefix of the index keys to delete
+     * @return a future that is complete when the data have been deleted
+     */
+    @Override
+    public CompletableFuture<Void> deleteWhere(Transaction tr, @Nonnull Tuple prefix) {
+        if (bufferUpdates) {
+            return TextIndexUpdateBuffer.flush(state).thenCompose(vignore -> super.deleteWhere(tr, prefix));
+        } else {
+            return super.deleteWhere(tr, prefix);
+        }
+    }
+
+    /**
+     * Perform an operation on this index. The only operation supported by this index is a {@link TextIndexCompaction},
+     * which merges adjacent under-full bunches.
+     *
+     * @param operation the operation to perform
+     * @return a future that will complete with the result of the operation
+     */
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> discardBufferedUpdates() {
+        return bufferUpdates ? TextIndexUpdateBuffer.discard(state) : AsyncUtil.DONE;
+    }
+
+    @Override
+    public CompletableFuture<IndexOperationResult> performOperation(@Nonnull IndexOperation operation) {
+        if (operation instanceof TextIndexCompaction) {
+            final TextIndexCompaction compaction = (TextIndexCompaction)operation;
+            final TextSubspaceSplitter subspaceSplitter = new TextSubspaceSplitter(state.indexSubspace, textFieldPosition(state.index.getRootExpression()) + 1);
+            // Make sure any buffered updates are not applied to the same maps concurrently with the compaction.
+            final CompletableFuture<Void> flushFuture = bufferUpdates ? TextIndexUpdateBuffer.flush(state) : AsyncUtil.DONE;
+            CompletableFuture<IndexOperationResult> result = flushFuture
+                    .thenCompose(vignore -> getBunchedMap(state.context).compactMulti(state.transaction, state.indexSubspace, subspaceSplitter,
+                            compaction.getKeyLimit(), compaction.getContinuation()))
+                    .thenApply(TextIndexCompactionResult::new);
+            if (state.store.getTimer() != null) {
+                result = state.store.getTimer().instrument(FDBStoreTimer.Events.TEXT_INDEX_COMPACTION, result, state.context.getExecutor());
+            }
+            return result;
+        } else {
+            return super.performOperation(operation);
+        }
+    }
+
     /**
      * Scan this index between a range of tokens. This index type requires that it be scanned only
      * by text token. The range to scan can otherwise be between any two entries in the list, and
@@ -513,7 +590,8 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
      * The keys returned in the index entry will include the token that was found in the index
      * when scanning in the column that is used for the text field of the index's root expression.
      * The value portion of each index entry will be a tuple whose first element is the position
-     * list for that entry within its associated record's field.
+     * list for that entry within its associated record's field. If updates to this index are being buffered,
+     * they are written out before the scan begins so that the scan sees them.
      *
      * @param scanType the {@link IndexScanType type} of scan to perform
      * @param range the range to scan
@@ -533,6 +611,21 @@ public class TextIndexMaintainer extends StandardIndexMaintainer {
         if (scanType != IndexScanType.BY_TEXT_TOKEN) {
             throw new RecordCoreException("Can only scan text index by text token.");
         }
+        if (bufferUpdates) {
+            final CompletableFuture<Void> flushFuture = TextIndexUpdateBuffer.flush(state);
+            if (!flushFuture.isDone() || flushFuture.isCompletedExceptionally()) {
+                return new LazyCursor<>(flushFuture.thenApply(vignore -> scanTokens(range, continuation, scanProperties)),
+                        state.context.getExecutor());
+            }
+        }
+        return scanTokens(range, continuation, scanProperties);
+    }
+
+    @Nonnull
+    @SuppressWarnings("squid:S2095") // not closing the returned cursor
+    private RecordCursor<IndexEntry> scanTokens(@Nonnull TupleRange range,
+                                                @Nullable byte[] continuation,
+                                                @Nonnull ScanProperties scanProperties) {
         int textPosition = textFieldPosition(state.index.getRootExpression());
         TextSubspaceSplitter subspaceSplitter = new TextSubspaceSplitter(state.indexSubspace, textPosition + 1);
         Range byteRange = range.toRange();
@@ -0,0 +1,203 @@
+/*
+ * TextIndexUpdateBuffer.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.map.BunchedMap;
+import com.apple.foundationdb.record.PipelineOperation;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.metadata.IndexOptions;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil2;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Buffer of pending updates to a {@link TextIndexMaintainer text index} within a single transaction.
+ * Updates are grouped by the subspace of their token and kept sorted by key, so that when they are
+ * written out, each bunch of the underlying {@link BunchedMap} is read from the database at most
+ * once. Later updates to the same key replace earlier ones. The buffer is registered as a commit check
+ * so that any remaining updates are written before the transaction commits.
+ *
+ * @see IndexOptions#TEXT_BUFFER_UPDATES_OPTION
+ */
+class TextIndexUpdateBuffer implements FDBRecordContext.CommitCheckAsync {
+    @Nonnull
+    private final Subspace indexSubspace;
+    @Nonnull
+    private final Transaction transaction;
+    @Nonnull
+    private final FDBRecordContext context;
+    private final int pipelineSize;
+    // Map from token subspace to map from grouped key to position list, with null marking a removal.
+    @Nonnull
+    private TreeMap<Tuple, TreeMap<Tuple, List<Integer>>> pending;
+    @Nonnull
+    private CompletableFuture<Void> lastFlush;
+    // Incremented when the buffered updates are discarded, so that any write in progress stops.
+    private volatile int generation;
+
+    private TextIndexUpdateBuffer(@Nonnull IndexMaintainerState state) {
+        this.indexSubspace = state.indexSubspace;
+        this.transaction = state.transaction;
+        this.context = state.context;
+        this.pipelineSize = state.store.getPipelineSize(PipelineOperation.TEXT_INDEX_UPDATE);
+        this.pending = new TreeMap<>();
+        this.lastFlush = AsyncUtil.DONE;
+    }
+
+    /**
+     * Get the buffer for the given index from the context, creating it and registering it as a commit check
+     * if this is the first buffered update to that index in the transaction.
+     *
+     * @param state the index maintainer state
+     * @return the update buffer for the index
+     */
+    @Nonnull
+    static TextIndexUpdateBuffer getOrCreate(@Nonnull IndexMaintainerState state) {
+        synchronized (state.context) {
+            final String name = getSessionName(state);
+            TextIndexUpdateBuffer buffer = state.context.getInSession(name, TextIndexUpdateBuffer.class);
+            if (buffer == null) {
+                buffer = new TextIndexUpdateBuffer(state);
+                state.context.addCommitCheck(buffer);
+                state.context.putInSessionIfAbsent(name, buffer);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Write out any updates buffered for the given index, if there are any.
+     *
+     * @param state the index maintainer state
+     * @return a future that is complete when all buffered updates have been applied to the transaction
+     */
+    @Nonnull
+    static CompletableFuture<Void> flush(@Nonnull IndexMaintainerState state) {
+        final TextIndexUpdateBuffer buffer = state.context.getInSession(getSessionName(state), TextIndexUpdateBuffer.class);
+        return buffer == null ? AsyncUtil.DONE : buffer.flush();
+    }
+
+    /**
+     * Drop any updates buffered for the given index, because the index's data is being cleared.
+     *
+     * @param state the index maintainer state
+     * @return a future that is complete when any write of earlier updates that was already in progress has stopped
+     */
+    @Nonnull
+    static CompletableFuture<Void> discard(@Nonnull IndexMaintainerState state) {
+        final TextIndexUpdateBuffer buffer = state.context.getInSession(getSessionName(state), TextIndexUpdateBuffer.class);
+        return buffer == null ? AsyncUtil.DONE : buffer.discard();
+    }
+
+    @Nonnull
+    private static String getSessionName(@Nonnull IndexMaintainerState state) {
+        return "textIndexBuffer$" + ByteArrayUtil2.toHexString(state.indexSubspace.getKey());
+    }
+
+    synchronized void put(@Nonnull Tuple subspaceTuple, @Nonnull Tuple key, @Nonnull List<Integer> value) {
+        pending.computeIfAbsent(subspaceTuple, ignore -> new TreeMap<>()).put(key, value);
+    }
+
+    synchronized void remove(@Nonnull Tuple subspaceTuple, @Nonnull Tuple key) {
+        pending.computeIfAbsent(subspaceTuple, ignore -> new TreeMap<>()).put(key, null);
+    }
+
+    /**
+     * Apply all buffered updates to the transaction. Flushes are serialized, so updates buffered after this
+     * call are applied only after those already buffered.
+     *
+     * @return a future that is complete when the buffered updates have been applied
+     */
+    @Nonnull
+    synchronized CompletableFuture<Void> flush() {
+        if (!pending.isEmpty()) {
+            final TreeMap<Tuple, TreeMap<Tuple, List<Integer>>> toWrite = pending;
+            pending = new TreeMap<>();
+            lastFlush = lastFlush.thenCompose(vignore -> write(toWrite));
+        }
+        return lastFlush;
+    }
+
+    /**
+     * Drop all buffered updates. A write already in progress stops after the update it is currently applying,
+     * and any error from it is ignored, since the index's data is being cleared anyway.
+     *
+     * @return a future that is complete when no write of the dropped updates is still in progress
+     */
+    @Nonnull
+    synchronized CompletableFuture<Void> discard() {
+        pending = new TreeMap<>();
+        generation++;
+        lastFlush = lastFlush.handle((vignore, errignore) -> null);
+        return lastFlush;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> checkAsync() {
+        return flush();
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> write(@Nonnull TreeMap<Tuple, TreeMap<Tuple, List<Integer>>> toWrite) {
+        final BunchedMap<Tuple, List<Integer>> bunchedMap = TextIndexMaintainer.getBunchedMap(context);
+        final int writeGeneration = generation;
+        // Different tokens live in different maps, so they can be written concurrently.
+        return RecordCursor.fromIterator(context.getExecutor(), toWrite.entrySet().iterator())
+                .forEachAsync(tokenEntry -> writeToken(bunchedMap, indexSubspace.subspace(tokenEntry.getKey()), tokenEntry.getValue(), writeGeneration),
+                        pipelineSize);
+    }
+
+    @Nonnull
+    private CompletableFuture<Void> writeToken(@Nonnull BunchedMap<Tuple, List<Integer>> bunchedMap, @Nonnull Subspace mapSubspace,
+                                               @Nonnull TreeMap<Tuple, List<Integer>> updates, int writeGeneration) {
+        if (context.getTimer() != null) {
+            context.getTimer().increment(FDBStoreTimer.Counts.TEXT_INDEX_BUFFERED_UPDATE, updates.size());
+        }
+        // Updates within a single map must be done serially. Because the keys are sorted, consecutive updates
+        // generally land in the same bunch, which has already been read into the transaction's cache.
+        final Iterator<Map.Entry<Tuple, List<Integer>>> iterator = updates.entrySet().iterator();
+        return AsyncUtil.whileTrue(() -> {
+            if (!iterator.hasNext() || generation != writeGeneration) {
+                return AsyncUtil.READY_FALSE;
+            }
+            final Map.Entry<Tuple, List<Integer>> update = iterator.next();
+            @Nullable final List<Integer> value = update.getValue();
+            final CompletableFuture<?> future = value == null
+                                                ? bunchedMap.remove(transaction, mapSubspace, update.getKey())
+                                                : bunchedMap.put(transaction, mapSubspace, update.getKey(), value);
+            return future.thenApply(ignore -> iterator.hasNext());
+        }, context.getExecutor());
+    }
+}
@@ -278,6 +278,11 @@ public class DirectoryLayerDirectory extends KeySpaceDirectory {
         return "[" + getName() + "]";
     }
 
+    @Nonnull
+    CompletableFuture<LocatableResolver> getScope(@Nonnull FDBRecordContext context) {
+        return scopeGenerator.apply(context);
+    }
+
     @Nonnull
     private CompletableFuture<String> doReverseLookup(@Nonnull FDBRecordContext context, Long dir) {
         return scopeGenerator.apply(context)
@@ -26,6 +26,7 @@ import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.ScanProperties;
 import com.apple.foundationdb.record.ValueRange;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.ByteArrayUtil;
 import com.apple.foundationdb.tuple.Tuple;
 import com.google.common.collect.Lists;
@@ -215,6 +216,9 @@ class KeySpacePathImpl implements KeySpacePath {
     @Nonnull
     @Override
     public CompletableFuture<Tuple> toTupleAsync(@Nonnull FDBRecordContext context) {
+        if (context.getDatabase().getResolvedKeySpacePathCache() != null) {
+            return toResolvedPathAsync(context).thenApply(ResolvedKeySpacePath::toTuple);
+        }
         final List<CompletableFuture<Object>> work = flatten().stream()
                 .map(entry -> entry.resolveAsync(context).thenApply(PathValue::getResolvedValue))
                 .collect(Collectors.toList());
@@ -226,6 +230,25 @@ class KeySpacePathImpl implements KeySpacePath {
     @Override
     public CompletableFuture<ResolvedKeySpacePath> toResolvedPathAsync(@Nonnull FDBRecordContext context) {
         final List<KeySpacePath> flatPath = flatten();
+        final ResolvedKeySpacePathCache cache = context.getDatabase().getResolvedKeySpacePathCache();
+        if (cache != null) {
+            return cache.resolveAsync(context, flatPath, () -> toResolvedPathAsync(context, flatPath));
+        }
+        return toResolvedPathAsync(context, flatPath);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Subspace> toSubspaceAsync(@Nonnull FDBRecordContext context) {
+        if (context.getDatabase().getResolvedKeySpacePathCache() != null) {
+            return toResolvedPathAsync(context).thenApply(ResolvedKeySpacePath::toSubspace);
+        }
+        return toTupleAsync(context).thenApply(Subspace::new);
+    }
+
+    @Nonnull
+    private CompletableFuture<ResolvedKeySpacePath> toResolvedPathAsync(@Nonnull FDBRecordContext context,
+                                                                       @Nonnull List<KeySpacePath> flatPath) {
         final List<CompletableFuture<PathValue>> work = flatPath.stream()
                 .map(entry -> entry.resolveAsync(context))
                 .collect(Collectors.toList());
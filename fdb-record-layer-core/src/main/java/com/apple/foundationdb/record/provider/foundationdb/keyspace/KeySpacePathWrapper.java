@@ -25,6 +25,7 @@ import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.ScanProperties;
 import com.apple.foundationdb.record.ValueRange;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.Tuple;
 
 import javax.annotation.Nonnull;
@@ -161,6 +162,12 @@ public class KeySpacePathWrapper implements KeySpacePath {
         return inner.toTupleAsync(context);
     }
 
+    @Override
+    @Nonnull
+    public CompletableFuture<Subspace> toSubspaceAsync(@Nonnull FDBRecordContext context) {
+        return inner.toSubspaceAsync(context);
+    }
+
     @Override
     @Nonnull
     public List<KeySpacePath> flatten() {
@@ -41,11 +41,18 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
@@ -389,6 +396,142 @@ public abstract class LocatableResolver {
                                 .orElseThrow(() -> new NoSuchElementException(wrap(name).toString())));
     }
 
+    /**
+     * Map each of the given <code>names</code> to a Long within the scope of the path that this object was constructed with.
+     * Will return the values that are persisted in FDB or create those that do not exist.
+     *
+     * @param timer the {@link FDBStoreTimer} used for collecting metrics
+     * @param names the values to resolve
+     * @return a future for a map from each name to its resolved Long value
+     * @see #resolveAll(FDBRecordContext, Collection)
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public CompletableFuture<Map<String, Long>> resolveAll(@Nullable FDBStoreTimer timer, @Nonnull Collection<String> names) {
+        final FDBRecordContext context = database.openContext(null, timer);
+        boolean started = false;
+        try {
+            CompletableFuture<Map<String, Long>> future = resolveAll(context, names);
+            started = true;
+            return future.whenComplete((valIgnore, errIgnore) -> context.close());
+        } finally {
+            if (!started) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Map each of the given <code>names</code> to a Long within the scope of the path that this object was constructed with.
+     * Will return the values that are persisted in FDB or create those that do not exist.
+     *
+     * <p>
+     * This has the same transactional behavior as {@link #resolve(FDBRecordContext, String)}, except that all of the
+     * names that are not in the directory cache are looked up together in a single separate transaction.
+     * </p>
+     *
+     * @param context the {@link FDBRecordContext} used to base possible child transactions on
+     * @param names the values to resolve
+     * @return a future for a map from each name to its resolved Long value
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public CompletableFuture<Map<String, Long>> resolveAll(@Nonnull FDBRecordContext context, @Nonnull Collection<String> names) {
+        return resolveAllWithMetadata(context, names, ResolverCreateHooks.getDefault())
+                .thenApply(results -> results.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getValue())));
+    }
+
+    /**
+     * Map each of the given <code>names</code> to a {@link ResolverResult} within the scope of the path that this object
+     * was constructed with. Will return the values that are persisted in FDB or create those that do not exist, running
+     * the given <code>hooks</code> for each one created.
+     *
+     * <p>
+     * The names that are not in the directory cache are all read in parallel in a single transaction, which borrows the
+     * read version of the given context, as {@link #resolveWithMetadata(FDBRecordContext, String, ResolverCreateHooks)} does.
+     * Any that are then still missing are created one at a time in that same transaction.
+     * </p>
+     *
+     * @param context the {@link FDBRecordContext} used to base possible child transactions on
+     * @param names the values to resolve
+     * @param hooks {@link ResolverCreateHooks} to run on create
+     * @return a future for a map from each name to the {@link ResolverResult} containing its resolved value and metadata
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public CompletableFuture<Map<String, ResolverResult>> resolveAllWithMetadata(@Nonnull FDBRecordContext context,
+                                                                                 @Nonnull Collection<String> names,
+                                                                                 @Nonnull ResolverCreateHooks hooks) {
+        if (!context.getDatabase().equals(database)) {
+            throw new RecordCoreArgumentException("attempted to resolve value against incorrect database");
+        }
+        return getVersion(context)
+                .thenApply(database::getDirectoryCache)
+                .thenCompose(directoryCache -> resolveAllWithCache(context, names, directoryCache, hooks));
+    }
+
+    /**
+     * Get a copy of the mappings for this resolver that are currently in the directory cache, so that they can be
+     * {@linkplain #preloadCache(FDBRecordContext, ResolverMappingSnapshot) preloaded} into the directory cache of another
+     * {@link FDBDatabase}, such as when a process restarts.
+     *
+     * @param context the {@link FDBRecordContext} used to get the current version of the resolver
+     * @param maxSize the maximum number of mappings to include
+     * @return a future for a snapshot of the cached mappings
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public CompletableFuture<ResolverMappingSnapshot> snapshotCachedMappings(@Nonnull FDBRecordContext context, int maxSize) {
+        return getVersion(context).thenApply(version -> {
+            final Map<String, ResolverResult> mappings = new LinkedHashMap<>();
+            for (Map.Entry<ScopedValue<String>, ResolverResult> entry : database.getDirectoryCache(version).asMap().entrySet()) {
+                if (mappings.size() >= maxSize) {
+                    break;
+                }
+                if (equals(entry.getKey().getScope())) {
+                    mappings.put(entry.getKey().getData(), entry.getValue());
+                }
+            }
+            return new ResolverMappingSnapshot(version, mappings);
+        });
+    }
+
+    /**
+     * Add the mappings from a snapshot to the directory cache, so that subsequent calls to {@link #resolve} for those
+     * names do not need to read from the database.
+     *
+     * <p>
+     * If the version of this resolver has not changed since the snapshot was taken, the mappings are added as they are.
+     * Otherwise, they may no longer be correct, so the names are instead all read again in a single transaction,
+     * and those that are found are added. No new mappings are created.
+     * </p>
+     *
+     * @param context the {@link FDBRecordContext} used to base possible child transactions on
+     * @param snapshot mappings from {@link #snapshotCachedMappings(FDBRecordContext, int)}
+     * @return a future that completes when the cache has been loaded
+     */
+    @API(API.Status.EXPERIMENTAL)
+    @Nonnull
+    public CompletableFuture<Void> preloadCache(@Nonnull FDBRecordContext context, @Nonnull ResolverMappingSnapshot snapshot) {
+        if (!context.getDatabase().equals(database)) {
+            throw new RecordCoreArgumentException("attempted to preload cache for incorrect database");
+        }
+        return getVersion(context).thenCompose(version -> {
+            final Cache<ScopedValue<String>, ResolverResult> directoryCache = database.getDirectoryCache(version);
+            if (version <= snapshot.getVersion()) {
+                snapshot.getMappings().forEach((name, result) -> directoryCache.put(wrap(name), result));
+                return AsyncUtil.DONE;
+            }
+            return context.instrument(
+                    FDBStoreTimer.Events.DIRECTORY_READ,
+                    runAsyncBorrowingReadVersion(context, childContext -> readValues(childContext, snapshot.getMappings().keySet()),
+                            LogMessageKeys.TRANSACTION_NAME, "LocatableResolver::readValues",
+                            LogMessageKeys.RESOLVER, this)
+            ).thenAccept(fetched -> fetched.forEach((name, result) -> directoryCache.put(wrap(name), result)));
+        });
+    }
+
     /**
      * Lookup the String that maps to the provided value within the scope of the path that this object was constructed with.
      *
@@ -442,6 +585,68 @@ public abstract class LocatableResolver {
                         .orElseGet(() -> createIfNotLocked(context, name, hooks)));
     }
 
+    private CompletableFuture<Map<String, ResolverResult>> resolveAllWithCache(@Nonnull FDBRecordContext context,
+                                                                               @Nonnull Collection<String> names,
+                                                                               @Nonnull Cache<ScopedValue<String>, ResolverResult> directoryCache,
+                                                                               @Nonnull ResolverCreateHooks hooks) {
+        final Map<String, ResolverResult> results = new HashMap<>();
+        final Set<String> missing = new LinkedHashSet<>();
+        for (String name : names) {
+            final ResolverResult value = directoryCache.getIfPresent(wrap(name));
+            if (value != null) {
+                results.put(name, value);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+
+        return context.instrument(
+                FDBStoreTimer.Events.DIRECTORY_READ,
+                runAsyncBorrowingReadVersion(context, childContext -> readOrCreateValues(childContext, missing, hooks),
+                        LogMessageKeys.TRANSACTION_NAME, "LocatableResolver::readOrCreateValues",
+                        LogMessageKeys.RESOLVER, this)
+        ).thenApply(fetched -> {
+            fetched.forEach((name, value) -> directoryCache.put(wrap(name), value));
+            results.putAll(fetched);
+            return results;
+        });
+    }
+
+    private CompletableFuture<Map<String, ResolverResult>> readValues(@Nonnull FDBRecordContext context,
+                                                                      @Nonnull Collection<String> names) {
+        final List<String> nameList = new ArrayList<>(names);
+        final List<CompletableFuture<Optional<ResolverResult>>> reads = nameList.stream()
+                .map(name -> read(context, name))
+                .collect(Collectors.toList());
+        return AsyncUtil.getAll(reads).thenApply(values -> {
+            final Map<String, ResolverResult> results = new HashMap<>();
+            for (int i = 0; i < nameList.size(); i++) {
+                final String name = nameList.get(i);
+                values.get(i).ifPresent(value -> results.put(name, value));
+            }
+            return results;
+        });
+    }
+
+    private CompletableFuture<Map<String, ResolverResult>> readOrCreateValues(@Nonnull FDBRecordContext context,
+                                                                              @Nonnull Collection<String> names,
+                                                                              @Nonnull ResolverCreateHooks hooks) {
+        return readValues(context, names).thenCompose(results -> {
+            // Creating allocates a new value, so the missing names are created one after another, not in parallel.
+            CompletableFuture<Void> created = AsyncUtil.DONE;
+            for (String name : names) {
+                if (!results.containsKey(name)) {
+                    created = created.thenCompose(vignore -> createIfNotLocked(context, name, hooks)
+                            .thenAccept(value -> results.put(name, value)));
+                }
+            }
+            return created.thenApply(vignore -> results);
+        });
+    }
+
     private CompletableFuture<ResolverResult> createIfNotLocked(@Nonnull FDBRecordContext context,
                                                                 @Nonnull String key,
                                                                 @Nonnull final ResolverCreateHooks hooks) {
@@ -590,7 +795,7 @@ public abstract class LocatableResolver {
     }
 
     @Nonnull
-    private CompletableFuture<Integer> getVersion(@Nonnull FDBRecordContext context) {
+    CompletableFuture<Integer> getVersion(@Nonnull FDBRecordContext context) {
         return getResolverState(context).thenApply(ResolverStateProto.State::getVersion);
     }
 
@@ -0,0 +1,262 @@
+/*
+ * ResolvedKeySpacePathCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.keyspace;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabase;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide cache of {@link ResolvedKeySpacePath}s that is shared by all transactions against a single
+ * {@link FDBDatabase}. Without it, every call to {@link KeySpacePath#toTupleAsync} or {@link KeySpacePath#toSubspaceAsync},
+ * such as when opening a record store by path, resolves each element of the path again, even when all the
+ * {@link DirectoryLayerDirectory} values are in the directory cache.
+ *
+ * <p>
+ * Each cached path remembers the {@linkplain LocatableResolver#getVersion version} of the resolver of each of its
+ * {@link DirectoryLayerDirectory} elements at the time it was resolved. A cached path is only used while none of those
+ * versions has advanced, which is the same condition under which the values in the directory cache are used. Since the
+ * resolver version is itself cached by the database, checking it does not usually require a read. This does assume
+ * that the scope of each {@code DirectoryLayerDirectory} depends only on the database and not on the transaction.
+ * </p>
+ *
+ * <p>
+ * Only paths made up entirely of plain {@link KeySpaceDirectory} and {@link DirectoryLayerDirectory} elements are
+ * cached. A subclass of either can override {@link KeySpaceDirectory#toTupleValueAsyncImpl} to resolve values in a
+ * way that depends on the transaction, such as by reading from the database, which the resolver versions would not
+ * catch. Paths with any such element are resolved again by every call, exactly as without the cache.
+ * </p>
+ *
+ * <p>
+ * The cache is off by default. It can be enabled for a database with
+ * {@link FDBDatabase#setResolvedKeySpacePathCache(ResolvedKeySpacePathCache)}.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class ResolvedKeySpacePathCache {
+    /**
+     * Default maximum number of paths that are cached.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1_000L;
+
+    @Nonnull
+    private final Cache<PathKey, Entry> cache;
+
+    public ResolvedKeySpacePathCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ResolvedKeySpacePathCache(long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the resolved form of the given path, either from the cache or by resolving it.
+     * @param context the transaction in which the path is being resolved
+     * @param flatPath the elements of the path, from the root
+     * @param resolve a supplier of the resolved path when it is not cached
+     * @return a future for the resolved path
+     */
+    @Nonnull
+    CompletableFuture<ResolvedKeySpacePath> resolveAsync(@Nonnull FDBRecordContext context,
+                                                         @Nonnull List<KeySpacePath> flatPath,
+                                                         @Nonnull Supplier<CompletableFuture<ResolvedKeySpacePath>> resolve) {
+        if (!isCacheable(flatPath)) {
+            return resolve.get();
+        }
+        final PathKey key = new PathKey(flatPath);
+        final Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            context.increment(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_MISS);
+            return resolveAndCache(context, key, flatPath, resolve);
+        }
+        return entry.isCurrent(context).thenCompose(current -> {
+            if (current) {
+                context.increment(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_HIT);
+                return CompletableFuture.completedFuture(entry.resolvedPath);
+            }
+            context.increment(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_MISS);
+            return resolveAndCache(context, key, flatPath, resolve);
+        });
+    }
+
+    private static boolean isCacheable(@Nonnull List<KeySpacePath> flatPath) {
+        for (KeySpacePath path : flatPath) {
+            final Class<?> directoryClass = path.getDirectory().getClass();
+            if (directoryClass != KeySpaceDirectory.class && directoryClass != DirectoryLayerDirectory.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    private CompletableFuture<ResolvedKeySpacePath> resolveAndCache(@Nonnull FDBRecordContext context,
+                                                                    @Nonnull PathKey key,
+                                                                    @Nonnull List<KeySpacePath> flatPath,
+                                                                    @Nonnull Supplier<CompletableFuture<ResolvedKeySpacePath>> resolve) {
+        final List<CompletableFuture<LocatableResolver>> scopes = new ArrayList<>();
+        for (KeySpacePath path : flatPath) {
+            if (path.getDirectory() instanceof DirectoryLayerDirectory) {
+                scopes.add(((DirectoryLayerDirectory)path.getDirectory()).getScope(context));
+            }
+        }
+        // Get the versions before resolving, so that the cached path is never newer than the versions it is stamped with.
+        return AsyncUtil.getAll(scopes).thenCompose(resolvers -> {
+            final List<LocatableResolver> distinctResolvers = new ArrayList<>(new LinkedHashSet<>(resolvers));
+            final List<CompletableFuture<Integer>> versions = new ArrayList<>(distinctResolvers.size());
+            for (LocatableResolver resolver : distinctResolvers) {
+                versions.add(resolver.getVersion(context));
+            }
+            return AsyncUtil.getAll(versions).thenCompose(versionValues -> {
+                final Map<LocatableResolver, Integer> resolverVersions = new HashMap<>();
+                for (int i = 0; i < distinctResolvers.size(); i++) {
+                    resolverVersions.put(distinctResolvers.get(i), versionValues.get(i));
+                }
+                return resolve.get().thenApply(resolvedPath -> {
+                    cache.put(key, new Entry(resolvedPath, resolverVersions));
+                    return resolvedPath;
+                });
+            });
+        });
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get the approximate number of paths that are cached.
+     * @return the number of cached entries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get statistics about this cache's hit and eviction rates.
+     * @return the cache statistics
+     */
+    @Nonnull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * The logical form of a path. Directories are compared by identity, since paths in different key spaces can have
+     * the same names but resolve differently.
+     */
+    private static class PathKey {
+        @Nonnull
+        private final List<KeySpaceDirectory> directories;
+        @Nonnull
+        private final Tuple values;
+
+        private PathKey(@Nonnull List<KeySpacePath> flatPath) {
+            this.directories = new ArrayList<>(flatPath.size());
+            final List<Object> valueList = new ArrayList<>(flatPath.size());
+            for (KeySpacePath path : flatPath) {
+                directories.add(path.getDirectory());
+                valueList.add(path.getValue());
+            }
+            this.values = Tuple.fromList(valueList);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final PathKey that = (PathKey)o;
+            if (directories.size() != that.directories.size()) {
+                return false;
+            }
+            for (int i = 0; i < directories.size(); i++) {
+                if (directories.get(i) != that.directories.get(i)) {
+                    return false;
+                }
+            }
+            return values.equals(that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = values.hashCode();
+            for (KeySpaceDirectory directory : directories) {
+                hash = 31 * hash + System.identityHashCode(directory);
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * A cached path along with the resolver versions at which it was resolved.
+     */
+    private static class Entry {
+        @Nonnull
+        private final ResolvedKeySpacePath resolvedPath;
+        @Nonnull
+        private final Map<LocatableResolver, Integer> resolverVersions;
+
+        private Entry(@Nonnull ResolvedKeySpacePath resolvedPath, @Nonnull Map<LocatableResolver, Integer> resolverVersions) {
+            this.resolvedPath = resolvedPath;
+            this.resolverVersions = resolverVersions;
+        }
+
+        @Nonnull
+        private CompletableFuture<Boolean> isCurrent(@Nonnull FDBRecordContext context) {
+            if (resolverVersions.isEmpty()) {
+                return AsyncUtil.READY_TRUE;
+            }
+            final Set<Map.Entry<LocatableResolver, Integer>> entries = resolverVersions.entrySet();
+            final List<CompletableFuture<Boolean>> checks = new ArrayList<>(entries.size());
+            for (Map.Entry<LocatableResolver, Integer> entry : entries) {
+                checks.add(entry.getKey().getVersion(context).thenApply(version -> version <= entry.getValue()));
+            }
+            return AsyncUtil.getAll(checks).thenApply(results -> !results.contains(false));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * ResolverMappingSnapshot.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.keyspace;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A copy of some of the cached mappings of a {@link LocatableResolver}, along with the version of the resolver
+ * at which they were valid. A snapshot can be saved with {@link #toBytes()} when a process stops and passed to
+ * {@link LocatableResolver#preloadCache(com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext, ResolverMappingSnapshot)}
+ * when it starts again, so that the directory cache of the new process does not start out empty.
+ *
+ * @see LocatableResolver#snapshotCachedMappings(com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext, int)
+ */
+@API(API.Status.EXPERIMENTAL)
+public class ResolverMappingSnapshot {
+    private static final int FORMAT_VERSION = 1;
+
+    private final int version;
+    @Nonnull
+    private final Map<String, ResolverResult> mappings;
+
+    public ResolverMappingSnapshot(int version, @Nonnull Map<String, ResolverResult> mappings) {
+        this.version = version;
+        this.mappings = Collections.unmodifiableMap(new LinkedHashMap<>(mappings));
+    }
+
+    /**
+     * Get the version of the resolver at which these mappings were valid.
+     * @return the resolver version
+     * @see LocatableResolver#getVersion(com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer)
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the mappings in this snapshot.
+     * @return a map from name to resolved value
+     */
+    @Nonnull
+    public Map<String, ResolverResult> getMappings() {
+        return mappings;
+    }
+
+    /**
+     * Serialize this snapshot.
+     * @return a byte array from which {@link #fromBytes(byte[])} will restore this snapshot
+     */
+    @Nonnull
+    public byte[] toBytes() {
+        Tuple entries = new Tuple();
+        for (Map.Entry<String, ResolverResult> entry : mappings.entrySet()) {
+            entries = entries.add(Tuple.from(entry.getKey(), entry.getValue().getValue(), entry.getValue().getMetadata()));
+        }
+        return Tuple.from(FORMAT_VERSION, version).add(entries).pack();
+    }
+
+    /**
+     * Deserialize a snapshot.
+     * @param bytes bytes returned by {@link #toBytes()}
+     * @return the deserialized snapshot
+     */
+    @Nonnull
+    public static ResolverMappingSnapshot fromBytes(@Nonnull byte[] bytes) {
+        final Tuple tuple = Tuple.fromBytes(bytes);
+        if (tuple.getLong(0) != FORMAT_VERSION) {
+            throw new RecordCoreArgumentException("unknown resolver mapping snapshot format",
+                    "format", tuple.getLong(0));
+        }
+        final Tuple entries = tuple.getNestedTuple(2);
+        final Map<String, ResolverResult> mappings = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            final Tuple entry = entries.getNestedTuple(i);
+            mappings.put(entry.getString(0), new ResolverResult(entry.getLong(1), entry.getBytes(2)));
+        }
+        return new ResolverMappingSnapshot((int)tuple.getLong(1), mappings);
+    }
+
+    @Override
+    public String toString() {
+        return "ResolverMappingSnapshot{version=" + version + ", size=" + mappings.size() + "}";
+    }
+}
@@ -42,6 +42,9 @@ public class TimeWindowLeaderboardDirectory {
     private int nextKey;
     private Map<Integer, Collection<TimeWindowLeaderboard>> leaderboards = new TreeMap<>();
     private Map<Tuple, TimeWindowLeaderboardSubDirectory> subdirectories = new ConcurrentHashMap<>();
+    // Value of the directory version key when this directory was read through the directory cache.
+    @Nullable
+    private byte[] cachedVersion;
 
     public TimeWindowLeaderboardDirectory(boolean highScoreFirst) {
         this.highScoreFirst = highScoreFirst;
@@ -124,6 +127,15 @@ public class TimeWindowLeaderboardDirectory {
         subdirectories.put(subdir.getGroup(), subdir);
     }
 
+    @Nullable
+    byte[] getCachedVersion() {
+        return cachedVersion;
+    }
+
+    void setCachedVersion(@Nullable byte[] cachedVersion) {
+        this.cachedVersion = cachedVersion;
+    }
+
     @Nonnull
     public TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory toProto() {
         TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory.Builder builder = TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory.newBuilder();
@@ -0,0 +1,186 @@
+/*
+ * TimeWindowLeaderboardDirectoryCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.leaderboard;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.TimeWindowLeaderboardProto;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabase;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide cache of {@link TimeWindowLeaderboardDirectory} contents that is shared by all transactions against
+ * a single {@link FDBDatabase}. Without it, every update to and scan of a leaderboard index reads and decodes the
+ * directory (and possibly a sub-directory) from the database.
+ *
+ * <p>
+ * Whenever the directory or a sub-directory is saved, the index maintainer also sets a small version key to the
+ * committing transaction's versionstamp. A cached directory is only used when the version key still has the same
+ * value as when the directory was cached, so a transaction still reads that key (with a read conflict, which
+ * preserves the ordering of score updates with respect to changes to the set of time windows), but does not read
+ * or parse the directory itself. Since the version key only changes when the directory does, it is not a
+ * conflict hotspot for score updates. Directories saved without a version key are never cached.
+ * </p>
+ *
+ * <p>
+ * The cache is off by default. It can be enabled for a database with
+ * {@link FDBDatabase#setLeaderboardDirectoryCache(TimeWindowLeaderboardDirectoryCache)}. It should only be enabled
+ * once all clients that update the window set of leaderboard indexes in that database maintain the version key.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class TimeWindowLeaderboardDirectoryCache {
+    /**
+     * Default maximum number of leaderboard indexes whose directories are cached.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1_000L;
+
+    @Nonnull
+    private final Cache<Subspace, Entry> cache;
+
+    public TimeWindowLeaderboardDirectoryCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public TimeWindowLeaderboardDirectoryCache(long maxSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the cached directory of a leaderboard index if it was cached at the given version.
+     * @param extraSubspace the secondary subspace of the index
+     * @param version the current value of the index's directory version key
+     * @return the cached directory or {@code null} if there is none for this version
+     */
+    @Nullable
+    TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory getDirectory(@Nonnull Subspace extraSubspace, @Nonnull byte[] version) {
+        final Entry entry = getEntry(extraSubspace, version);
+        return entry == null ? null : entry.directory;
+    }
+
+    /**
+     * Add the directory of a leaderboard index that was read along with the given version.
+     * If the cache already contains a directory at a later version, the cache is left unchanged.
+     * @param extraSubspace the secondary subspace of the index
+     * @param version the value of the index's directory version key
+     * @param directory the directory
+     */
+    void putDirectory(@Nonnull Subspace extraSubspace, @Nonnull byte[] version,
+                      @Nonnull TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory directory) {
+        cache.asMap().merge(extraSubspace, new Entry(version, directory),
+                (existing, added) -> ByteArrayUtil.compareUnsigned(existing.version, added.version) >= 0 ? existing : added);
+    }
+
+    /**
+     * Get a cached sub-directory of a leaderboard index if it was cached at the given version.
+     * @param extraSubspace the secondary subspace of the index
+     * @param version the current value of the index's directory version key
+     * @param group the group of the sub-directory
+     * @return the cached sub-directory or {@code null} if there is none for this group at this version
+     */
+    @Nullable
+    TimeWindowLeaderboardProto.TimeWindowLeaderboardSubDirectory getSubDirectory(@Nonnull Subspace extraSubspace,
+                                                                                 @Nonnull byte[] version,
+                                                                                 @Nonnull Tuple group) {
+        final Entry entry = getEntry(extraSubspace, version);
+        return entry == null ? null : entry.subdirectories.get(group);
+    }
+
+    /**
+     * Add a sub-directory of a leaderboard index that was read at the given version. For a group without a saved
+     * sub-directory, this should be the default sub-directory derived from the directory.
+     * Nothing is added unless the directory of that index is cached at the same version.
+     * @param extraSubspace the secondary subspace of the index
+     * @param version the value of the index's directory version key
+     * @param group the group of the sub-directory
+     * @param subdirectory the sub-directory
+     */
+    void putSubDirectory(@Nonnull Subspace extraSubspace, @Nonnull byte[] version, @Nonnull Tuple group,
+                         @Nonnull TimeWindowLeaderboardProto.TimeWindowLeaderboardSubDirectory subdirectory) {
+        final Entry entry = getEntry(extraSubspace, version);
+        if (entry != null) {
+            entry.subdirectories.put(group, subdirectory);
+        }
+    }
+
+    @Nullable
+    private Entry getEntry(@Nonnull Subspace extraSubspace, @Nonnull byte[] version) {
+        final Entry entry = cache.getIfPresent(extraSubspace);
+        if (entry == null || !Arrays.equals(entry.version, version)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get the approximate number of indexes whose directories are cached.
+     * @return the number of cached entries
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get statistics about this cache's hit and eviction rates.
+     * @return the cache statistics
+     */
+    @Nonnull
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * A cached directory along with the sub-directories read at the same version.
+     */
+    private static class Entry {
+        @Nonnull
+        private final byte[] version;
+        @Nonnull
+        private final TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory directory;
+        @Nonnull
+        private final Map<Tuple, TimeWindowLeaderboardProto.TimeWindowLeaderboardSubDirectory> subdirectories = new ConcurrentHashMap<>();
+
+        private Entry(@Nonnull byte[] version, @Nonnull TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory directory) {
+            this.version = version;
+            this.directory = directory;
+        }
+    }
+}
@@ -46,6 +46,7 @@ import com.apple.foundationdb.record.metadata.IndexRecordFunction;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBIndexableRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordVersion;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
 import com.apple.foundationdb.record.provider.foundationdb.IndexOperation;
@@ -89,6 +90,7 @@ public class TimeWindowLeaderboardIndexMaintainer extends StandardIndexMaintaine
     private static final Logger LOGGER = LoggerFactory.getLogger(TimeWindowLeaderboardIndexMaintainer.class);
 
     private static final Tuple SUB_DIRECTORY_PREFIX = Tuple.from((Object)null); // Must not conflict with leaderboard subspace keys.
+    private static final Tuple DIRECTORY_VERSION_KEY = Tuple.from("version"); // Must not conflict with leaderboard subspace keys or sub-directories.
 
     private final RankedSet.Config config;
 
@@ -105,6 +107,35 @@ public class TimeWindowLeaderboardIndexMaintainer extends StandardIndexMaintaine
 
     @Nonnull
     protected CompletableFuture<TimeWindowLeaderboardDirectory> loadDirectory() {
+        final TimeWindowLeaderboardDirectoryCache cache = getDirectoryCache();
+        if (cache == null) {
+            return readDirectory(null, null);
+        }
+        final Subspace extraSubspace = getSecondarySubspace();
+        return state.transaction.get(extraSubspace.pack(DIRECTORY_VERSION_KEY)).thenCompose(version -> {
+            if (version == null) {
+                // Directory not saved since versions were kept: cannot tell whether cached copy is current.
+                return readDirectory(null, null);
+            }
+            final TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory cached = cache.getDirectory(extraSubspace, version);
+            if (cached != null) {
+                if (getTimer() != null) {
+                    getTimer().increment(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_HIT);
+                }
+                final TimeWindowLeaderboardDirectory directory = new TimeWindowLeaderboardDirectory(cached);
+                directory.setCachedVersion(version);
+                return CompletableFuture.completedFuture(directory);
+            }
+            if (getTimer() != null) {
+                getTimer().increment(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS);
+            }
+            return readDirectory(cache, version);
+        });
+    }
+
+    @Nonnull
+    private CompletableFuture<TimeWindowLeaderboardDirectory> readDirectory(@Nullable TimeWindowLeaderboardDirectoryCache cache,
+                                                                            @Nullable byte[] version) {
         final Subspace extraSubspace = getSecondarySubspace();
         return state.transaction.get(extraSubspace.pack()).thenApply(bytes -> {
             if (bytes == null) {
@@ -116,13 +147,20 @@ public class TimeWindowLeaderboardIndexMaintainer extends StandardIndexMaintaine
             } catch (InvalidProtocolBufferException ex) {
                 throw new RecordCoreStorageException("error decoding leaderboard directory", ex);
             }
-            return new TimeWindowLeaderboardDirectory(builder.build());
+            final TimeWindowLeaderboardProto.TimeWindowLeaderboardDirectory proto = builder.build();
+            final TimeWindowLeaderboardDirectory directory = new TimeWindowLeaderboardDirectory(proto);
+            if (cache != null && version != null) {
+                cache.putDirectory(extraSubspace, version, proto);
+                directory.setCachedVersion(version);
+            }
+            return directory;
         });
     }
 
     protected void saveDirectory(TimeWindowLeaderboardDirectory directory) {
         final Subspace extraSubspace = getSecondarySubspace();
         state.transaction.set(extraSubspace.pack(), directory.toProto().toByteArray());
+        updateDirectoryVersion();
     }
 
     @Nonnull
@@ -132,6 +170,16 @@ public class TimeWindowLeaderboardIndexMaintainer extends StandardIndexMaintaine
             return CompletableFuture.completedFuture(subdirectory);
         }
         final Subspace extraSubspace = getSecondarySubspace();
+        final byte[] version = directory.getCachedVersion();
+        final TimeWindowLeaderboardDirectoryCache cache = version == null ? null : getDirectoryCache();
+        if (cache != null) {
+            final TimeWindowLeaderboardProto.TimeWindowLeaderboardSubDirectory cached = cache.getSubDirectory(extraSubspace, version, group);
+            if (cached != null) {
+                final TimeWindowLeaderboardSubDirectory newsub = new TimeWindowLeaderboardSubDirectory(group, cached);
+                directory.addSubDirectory(newsub);
+                return CompletableFuture.completedFuture(newsub);
+            }
+        }
         return state.transaction.get(extraSubspace.pack(SUB_DIRECTORY_PREFIX.addAll(group))).thenApply(bytes -> {
             final TimeWindowLeaderboardSubDirectory newsub;
             if (bytes == null) {
@@ -145,6 +193,9 @@ public class TimeWindowLeaderboardIndexMaintainer extends StandardIndexMaintaine
                 }
                 newsub = new TimeWindowLeaderboardSubDirectory(group, builder.build());
             }
+            if (cache != null) {
+                cache.putSubDirectory(extraSubspace, version, group, newsub.toProto());
+            }
             directory.addSubDirectory(newsub);
             return newsub;
         });
@@ -153,6 +204,33 @@ public class TimeWindowLeaderboardIndexMaintainer extends StandardIndexMaintaine
     protected void saveSubDirectory(@Nonnull TimeWindowLeaderboardSubDirectory subdirectory) {
         final Subspace extraSubspace = getSecondarySubspace();
         state.transaction.set(extraSubspace.pack(SUB_DIRECTORY_PREFIX.addAll(subdirectory.getGroup())), subdirectory.toProto().toByteArray());
+        updateDirectoryVersion();
+    }
+
+    /**
+     * Get the cache of directories to use for this transaction, if any. The directory version key is only set
+     * when the transaction commits, so a transaction that has itself changed the directory cannot use the cache.
+     * @return the directory cache or {@code null} if the directory needs to be read from the database
+     */
+    @Nullable
+    private TimeWindowLeaderboardDirectoryCache getDirectoryCache() {
+        final TimeWindowLeaderboardDirectoryCache cache = state.context.getDatabase().getLeaderboardDirectoryCache();
+        if (cache == null || state.context.getInSession(getDirectoryChangedSessionName(), Boolean.class) != null) {
+            return null;
+        }
+        return cache;
+    }
+
+    private void updateDirectoryVersion() {
+        // The value is a placeholder for the commit versionstamp followed by its offset.
+        final byte[] value = new byte[FDBRecordVersion.GLOBAL_VERSION_LENGTH + Integer.BYTES];
+        state.context.addVersionMutation(MutationType.SET_VERSIONSTAMPED_VALUE, getSecondarySubspace().pack(DIRECTORY_VERSION_KEY), value);
+        state.context.putInSessionIfAbsent(getDirectoryChangedSessionName(), Boolean.TRUE);
+    }
+
+    @Nonnull
+    private String getDirectoryChangedSessionName() {
+        return "leaderboardDirectoryChanged$" + ByteArrayUtil2.toHexString(getSecondarySubspace().getKey());
     }
 
     @Nonnull
@@ -83,6 +83,12 @@
  * This does not conflict with leaderboards because <code>null</code> is not a valid leaderboard subspace key (they are automatically assigned integers).
  * </p>
  *
+ * <p>
+ * Whenever the directory or a sub-directory is saved, the key <code>["version"]</code> in the <em>secondary</em> index subspace is set to
+ * the versionstamp of the saving transaction. This allows a {@link com.apple.foundationdb.record.provider.foundationdb.leaderboard.TimeWindowLeaderboardDirectoryCache}
+ * to tell whether a cached directory is still current by reading only that key.
+ * </p>
+ *
  * <h3>Operations</h3>
  *
  * <b>Updating Time Windows</b>
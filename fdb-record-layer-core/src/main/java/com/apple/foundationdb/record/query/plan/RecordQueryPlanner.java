@@ -435,9 +435,14 @@ public class RecordQueryPlanner implements QueryPlanner {
         ScoredPlan withInAsOr = null;
         if (planContext.query.getSort() != null) {
             boolean canSort = inExtractor.setSort(planContext.query.getSort(), planContext.query.isSortReverse());
-            if (!canSort && getConfiguration().shouldAttemptFailedInJoinAsOr()) {
-                // Can't implement as an in join because of the sort order. Try as an OR instead.
-                withInAsOr = planFilter(planContext, normalizeAndOrForInAsOr(inExtractor.asOr()));
+            if (!canSort) {
+                // Can't implement as an in join because of the sort order. Try as an in union or an OR instead.
+                if (getConfiguration().shouldAttemptFailedInJoinAsUnion()) {
+                    withInAsOr = planFilterWithInUnion(planContext, new InExtractor(filter));
+                }
+                if (withInAsOr == null && getConfiguration().shouldAttemptFailedInJoinAsOr()) {
+                    withInAsOr = planFilter(planContext, normalizeAndOrForInAsOr(inExtractor.asOr()));
+                }
             }
         } else if (needOrdering) {
             inExtractor.sortByClauses();
@@ -453,7 +458,48 @@ public class RecordQueryPlanner implements QueryPlanner {
     }
 
     private ScoredPlan planFilterWithInJoin(@Nonnull PlanContext planContext, @Nonnull InExtractor inExtractor, boolean needOrdering) {
-        final QueryComponent filter = inExtractor.subFilter();
+        final ScoredPlan bestPlan = planFilterForInJoin(planContext, inExtractor.subFilter());
+        if (bestPlan != null) {
+            final RecordQueryPlan wrapped = inExtractor.wrap(planContext.rankComparisons.wrap(bestPlan.plan, bestPlan.includedRankComparisons, metaData));
+            ScoredPlan scoredPlan = new ScoredPlan(bestPlan.score, wrapped);
+            if (needOrdering) {
+                PlanOrderingKey planOrderingKey = PlanOrderingKey.forPlan(metaData, bestPlan.plan, planContext.commonPrimaryKey);
+                planOrderingKey = inExtractor.adjustOrdering(planOrderingKey);
+                scoredPlan.planOrderingKey = planOrderingKey;
+            }
+            return scoredPlan;
+        }
+        return null;
+    }
+
+    // Plan each of the values of the IN predicates separately and merge them by the requested sort.
+    // Within each value, the IN predicates are equalities, so their fields do not interfere with the sort.
+    @Nullable
+    private ScoredPlan planFilterWithInUnion(@Nonnull PlanContext planContext, @Nonnull InExtractor inExtractor) {
+        if (planContext.commonPrimaryKey == null ||
+                !inExtractor.valuesWithinLimit(getConfiguration().getAttemptFailedInJoinAsUnionMaxSize())) {
+            return null;
+        }
+        final ScoredPlan bestPlan = planFilterForInJoin(planContext, inExtractor.subFilter());
+        if (bestPlan == null) {
+            return null;
+        }
+        bestPlan.planOrderingKey = PlanOrderingKey.forPlan(metaData, bestPlan.plan, planContext.commonPrimaryKey);
+        if (bestPlan.planOrderingKey == null) {
+            return null;
+        }
+        final KeyExpression candidateKey = getKeyForMerge(planContext.query.getSort(), planContext.commonPrimaryKey);
+        final KeyExpression comparisonKey = PlanOrderingKey.mergedComparisonKey(Collections.singletonList(bestPlan), candidateKey, true);
+        if (comparisonKey == null) {
+            return null;
+        }
+        final RecordQueryPlan wrapped = inExtractor.wrapUnion(planContext.rankComparisons.wrap(bestPlan.plan, bestPlan.includedRankComparisons, metaData),
+                comparisonKey, planContext.query.isSortReverse(), getConfiguration().getAttemptFailedInJoinAsUnionMaxSize());
+        return new ScoredPlan(bestPlan.score, wrapped);
+    }
+
+    @Nullable
+    private ScoredPlan planFilterForInJoin(@Nonnull PlanContext planContext, @Nonnull QueryComponent filter) {
         planContext.rankComparisons = new RankComparisons(filter, planContext.indexes);
         List<ScoredPlan> intersectionCandidates = new ArrayList<>();
         ScoredPlan bestPlan = null;
@@ -479,16 +525,8 @@ public class RecordQueryPlanner implements QueryPlanner {
             if (bestPlan.getNumNonSargables() > 0) {
                 bestPlan = handleNonSargables(bestPlan, intersectionCandidates, planContext);
             }
-            final RecordQueryPlan wrapped = inExtractor.wrap(planContext.rankComparisons.wrap(bestPlan.plan, bestPlan.includedRankComparisons, metaData));
-            ScoredPlan scoredPlan = new ScoredPlan(bestPlan.score, wrapped);
-            if (needOrdering) {
-                PlanOrderingKey planOrderingKey = PlanOrderingKey.forPlan(metaData, bestPlan.plan, planContext.commonPrimaryKey);
-                planOrderingKey = inExtractor.adjustOrdering(planOrderingKey);
-                scoredPlan.planOrderingKey = planOrderingKey;
-            }
-            return scoredPlan;
         }
-        return null;
+        return bestPlan;
     }
 
     // Get the key expression for the index entries of the given index, which includes primary key fields for normal indexes.
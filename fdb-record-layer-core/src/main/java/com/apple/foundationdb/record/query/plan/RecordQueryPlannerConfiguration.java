@@ -33,6 +33,7 @@ public class RecordQueryPlannerConfiguration {
     @Nonnull
     private final QueryPlanner.IndexScanPreference indexScanPreference;
     private final boolean attemptFailedInJoinAsOr;
+    private final int attemptFailedInJoinAsUnionMaxSize;
     private final int complexityThreshold;
     private final boolean checkForDuplicateConditions;
     private final boolean deferFetchAfterUnionAndIntersection;
@@ -43,6 +44,7 @@ public class RecordQueryPlannerConfiguration {
 
     private RecordQueryPlannerConfiguration(@Nonnull QueryPlanner.IndexScanPreference indexScanPreference,
                                             boolean attemptFailedInJoinAsOr,
+                                            int attemptFailedInJoinAsUnionMaxSize,
                                             int complexityThreshold,
                                             boolean checkForDuplicateConditions,
                                             boolean deferFetchAfterUnionAndIntersection,
@@ -52,6 +54,7 @@ public class RecordQueryPlannerConfiguration {
                                             boolean useFullKeyForValueIndex) {
         this.indexScanPreference = indexScanPreference;
         this.attemptFailedInJoinAsOr = attemptFailedInJoinAsOr;
+        this.attemptFailedInJoinAsUnionMaxSize = attemptFailedInJoinAsUnionMaxSize;
         this.complexityThreshold = complexityThreshold;
         this.checkForDuplicateConditions = checkForDuplicateConditions;
         this.deferFetchAfterUnionAndIntersection = deferFetchAfterUnionAndIntersection;
@@ -85,6 +88,27 @@ public class RecordQueryPlannerConfiguration {
         return attemptFailedInJoinAsOr;
     }
 
+    /**
+     * Get whether the query planner should attempt to transform IN predicates that can't be implemented using a
+     * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryInJoinPlan} because of the requested sort into a
+     * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryInUnionPlan}, which merges the results for all
+     * of the values in order. This is attempted before {@linkplain #shouldAttemptFailedInJoinAsOr() transforming them into an OR}.
+     * @return whether the planner will transform IN predicates into in-unions when they can't be planned as in-joins
+     */
+    public boolean shouldAttemptFailedInJoinAsUnion() {
+        return attemptFailedInJoinAsUnionMaxSize > 0;
+    }
+
+    /**
+     * Get the maximum number of values in an IN list that is planned as a
+     * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryInUnionPlan}. Since a scan is open for each value
+     * at once, executing the plan with more values than this fails.
+     * @return the maximum number of values for an in-union, or 0 if in-unions are not planned (the default)
+     */
+    public int getAttemptFailedInJoinAsUnionMaxSize() {
+        return attemptFailedInJoinAsUnionMaxSize;
+    }
+
     /**
      * A limit on the complexity of the plans generated by the planner.
      * If the planner generates a query plan that exceeds this complexity, an exception will be thrown.
@@ -166,6 +190,7 @@ public class RecordQueryPlannerConfiguration {
         @Nonnull
         private QueryPlanner.IndexScanPreference indexScanPreference = QueryPlanner.IndexScanPreference.PREFER_SCAN;
         private boolean attemptFailedInJoinAsOr = false;
+        private int attemptFailedInJoinAsUnionMaxSize = 0;
         private int complexityThreshold = RecordQueryPlanner.DEFAULT_COMPLEXITY_THRESHOLD;
         private boolean checkForDuplicateConditions = false;
         private boolean deferFetchAfterUnionAndIntersection = false;
@@ -177,6 +202,7 @@ public class RecordQueryPlannerConfiguration {
         public Builder(@Nonnull RecordQueryPlannerConfiguration configuration) {
             this.indexScanPreference = configuration.indexScanPreference;
             this.attemptFailedInJoinAsOr = configuration.attemptFailedInJoinAsOr;
+            this.attemptFailedInJoinAsUnionMaxSize = configuration.attemptFailedInJoinAsUnionMaxSize;
             this.complexityThreshold = configuration.complexityThreshold;
             this.checkForDuplicateConditions = configuration.checkForDuplicateConditions;
             this.deferFetchAfterUnionAndIntersection = configuration.deferFetchAfterUnionAndIntersection;
@@ -199,6 +225,19 @@ public class RecordQueryPlannerConfiguration {
             return this;
         }
 
+        /**
+         * Set the maximum number of values in an IN list for the planner to attempt to plan it as an in-union when
+         * it can't be planned as an in-join because of the requested sort.
+         * Default value is 0, which means that in-unions are not planned.
+         * @param attemptFailedInJoinAsUnionMaxSize the maximum number of values for an in-union
+         * @return this builder
+         * @see RecordQueryPlannerConfiguration#shouldAttemptFailedInJoinAsUnion()
+         */
+        public Builder setAttemptFailedInJoinAsUnionMaxSize(final int attemptFailedInJoinAsUnionMaxSize) {
+            this.attemptFailedInJoinAsUnionMaxSize = attemptFailedInJoinAsUnionMaxSize;
+            return this;
+        }
+
         public Builder setComplexityThreshold(final int complexityThreshold) {
             this.complexityThreshold = complexityThreshold;
             return this;
@@ -254,7 +293,7 @@ public class RecordQueryPlannerConfiguration {
         }
 
         public RecordQueryPlannerConfiguration build() {
-            return new RecordQueryPlannerConfiguration(indexScanPreference, attemptFailedInJoinAsOr, complexityThreshold, checkForDuplicateConditions, deferFetchAfterUnionAndIntersection, optimizeForIndexFilters, maxTaskQueueSize, maxTotalTaskCount, useFullKeyForValueIndex);
+            return new RecordQueryPlannerConfiguration(indexScanPreference, attemptFailedInJoinAsOr, attemptFailedInJoinAsUnionMaxSize, complexityThreshold, checkForDuplicateConditions, deferFetchAfterUnionAndIntersection, optimizeForIndexFilters, maxTaskQueueSize, maxTotalTaskCount, useFullKeyForValueIndex);
         }
     }
 }
@@ -31,6 +31,7 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.cursors.MergeCursor;
 import com.apple.foundationdb.record.provider.foundationdb.cursors.MergeCursorState;
 import com.apple.foundationdb.record.provider.foundationdb.indexes.BitmapValueIndexMaintainer;
+import com.apple.foundationdb.record.provider.foundationdb.indexes.CompressedBitmap;
 import com.apple.foundationdb.tuple.Tuple;
 
 import javax.annotation.Nonnull;
@@ -56,7 +57,6 @@ class ComposedBitmapIndexCursor extends MergeCursor<IndexEntry, IndexEntry, Merg
     /**
      * Function for generating a bitmap from several others, all of the same size.
      */
-    @FunctionalInterface
     public interface Composer {
         /**
          * Generate a bitmap from several others.
@@ -66,6 +66,16 @@ class ComposedBitmapIndexCursor extends MergeCursor<IndexEntry, IndexEntry, Merg
          */
         @Nullable
         byte[] compose(@Nonnull List<byte[]> bitmaps, int size);
+
+        /**
+         * Generate a bitmap from several others, when at least one of them comes from an index whose entries are
+         * {@linkplain BitmapValueIndexMaintainer#isCompressed compressed}.
+         * @param bitmaps a list of bitmaps or {@code null} if the corresponding input is absent / empty
+         * @param size the common size of the bitmaps in bits
+         * @return a new bitmap formed from the inputs or {@code null} to represent an empty (all zero) bitmap
+         */
+        @Nullable
+        CompressedBitmap composeCompressed(@Nonnull List<CompressedBitmap> bitmaps, int size);
     }
 
     protected ComposedBitmapIndexCursor(@Nonnull List<MergeCursorState<IndexEntry>> cursorStates, @Nullable FDBStoreTimer timer, @Nonnull Composer composer) {
@@ -116,6 +126,11 @@ class ComposedBitmapIndexCursor extends MergeCursor<IndexEntry, IndexEntry, Merg
     @Nonnull
     @Override
     protected IndexEntry getNextResult(@Nonnull List<MergeCursorState<IndexEntry>> resultStates) {
+        for (MergeCursorState<IndexEntry> resultState : resultStates) {
+            if (BitmapValueIndexMaintainer.isCompressed(resultState.getResult().get().getIndex())) {
+                return getNextCompressedResult(resultStates);
+            }
+        }
         final List<MergeCursorState<IndexEntry>> cursorStates = getCursorStates();
         final IndexEntry firstEntry = resultStates.get(0).getResult().get();
         final int size = firstEntry.getValue().getBytes(0).length;
@@ -135,6 +150,46 @@ class ComposedBitmapIndexCursor extends MergeCursor<IndexEntry, IndexEntry, Merg
         return new IndexEntry(firstEntry.getIndex(), firstEntry.getKey(), Tuple.fromList(Collections.singletonList(composed)));
     }
 
+    // Some of the stored bitmaps are compressed, so compose them all in compressed form.
+    // A compressed bitmap has an exact size in bits, but an uncompressed one is padded out to a whole number of bytes,
+    // with the extra bits clear. So the size comes from the compressed bitmaps and the uncompressed ones are cut to it.
+    @Nonnull
+    private IndexEntry getNextCompressedResult(@Nonnull List<MergeCursorState<IndexEntry>> resultStates) {
+        final List<MergeCursorState<IndexEntry>> cursorStates = getCursorStates();
+        final IndexEntry firstEntry = resultStates.get(0).getResult().get();
+        int size = -1;
+        final List<CompressedBitmap> bitmaps = new ArrayList<>(cursorStates.size());
+        for (MergeCursorState<IndexEntry> cursorState : cursorStates) {
+            CompressedBitmap bitmap = null;
+            if (resultStates.contains(cursorState)) {
+                final IndexEntry indexEntry = cursorState.getResult().get();
+                if (BitmapValueIndexMaintainer.isCompressed(indexEntry.getIndex())) {
+                    bitmap = CompressedBitmap.deserialize(indexEntry.getValue().getBytes(0));
+                    if (size < 0) {
+                        size = bitmap.getSize();
+                    } else if (bitmap.getSize() != size) {
+                        throw new RecordCoreException("Index bitmaps are not all the same size");
+                    }
+                }
+            }
+            bitmaps.add(bitmap);
+        }
+        for (int i = 0; i < cursorStates.size(); i++) {
+            final MergeCursorState<IndexEntry> cursorState = cursorStates.get(i);
+            if (bitmaps.get(i) == null && resultStates.contains(cursorState)) {
+                final byte[] bytes = cursorState.getResult().get().getValue().getBytes(0);
+                if (bytes.length != (size + 7) / 8) {
+                    throw new RecordCoreException("Index bitmaps are not all the same size");
+                }
+                final CompressedBitmap bitmap = CompressedBitmap.fromBytes(bytes);
+                bitmaps.set(i, bitmap.getSize() == size ? bitmap : bitmap.subset(0, size));
+            }
+        }
+        final CompressedBitmap composed = composer.composeCompressed(bitmaps, size);
+        return new IndexEntry(firstEntry.getIndex(), firstEntry.getKey(),
+                Tuple.fromList(Collections.singletonList(composed == null ? null : composed.toBytes())));
+    }
+
     @Nonnull
     @Override
     protected NoNextReason mergeNoNextReasons() {
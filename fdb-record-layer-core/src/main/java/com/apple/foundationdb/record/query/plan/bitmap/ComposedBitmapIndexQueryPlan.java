@@ -31,6 +31,7 @@ import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.indexes.CompressedBitmap;
 import com.apple.foundationdb.record.query.plan.AvailableFields;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryCoveringIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
@@ -278,6 +279,12 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
             return bitmaps.get(position);
         }
 
+        @Nullable
+        @Override
+        public CompressedBitmap composeCompressed(@Nonnull List<CompressedBitmap> bitmaps, int size) {
+            return bitmaps.get(position);
+        }
+
         @Override
         public int planHash(@Nonnull final PlanHashKind hashKind) {
             switch (hashKind) {
@@ -341,6 +348,19 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
         @Nullable
         abstract byte[] operate(@Nonnull List<byte[]> operands, @Nonnull byte[] result);
 
+        @Nullable
+        @Override
+        public CompressedBitmap composeCompressed(@Nonnull List<CompressedBitmap> bitmaps, int size) {
+            final List<CompressedBitmap> operands = new ArrayList<>(children.size());
+            for (ComposerBase child : children) {
+                operands.add(child.composeCompressed(bitmaps, size));
+            }
+            return operateCompressed(operands);
+        }
+
+        @Nullable
+        abstract CompressedBitmap operateCompressed(@Nonnull List<CompressedBitmap> operands);
+
         @Override
         public int planHash(@Nonnull final PlanHashKind hashKind) {
             switch (hashKind) {
@@ -376,6 +396,7 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
     // The specific binary operators are mostly the same, except that AND bails out early on empty and they use a different
     // bit operator in the inner loop. There could be an abstract method for that operation, but it would be invoked
     // inside the loop, which seems to less the chances for the whole being compiled well.
+    // The compressed forms work on the containers directly, so sparse operands stay cheap to combine.
 
     static class AndComposer extends OperatorComposer {
         public AndComposer(@Nonnull List<ComposerBase> children) {
@@ -413,6 +434,22 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
             }
             return empty ? null : result;
         }
+
+        @Nullable
+        @Override
+        CompressedBitmap operateCompressed(@Nonnull List<CompressedBitmap> operands) {
+            CompressedBitmap result = null;
+            for (final CompressedBitmap operand : operands) {
+                if (operand == null) {
+                    return null;
+                }
+                result = result == null ? operand : result.and(operand);
+                if (result.isEmpty()) {
+                    return null;
+                }
+            }
+            return result;
+        }
     }
 
     static class OrComposer extends OperatorComposer {
@@ -451,6 +488,19 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
             }
             return empty ? null : result;
         }
+
+        @Nullable
+        @Override
+        CompressedBitmap operateCompressed(@Nonnull List<CompressedBitmap> operands) {
+            CompressedBitmap result = null;
+            for (final CompressedBitmap operand : operands) {
+                if (operand == null) {
+                    continue;
+                }
+                result = result == null ? operand : result.or(operand);
+            }
+            return result == null || result.isEmpty() ? null : result;
+        }
     }
 
     static class XorComposer extends OperatorComposer {
@@ -489,6 +539,19 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
             }
             return empty ? null : result;
         }
+
+        @Nullable
+        @Override
+        CompressedBitmap operateCompressed(@Nonnull List<CompressedBitmap> operands) {
+            CompressedBitmap result = null;
+            for (final CompressedBitmap operand : operands) {
+                if (operand == null) {
+                    continue;
+                }
+                result = result == null ? operand : result.xor(operand);
+            }
+            return result == null || result.isEmpty() ? null : result;
+        }
     }
 
     static class NotComposer extends ComposerBase {
@@ -522,6 +585,13 @@ public class ComposedBitmapIndexQueryPlan implements RecordQueryPlanWithNoChildr
             return result;
         }
 
+        @Nullable
+        @Override
+        public CompressedBitmap composeCompressed(@Nonnull List<CompressedBitmap> bitmaps, int size) {
+            final CompressedBitmap operand = child.composeCompressed(bitmaps, size);
+            return operand == null ? CompressedBitmap.empty(size).not() : operand.not();
+        }
+
         @Override
         public int planHash(@Nonnull final PlanHashKind hashKind) {
             switch (hashKind) {
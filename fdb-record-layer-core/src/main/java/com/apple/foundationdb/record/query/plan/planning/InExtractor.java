@@ -40,7 +40,10 @@ import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.plan.PlanOrderingKey;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryInParameterJoinPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInParameterUnionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInUnionPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryInValuesJoinPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInValuesUnionPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 
 import javax.annotation.Nonnull;
@@ -224,6 +227,43 @@ public class InExtractor {
         return plan;
     }
 
+    /**
+     * Wrap the given plan, which is planned for the {@linkplain #subFilter() filter with the IN predicates replaced},
+     * in {@link RecordQueryInUnionPlan}s, so that the results for all the values are merged in the order of the given
+     * plan.
+     * @param plan the plan to be executed for each combination of values
+     * @param comparisonKey a key by which the results of the plan are ordered and which includes the primary key
+     * @param reverse whether the plan returns results in descending order
+     * @param maxNumberOfValuesAllowed the maximum number of values in any one of the IN lists
+     * @return a plan that returns all the results in order
+     */
+    @Nonnull
+    public RecordQueryPlan wrapUnion(@Nonnull RecordQueryPlan plan, @Nonnull KeyExpression comparisonKey, boolean reverse,
+                                     int maxNumberOfValuesAllowed) {
+        for (int i = inClauses.size() - 1; i >= 0; i--) {
+            plan = inClauses.get(i).wrapUnion(plan, comparisonKey, reverse, maxNumberOfValuesAllowed);
+        }
+        return plan;
+    }
+
+    /**
+     * Get whether each of the IN lists given as literal values has no more than the given number of values.
+     * The size of a list bound to a parameter is not known until the plan is executed.
+     * @param maxNumberOfValuesAllowed the maximum number of values in any one of the IN lists
+     * @return {@code true} if no literal IN list is longer than the maximum
+     */
+    public boolean valuesWithinLimit(int maxNumberOfValuesAllowed) {
+        for (InClause inClause : inClauses) {
+            if (inClause instanceof InValuesClause) {
+                final List<Object> values = ((InValuesClause)inClause).values;
+                if (values != null && values.size() > maxNumberOfValuesAllowed) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Nullable
     public PlanOrderingKey adjustOrdering(@Nullable PlanOrderingKey ordering) {
         if (ordering == null || inClauses.isEmpty()) {
@@ -265,6 +305,9 @@ public class InExtractor {
         }
 
         protected abstract RecordQueryPlan wrap(RecordQueryPlan inner);
+
+        protected abstract RecordQueryPlan wrapUnion(RecordQueryPlan inner, KeyExpression comparisonKey, boolean reverse,
+                                                     int maxNumberOfValuesAllowed);
     }
 
     static class InValuesClause extends InClause {
@@ -280,6 +323,12 @@ public class InExtractor {
         protected RecordQueryPlan wrap(RecordQueryPlan inner) {
             return new RecordQueryInValuesJoinPlan(inner, bindingName, values, sortValues, sortReverse);
         }
+
+        @Override
+        protected RecordQueryPlan wrapUnion(RecordQueryPlan inner, KeyExpression comparisonKey, boolean reverse,
+                                            int maxNumberOfValuesAllowed) {
+            return new RecordQueryInValuesUnionPlan(inner, bindingName, values, comparisonKey, reverse, maxNumberOfValuesAllowed);
+        }
     }
 
     static class InParameterClause extends InClause {
@@ -295,5 +344,11 @@ public class InExtractor {
         protected RecordQueryPlan wrap(RecordQueryPlan inner) {
             return new RecordQueryInParameterJoinPlan(inner, bindingName, parameterName, sortValues, sortReverse);
         }
+
+        @Override
+        protected RecordQueryPlan wrapUnion(RecordQueryPlan inner, KeyExpression comparisonKey, boolean reverse,
+                                            int maxNumberOfValuesAllowed) {
+            return new RecordQueryInParameterUnionPlan(inner, bindingName, parameterName, comparisonKey, reverse, maxNumberOfValuesAllowed);
+        }
     }
 }
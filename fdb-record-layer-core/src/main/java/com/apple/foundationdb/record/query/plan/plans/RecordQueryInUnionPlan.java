@@ -0,0 +1,230 @@
+/*
+ * RecordQueryInUnionPlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.ObjectPlanHash;
+import com.apple.foundationdb.record.PlanHashable;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.UnionCursor;
+import com.apple.foundationdb.record.query.plan.temp.AliasMap;
+import com.apple.foundationdb.record.query.plan.temp.Quantifier;
+import com.apple.foundationdb.record.query.plan.temp.RelationalExpression;
+import com.apple.foundationdb.record.query.predicates.Value;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A query plan that executes a child plan once for each of the elements of some {@code IN} list, all at the same time,
+ * and merges the results by a comparison key. Unlike a {@link RecordQueryInJoinPlan}, which returns all the results
+ * for one value before those for the next, this preserves the order of the child plan across all the values. So,
+ * for example, {@code x IN (...) ORDER BY y} can be planned as one scan of an index on {@code x, y} for each value
+ * of {@code x}. The comparison key must include the primary key, so that records returned for more than one
+ * value are only returned once.
+ *
+ * <p>
+ * The continuation has the same form as that of a {@link RecordQueryUnionPlan}, with one child continuation
+ * for each value. Since every value has a scan open at once, the number of values is limited.
+ * </p>
+ */
+@API(API.Status.INTERNAL)
+public abstract class RecordQueryInUnionPlan implements RecordQueryPlanWithChild {
+    @Nonnull
+    protected final Quantifier.Physical inner;
+    @Nonnull
+    private final Supplier<List<? extends Value>> resultValuesSupplier;
+    @Nonnull
+    protected final String bindingName;
+    @Nonnull
+    protected final KeyExpression comparisonKey;
+    protected final boolean reverse;
+    protected final int maxNumberOfValuesAllowed;
+
+    protected RecordQueryInUnionPlan(@Nonnull final Quantifier.Physical inner,
+                                     @Nonnull final String bindingName,
+                                     @Nonnull final KeyExpression comparisonKey,
+                                     final boolean reverse,
+                                     final int maxNumberOfValuesAllowed) {
+        this.inner = inner;
+        this.bindingName = bindingName;
+        this.comparisonKey = comparisonKey;
+        this.reverse = reverse;
+        this.maxNumberOfValuesAllowed = maxNumberOfValuesAllowed;
+        this.resultValuesSupplier = Suppliers.memoize(inner::getFlowedValues);
+    }
+
+    @Nonnull
+    @Override
+    public <M extends Message> RecordCursor<FDBQueriedRecord<M>> execute(@Nonnull FDBRecordStoreBase<M> store,
+                                                                         @Nonnull EvaluationContext context,
+                                                                         @Nullable byte[] continuation,
+                                                                         @Nonnull ExecuteProperties executeProperties) {
+        final List<Object> values = getValues(context);
+        if (values == null || values.isEmpty()) {
+            return RecordCursor.empty(store.getExecutor());
+        }
+        if (values.size() > maxNumberOfValuesAllowed) {
+            throw new RecordCoreException("too many IN values for in union")
+                    .addLogInfo(LogMessageKeys.CHILD_COUNT, values.size());
+        }
+        // Can pass the limit down to all values, since that is the most we'll take total.
+        final ExecuteProperties childExecuteProperties = executeProperties.getSkip() > 0 ?
+                                                         executeProperties.clearSkipAndAdjustLimit() : executeProperties;
+        final RecordCursor<FDBQueriedRecord<M>> cursor;
+        if (values.size() == 1) {
+            cursor = getInnerPlan().execute(store, context.withBinding(bindingName, values.get(0)), continuation, childExecuteProperties);
+        } else {
+            final List<Function<byte[], RecordCursor<FDBQueriedRecord<M>>>> childCursorFunctions = new ArrayList<>(values.size());
+            for (Object value : values) {
+                final EvaluationContext childContext = context.withBinding(bindingName, value);
+                childCursorFunctions.add(childContinuation -> getInnerPlan().execute(store, childContext, childContinuation, childExecuteProperties));
+            }
+            cursor = UnionCursor.create(store, comparisonKey, reverse, childCursorFunctions, continuation);
+        }
+        return cursor.skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+    }
+
+    @Nonnull
+    public RecordQueryPlan getInnerPlan() {
+        return inner.getRangesOverPlan();
+    }
+
+    @Override
+    @Nonnull
+    public RecordQueryPlan getChild() {
+        return getInnerPlan();
+    }
+
+    @Nonnull
+    public String getBindingName() {
+        return bindingName;
+    }
+
+    @Nonnull
+    public KeyExpression getComparisonKey() {
+        return comparisonKey;
+    }
+
+    public int getMaxNumberOfValuesAllowed() {
+        return maxNumberOfValuesAllowed;
+    }
+
+    @Nonnull
+    @Override
+    public List<? extends Quantifier> getQuantifiers() {
+        return ImmutableList.of(inner);
+    }
+
+    @Override
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    @Nonnull
+    @Override
+    public List<? extends Value> getResultValues() {
+        return resultValuesSupplier.get();
+    }
+
+    @Override
+    public boolean equalsWithoutChildren(@Nonnull RelationalExpression otherExpression,
+                                         @Nonnull final AliasMap equivalencesMap) {
+        if (this == otherExpression) {
+            return true;
+        }
+        if (getClass() != otherExpression.getClass()) {
+            return false;
+        }
+        final RecordQueryInUnionPlan other = (RecordQueryInUnionPlan) otherExpression;
+        return bindingName.equals(other.bindingName) &&
+               comparisonKey.equals(other.comparisonKey) &&
+               reverse == other.reverse &&
+               maxNumberOfValuesAllowed == other.maxNumberOfValuesAllowed;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(final Object other) {
+        return structuralEquals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return structuralHashCode();
+    }
+
+    @Override
+    public int hashCodeWithoutChildren() {
+        return Objects.hash(bindingName, comparisonKey, reverse, maxNumberOfValuesAllowed);
+    }
+
+    /**
+     * Base implementation of {@link #planHash}.
+     * As with {@link RecordQueryInJoinPlan}, each concrete subclass implements its own version of {@link #planHash}
+     * so as to add its own class modifier.
+     * @param hashKind the plan hash kind to use
+     * @param baseHash the subclass' base hash (concrete identifier)
+     * @param hashables the rest of the subclass' hashable parameters (if any)
+     * @return the plan hash value calculated
+     */
+    protected int basePlanHash(@Nonnull final PlanHashKind hashKind, ObjectPlanHash baseHash, Object... hashables) {
+        switch (hashKind) {
+            case LEGACY:
+                return getInnerPlan().planHash(hashKind) + bindingName.hashCode() + comparisonKey.planHash(hashKind) + (reverse ? 1 : 0);
+            case FOR_CONTINUATION:
+            case STRUCTURAL_WITHOUT_LITERALS:
+                return PlanHashable.objectsPlanHash(hashKind, baseHash, getInnerPlan(), bindingName, comparisonKey, reverse, hashables);
+            default:
+                throw new UnsupportedOperationException("Hash kind " + hashKind.name() + " is not supported");
+        }
+    }
+
+    protected void appendUnionString(@Nonnull StringBuilder str) {
+        str.append(" UNION ").append(comparisonKey);
+        if (reverse) {
+            str.append(" DESC");
+        }
+    }
+
+    @Nullable
+    protected abstract List<Object> getValues(EvaluationContext context);
+
+    @Override
+    public int getComplexity() {
+        return 1 + getInnerPlan().getComplexity();
+    }
+}
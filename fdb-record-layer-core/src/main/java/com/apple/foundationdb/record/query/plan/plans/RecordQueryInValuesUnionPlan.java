@@ -0,0 +1,194 @@
+/*
+ * RecordQueryInValuesUnionPlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ObjectPlanHash;
+import com.apple.foundationdb.record.PlanHashable;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.query.plan.temp.AliasMap;
+import com.apple.foundationdb.record.query.plan.temp.CorrelationIdentifier;
+import com.apple.foundationdb.record.query.plan.temp.GroupExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.Quantifier;
+import com.apple.foundationdb.record.query.plan.temp.RelationalExpression;
+import com.apple.foundationdb.record.query.plan.temp.explain.Attribute;
+import com.apple.foundationdb.record.query.plan.temp.explain.NodeInfo;
+import com.apple.foundationdb.record.query.plan.temp.explain.PlannerGraph;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A query plan that executes a child plan for all of the elements of a constant {@code IN} list at once and merges the results.
+ */
+@API(API.Status.INTERNAL)
+@SuppressWarnings({"squid:S1206", "squid:S2160", "PMD.OverrideBothEqualsAndHashcode"})
+public class RecordQueryInValuesUnionPlan extends RecordQueryInUnionPlan {
+    private static final ObjectPlanHash BASE_HASH = new ObjectPlanHash("Record-Query-In-Values-Union-Plan");
+
+    @Nullable
+    private final List<Object> values;
+
+    public RecordQueryInValuesUnionPlan(final RecordQueryPlan plan,
+                                        final String bindingName,
+                                        final @Nullable List<Object> values,
+                                        final KeyExpression comparisonKey,
+                                        final boolean reverse,
+                                        final int maxNumberOfValuesAllowed) {
+        this(Quantifier.physical(GroupExpressionRef.of(plan)),
+                bindingName,
+                values,
+                comparisonKey,
+                reverse,
+                maxNumberOfValuesAllowed);
+    }
+
+    public RecordQueryInValuesUnionPlan(final Quantifier.Physical inner,
+                                        final String bindingName,
+                                        final @Nullable List<Object> values,
+                                        final KeyExpression comparisonKey,
+                                        final boolean reverse,
+                                        final int maxNumberOfValuesAllowed) {
+        super(inner, bindingName, comparisonKey, reverse, maxNumberOfValuesAllowed);
+        this.values = values;
+    }
+
+    @Override
+    @Nullable
+    protected List<Object> getValues(EvaluationContext context) {
+        return getInListValues();
+    }
+
+    @Nullable
+    public List<Object> getInListValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder(getInnerPlan().toString());
+        str.append(" WHERE ").append(bindingName)
+                .append(" IN ").append(values);
+        appendUnionString(str);
+        return str.toString();
+    }
+
+    @Nonnull
+    @Override
+    public Set<CorrelationIdentifier> getCorrelatedToWithoutChildren() {
+        return ImmutableSet.of();
+    }
+
+    @Nonnull
+    @Override
+    public RecordQueryInValuesUnionPlan rebaseWithRebasedQuantifiers(@Nonnull final AliasMap translationMap,
+                                                                     @Nonnull final List<Quantifier> rebasedQuantifiers) {
+        return new RecordQueryInValuesUnionPlan(Iterables.getOnlyElement(rebasedQuantifiers).narrow(Quantifier.Physical.class),
+                bindingName,
+                values,
+                comparisonKey,
+                reverse,
+                maxNumberOfValuesAllowed);
+    }
+
+    @Nonnull
+    @Override
+    public RecordQueryPlanWithChild withChild(@Nonnull final RecordQueryPlan child) {
+        return new RecordQueryInValuesUnionPlan(child, bindingName, values, comparisonKey, reverse, maxNumberOfValuesAllowed);
+    }
+
+    @Override
+    public boolean equalsWithoutChildren(@Nonnull RelationalExpression otherExpression,
+                                         @Nonnull final AliasMap equivalencesMap) {
+        if (this == otherExpression) {
+            return true;
+        }
+        return super.equalsWithoutChildren(otherExpression, equivalencesMap) &&
+               Objects.equals(values, ((RecordQueryInValuesUnionPlan)otherExpression).values);
+    }
+
+    @Override
+    public int hashCodeWithoutChildren() {
+        return Objects.hash(super.hashCodeWithoutChildren(), values);
+    }
+
+    @Override
+    public int planHash(@Nonnull final PlanHashKind hashKind) {
+        switch (hashKind) {
+            case LEGACY:
+                return super.basePlanHash(hashKind, BASE_HASH) + PlanHashable.iterablePlanHash(hashKind, values);
+            case FOR_CONTINUATION:
+                return super.basePlanHash(hashKind, BASE_HASH, values);
+            case STRUCTURAL_WITHOUT_LITERALS:
+                return super.basePlanHash(hashKind, BASE_HASH);
+            default:
+                throw new UnsupportedOperationException("Hash kind " + hashKind.name() + " not supported");
+        }
+    }
+
+    @Override
+    public void logPlanStructure(StoreTimer timer) {
+        timer.increment(FDBStoreTimer.Counts.PLAN_IN_UNION);
+        getChild().logPlanStructure(timer);
+    }
+
+    /**
+     * Rewrite the planner graph for better visualization of a query index plan.
+     * @param childGraphs planner graphs of children expression that already have been computed
+     * @return the rewritten planner graph that models this operator as an ordered union of the correlated inner
+     *         result of executing (usually) an index lookup for each of the values in the IN clause.
+     */
+    @Nonnull
+    @Override
+    public PlannerGraph rewritePlannerGraph(@Nonnull List<? extends PlannerGraph> childGraphs) {
+        final PlannerGraph.Node root =
+                new PlannerGraph.OperatorNodeWithInfo(this,
+                        NodeInfo.UNION_OPERATOR,
+                        ImmutableList.of("COMPARE BY {{comparisonKey}}"),
+                        ImmutableMap.of("comparisonKey", Attribute.gml(comparisonKey.toString())));
+        final PlannerGraph graphForInner = Iterables.getOnlyElement(childGraphs);
+        final PlannerGraph.DataNodeWithInfo valuesNode =
+                new PlannerGraph.DataNodeWithInfo(NodeInfo.VALUES_DATA,
+                        ImmutableList.of("VALUES({{values}}"),
+                        ImmutableMap.of("values",
+                                Attribute.gml(Objects.requireNonNull(values).stream()
+                                        .map(String::valueOf)
+                                        .map(Attribute::gml)
+                                        .collect(ImmutableList.toImmutableList()))));
+        final PlannerGraph.Edge fromValuesEdge = new PlannerGraph.Edge();
+        return PlannerGraph.builder(root)
+                .addGraph(graphForInner)
+                .addNode(valuesNode)
+                .addEdge(valuesNode, root, fromValuesEdge)
+                .addEdge(graphForInner.getRoot(), root, new PlannerGraph.Edge(ImmutableSet.of(fromValuesEdge)))
+                .build();
+    }
+}
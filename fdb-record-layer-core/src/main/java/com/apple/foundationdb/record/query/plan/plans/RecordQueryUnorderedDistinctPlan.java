@@ -26,7 +26,6 @@ import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.ObjectPlanHash;
 import com.apple.foundationdb.record.PlanHashable;
 import com.apple.foundationdb.record.RecordCursor;
-import com.apple.foundationdb.record.metadata.Key;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
@@ -53,7 +52,6 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -100,10 +98,9 @@ public class RecordQueryUnorderedDistinctPlan implements RecordQueryPlanWithChil
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final Set<Key.Evaluated> seen = new HashSet<>();
-        return getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit())
-            .filterInstrumented(record -> seen.add(getComparisonKey().evaluateSingleton(record)),
-                store.getTimer(), Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts)
+        return RecordQueryUnorderedPrimaryKeyDistinctPlan.filterDistinct(
+                getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit()),
+                this::getPackedComparisonKey, executeProperties, store.getTimer(), duringEvents, uniqueCounts, duplicateCounts)
             .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
     }
 
@@ -128,6 +125,11 @@ public class RecordQueryUnorderedDistinctPlan implements RecordQueryPlanWithChil
         return comparisonKey;
     }
 
+    @Nonnull
+    private <M extends Message> byte[] getPackedComparisonKey(@Nonnull FDBQueriedRecord<M> record) {
+        return getComparisonKey().evaluateSingleton(record).toTuple().pack();
+    }
+
     @Nonnull
     @Override
     public List<? extends Quantifier> getQuantifiers() {
@@ -26,6 +26,8 @@ import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.ObjectPlanHash;
 import com.apple.foundationdb.record.PlanHashable;
 import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.ScanLimitReachedException;
+import com.apple.foundationdb.record.cursors.MapWhileCursor;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
@@ -38,26 +40,29 @@ import com.apple.foundationdb.record.query.plan.temp.RelationalExpression;
 import com.apple.foundationdb.record.query.plan.temp.explain.NodeInfo;
 import com.apple.foundationdb.record.query.plan.temp.explain.PlannerGraph;
 import com.apple.foundationdb.record.query.predicates.Value;
-import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.record.util.PackedKeySet;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.protobuf.Message;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * A query plan that removes duplicates by means of a hash table of primary keys already seen.
+ * The table holds the packed keys compactly and its size can be limited with {@link ExecuteProperties#getDistinctMemoryLimit()}.
  */
 @API(API.Status.INTERNAL)
 public class RecordQueryUnorderedPrimaryKeyDistinctPlan implements RecordQueryPlanWithChild {
@@ -92,13 +97,54 @@ public class RecordQueryUnorderedPrimaryKeyDistinctPlan implements RecordQueryPl
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final Set<Tuple> seen = new HashSet<>();
-        return getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit())
-            .filterInstrumented(record -> seen.add(record.getPrimaryKey()), store.getTimer(),
-                Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts)
+        return filterDistinct(getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit()),
+                record -> record.getPrimaryKey().pack(), executeProperties, store.getTimer(), duringEvents, uniqueCounts, duplicateCounts)
             .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
     }
 
+    /**
+     * Remove records whose key has already been seen from the given cursor. If there is a
+     * {@linkplain ExecuteProperties#getDistinctMemoryLimit() distinct memory limit}, the cursor stops before the
+     * record whose key would make the set of keys already seen exceed it.
+     * @param cursor the cursor of records, some of which may be duplicates
+     * @param keyFunction a function returning the packed key of a record
+     * @param executeProperties the execute properties with the limit
+     * @param timer the timer to instrument the filter or {@code null}
+     * @param duringEvents the events to time while filtering
+     * @param uniqueCounts the counts to increment for a record with a new key
+     * @param duplicateCounts the counts to increment for a record with a key already seen
+     * @param <T> the type of record
+     * @return a cursor of records with distinct keys
+     */
+    @Nonnull
+    static <T> RecordCursor<T> filterDistinct(@Nonnull RecordCursor<T> cursor,
+                                              @Nonnull Function<T, byte[]> keyFunction,
+                                              @Nonnull ExecuteProperties executeProperties,
+                                              @Nullable StoreTimer timer,
+                                              @Nonnull Set<StoreTimer.Event> duringEvents,
+                                              @Nonnull Set<StoreTimer.Count> uniqueCounts,
+                                              @Nonnull Set<StoreTimer.Count> duplicateCounts) {
+        final PackedKeySet seen = new PackedKeySet(executeProperties.getDistinctMemoryLimit());
+        if (executeProperties.getDistinctMemoryLimit() == ExecuteProperties.UNLIMITED_DISTINCT_MEMORY) {
+            return cursor.filterInstrumented(record -> seen.add(keyFunction.apply(record)),
+                    timer, Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts);
+        }
+        // Keep each record's key with it, so that it is only packed once for both the limit check and the set.
+        return new MapWhileCursor<>(cursor, record -> {
+            final byte[] key = keyFunction.apply(record);
+            if (seen.hasRoomFor(key)) {
+                return Optional.of(Pair.of(record, key));
+            }
+            if (executeProperties.isFailOnScanLimitReached()) {
+                throw new ScanLimitReachedException("distinct memory limit reached");
+            }
+            return Optional.<Pair<T, byte[]>>empty();
+        }, MapWhileCursor.StopContinuation.BEFORE, null, RecordCursor.NoNextReason.SCAN_LIMIT_REACHED)
+            .filterInstrumented(recordAndKey -> seen.add(recordAndKey.getRight()),
+                timer, Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts)
+            .map(Pair::getLeft);
+    }
+
     @Override
     public boolean isReverse() {
         return getInner().isReverse();
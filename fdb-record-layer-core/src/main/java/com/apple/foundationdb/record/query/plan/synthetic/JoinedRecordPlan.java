@@ -20,6 +20,7 @@
 
 package com.apple.foundationdb.record.query.plan.synthetic;
 
+import com.apple.foundationdb.async.AsyncUtil;
 import com.apple.foundationdb.record.EvaluationContext;
 import com.apple.foundationdb.record.EvaluationContextBuilder;
 import com.apple.foundationdb.record.ExecuteProperties;
@@ -37,12 +38,15 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoredRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBSyntheticRecord;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.tuple.Tuple;
 import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,6 +59,13 @@ import java.util.stream.Collectors;
  * by executing a stack of queries for the nesting of joins that define the synthetic record type. Each nested query generates another cursor of stored
  * records using parameters bound to the join key fields of outer cursors' stored records.
  *
+ * <p>
+ * When {@linkplain #executeAll executed to completion}, a nested query with a single join condition is instead run once for a
+ * batch of outer records, with all their join key values as an {@code IN} list, and its records are matched back to the outer
+ * records by hashing the join key values. So each join runs one query per {@value #MAX_BATCH_SIZE} outer records rather than
+ * one per outer record. As many batches, and as many queries for outer records with a {@code null} join key, run at once as
+ * the store's pipeline size for {@link PipelineOperation#SYNTHETIC_RECORD_JOIN}.
+ * </p>
  */
 class JoinedRecordPlan implements SyntheticRecordFromStoredRecordPlan  {
     private static final ObjectPlanHash BASE_HASH = new ObjectPlanHash("Joined-Record-Plan");
@@ -65,6 +76,13 @@ class JoinedRecordPlan implements SyntheticRecordFromStoredRecordPlan  {
     private final List<JoinedType> joinedTypes;
     @Nonnull
     private final List<RecordQueryPlan> queries;
+    @Nonnull
+    private final List<BatchedQuery> batchedQueries;
+
+    /**
+     * The maximum number of outer records whose join key values are looked up with a single batched query.
+     */
+    static final int MAX_BATCH_SIZE = 100;
 
     protected static class JoinedType implements PlanHashable {
         private static final ObjectPlanHash BASE_HASH = new ObjectPlanHash("Joined-Type");
@@ -194,7 +212,59 @@ class JoinedRecordPlan implements SyntheticRecordFromStoredRecordPlan  {
         }
     }
 
+    /**
+     * A query for the records that join with any of a batch of outer records.
+     * Its only parameter is the {@code IN} list of all the join key values of the batch, and the {@code expression}
+     * evaluates the join key of each of its records, so that they can be matched with the outer records.
+     */
+    protected static class BatchedQuery {
+        @Nonnull
+        protected final RecordQueryPlan query;
+        @Nonnull
+        protected final String bindingName;
+        protected final boolean singleton;
+        @Nonnull
+        protected final KeyExpression expression;
+
+        public BatchedQuery(@Nonnull RecordQueryPlan query, @Nonnull String bindingName, boolean singleton, @Nonnull KeyExpression expression) {
+            this.query = query;
+            this.bindingName = bindingName;
+            this.singleton = singleton;
+            this.expression = expression;
+        }
+
+        @Override
+        public String toString() {
+            return query + " [" + bindingName + ":" + expression + "]";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BatchedQuery that = (BatchedQuery)o;
+            return singleton == that.singleton &&
+                   Objects.equals(query, that.query) &&
+                   Objects.equals(bindingName, that.bindingName) &&
+                   Objects.equals(expression, that.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, bindingName, singleton, expression);
+        }
+    }
+
     public JoinedRecordPlan(@Nonnull JoinedRecordType joinedRecordType, @Nonnull List<JoinedType> joinedTypes, @Nonnull List<RecordQueryPlan> queries) {
+        this(joinedRecordType, joinedTypes, queries, Collections.nCopies(queries.size(), null));
+    }
+
+    public JoinedRecordPlan(@Nonnull JoinedRecordType joinedRecordType, @Nonnull List<JoinedType> joinedTypes, @Nonnull List<RecordQueryPlan> queries,
+                            @Nonnull List<BatchedQuery> batchedQueries) {
         if (joinedTypes.size() != joinedRecordType.getConstituents().size()) {
             throw new RecordCoreArgumentException("should join all constituents");
         }
@@ -206,10 +276,14 @@ class JoinedRecordPlan implements SyntheticRecordFromStoredRecordPlan  {
         if (queries.size() != joinedTypes.size() - 1) {
             throw new RecordCoreArgumentException("should have one query for each join");
         }
+        if (batchedQueries.size() != queries.size()) {
+            throw new RecordCoreArgumentException("should have one batched query or null for each join");
+        }
 
         this.joinedRecordType = joinedRecordType;
         this.joinedTypes = joinedTypes;
         this.queries = queries;
+        this.batchedQueries = batchedQueries;
     }
 
     @Override
@@ -268,6 +342,114 @@ class JoinedRecordPlan implements SyntheticRecordFromStoredRecordPlan  {
         }
     }
 
+    @Override
+    @Nonnull
+    public <M extends Message> CompletableFuture<List<FDBSyntheticRecord>> executeAll(@Nonnull FDBRecordStore store,
+                                                                                      @Nonnull FDBStoredRecord<M> record) {
+        final EvaluationContext context = joinedTypes.get(0).bind(EvaluationContext.EMPTY, record);
+        final int pipelineSize = store.getPipelineSize(PipelineOperation.SYNTHETIC_RECORD_JOIN);
+        CompletableFuture<List<EvaluationContext>> joinedContexts = query(0, store, context, null, ExecuteProperties.SERIAL_EXECUTE).asList();
+        for (int i = 1; i < queries.size(); i++) {
+            final int depth = i;
+            joinedContexts = joinedContexts.thenCompose(outerContexts -> {
+                final List<List<EvaluationContext>> batches = new ArrayList<>();
+                for (int start = 0; start < outerContexts.size(); start += MAX_BATCH_SIZE) {
+                    batches.add(outerContexts.subList(start, Math.min(start + MAX_BATCH_SIZE, outerContexts.size())));
+                }
+                return RecordCursor.fromList(store.getExecutor(), batches)
+                        .mapPipelined(batch -> queryBatch(depth, pipelineSize, store, batch), pipelineSize)
+                        .asList();
+            }).thenApply(batches -> batches.stream().flatMap(List::stream).collect(Collectors.toList()));
+        }
+        return joinedContexts.thenApply(contexts -> contexts.stream().map(this::toSyntheticRecord).collect(Collectors.toList()));
+    }
+
+    private CompletableFuture<List<EvaluationContext>> queryBatch(int depth, int pipelineSize, @Nonnull FDBRecordStore store,
+                                                                  @Nonnull List<EvaluationContext> outerContexts) {
+        final BatchedQuery batchedQuery = batchedQueries.get(depth);
+        if (batchedQuery == null || outerContexts.size() == 1) {
+            return RecordCursor.flatMapPipelined(
+                    outerContinuation -> RecordCursor.fromList(store.getExecutor(), outerContexts, outerContinuation),
+                    (outerContext, innerContinuation) -> query(depth, store, outerContext, innerContinuation, ExecuteProperties.SERIAL_EXECUTE),
+                    null, pipelineSize).asList();
+        }
+        final List<Integer> unbatchedPositions = new ArrayList<>();
+        // For each join key value, the positions of the outer contexts that bound it.
+        final Map<Tuple, List<Integer>> positionsByKey = new HashMap<>();
+        final List<Object> values = new ArrayList<>();
+        for (int i = 0; i < outerContexts.size(); i++) {
+            final Object binding = outerContexts.get(i).getBinding(batchedQuery.bindingName);
+            final List<?> boundValues = batchedQuery.singleton ? Collections.singletonList(binding) : (List<?>)binding;
+            if (boundValues.contains(null)) {
+                // A null join key is left to the query to compare, just as when not batched.
+                unbatchedPositions.add(i);
+                continue;
+            }
+            for (Object value : boundValues) {
+                final List<Integer> positions = positionsByKey.computeIfAbsent(Key.Evaluated.scalar(value).toTuple(), k -> {
+                    values.add(value);
+                    return new ArrayList<>();
+                });
+                if (positions.isEmpty() || positions.get(positions.size() - 1) != i) {
+                    positions.add(i);
+                }
+            }
+        }
+        final List<List<FDBStoredRecord<Message>>> matches = new ArrayList<>(outerContexts.size());
+        for (int i = 0; i < outerContexts.size(); i++) {
+            matches.add(new ArrayList<>());
+        }
+        final CompletableFuture<Void> batchFuture;
+        if (values.isEmpty()) {
+            batchFuture = AsyncUtil.DONE;
+        } else {
+            final Set<Tuple> seen = new HashSet<>();
+            batchFuture = batchedQuery.query.execute(store, EvaluationContext.forBinding(batchedQuery.bindingName, values)).forEach(queriedRecord -> {
+                final FDBStoredRecord<Message> storedRecord = queriedRecord.getStoredRecord();
+                if (!seen.add(storedRecord.getPrimaryKey())) {
+                    return;
+                }
+                final Set<Integer> matched = new HashSet<>();
+                for (Key.Evaluated evaluated : batchedQuery.expression.evaluate(storedRecord)) {
+                    final List<Integer> positions = positionsByKey.get(Key.Evaluated.scalar(BindingPlan.toValue(evaluated)).toTuple());
+                    if (positions != null) {
+                        for (Integer position : positions) {
+                            if (matched.add(position)) {
+                                matches.get(position).add(storedRecord);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        final CompletableFuture<List<List<EvaluationContext>>> unbatchedFuture = RecordCursor.fromList(store.getExecutor(), unbatchedPositions)
+                .mapPipelined(i -> query(depth, store, outerContexts.get(i), null, ExecuteProperties.SERIAL_EXECUTE).asList(), pipelineSize)
+                .asList();
+        final JoinedType joinedType = joinedTypes.get(depth + 1);
+        return batchFuture.thenCombine(unbatchedFuture, (vignore, unbatchedContexts) -> {
+                    final List<List<EvaluationContext>> unbatchedResults = new ArrayList<>(Collections.nCopies(outerContexts.size(), null));
+                    for (int j = 0; j < unbatchedPositions.size(); j++) {
+                        unbatchedResults.set(unbatchedPositions.get(j), unbatchedContexts.get(j));
+                    }
+                    final List<EvaluationContext> joinedContexts = new ArrayList<>();
+                    for (int i = 0; i < outerContexts.size(); i++) {
+                        final EvaluationContext outerContext = outerContexts.get(i);
+                        if (unbatchedResults.get(i) != null) {
+                            joinedContexts.addAll(unbatchedResults.get(i));
+                        } else if (matches.get(i).isEmpty()) {
+                            if (joinedType.constituent.isOuterJoined()) {
+                                joinedContexts.add(joinedType.bind(outerContext, null));
+                            }
+                        } else {
+                            for (FDBStoredRecord<Message> storedRecord : matches.get(i)) {
+                                joinedContexts.add(joinedType.bind(outerContext, storedRecord));
+                            }
+                        }
+                    }
+                    return joinedContexts;
+                });
+    }
+
     private FDBSyntheticRecord toSyntheticRecord(@Nonnull EvaluationContext context) {
         final Map<String, FDBStoredRecord<? extends Message>> records = new HashMap<>();
         for (JoinedRecordType.JoinConstituent joinConstituent : joinedRecordType.getConstituents()) {
@@ -308,12 +490,13 @@ class JoinedRecordPlan implements SyntheticRecordFromStoredRecordPlan  {
         JoinedRecordPlan that = (JoinedRecordPlan)o;
         return Objects.equals(joinedRecordType, that.joinedRecordType) &&
                Objects.equals(joinedTypes, that.joinedTypes) &&
-               Objects.equals(queries, that.queries);
+               Objects.equals(queries, that.queries) &&
+               Objects.equals(batchedQueries, that.batchedQueries);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(joinedRecordType, joinedTypes, queries);
+        return Objects.hash(joinedRecordType, joinedTypes, queries, batchedQueries);
     }
 
     @Override
@@ -37,6 +37,7 @@ import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -70,6 +71,8 @@ class JoinedRecordPlanner {
     private final List<JoinedRecordPlan.JoinedType> joinedTypes;
     @Nonnull
     private final List<RecordQueryPlan> queries;
+    @Nonnull
+    private final List<JoinedRecordPlan.BatchedQuery> batchedQueries;
 
     private int bindingCounter;
 
@@ -132,6 +135,7 @@ class JoinedRecordPlanner {
 
         joinedTypes = new ArrayList<>(pendingTypes.size());
         queries = new ArrayList<>(pendingTypes.size() - 1);
+        batchedQueries = new ArrayList<>(pendingTypes.size() - 1);
     }
 
     @Nonnull
@@ -167,6 +171,8 @@ class JoinedRecordPlanner {
                         .orElseGet(() -> pendingTypes.stream().max(Comparator.comparing(PendingType::countJoinsBound))
                                 .orElseThrow(() -> new RecordCoreException("did not find any pending types")));
             }
+            // The first query is only ever run for a single record, so there is nothing to batch.
+            batchedQueries.add(queries.isEmpty() ? null : planBatchedQuery(pendingType));
             queries.add(queryPlanner.plan(buildQuery(pendingType)));
             bindAndRemove(pendingType);
         }
@@ -174,7 +180,7 @@ class JoinedRecordPlanner {
             // pendingJoins are removed by buildQuery as both sides become bound, so the plan must be incomplete.
             throw new RecordCoreException("did not perform all joins");
         }
-        return new JoinedRecordPlan(joinedRecordType, joinedTypes, queries);
+        return new JoinedRecordPlan(joinedRecordType, joinedTypes, queries, batchedQueries);
     }
 
     private void bindAndRemove(@Nonnull PendingType pendingType) {
@@ -201,6 +207,31 @@ class JoinedRecordPlanner {
         pendingTypes.remove(pendingType);
     }
 
+    // When the type is joined to the already bound ones by a single condition, a query with that condition as an IN
+    // can get the records for any number of outer records at once.
+    @Nullable
+    private JoinedRecordPlan.BatchedQuery planBatchedQuery(@Nonnull PendingType pendingType) {
+        PendingJoin boundJoin = null;
+        for (PendingJoin pendingJoin : pendingType.pendingJoins) {
+            if (pendingJoins.contains(pendingJoin) && pendingType.isJoinBound(pendingJoin)) {
+                if (boundJoin != null) {
+                    return null;
+                }
+                boundJoin = pendingJoin;
+            }
+        }
+        if (boundJoin == null) {
+            return null;
+        }
+        final KeyExpression expression = boundJoin.pendingLeft == pendingType ? boundJoin.join.getLeftExpression() : boundJoin.join.getRightExpression();
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType(pendingType.joinConstituent.getRecordType().getName())
+                .setFilter(buildCondition(expression, new Comparisons.ParameterComparison(Comparisons.Type.IN, boundJoin.bindingName)))
+                .setRemoveDuplicates(true)
+                .build();
+        return new JoinedRecordPlan.BatchedQuery(queryPlanner.plan(query), boundJoin.bindingName, boundJoin.singleton, expression);
+    }
+
     @Nonnull
     private RecordQuery buildQuery(@Nonnull PendingType pendingType) {
         final List<QueryComponent> conditions = new ArrayList<>();
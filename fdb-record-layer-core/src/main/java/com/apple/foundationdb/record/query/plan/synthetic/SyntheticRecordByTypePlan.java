@@ -31,10 +31,13 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Select a synthetic record sub-plan based on the record type of the given record and then execute
@@ -83,6 +86,18 @@ class SyntheticRecordByTypePlan implements SyntheticRecordFromStoredRecordPlan
         }
     }
 
+    @Override
+    @Nonnull
+    public <M extends Message> CompletableFuture<List<FDBSyntheticRecord>> executeAll(@Nonnull FDBRecordStore store,
+                                                                                      @Nonnull FDBStoredRecord<M> record) {
+        final SyntheticRecordFromStoredRecordPlan subPlan = subPlans.get(record.getRecordType().getName());
+        if (subPlan == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        } else {
+            return subPlan.executeAll(store, record);
+        }
+    }
+
     @Override
     public String toString() {
         return subPlans.toString();
@@ -20,6 +20,7 @@
 
 package com.apple.foundationdb.record.query.plan.synthetic;
 
+import com.apple.foundationdb.async.AsyncUtil;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.ObjectPlanHash;
 import com.apple.foundationdb.record.PipelineOperation;
@@ -33,10 +34,12 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -98,6 +101,28 @@ class SyntheticRecordConcatPlan implements SyntheticRecordFromStoredRecordPlan
         return cursor;
     }
 
+    @Override
+    @Nonnull
+    public <M extends Message> CompletableFuture<List<FDBSyntheticRecord>> executeAll(@Nonnull FDBRecordStore store,
+                                                                                      @Nonnull FDBStoredRecord<M> record) {
+        final List<CompletableFuture<List<FDBSyntheticRecord>>> subResults = new ArrayList<>(subPlans.size());
+        for (SyntheticRecordFromStoredRecordPlan subPlan : subPlans) {
+            subResults.add(subPlan.executeAll(store, record));
+        }
+        return AsyncUtil.getAll(subResults).thenApply(results -> {
+            final List<FDBSyntheticRecord> syntheticRecords = new ArrayList<>();
+            final Set<Tuple> seen = new HashSet<>();
+            for (List<FDBSyntheticRecord> result : results) {
+                for (FDBSyntheticRecord syntheticRecord : result) {
+                    if (!needDistinct || seen.add(syntheticRecord.getPrimaryKey())) {
+                        syntheticRecords.add(syntheticRecord);
+                    }
+                }
+            }
+            return syntheticRecords;
+        });
+    }
+
     public static RecordCursor<FDBSyntheticRecord> addDistinct(RecordCursor<FDBSyntheticRecord> cursor) {
         final Set<Tuple> seen = new HashSet<>();
         return cursor.filter(r -> seen.add(r.getPrimaryKey()));
@@ -31,7 +31,9 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A plan for deriving synthetic records from a given record.
@@ -88,4 +90,20 @@ public interface SyntheticRecordFromStoredRecordPlan extends PlanHashable  {
         return execute(store, record, null, ExecuteProperties.SERIAL_EXECUTE);
     }
 
+    /**
+     * Execute this plan to completion, such as to maintain the indexes on the synthetic records.
+     *
+     * Since the results cannot be resumed from a continuation, an implementation is free to execute differently
+     * than {@link #execute}, such as by combining the join queries for several records into one.
+     * @param store record store against which to execute
+     * @param record the stored record from which to derive synthetic records, such as by join queries
+     * @param <M> type of raw record
+     * @return a future that completes to all the synthetic records
+     */
+    @Nonnull
+    default <M extends Message> CompletableFuture<List<FDBSyntheticRecord>> executeAll(@Nonnull FDBRecordStore store,
+                                                                                       @Nonnull FDBStoredRecord<M> record) {
+        return execute(store, record).asList();
+    }
+
 }
@@ -0,0 +1,255 @@
+/*
+ * PackedKeySet.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.util;
+
+import com.apple.foundationdb.annotation.API;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * A set of byte arrays, such as packed tuples, that uses much less memory than a {@code HashSet<Tuple>}.
+ *
+ * <p>
+ * The keys are copied one after another into a single byte array, each preceded by its length. An open-addressing
+ * hash table of {@code long}s holds the hash and offset of each key. So the cost of each key is its length plus a
+ * couple of bytes, plus 8 to 16 bytes in the table, rather than several objects per key and per tuple element.
+ * </p>
+ *
+ * <p>
+ * The set can be given a limit on its {@linkplain #getMemoryUsage() memory usage}. Since keys cannot be removed,
+ * once adding a key would exceed that limit, {@link #hasRoomFor} returns {@code false} and it is up to the caller
+ * to stop adding. An empty set always has room for one key.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+@API(API.Status.INTERNAL)
+public class PackedKeySet {
+    /**
+     * A constant representing that the set's memory usage is not limited.
+     */
+    public static final long UNLIMITED_MEMORY = 0L;
+
+    private static final int INITIAL_TABLE_SIZE = 16;
+    private static final int INITIAL_DATA_SIZE = 256;
+    // Each table entry is the key's hash in the high word and its offset in the data plus one in the low word.
+    private static final long OFFSET_MASK = 0xFFFFFFFFL;
+
+    private final long memoryLimit;
+    @Nonnull
+    private long[] table;
+    @Nonnull
+    private byte[] data;
+    private int dataSize;
+    private int size;
+
+    public PackedKeySet() {
+        this(UNLIMITED_MEMORY);
+    }
+
+    /**
+     * Create a new set.
+     * @param memoryLimit the approximate maximum number of bytes for the set to use or {@link #UNLIMITED_MEMORY}
+     */
+    public PackedKeySet(long memoryLimit) {
+        if (memoryLimit < 0) {
+            throw new IllegalArgumentException("memory limit cannot be negative");
+        }
+        this.memoryLimit = memoryLimit;
+        this.table = new long[INITIAL_TABLE_SIZE];
+        this.data = new byte[INITIAL_DATA_SIZE];
+    }
+
+    /**
+     * Get the number of keys in the set.
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the approximate number of bytes used by this set. This counts the allocated capacity of both the key
+     * storage and the hash table, including space not yet used by any key.
+     * @return the memory usage in bytes
+     */
+    public long getMemoryUsage() {
+        return (long)data.length + (long)table.length * Long.BYTES;
+    }
+
+    /**
+     * Get whether the given key is in the set.
+     * @param key the key to look for
+     * @return {@code true} if the key is in the set
+     */
+    public boolean contains(@Nonnull byte[] key) {
+        return table[findSlot(key, hash(key))] != 0;
+    }
+
+    /**
+     * Get whether the given key can be added without the set exceeding its memory limit. This is also true if
+     * the key is already in the set.
+     * @param key the key to be added
+     * @return {@code true} if the key can be added
+     */
+    public boolean hasRoomFor(@Nonnull byte[] key) {
+        if (memoryLimit == UNLIMITED_MEMORY || size == 0 || contains(key)) {
+            return true;
+        }
+        final long tableLength = tableLengthAfterAdd();
+        return dataLengthAfterAppend(entrySize(key), tableLength) + tableLength * Long.BYTES <= memoryLimit;
+    }
+
+    /**
+     * Add a key to the set. The bytes are copied, so the caller can reuse the given array.
+     * This does not check the memory limit; use {@link #hasRoomFor} first for that.
+     * @param key the key to add
+     * @return {@code true} if the key was not already in the set
+     */
+    public boolean add(@Nonnull byte[] key) {
+        final int hash = hash(key);
+        final int slot = findSlot(key, hash);
+        if (table[slot] != 0) {
+            return false;
+        }
+        final int offset = append(key);
+        table[slot] = ((long)hash << 32) | (offset + 1L);
+        size++;
+        if (needsResize(size)) {
+            resize();
+        }
+        return true;
+    }
+
+    // Keep the load factor at or below one half, so that probe sequences stay short.
+    private boolean needsResize(int newSize) {
+        return newSize * 2 > table.length;
+    }
+
+    private long tableLengthAfterAdd() {
+        return needsResize(size + 1) ? table.length * 2L : table.length;
+    }
+
+    // The key storage normally doubles when it is full, but not past the memory limit if the new key would still fit.
+    private long dataLengthAfterAppend(int needed, long tableLength) {
+        final long required = (long)dataSize + needed;
+        if (required <= data.length) {
+            return data.length;
+        }
+        long newLength = Math.max((long)data.length * 2, required);
+        if (memoryLimit != UNLIMITED_MEMORY) {
+            newLength = Math.max(required, Math.min(newLength, memoryLimit - tableLength * Long.BYTES));
+        }
+        return newLength;
+    }
+
+    private int findSlot(@Nonnull byte[] key, int hash) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            final long entry = table[slot];
+            if (entry == 0 || ((int)(entry >>> 32) == hash && keyEquals(key, (int)(entry & OFFSET_MASK) - 1))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(@Nonnull byte[] key, int offset) {
+        int pos = offset;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[pos + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(@Nonnull byte[] key) {
+        final int needed = entrySize(key);
+        if (dataSize + needed > data.length) {
+            final long newLength = dataLengthAfterAppend(needed, tableLengthAfterAdd());
+            if (newLength > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("packed key set is too large");
+            }
+            data = Arrays.copyOf(data, (int)newLength);
+        }
+        final int offset = dataSize;
+        int length = key.length;
+        while (length >= 0x80) {
+            data[dataSize++] = (byte)((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        data[dataSize++] = (byte)length;
+        System.arraycopy(key, 0, data, dataSize, key.length);
+        dataSize += key.length;
+        return offset;
+    }
+
+    private void resize() {
+        final long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        final int mask = table.length - 1;
+        for (long entry : oldTable) {
+            if (entry != 0) {
+                int slot = (int)(entry >>> 32) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry;
+            }
+        }
+    }
+
+    private static int entrySize(@Nonnull byte[] key) {
+        int lengthBytes = 1;
+        int length = key.length;
+        while (length >= 0x80) {
+            lengthBytes++;
+            length >>>= 7;
+        }
+        return lengthBytes + key.length;
+    }
+
+    private static int hash(@Nonnull byte[] key) {
+        // Spread the bits, since the table index uses only the low ones.
+        final int h = Arrays.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
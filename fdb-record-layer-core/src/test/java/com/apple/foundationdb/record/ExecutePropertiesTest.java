@@ -86,6 +86,7 @@ public class ExecutePropertiesTest {
         assertFalse(ExecuteProperties.SERIAL_EXECUTE.getState().getByteScanLimiter().isEnforcing());
         assertEquals(Transaction.ROW_LIMIT_UNLIMITED, ExecuteProperties.SERIAL_EXECUTE.getReturnedRowLimit());
         assertEquals(Integer.MAX_VALUE, ExecuteProperties.SERIAL_EXECUTE.getReturnedRowLimitOrMax());
+        assertEquals(ExecuteProperties.UNLIMITED_DISTINCT_MEMORY, ExecuteProperties.SERIAL_EXECUTE.getDistinctMemoryLimit());
 
         // Ensure that these these constant ExecuteProperties do not do any scan tracking (this would be
         // confusing to do as they may be shared across many requests).
@@ -105,11 +106,14 @@ public class ExecutePropertiesTest {
                 .setScannedBytesLimit(1000L)
                 .setScannedRecordsLimit(2)
                 .setReturnedRowLimit(200)
+                .setDistinctMemoryLimit(4096L)
                 .build();
         assertEquals(100L, executeProperties.getTimeLimit());
         assertEquals(1000L, executeProperties.getScannedBytesLimit());
         assertEquals(2, executeProperties.getScannedRecordsLimit());
         assertEquals(200, executeProperties.getReturnedRowLimit());
+        assertEquals(4096L, executeProperties.getDistinctMemoryLimit());
+        assertEquals(4096L, executeProperties.clearSkipAndLimit().getDistinctMemoryLimit());
 
         final RecordScanLimiter recordScanLimiter = executeProperties.getState().getRecordScanLimiter();
         assertTrue(recordScanLimiter.isEnforcing());
@@ -1536,6 +1536,24 @@ public class MetaDataEvolutionValidatorTest {
         validator.validate(metaData2, metaData3);
     }
 
+    @Test
+    public void rankTrackChangesChanged() {
+        final String indexName = "MySimpleRecord$rank(num_value_2)";
+        RecordMetaDataBuilder metaDataBuilder = RecordMetaData.newBuilder().setRecords(TestRecords1Proto.getDescriptor());
+        metaDataBuilder.addIndex("MySimpleRecord", new Index(indexName, Key.Expressions.field("num_value_2").ungrouped(), IndexTypes.RANK));
+        RecordMetaData metaData1 = metaDataBuilder.getRecordMetaData();
+
+        validateIndexMutation("rank track changes changed", metaData1, indexName,
+                indexProto -> changeOption(indexProto, IndexOptions.RANK_TRACK_CHANGES, "true"));
+
+        // Setting the default explicitly is fine
+        RecordMetaData metaData2 = replaceIndex(metaData1, indexName,
+                indexProto -> changeOption(indexProto, IndexOptions.RANK_TRACK_CHANGES, "false"));
+        validator.validate(metaData1, metaData2);
+        RecordMetaData metaData3 = replaceIndex(metaData2, indexName, this::clearOptions);
+        validator.validate(metaData2, metaData3);
+    }
+
     @Test
     public void textOptionsChanged() {
         final String indexName = "MySimpleRecord$text(str_value_indexed)";
@@ -0,0 +1,128 @@
+/*
+ * StoreTimerHistogramTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.common;
+
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link StoreTimer.Histogram} and its use by {@link StoreTimer}.
+ */
+public class StoreTimerHistogramTest {
+
+    private static void assertApproximately(long expectedNanos, long actualNanos) {
+        // Buckets are at most 1/16th of their lower bound wide, plus up to a microsecond of rounding.
+        assertThat(actualNanos, allOf(
+                greaterThanOrEqualTo(expectedNanos),
+                lessThanOrEqualTo(expectedNanos + expectedNanos / 16 + 1000L)));
+    }
+
+    @Test
+    public void percentiles() {
+        StoreTimer.Histogram histogram = new StoreTimer.Histogram();
+        assertEquals(0L, histogram.getValueAtPercentile(50.0));
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(10000L, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10000), histogram.getMaxNanos());
+        assertApproximately(TimeUnit.MICROSECONDS.toNanos(5000), histogram.getValueAtPercentile(50.0));
+        assertApproximately(TimeUnit.MICROSECONDS.toNanos(9900), histogram.getValueAtPercentile(99.0));
+        assertApproximately(TimeUnit.MICROSECONDS.toNanos(9990), histogram.getValueAtPercentile(99.9));
+        assertEquals(histogram.getMaxNanos(), histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void smallAndLargeValues() {
+        StoreTimer.Histogram histogram = new StoreTimer.Histogram();
+        histogram.record(0L);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        histogram.record(TimeUnit.HOURS.toNanos(10));
+        assertEquals(3L, histogram.getCount());
+        assertThat(histogram.getValueAtPercentile(10.0), lessThanOrEqualTo(999L));
+        assertApproximately(TimeUnit.MICROSECONDS.toNanos(3), histogram.getValueAtPercentile(50.0));
+        assertEquals(TimeUnit.HOURS.toNanos(10), histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void recordedByTimer() {
+        StoreTimer timer = new FDBStoreTimer();
+        timer.record(FDBStoreTimer.Events.LOAD_RECORD, 1000L);
+        assertNull(timer.getHistogram(FDBStoreTimer.Events.LOAD_RECORD));
+        assertThat(timer.getKeysAndValues(), not(hasKey("load_record_p99_micros")));
+
+        timer.reset();
+        timer.setHistogramsEnabled(true);
+        IntStream.rangeClosed(1, 100).forEach(i -> timer.record(FDBStoreTimer.Events.LOAD_RECORD, TimeUnit.MILLISECONDS.toNanos(i)));
+        timer.increment(FDBStoreTimer.Counts.LOAD_RECORD_KEY);
+        StoreTimer.Histogram histogram = timer.getHistogram(FDBStoreTimer.Events.LOAD_RECORD);
+        assertNotNull(histogram);
+        assertEquals(100L, histogram.getCount());
+        assertNull(timer.getHistogram(FDBStoreTimer.Counts.LOAD_RECORD_KEY));
+
+        Map<String, Number> keysAndValues = timer.getKeysAndValues();
+        assertThat(keysAndValues, hasKey("load_record_p50_micros"));
+        assertThat(keysAndValues, hasKey("load_record_p99_micros"));
+        assertThat(keysAndValues, hasKey("load_record_p999_micros"));
+        assertThat(keysAndValues, not(hasKey("load_record_key_p99_micros")));
+        assertApproximately(TimeUnit.MILLISECONDS.toNanos(99), keysAndValues.get("load_record_p99_micros").longValue() * 1000L);
+    }
+
+    @Test
+    public void snapshotDifference() {
+        StoreTimer timer = new FDBStoreTimer();
+        timer.setHistogramsEnabled(true);
+        for (int i = 0; i < 100; i++) {
+            timer.record(FDBStoreTimer.Events.COMMIT, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        StoreTimerSnapshot snapshot = StoreTimerSnapshot.from(timer);
+        StoreTimerSnapshot.CounterSnapshot counterSnapshot = snapshot.getCounterSnapshot(FDBStoreTimer.Events.COMMIT);
+        assertNotNull(counterSnapshot);
+        assertNotNull(counterSnapshot.getHistogram());
+        assertEquals(100L, counterSnapshot.getHistogram().getCount());
+
+        for (int i = 0; i < 10; i++) {
+            timer.record(FDBStoreTimer.Events.COMMIT, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        // The snapshot is unaffected by later recordings
+        assertEquals(100L, counterSnapshot.getHistogram().getCount());
+
+        StoreTimer diff = StoreTimer.getDifference(timer, snapshot);
+        StoreTimer.Histogram diffHistogram = diff.getHistogram(FDBStoreTimer.Events.COMMIT);
+        assertNotNull(diffHistogram);
+        assertEquals(10L, diffHistogram.getCount());
+        assertApproximately(TimeUnit.MILLISECONDS.toNanos(50), diffHistogram.getValueAtPercentile(50.0));
+    }
+}
@@ -43,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -50,6 +51,8 @@ import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
@@ -176,6 +179,63 @@ public class FDBDatabaseTest extends FDBTestBase {
         assertThat(readVersion5, greaterThanOrEqualTo(outOfBandReadVersion));
     }
 
+    @Test
+    public void coalescedReadVersions() throws Exception {
+        FDBDatabase database = FDBDatabaseFactory.instance().getDatabase();
+        long committedVersion;
+        try (FDBRecordContext context = database.openContext()) {
+            context.ensureActive().addWriteConflictRange(new byte[0], new byte[]{(byte)0xff});
+            context.commit();
+            committedVersion = context.getCommittedVersion();
+        }
+
+        List<CompletableFuture<Long>> futures = IntStream.range(0, 20)
+                .mapToObj(i -> database.getReadVersionPrefetcher().getReadVersionAsync(FDBTransactionPriority.DEFAULT))
+                .collect(Collectors.toList());
+        for (CompletableFuture<Long> future : futures) {
+            assertThat(future.get(), greaterThanOrEqualTo(committedVersion));
+        }
+    }
+
+    @Test
+    public void prefetchedReadVersion() throws Exception {
+        FDBDatabaseFactory factory = FDBDatabaseFactory.instance();
+        factory.setReadVersionPrefetchIntervalMillis(10L);
+        FDBDatabase database = new FDBDatabase(factory, null);
+        try {
+            assertEquals(10L, database.getReadVersionPrefetcher().getRefreshIntervalMillis());
+            FDBDatabase.WeakReadSemantics weakReadSemantics = new FDBDatabase.WeakReadSemantics(0L, 5000L, false);
+            FDBStoreTimer timer = new FDBStoreTimer();
+
+            // Nothing has been prefetched yet, so this does a GRV from FDB, but it starts prefetching for the default priority
+            try (FDBRecordContext context = database.openContext(null, timer, weakReadSemantics)) {
+                context.getReadVersion();
+            }
+            assertEquals(0, timer.getCount(FDBStoreTimer.Counts.SET_READ_VERSION_TO_PREFETCHED));
+
+            long prefetchedVersion = database.getReadVersionPrefetcher().getReadVersionAsync(FDBTransactionPriority.DEFAULT).get();
+            try (FDBRecordContext context = database.openContext(null, timer, weakReadSemantics)) {
+                assertThat(context.getReadVersion(), greaterThanOrEqualTo(prefetchedVersion));
+            }
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.SET_READ_VERSION_TO_PREFETCHED));
+
+            // Versions are not shared across priorities
+            try (FDBRecordContext context = database.openContext(null, timer, weakReadSemantics, FDBTransactionPriority.BATCH)) {
+                context.getReadVersion();
+            }
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.SET_READ_VERSION_TO_PREFETCHED));
+
+            // Contexts without weak read semantics always get a fresh read version
+            try (FDBRecordContext context = database.openContext(null, timer, null)) {
+                assertThat(context.getReadVersion(), greaterThanOrEqualTo(prefetchedVersion));
+            }
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.SET_READ_VERSION_TO_PREFETCHED));
+        } finally {
+            factory.setReadVersionPrefetchIntervalMillis(0L);
+            database.close();
+        }
+    }
+
     @Test
     public void testBlockingInAsyncException() {
         FDBDatabaseFactory factory = FDBDatabaseFactory.instance();
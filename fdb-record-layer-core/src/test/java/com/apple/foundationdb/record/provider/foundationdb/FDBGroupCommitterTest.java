@@ -0,0 +1,129 @@
+/*
+ * FDBGroupCommitterTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.test.Tags;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link FDBGroupCommitter}.
+ */
+@Tag(Tags.RequiresFDB)
+public class FDBGroupCommitterTest extends FDBRecordStoreTestBase {
+
+    private RecordMetaData createStore() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            commit(context);
+        }
+        return recordStore.getRecordMetaData();
+    }
+
+    private CompletableFuture<Long> saveRecord(FDBRecordContext context, RecordMetaData metaData, long recNo) {
+        return getStoreBuilder(context, metaData).createOrOpenAsync()
+                .thenCompose(store -> store.saveRecordAsync(TestRecords1Proto.MySimpleRecord.newBuilder()
+                        .setRecNo(recNo)
+                        .setNumValue2((int)recNo)
+                        .build()))
+                .thenApply(storedRecord -> storedRecord.getPrimaryKey().getLong(0));
+    }
+
+    @Test
+    public void combineWrites() throws Exception {
+        final RecordMetaData metaData = createStore();
+        final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        try (FDBGroupCommitter committer = fdb.newGroupCommitter(FDBRecordContextConfig.newBuilder().setTimer(timer), 10, 1000L)) {
+            for (long recNo = 0; recNo < 25; recNo++) {
+                final long currentRecNo = recNo;
+                futures.add(committer.submit(context -> saveRecord(context, metaData, currentRecNo)));
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i, futures.get(i).get().longValue());
+        }
+        final int transactions = timer.getCount(FDBStoreTimer.Counts.GROUP_COMMIT_TRANSACTION);
+        assertThat(transactions, greaterThan(0));
+        assertThat(transactions, lessThan(futures.size()));
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            for (long recNo = 0; recNo < 25; recNo++) {
+                assertNotNull(recordStore.loadRecord(Tuple.from(recNo)));
+            }
+        }
+    }
+
+    @Test
+    public void failedWorkDoesNotAffectOthers() throws Exception {
+        final RecordMetaData metaData = createStore();
+        final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        try (FDBGroupCommitter committer = fdb.newGroupCommitter(FDBRecordContextConfig.newBuilder().setTimer(timer), 5, 1000L)) {
+            for (long recNo = 0; recNo < 5; recNo++) {
+                final long currentRecNo = recNo;
+                futures.add(committer.submit(context -> saveRecord(context, metaData, currentRecNo).thenApply(savedRecNo -> {
+                    if (savedRecNo == 2L) {
+                        throw new RecordCoreArgumentException("bad record");
+                    }
+                    return savedRecNo;
+                })));
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            if (i == 2) {
+                final CompletableFuture<Long> future = futures.get(i);
+                ExecutionException err = assertThrows(ExecutionException.class, future::get);
+                assertThat(err.getCause(), instanceOf(RecordCoreArgumentException.class));
+            } else {
+                assertEquals(i, futures.get(i).get().longValue());
+            }
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            for (long recNo = 0; recNo < 5; recNo++) {
+                if (recNo == 2L) {
+                    assertNull(recordStore.loadRecord(Tuple.from(recNo)));
+                } else {
+                    assertNotNull(recordStore.loadRecord(Tuple.from(recNo)));
+                }
+            }
+        }
+    }
+}
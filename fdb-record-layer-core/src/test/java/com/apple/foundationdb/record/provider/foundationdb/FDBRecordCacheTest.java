@@ -0,0 +1,175 @@
+/*
+ * FDBRecordCacheTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.RecordMetaDataBuilder;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.test.Tags;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link FDBRecordCache}.
+ */
+@Tag(Tags.RequiresFDB)
+public class FDBRecordCacheTest extends FDBRecordStoreTestBase {
+
+    private RecordMetaData metaData;
+
+    @BeforeEach
+    public void setUpRecordCache() {
+        RecordMetaDataBuilder builder = RecordMetaData.newBuilder().setRecords(TestRecords1Proto.getDescriptor());
+        builder.setStoreRecordVersions(true);
+        metaData = builder.getRecordMetaData();
+        fdb.setRecordCache(new FDBRecordCache());
+    }
+
+    @AfterEach
+    public void tearDownRecordCache() {
+        fdb.setRecordCache(null);
+    }
+
+    private void saveRecord(long recNo, int numValue) {
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData);
+            recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder()
+                    .setRecNo(recNo)
+                    .setNumValue2(numValue)
+                    .build());
+            commit(context);
+        }
+    }
+
+    @Nullable
+    private Integer loadNumValue(long recNo) {
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData);
+            FDBStoredRecord<Message> storedRecord = recordStore.loadRecord(Tuple.from(recNo));
+            return storedRecord == null ? null : TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(storedRecord.getRecord()).getNumValue2();
+        }
+    }
+
+    @Test
+    public void hitWhenVersionUnchanged() {
+        saveRecord(1066L, 1);
+
+        timer.reset();
+        assertEquals(1, loadNumValue(1066L));
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.RECORD_CACHE_MISS));
+        assertEquals(0, timer.getCount(FDBStoreTimer.Counts.RECORD_CACHE_HIT));
+
+        timer.reset();
+        assertEquals(1, loadNumValue(1066L));
+        assertEquals(0, timer.getCount(FDBStoreTimer.Counts.RECORD_CACHE_MISS));
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.RECORD_CACHE_HIT));
+    }
+
+    @Test
+    public void invalidatedOnUpdate() {
+        saveRecord(1066L, 1);
+        assertEquals(1, loadNumValue(1066L));
+
+        saveRecord(1066L, 2);
+        timer.reset();
+        assertEquals(2, loadNumValue(1066L));
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.RECORD_CACHE_MISS));
+
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData);
+            recordStore.deleteRecord(Tuple.from(1066L));
+            commit(context);
+        }
+        assertNull(loadNumValue(1066L));
+    }
+
+    @Test
+    public void readOwnWrites() {
+        saveRecord(1066L, 1);
+        assertEquals(1, loadNumValue(1066L));
+
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData);
+            recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder()
+                    .setRecNo(1066L)
+                    .setNumValue2(2)
+                    .build());
+            FDBStoredRecord<Message> storedRecord = recordStore.loadRecord(Tuple.from(1066L));
+            assertNotNull(storedRecord);
+            assertEquals(2, TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(storedRecord.getRecord()).getNumValue2());
+
+            recordStore.deleteAllRecords();
+            assertNull(recordStore.loadRecord(Tuple.from(1066L)));
+            // Not committed.
+        }
+        assertEquals(1, loadNumValue(1066L));
+    }
+
+    @Test
+    public void invalidatedOnDeleteAll() {
+        saveRecord(1066L, 1);
+        assertEquals(1, loadNumValue(1066L));
+
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData);
+            recordStore.deleteAllRecords();
+            commit(context);
+        }
+        assertEquals(0L, fdb.getRecordCache().size());
+        assertNull(loadNumValue(1066L));
+    }
+
+    @Test
+    public void newerEntryNotUsedByOlderTransaction() {
+        saveRecord(1066L, 1);
+        assertEquals(1, loadNumValue(1066L));
+
+        final FDBRecordContextConfig config = FDBRecordContextConfig.newBuilder()
+                .setTimer(timer)
+                .setWeakReadSemantics(new FDBDatabase.WeakReadSemantics(0L, Long.MAX_VALUE, false))
+                .build();
+        try (FDBRecordContext context = fdb.openContext(config)) {
+            createOrOpenRecordStore(context, metaData);
+            final FDBRecordStore olderStore = recordStore;
+            context.getReadVersion();
+
+            // Cache the record as of a later version.
+            saveRecord(1066L, 2);
+            assertEquals(2, loadNumValue(1066L));
+
+            for (boolean snapshot : new boolean[] {true, false}) {
+                FDBStoredRecord<Message> storedRecord = olderStore.loadRecord(Tuple.from(1066L), snapshot);
+                assertNotNull(storedRecord);
+                assertEquals(1, TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(storedRecord.getRecord()).getNumValue2());
+            }
+        }
+    }
+}
@@ -33,7 +33,9 @@ import com.apple.foundationdb.record.IndexScanType;
 import com.apple.foundationdb.record.IndexState;
 import com.apple.foundationdb.record.IsolationLevel;
 import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.RecordCursorIterator;
+import com.apple.foundationdb.record.RecordCursorResult;
 import com.apple.foundationdb.record.RecordIndexUniquenessViolation;
 import com.apple.foundationdb.record.RecordMetaData;
 import com.apple.foundationdb.record.RecordMetaDataBuilder;
@@ -884,6 +886,85 @@ public class FDBRecordStoreIndexTest extends FDBRecordStoreTestBase {
         }
     }
 
+    @Test
+    public void countSharded() throws Exception {
+        final GroupingKeyExpression byKey = new GroupingKeyExpression(field("num_value_2"), 0);
+        final RecordMetaDataHook hook = md -> md.addIndex("MySimpleRecord", new Index("count_by_num", byKey, IndexTypes.COUNT, ImmutableMap.of(IndexOptions.AGGREGATE_SHARDS_OPTION, "4")));
+        final List<String> types = Collections.singletonList("MySimpleRecord");
+
+        final IndexAggregateFunction perKey = new IndexAggregateFunction(FunctionNames.COUNT, byKey, null);
+        final IndexAggregateFunction total = new IndexAggregateFunction(FunctionNames.COUNT, new GroupingKeyExpression(field("num_value_2"), 1), null);
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, hook);
+
+            for (int i = 0; i < 100; i++) {
+                TestRecords1Proto.MySimpleRecord.Builder recBuilder = TestRecords1Proto.MySimpleRecord.newBuilder();
+                recBuilder.setRecNo(i);
+                recBuilder.setNumValue2(i % 5);
+                recordStore.saveRecord(recBuilder.build());
+            }
+            commit(context);
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, hook);
+            for (int i = 0; i < 100; i += 10) {
+                recordStore.deleteRecord(Tuple.from(i));
+            }
+            commit(context);
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, hook);
+            assertEquals(10, recordStore.evaluateAggregateFunction(types, perKey, Key.Evaluated.scalar(0), IsolationLevel.SNAPSHOT).join().getLong(0));
+            assertEquals(20, recordStore.evaluateAggregateFunction(types, perKey, Key.Evaluated.scalar(1), IsolationLevel.SNAPSHOT).join().getLong(0));
+            assertEquals(90, recordStore.evaluateAggregateFunction(types, total, Key.Evaluated.EMPTY, IsolationLevel.SNAPSHOT).join().getLong(0));
+
+            final Index index = recordStore.getRecordMetaData().getIndex("count_by_num");
+            final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(2).build();
+            final List<Pair<Object, Object>> groups = new ArrayList<>();
+            byte[] continuation = null;
+            do {
+                try (RecordCursor<IndexEntry> cursor = recordStore.scanIndex(index, IndexScanType.BY_GROUP, TupleRange.ALL, continuation, new ScanProperties(executeProperties))) {
+                    RecordCursorResult<IndexEntry> result;
+                    while ((result = cursor.getNext()).hasNext()) {
+                        groups.add(Pair.of(result.get().getKey().get(0), result.get().getValue().get(0)));
+                    }
+                    continuation = result.getContinuation().toBytes();
+                }
+            } while (continuation != null);
+            assertEquals(Arrays.asList(Pair.of(0L, 10L), Pair.of(1L, 20L), Pair.of(2L, 20L), Pair.of(3L, 20L), Pair.of(4L, 20L)), groups);
+
+            // A scan limit below the number of shards stops every scan in the middle of a group.
+            final ExecuteProperties scanLimited = ExecuteProperties.newBuilder().setScannedRecordsLimit(2).build();
+            groups.clear();
+            int scans = 0;
+            continuation = null;
+            do {
+                try (RecordCursor<IndexEntry> cursor = recordStore.scanIndex(index, IndexScanType.BY_GROUP, TupleRange.ALL, continuation, new ScanProperties(scanLimited))) {
+                    RecordCursorResult<IndexEntry> result;
+                    while ((result = cursor.getNext()).hasNext()) {
+                        groups.add(Pair.of(result.get().getKey().get(0), result.get().getValue().get(0)));
+                    }
+                    continuation = result.getContinuation().toBytes();
+                }
+                assertThat("scan should make progress", ++scans, lessThanOrEqualTo(20));
+            } while (continuation != null);
+            assertEquals(Arrays.asList(Pair.of(0L, 10L), Pair.of(1L, 20L), Pair.of(2L, 20L), Pair.of(3L, 20L), Pair.of(4L, 20L)), groups);
+            commit(context);
+        }
+    }
+
+    @Test
+    public void countShardedInvalid() throws Exception {
+        final GroupingKeyExpression byKey = new GroupingKeyExpression(field("num_value_2"), 0);
+        final RecordMetaDataHook hook = md -> md.addIndex("MySimpleRecord", new Index("count_by_num", byKey, IndexTypes.COUNT, ImmutableMap.of(IndexOptions.AGGREGATE_SHARDS_OPTION, "0")));
+        try (FDBRecordContext context = openContext()) {
+            assertThrows(MetaDataException.class, () -> openSimpleRecordStore(context, hook));
+        }
+    }
+
     @Test
     public void scanWriteOnlyIndex() throws Exception {
         final String indexName = "MySimpleRecord$num_value_3_indexed";
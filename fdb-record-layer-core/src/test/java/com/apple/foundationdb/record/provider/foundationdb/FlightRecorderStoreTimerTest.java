@@ -0,0 +1,91 @@
+/*
+ * FlightRecorderStoreTimerTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for {@link FlightRecorderStoreTimer}.
+ */
+public class FlightRecorderStoreTimerTest {
+
+    @Test
+    public void emitsEvents() throws Exception {
+        assumeTrue(FlightRecorderStoreTimer.isFlightRecorderAvailable());
+        final FlightRecorderStoreTimer timer = new FlightRecorderStoreTimer();
+        // Not recording yet.
+        timer.record(FDBStoreTimer.Events.COMMIT, 1L);
+
+        final Path file = Files.createTempFile("store-timer", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("com.apple.foundationdb.record.TimedEvent");
+                recording.enable("com.apple.foundationdb.record.CountEvent");
+                recording.start();
+                timer.record(FDBStoreTimer.Events.COMMIT, TimeUnit.MILLISECONDS.toNanos(5));
+                timer.record(FDBStoreTimer.Waits.WAIT_COMMIT, TimeUnit.MILLISECONDS.toNanos(6));
+                timer.increment(FDBStoreTimer.Counts.RETRY_TRANSACTION, 2);
+                recording.stop();
+                recording.dump(file);
+            }
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(3, events.size());
+
+            final RecordedEvent commit = find(events, "COMMIT").orElseThrow(AssertionError::new);
+            assertEquals("com.apple.foundationdb.record.TimedEvent", commit.getEventType().getName());
+            assertEquals("event", commit.getString("kind"));
+            assertEquals(FDBStoreTimer.Events.COMMIT.title(), commit.getString("title"));
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(5), commit.getDuration("elapsed").toNanos());
+
+            final RecordedEvent waitCommit = find(events, "WAIT_COMMIT").orElseThrow(AssertionError::new);
+            assertEquals("wait", waitCommit.getString("kind"));
+
+            final RecordedEvent retry = find(events, "RETRY_TRANSACTION").orElseThrow(AssertionError::new);
+            assertEquals("com.apple.foundationdb.record.CountEvent", retry.getEventType().getName());
+            assertEquals("count", retry.getString("kind"));
+            assertEquals(2, retry.getInt("amount"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // The ordinary totals are still kept.
+        assertEquals(2, timer.getCount(FDBStoreTimer.Events.COMMIT));
+        assertEquals(2, timer.getCount(FDBStoreTimer.Counts.RETRY_TRANSACTION));
+        assertTrue(timer.getTimeNanos(FDBStoreTimer.Waits.WAIT_COMMIT) > 0);
+    }
+
+    private static Optional<RecordedEvent> find(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> name.equals(event.getString("name"))).findFirst();
+    }
+}
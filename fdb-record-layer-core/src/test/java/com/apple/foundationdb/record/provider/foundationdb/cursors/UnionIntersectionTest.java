@@ -300,6 +300,23 @@ public class UnionIntersectionTest extends FDBRecordStoreTestBase {
         ), LongStream.range(9L, 25L).iterator());
     }
 
+    /**
+     * Validate the union of more than {@link UnionCursor#HEAP_MERGE_THRESHOLD} children, which chooses the next
+     * element using a heap.
+     */
+    @ValueSource(ints = {1, 2, 3, 4, 11})
+    @ParameterizedTest(name = "manyOverlappingUnionWithInnerLimits() [{0}]")
+    public void manyOverlappingUnionWithInnerLimits(int innerLimit) throws Exception {
+        final int childCount = UnionCursor.HEAP_MERGE_THRESHOLD * 3;
+        final List<Function<byte[], RecordCursor<FDBRecord<Message>>>> cursorFunctions = new ArrayList<>(childCount);
+        for (long i = 0; i < childCount; i++) {
+            final long start = i * 3;
+            cursorFunctions.add(cont -> scanRecordsBetween(start, start + 5, cont).limitRowsTo(innerLimit)
+                    .map(rec -> (FDBRecord<Message>) rec));
+        }
+        verifyUnionWithInnerLimits(cursorFunctions, LongStream.range(0L, (childCount - 1) * 3L + 5).iterator());
+    }
+
     @ValueSource(ints = {1, 2, 3, 4, 5})
     @ParameterizedTest(name = "interleavedIndexScan() [{0}]")
     public void interleavedIndexScan(int innerLimit) throws Exception {
@@ -20,6 +20,7 @@
 
 package com.apple.foundationdb.record.provider.foundationdb.indexes;
 
+import com.apple.foundationdb.record.EndpointType;
 import com.apple.foundationdb.record.EvaluationContext;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.FunctionNames;
@@ -591,6 +592,180 @@ public class BitmapValueIndexTest extends FDBRecordStoreTestBase {
         }
     }
 
+    @Test
+    public void compressed() {
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(COMPRESSED_REC_NO_BY_STR_NUMS_HOOK));
+            saveRecords(100, 200);
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(COMPRESSED_REC_NO_BY_STR_NUMS_HOOK));
+            for (int recNo = 150; recNo < 160; recNo++) {
+                recordStore.deleteRecord(Tuple.from(recNo));
+            }
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(COMPRESSED_REC_NO_BY_STR_NUMS_HOOK));
+            final Index index = recordStore.getRecordMetaData().getIndex("rec_no_by_str_num3");
+            assertThat(
+                    recordStore.scanIndex(index, IndexScanType.BY_GROUP, TupleRange.allOf(Tuple.from("odd", 1)), null, ScanProperties.FORWARD_SCAN)
+                            .map(indexEntry -> new IndexEntry(indexEntry.getIndex(), indexEntry.getKey(),
+                                    Tuple.from(CompressedBitmap.deserialize(indexEntry.getValue().getBytes(0)).toBytes())))
+                            .reduce(new ArrayList<Integer>(), (list, entry) -> {
+                                list.addAll(collectOnBits(entry));
+                                return list;
+                            }).join(),
+                    equalTo(IntStream.range(100, 200).boxed()
+                            .filter(i -> (i & 1) == 1)
+                            .filter(i -> i < 150 || i >= 160)
+                            .filter(i -> (i % 5) == 1)
+                            .collect(Collectors.toList())));
+
+            // A range that does not fall on entry boundaries trims the compressed entries at either end.
+            assertThat(
+                    recordStore.scanIndex(index, IndexScanType.BY_GROUP,
+                            new TupleRange(Tuple.from("odd", 1, 110), Tuple.from("odd", 1, 170), EndpointType.RANGE_INCLUSIVE, EndpointType.RANGE_EXCLUSIVE),
+                            null, ScanProperties.FORWARD_SCAN)
+                            .map(indexEntry -> new IndexEntry(indexEntry.getIndex(), indexEntry.getKey(),
+                                    Tuple.from(CompressedBitmap.deserialize(indexEntry.getValue().getBytes(0)).toBytes())))
+                            .reduce(new ArrayList<Integer>(), (list, entry) -> {
+                                list.addAll(collectOnBits(entry));
+                                return list;
+                            }).join(),
+                    equalTo(IntStream.range(110, 170).boxed()
+                            .filter(i -> (i & 1) == 1)
+                            .filter(i -> i < 150 || i >= 160)
+                            .filter(i -> (i % 5) == 1)
+                            .collect(Collectors.toList())));
+
+            final IndexAggregateFunction aggregateFunction = new IndexAggregateFunction(FunctionNames.BITMAP_VALUE, REC_NO_BY_STR_NUM3, null);
+            assertThat(
+                    collectOnBits(recordStore.evaluateAggregateFunction(
+                            Collections.singletonList("MySimpleRecord"), aggregateFunction,
+                            TupleRange.allOf(Tuple.from("odd", 3)),
+                            IsolationLevel.SERIALIZABLE).join().getBytes(0), 0),
+                    equalTo(IntStream.range(100, 200).boxed()
+                            .filter(i -> (i & 1) == 1)
+                            .filter(i -> i < 150 || i >= 160)
+                            .filter(i -> (i % 5) == 3)
+                            .collect(Collectors.toList())));
+
+            setupPlanner(null);
+            final RecordQueryPlan queryPlan = plan(BITMAP_VALUE_REC_NO_BY_STR, Query.and(
+                    Query.field("str_value").equalsValue("odd"),
+                    Query.field("num_value_2").equalsValue(3),
+                    Query.or(Query.field("num_value_3").equalsValue(2),
+                             Query.field("num_value_3").equalsValue(4))));
+            assertThat(
+                    collectOnBits(queryPlan.execute(recordStore).map(FDBQueriedRecord::getIndexEntry)),
+                    equalTo(IntStream.range(100, 200).boxed()
+                            .filter(i -> (i & 1) == 1)
+                            .filter(i -> i < 150 || i >= 160)
+                            .filter(i -> (i % 7) == 3 && ((i % 5) == 2 || (i % 5) == 4))
+                            .collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    public void compressedUniquenessViolationChecked() {
+        final RecordMetaDataHook num_by_num3_hook_unique = metadata -> {
+            metadata.removeIndex("MySimpleRecord$num_value_unique");
+            metadata.addIndex(metadata.getRecordType("MySimpleRecord"),
+                    new Index("num_by_num3",
+                            concatenateFields("num_value_3", "num_value_unique").group(1),
+                            IndexTypes.BITMAP_VALUE, ImmutableMap.of(IndexOptions.BITMAP_VALUE_ENTRY_SIZE_OPTION, "16",
+                                    IndexOptions.BITMAP_VALUE_COMPRESSED_OPTION, "true", IndexOptions.UNIQUE_OPTION, "true")));
+        };
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(num_by_num3_hook_unique));
+            saveRecords(0, 10);
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(num_by_num3_hook_unique));
+            assertThrows(RecordIndexUniquenessViolation.class, () -> {
+                // This is a duplicate of record #2.
+                recordStore.saveRecord(TestRecordsBitmapProto.MySimpleRecord.newBuilder()
+                        .setRecNo(1002)
+                        .setStrValue("even")
+                        .setNumValueUnique(1002)
+                        .setNumValue3(2)
+                        .build());
+            });
+        }
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(num_by_num3_hook_unique));
+            // Removing the original frees its bit for another record.
+            recordStore.deleteRecord(Tuple.from(2));
+            recordStore.saveRecord(TestRecordsBitmapProto.MySimpleRecord.newBuilder()
+                    .setRecNo(1002)
+                    .setStrValue("even")
+                    .setNumValueUnique(1002)
+                    .setNumValue3(2)
+                    .build());
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(num_by_num3_hook_unique));
+            assertThat(
+                    recordStore.scanIndex(recordStore.getRecordMetaData().getIndex("num_by_num3"), IndexScanType.BY_GROUP,
+                            TupleRange.allOf(Tuple.from(2)), null, ScanProperties.FORWARD_SCAN)
+                            .map(indexEntry -> new IndexEntry(indexEntry.getIndex(), indexEntry.getKey(),
+                                    Tuple.from(CompressedBitmap.deserialize(indexEntry.getValue().getBytes(0)).toBytes())))
+                            .reduce(new ArrayList<Integer>(), (list, entry) -> {
+                                list.addAll(collectOnBits(entry));
+                                return list;
+                            }).join(),
+                    equalTo(Arrays.asList(1002, 1007)));
+        }
+    }
+
+    @Test
+    public void compressedAndUncompressedQuery() {
+        // An entry size that is not a whole number of bytes, so the uncompressed bitmaps are padded.
+        final RecordMetaDataHook hook = metadata -> {
+            final RecordTypeBuilder recordType = metadata.getRecordType("MySimpleRecord");
+            metadata.addIndex(recordType, new Index("rec_no_by_str_num2", REC_NO_BY_STR_NUM2, IndexTypes.BITMAP_VALUE,
+                    Collections.singletonMap(IndexOptions.BITMAP_VALUE_ENTRY_SIZE_OPTION, "20")));
+            metadata.addIndex(recordType, new Index("rec_no_by_str_num3", REC_NO_BY_STR_NUM3, IndexTypes.BITMAP_VALUE,
+                    ImmutableMap.of(IndexOptions.BITMAP_VALUE_ENTRY_SIZE_OPTION, "20", IndexOptions.BITMAP_VALUE_COMPRESSED_OPTION, "true")));
+        };
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(hook));
+            saveRecords(100, 200);
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            createOrOpenRecordStore(context, metaData(hook));
+            setupPlanner(null);
+            final RecordQueryPlan queryPlan = plan(BITMAP_VALUE_REC_NO_BY_STR, Query.and(
+                    Query.field("str_value").equalsValue("odd"),
+                    Query.field("num_value_2").equalsValue(3),
+                    Query.field("num_value_3").equalsValue(4)));
+            assertThat(
+                    collectOnBits(queryPlan.execute(recordStore).map(FDBQueriedRecord::getIndexEntry)),
+                    equalTo(IntStream.range(100, 200).boxed()
+                            .filter(i -> (i & 1) == 1)
+                            .filter(i -> (i % 7) == 3 && (i % 5) == 4)
+                            .collect(Collectors.toList())));
+
+            // The entries at the start of the range are trimmed to different sizes.
+            final RecordQueryPlan positionPlan = plan(BITMAP_VALUE_REC_NO_BY_STR, Query.and(
+                    Query.field("str_value").equalsValue("odd"),
+                    Query.field("num_value_2").equalsValue(3),
+                    Query.field("num_value_3").equalsValue(4),
+                    Query.field("rec_no").greaterThan(150)));
+            assertThat(
+                    collectOnBits(positionPlan.execute(recordStore).map(FDBQueriedRecord::getIndexEntry)),
+                    equalTo(IntStream.range(151, 200).boxed()
+                            .filter(i -> (i & 1) == 1)
+                            .filter(i -> (i % 7) == 3 && (i % 5) == 4)
+                            .collect(Collectors.toList())));
+        }
+    }
+
     @Test
     public void negatedQuery() {
         try (FDBRecordContext context = openContext()) {
@@ -619,6 +794,15 @@ public class BitmapValueIndexTest extends FDBRecordStoreTestBase {
         metadata.addIndex(recordType, new Index("rec_no_by_str_num3", REC_NO_BY_STR_NUM3, IndexTypes.BITMAP_VALUE, SMALL_BITMAP_OPTIONS));
     };
 
+    protected static final Map<String, String> COMPRESSED_BITMAP_OPTIONS = ImmutableMap.of(
+            IndexOptions.BITMAP_VALUE_ENTRY_SIZE_OPTION, "64",
+            IndexOptions.BITMAP_VALUE_COMPRESSED_OPTION, "true");
+    protected static final RecordMetaDataHook COMPRESSED_REC_NO_BY_STR_NUMS_HOOK = metadata -> {
+        final RecordTypeBuilder recordType = metadata.getRecordType("MySimpleRecord");
+        metadata.addIndex(recordType, new Index("rec_no_by_str_num2", REC_NO_BY_STR_NUM2, IndexTypes.BITMAP_VALUE, COMPRESSED_BITMAP_OPTIONS));
+        metadata.addIndex(recordType, new Index("rec_no_by_str_num3", REC_NO_BY_STR_NUM3, IndexTypes.BITMAP_VALUE, COMPRESSED_BITMAP_OPTIONS));
+    };
+
     protected static final IndexAggregateFunctionCall BITMAP_VALUE_REC_NO_BY_STR = new IndexAggregateFunctionCall(FunctionNames.BITMAP_VALUE, REC_NO_BY_STR);
 
     protected RecordMetaData metaData(@Nullable RecordMetaDataHook hook) {
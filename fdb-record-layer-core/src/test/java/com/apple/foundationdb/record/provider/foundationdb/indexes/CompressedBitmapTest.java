@@ -0,0 +1,159 @@
+/*
+ * CompressedBitmapTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link CompressedBitmap}.
+ */
+public class CompressedBitmapTest {
+    private static final int SIZE = 10_000;
+
+    @Nonnull
+    private static BitSet randomBits(@Nonnull Random random, int size, double density) {
+        final BitSet bits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (random.nextDouble() < density) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    @Nonnull
+    private static byte[] toBytes(@Nonnull BitSet bits, int size) {
+        final byte[] bytes = new byte[(size + 7) / 8];
+        final byte[] setBytes = bits.toByteArray();
+        System.arraycopy(setBytes, 0, bytes, 0, setBytes.length);
+        return bytes;
+    }
+
+    @Nonnull
+    private static CompressedBitmap fromBits(@Nonnull BitSet bits, int size) {
+        final CompressedBitmap bitmap = CompressedBitmap.empty(size);
+        bits.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+
+    @Test
+    public void addAndRemove() {
+        final CompressedBitmap bitmap = CompressedBitmap.empty(SIZE);
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add(17));
+        assertFalse(bitmap.add(17));
+        assertTrue(bitmap.contains(17));
+        assertFalse(bitmap.contains(18));
+        // Enough to switch to a bitmap container and back again.
+        for (int i = 0; i < SIZE; i += 2) {
+            bitmap.add(i);
+        }
+        assertEquals(SIZE / 2 + 1, bitmap.getCardinality());
+        for (int i = 0; i < SIZE; i += 2) {
+            assertTrue(bitmap.remove(i));
+        }
+        assertFalse(bitmap.remove(0));
+        assertEquals(1, bitmap.getCardinality());
+        assertTrue(bitmap.contains(17));
+        assertTrue(bitmap.remove(17));
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void serialization() {
+        final Random random = new Random(0x5eed);
+        for (double density : new double[] {0.0, 0.001, 0.01, 0.1, 0.5, 0.99, 1.0}) {
+            final BitSet bits = randomBits(random, SIZE, density);
+            final CompressedBitmap bitmap = fromBits(bits, SIZE);
+            assertEquals(bits.cardinality(), bitmap.getCardinality());
+            assertArrayEquals(toBytes(bits, SIZE), bitmap.toBytes());
+            assertEquals(bitmap, CompressedBitmap.fromBytes(bitmap.toBytes()));
+            final byte[] serialized = bitmap.serialize();
+            assertTrue(serialized.length <= SIZE / 8 + 3, "serialized form should never be much bigger than uncompressed");
+            assertEquals(bitmap, CompressedBitmap.deserialize(serialized));
+        }
+    }
+
+    @Test
+    public void runs() {
+        final CompressedBitmap bitmap = CompressedBitmap.empty(SIZE);
+        for (int i = 1000; i < 5000; i++) {
+            bitmap.add(i);
+        }
+        bitmap.add(SIZE - 1);
+        final byte[] serialized = bitmap.serialize();
+        assertTrue(serialized.length < 16, "long runs should be run-length encoded");
+        assertEquals(bitmap, CompressedBitmap.deserialize(serialized));
+    }
+
+    @Test
+    public void operations() {
+        final Random random = new Random(0x0b5);
+        final double[] densities = {0.0, 0.005, 0.2, 0.9};
+        for (double density1 : densities) {
+            for (double density2 : densities) {
+                final BitSet bits1 = randomBits(random, SIZE, density1);
+                final BitSet bits2 = randomBits(random, SIZE, density2);
+                final CompressedBitmap bitmap1 = fromBits(bits1, SIZE);
+                final CompressedBitmap bitmap2 = fromBits(bits2, SIZE);
+
+                final BitSet and = (BitSet)bits1.clone();
+                and.and(bits2);
+                assertArrayEquals(toBytes(and, SIZE), bitmap1.and(bitmap2).toBytes());
+                assertEquals(and.cardinality(), bitmap1.and(bitmap2).getCardinality());
+
+                final BitSet or = (BitSet)bits1.clone();
+                or.or(bits2);
+                assertArrayEquals(toBytes(or, SIZE), bitmap1.or(bitmap2).toBytes());
+                assertEquals(or.cardinality(), bitmap1.or(bitmap2).getCardinality());
+
+                final BitSet xor = (BitSet)bits1.clone();
+                xor.xor(bits2);
+                assertArrayEquals(toBytes(xor, SIZE), bitmap1.xor(bitmap2).toBytes());
+                assertEquals(xor.cardinality(), bitmap1.xor(bitmap2).getCardinality());
+
+                final BitSet not = (BitSet)bits1.clone();
+                not.flip(0, SIZE);
+                assertArrayEquals(toBytes(not, SIZE), bitmap1.not().toBytes());
+                assertEquals(not.cardinality(), bitmap1.not().getCardinality());
+            }
+        }
+    }
+
+    @Test
+    public void subset() {
+        final Random random = new Random(0x5ab);
+        final BitSet bits = randomBits(random, SIZE, 0.05);
+        final CompressedBitmap bitmap = fromBits(bits, SIZE);
+        final CompressedBitmap subset = bitmap.subset(123, 4567);
+        assertEquals(4567 - 123, subset.getSize());
+        assertArrayEquals(toBytes(bits.get(123, 4567), 4567 - 123), subset.toBytes());
+    }
+}
@@ -126,6 +126,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import static com.apple.foundationdb.record.IndexScanType.BY_GROUP;
@@ -176,6 +177,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests for {@code TEXT} type indexes.
@@ -201,6 +203,8 @@ public class TextIndexTest extends FDBRecordStoreTestBase {
             ImmutableMap.of(IndexOptions.TEXT_TOKENIZER_NAME_OPTION, AllSuffixesTextTokenizer.NAME));
     private static final Index SIMPLE_TEXT_NO_POSITIONS = new Index("Simple$text_no_positions", field("text"), IndexTypes.TEXT,
             ImmutableMap.of(IndexOptions.TEXT_OMIT_POSITIONS_OPTION, "true"));
+    private static final Index SIMPLE_TEXT_BUFFERED = new Index("Simple$text_buffered", field("text"), IndexTypes.TEXT,
+            ImmutableMap.of(IndexOptions.TEXT_BUFFER_UPDATES_OPTION, "true"));
     private static final Index COMBINED_TEXT_BY_GROUP = new Index("Combined$text_by_group", field("text").groupBy(field("group")), IndexTypes.TEXT);
     private static final Index COMPLEX_MULTI_TAG_INDEX = new Index("Complex$multi_tag", field("text").groupBy(field("tag", FanType.FanOut)), IndexTypes.TEXT);
     private static final Index COMPLEX_THEN_TAG_INDEX = new Index("Complex$text_tag", concat(field("text"), field("tag", FanType.FanOut)), IndexTypes.TEXT);
@@ -699,6 +703,168 @@ public class TextIndexTest extends FDBRecordStoreTestBase {
         }
     }
 
+    @Test
+    public void saveSimpleDocumentsWithBufferedUpdates() throws Exception {
+        final SimpleDocument shakespeareDocument = SimpleDocument.newBuilder()
+                .setDocId(1623L)
+                .setText(TextSamples.ROMEO_AND_JULIET_PROLOGUE)
+                .build();
+        final SimpleDocument buffaloDocument = SimpleDocument.newBuilder()
+                .setDocId(1415L)
+                .setText("Buffalo buffalo Buffalo buffalo buffalo buffalo Buffalo buffalo Buffalo buffalo buffalo.")
+                .build();
+        final SimpleDocument simpleDocument = SimpleDocument.newBuilder()
+                .setDocId(1066L)
+                .setText("This is a simple document. There isn't much going on here, if I'm honest.")
+                .build();
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_BUFFERED);
+        };
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            recordStore.saveRecord(shakespeareDocument);
+            recordStore.saveRecord(buffaloDocument);
+            // Nothing is written until the buffer is flushed.
+            assertEquals(0, getSaveIndexKeyCount(recordStore));
+            assertEquals(0, getLoadIndexKeyCount(recordStore));
+
+            // Scanning the index flushes the buffer.
+            List<Map.Entry<Tuple, List<Integer>>> entryList = toMapEntries(scanIndex(recordStore, SIMPLE_TEXT_BUFFERED, TupleRange.allOf(Tuple.from("buffalo"))), null);
+            assertEquals(Collections.singletonList(entryOf(Tuple.from("buffalo", 1415L), IntStream.range(0, 11).boxed().collect(Collectors.toList()))), entryList);
+            assertEquals(83, getCount(recordStore, FDBStoreTimer.Counts.TEXT_INDEX_BUFFERED_UPDATE));
+
+            // A save followed by a delete within the buffer leaves nothing behind.
+            recordStore.saveRecord(simpleDocument);
+            recordStore.deleteRecord(Tuple.from(1066L));
+            recordStore.deleteRecord(Tuple.from(1415L));
+            commit(context);
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            assertEquals(Collections.emptyList(), scanIndex(recordStore, SIMPLE_TEXT_BUFFERED, TupleRange.allOf(Tuple.from("buffalo"))));
+            assertEquals(Collections.emptyList(), scanIndex(recordStore, SIMPLE_TEXT_BUFFERED, TupleRange.allOf(Tuple.from("document"))));
+            List<Map.Entry<Tuple, List<Integer>>> entryList = scanMapEntries(recordStore, SIMPLE_TEXT_BUFFERED, Tuple.from("parents"));
+            assertEquals(Collections.singletonList(entryOf(Tuple.from(1623L), Arrays.asList(57, 72))), entryList);
+            commit(context);
+        }
+    }
+
+    @Test
+    public void deleteAllRecordsDiscardsBufferedUpdates() throws Exception {
+        final SimpleDocument simpleDocument = SimpleDocument.newBuilder()
+                .setDocId(1066L)
+                .setText("This is a simple document. There isn't much going on here, if I'm honest.")
+                .build();
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_BUFFERED);
+        };
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            recordStore.saveRecord(simpleDocument);
+            recordStore.deleteAllRecords();
+            commit(context);
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            assertEquals(Collections.emptyList(), scanIndex(recordStore, SIMPLE_TEXT_BUFFERED, TupleRange.ALL));
+            assertNull(recordStore.loadRecord(Tuple.from(1066L)));
+            commit(context);
+        }
+    }
+
+    @Test
+    public void clearIndexWithBufferedUpdatesInFlight() throws Exception {
+        final List<SimpleDocument> documents = LongStream.range(0L, 20L)
+                .mapToObj(docId -> SimpleDocument.newBuilder().setDocId(docId).setText(TextSamples.ROMEO_AND_JULIET_PROLOGUE).build())
+                .collect(Collectors.toList());
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_BUFFERED);
+        };
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            documents.forEach(recordStore::saveRecord);
+            // Opening a scan starts writing out the buffer, but does not wait for it.
+            RecordCursor<IndexEntry> cursor = recordStore.scanIndex(SIMPLE_TEXT_BUFFERED, BY_TEXT_TOKEN, TupleRange.ALL, null, ScanProperties.FORWARD_SCAN);
+            recordStore.clearAndMarkIndexWriteOnly(SIMPLE_TEXT_BUFFERED).get();
+            cursor.close();
+            commit(context);
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            assertTrue(recordStore.isIndexWriteOnly(SIMPLE_TEXT_BUFFERED));
+            assertEquals(Collections.emptyList(), recordStore.ensureContextActive().getRange(recordStore.indexSubspace(SIMPLE_TEXT_BUFFERED).range()).asList().get());
+            commit(context);
+        }
+    }
+
+    @Test
+    public void compactAfterDeletes() throws Exception {
+        final List<SimpleDocument> documents = LongStream.range(0L, 100L)
+                .mapToObj(docId -> SimpleDocument.newBuilder().setDocId(docId).setText("alpha beta gamma").build())
+                .collect(Collectors.toList());
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            documents.forEach(recordStore::saveRecord);
+            commit(context);
+        }
+        final List<Long> remainingDocIds = new ArrayList<>();
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            for (SimpleDocument document : documents) {
+                if (document.getDocId() % 7 == 0) {
+                    remainingDocIds.add(document.getDocId());
+                } else {
+                    recordStore.deleteRecord(Tuple.from(document.getDocId()));
+                }
+            }
+            commit(context);
+        }
+
+        final Index index;
+        final int keysBefore;
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            index = recordStore.getRecordMetaData().getIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            keysBefore = recordStore.ensureContextActive().getRange(recordStore.indexSubspace(index).range()).asList().get().size();
+            assertThat(keysBefore, greaterThan(3));
+            commit(context);
+        }
+
+        byte[] continuation = null;
+        int transactions = 0;
+        do {
+            try (FDBRecordContext context = openContext()) {
+                openRecordStore(context);
+                TextIndexCompactionResult result = (TextIndexCompactionResult)recordStore.performIndexOperation(index.getName(), new TextIndexCompaction(2, continuation));
+                continuation = result.getContinuation();
+                commit(context);
+            }
+            transactions++;
+        } while (continuation != null);
+        assertThat(transactions, greaterThan(1));
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            // All of the remaining entries for each token fit into a single bunch.
+            assertEquals(3, recordStore.ensureContextActive().getRange(recordStore.indexSubspace(index).range()).asList().get().size());
+            for (String token : Arrays.asList("alpha", "beta", "gamma")) {
+                List<Map.Entry<Tuple, List<Integer>>> entryList = scanMapEntries(recordStore, index, Tuple.from(token));
+                assertEquals(remainingDocIds.stream().map(Tuple::from).collect(Collectors.toList()),
+                        entryList.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+            }
+            commit(context);
+        }
+    }
+
     @Test
     public void saveSimpleDocumentsWithPositionsOptionChange() throws Exception {
         final SimpleDocument shakespeareDocument = SimpleDocument.newBuilder()
@@ -37,6 +37,7 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBTestBase;
 import com.apple.foundationdb.record.provider.foundationdb.keyspace.KeySpaceDirectory.KeyType;
 import com.apple.foundationdb.record.provider.foundationdb.layers.interning.ScopedInterningLayer;
+import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.Tuple;
 import com.apple.foundationdb.tuple.TupleHelpers;
 import com.apple.test.Tags;
@@ -61,6 +62,7 @@ import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -440,6 +442,75 @@ public class KeySpaceDirectoryTest extends FDBTestBase {
         }
     }
 
+    @Test
+    public void testResolvedPathCache() throws Exception {
+        KeySpace root = new KeySpace(
+                new KeySpaceDirectory("root", KeyType.STRING, "path-cache")
+                        .addSubdirectory(new DirectoryLayerDirectory("tenant")
+                                .addSubdirectory(new KeySpaceDirectory("id", KeyType.LONG))));
+        final FDBDatabase database = FDBDatabaseFactory.instance().getDatabase();
+        final FDBStoreTimer timer = new FDBStoreTimer();
+        database.setResolvedKeySpacePathCache(new ResolvedKeySpacePathCache());
+        try {
+            final Tuple tuple;
+            try (FDBRecordContext context = database.openContext(null, timer)) {
+                tuple = root.path("root").add("tenant", "acme").add("id", 1L).toTuple(context);
+                context.commit();
+            }
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_MISS));
+
+            try (FDBRecordContext context = database.openContext(null, timer)) {
+                final KeySpacePath path = root.path("root").add("tenant", "acme").add("id", 1L);
+                assertEquals(tuple, path.toTuple(context));
+                assertEquals(new Subspace(tuple), path.toSubspace(context));
+                assertEquals(tuple, path.toResolvedPath(context).toTuple());
+                assertNotEquals(tuple, root.path("root").add("tenant", "acme").add("id", 2L).toTuple(context));
+            }
+            assertEquals(3, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_HIT));
+            assertEquals(2, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_MISS));
+
+            // Once the resolver version changes, the path is resolved again.
+            ScopedDirectoryLayer.global(database).incrementVersion().join();
+            database.setResolverStateRefreshTimeMillis(FDBDatabaseFactory.instance().getStateRefreshTimeMillis());
+            timer.reset();
+            try (FDBRecordContext context = database.openContext(null, timer)) {
+                assertEquals(tuple, root.path("root").add("tenant", "acme").add("id", 1L).toTuple(context));
+                assertEquals(tuple, root.path("root").add("tenant", "acme").add("id", 1L).toTuple(context));
+            }
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_HIT));
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_MISS));
+        } finally {
+            database.setResolvedKeySpacePathCache(null);
+        }
+    }
+
+    @Test
+    public void testResolvedPathCacheSkipsCustomDirectories() throws Exception {
+        // Stands in for a directory that looks its value up in each transaction.
+        final AtomicLong lookups = new AtomicLong();
+        KeySpace root = new KeySpace(
+                new KeySpaceDirectory("root", KeyType.STRING, "path-cache-custom")
+                        .addSubdirectory(new ConstantResolvingKeySpaceDirectory("tenant", KeyType.LONG, 1L,
+                                value -> (Long)value + lookups.getAndIncrement())));
+        final FDBDatabase database = FDBDatabaseFactory.instance().getDatabase();
+        final FDBStoreTimer timer = new FDBStoreTimer();
+        database.setResolvedKeySpacePathCache(new ResolvedKeySpacePathCache());
+        try {
+            final Tuple tuple;
+            try (FDBRecordContext context = database.openContext(null, timer)) {
+                tuple = root.path("root").add("tenant").toTuple(context);
+            }
+            try (FDBRecordContext context = database.openContext(null, timer)) {
+                assertNotEquals(tuple, root.path("root").add("tenant").toTuple(context));
+            }
+            assertEquals(2L, lookups.get());
+            assertEquals(0, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_HIT));
+            assertEquals(0, timer.getCount(FDBStoreTimer.Counts.KEYSPACE_PATH_CACHE_MISS));
+        } finally {
+            database.setResolvedKeySpacePathCache(null);
+        }
+    }
+
     @Test
     public void testDirectoryLayerDirectoryValidation() throws Exception {
         KeySpace root = new KeySpace(
@@ -932,6 +932,78 @@ public abstract class LocatableResolverTest extends FDBTestBase {
         }, is(0), 200, 10);
     }
 
+    @Test
+    public void testResolveAll() {
+        FDBDatabaseFactory factory = FDBDatabaseFactory.instance();
+        factory.setDirectoryCacheSize(10);
+        FDBStoreTimer timer = new FDBStoreTimer();
+        FDBDatabase fdb = factory.getDatabase();
+        fdb.close(); // Make sure cache is fresh.
+
+        final Long existing = globalScope.resolve("a").join();
+        fdb.clearForwardDirectoryCache();
+
+        final List<String> names = ImmutableList.of("a", "b", "c", "b");
+        Map<String, Long> resolved;
+        try (FDBRecordContext context = fdb.openContext()) {
+            context.setTimer(timer);
+            resolved = context.asyncToSync(FDBStoreTimer.Waits.WAIT_DIRECTORY_RESOLVE, globalScope.resolveAll(context, names));
+        }
+        assertEquals(3, resolved.size());
+        assertEquals(existing, resolved.get("a"));
+        assertEquals(3, new HashSet<>(resolved.values()).size(), "distinct names get distinct values");
+        assertEquals(1, timer.getCount(FDBStoreTimer.Events.DIRECTORY_READ), "all missing names are read together");
+
+        timer.reset();
+        for (String name : names) {
+            assertEquals(resolved.get(name), globalScope.resolve(timer, name).join());
+        }
+        assertEquals(0, timer.getCount(FDBStoreTimer.Events.DIRECTORY_READ), "resolved names are cached");
+    }
+
+    @Test
+    public void testPreloadCache() {
+        FDBDatabaseFactory factory = FDBDatabaseFactory.instance();
+        factory.setDirectoryCacheSize(10);
+        FDBStoreTimer timer = new FDBStoreTimer();
+        FDBDatabase fdb = factory.getDatabase();
+        fdb.close(); // Make sure cache is fresh, and resets version
+        fdb.setResolverStateRefreshTimeMillis(100);
+
+        final Map<String, Long> resolved = globalScope.resolveAll(timer, ImmutableList.of("x", "y", "z")).join();
+        final ResolverMappingSnapshot snapshot;
+        try (FDBRecordContext context = fdb.openContext()) {
+            snapshot = ResolverMappingSnapshot.fromBytes(globalScope.snapshotCachedMappings(context, 10).join().toBytes());
+        }
+        assertEquals(resolved.keySet(), snapshot.getMappings().keySet());
+
+        fdb.clearForwardDirectoryCache();
+        try (FDBRecordContext context = fdb.openContext()) {
+            globalScope.preloadCache(context, snapshot).join();
+        }
+        timer.reset();
+        for (Map.Entry<String, Long> entry : resolved.entrySet()) {
+            assertEquals(entry.getValue(), globalScope.resolve(timer, entry.getKey()).join());
+        }
+        assertEquals(0, timer.getCount(FDBStoreTimer.Events.DIRECTORY_READ), "preloaded names are cached");
+
+        globalScope.incrementVersion().join();
+        eventually("the snapshot is read again once the version changes", () -> {
+            fdb.clearForwardDirectoryCache();
+            timer.reset();
+            try (FDBRecordContext context = fdb.openContext()) {
+                context.setTimer(timer);
+                globalScope.preloadCache(context, snapshot).join();
+            }
+            return timer.getCount(FDBStoreTimer.Events.DIRECTORY_READ);
+        }, is(1), 120, 10);
+        timer.reset();
+        for (Map.Entry<String, Long> entry : resolved.entrySet()) {
+            assertEquals(entry.getValue(), globalScope.resolve(timer, entry.getKey()).join());
+        }
+        assertEquals(0, timer.getCount(FDBStoreTimer.Events.DIRECTORY_READ), "names read by preloading are cached");
+    }
+
     @Test
     public void testWriteSafetyCheck() {
         KeySpace keySpace = new KeySpace(
@@ -1158,6 +1158,78 @@ public class LeaderboardIndexTest extends FDBTestBase {
         }
     }
 
+    @Test
+    public void cachedDirectory() {
+        final TimeWindowLeaderboardDirectoryCache cache = new TimeWindowLeaderboardDirectoryCache();
+        fdb.setLeaderboardDirectoryCache(cache);
+        try {
+            Leaderboards leaderboards = new FlatLeaderboards();
+            leaderboards.buildMetaData();
+            try (FDBRecordContext context = openContext()) {
+                leaderboards.openRecordStore(context, true);
+                leaderboards.updateWindows(false, 10100);
+                leaderboards.setGroupHighScoreFirst(Tuple.from("game-1"), true);
+                addInitialScores(leaderboards);
+                context.commit();
+            }
+            // A transaction that changed the directory does not use the cache.
+            assertEquals(0, metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_HIT));
+            assertEquals(0, metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS));
+
+            final TupleRange game_1 = TupleRange.allOf(Tuple.from("game-1"));
+            for (int i = 0; i < 2; i++) {
+                metrics.reset();
+                try (FDBRecordContext context = openContext()) {
+                    leaderboards.openRecordStore(context, false);
+                    assertEquals(Arrays.asList("patroclus", "hecuba", "achilles", "hector"),
+                            leaderboards.scanIndex(IndexScanType.BY_RANK, game_1)
+                                    .map(leaderboards::getName).asList().join());
+                    leaderboards.addScores("helen", "game-2", 650, 10110, 556);
+                    context.commit();
+                }
+                if (i == 0) {
+                    assertThat(metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS), Matchers.greaterThan(0));
+                } else {
+                    assertEquals(0, metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS));
+                }
+                assertThat(metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_HIT), Matchers.greaterThan(0));
+            }
+            assertEquals(1, cache.size());
+
+            // Changing the sub-directory invalidates the cached copy.
+            try (FDBRecordContext context = openContext()) {
+                leaderboards.openRecordStore(context, false);
+                leaderboards.setGroupHighScoreFirst(Tuple.from("game-1"), false);
+                context.commit();
+            }
+            metrics.reset();
+            try (FDBRecordContext context = openContext()) {
+                leaderboards.openRecordStore(context, false);
+                assertEquals(Arrays.asList("achilles", "hector", "hecuba", "patroclus"),
+                        leaderboards.scanIndex(IndexScanType.BY_RANK, game_1)
+                                .map(leaderboards::getName).asList().join());
+            }
+            assertThat(metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS), Matchers.greaterThan(0));
+
+            // An update that does not change the window set leaves the cached copy valid.
+            try (FDBRecordContext context = openContext()) {
+                leaderboards.openRecordStore(context, false);
+                assertFalse(leaderboards.updateWindows(false, 10100).isChanged());
+                context.commit();
+            }
+            metrics.reset();
+            try (FDBRecordContext context = openContext()) {
+                leaderboards.openRecordStore(context, false);
+                assertEquals(Arrays.asList("achilles", "hector", "hecuba", "patroclus"),
+                        leaderboards.scanIndex(IndexScanType.BY_RANK, game_1)
+                                .map(leaderboards::getName).asList().join());
+            }
+            assertEquals(0, metrics.getCount(FDBStoreTimer.Counts.TIME_WINDOW_LEADERBOARD_DIRECTORY_CACHE_MISS));
+        } finally {
+            fdb.setLeaderboardDirectoryCache(null);
+        }
+    }
+
     @Test
     public void deleteWhere() {
         Leaderboards leaderboards = new GroupedNestedLeaderboards();
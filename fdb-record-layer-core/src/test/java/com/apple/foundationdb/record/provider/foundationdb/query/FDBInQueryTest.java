@@ -40,6 +40,8 @@ import com.apple.foundationdb.record.query.RecordQuery;
 import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInParameterUnionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInValuesUnionPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.foundationdb.record.query.plan.temp.matchers.BindingMatcher;
@@ -60,6 +62,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.apple.foundationdb.record.TestHelpers.assertDiscardedAtMost;
 import static com.apple.foundationdb.record.metadata.Key.Expressions.concat;
@@ -87,8 +90,10 @@ import static com.apple.foundationdb.record.query.plan.temp.matchers.RecordQuery
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.oneOf;
@@ -391,6 +396,70 @@ class FDBInQueryTest extends FDBRecordStoreQueryTestBase {
                 context -> TestHelpers.assertDiscardedAtMost(40, context)));
     }
 
+    /**
+     * Verify that an IN query with a sort can be implemented as an in-union, which merges the scans of a compound index
+     * for each IN value in the order of the sort.
+     * @see com.apple.foundationdb.record.query.plan.planning.InExtractor#wrapUnion
+     */
+    @Test
+    void inQueryWithSortAsInUnion() throws Exception {
+        RecordMetaDataHook hook = metaData ->
+                metaData.addIndex("MySimpleRecord", "compoundIndex",
+                        concat(field("num_value_3_indexed"), field("str_value_indexed")));
+        complexQuerySetup(hook);
+        final List<Integer> inList = asList(1, 4, 2);
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").in(inList))
+                .setSort(field("str_value_indexed"))
+                .build();
+
+        assertTrue(planner instanceof RecordQueryPlanner); // The configuration is planner-specific.
+        RecordQueryPlanner recordQueryPlanner = (RecordQueryPlanner)planner;
+        recordQueryPlanner.setConfiguration(recordQueryPlanner.getConfiguration().asBuilder()
+                .setAttemptFailedInJoinAsUnionMaxSize(10)
+                .build());
+
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, instanceOf(RecordQueryInValuesUnionPlan.class));
+        final RecordQueryInValuesUnionPlan unionPlan = (RecordQueryInValuesUnionPlan)plan;
+        assertEquals(inList, unionPlan.getInListValues());
+        assertEquals(concat(field("str_value_indexed"), primaryKey("MySimpleRecord")), unionPlan.getComparisonKey());
+        assertMatchesExactly(unionPlan.getInnerPlan(), indexPlan().where(indexName("compoundIndex")));
+
+        final List<String> strValues = new ArrayList<>();
+        assertEquals(60, querySimpleRecordStore(hook, plan, EvaluationContext::empty,
+                record -> {
+                    assertThat(record.getNumValue3Indexed(), anyOf(is(1), is(2), is(4)));
+                    strValues.add(record.getStrValueIndexed());
+                },
+                TestHelpers::assertDiscardedNone));
+        assertEquals(strValues.stream().sorted().collect(Collectors.toList()), strValues);
+
+        // A literal list with more values than allowed is planned as a filter instead.
+        recordQueryPlanner.setConfiguration(recordQueryPlanner.getConfiguration().asBuilder()
+                .setAttemptFailedInJoinAsUnionMaxSize(2)
+                .build());
+        assertMatchesExactly(planner.plan(query),
+                filterPlan(indexPlan().where(indexName("MySimpleRecord$str_value_indexed"))));
+
+        // The size of a parameter list is only checked when the plan is executed.
+        RecordQuery parameterQuery = query.toBuilder()
+                .setFilter(Query.field("num_value_3_indexed").in("valueThrees"))
+                .build();
+        RecordQueryPlan parameterPlan = planner.plan(parameterQuery);
+        assertThat(parameterPlan, instanceOf(RecordQueryInParameterUnionPlan.class));
+        assertEquals(40, querySimpleRecordStore(hook, parameterPlan,
+                () -> EvaluationContext.forBinding("valueThrees", asList(3, 0)),
+                record -> assertThat(record.getNumValue3Indexed(), anyOf(is(0), is(3))),
+                TestHelpers::assertDiscardedNone));
+        RecordCoreException err = assertThrows(RecordCoreException.class, () ->
+                querySimpleRecordStore(hook, parameterPlan,
+                        () -> EvaluationContext.forBinding("valueThrees", inList),
+                        record -> { }));
+        assertThat(err.getMessage(), containsString("too many IN values"));
+    }
+
     /**
      * Verify that an IN query with a sort and range predicate can be implemented as an ordered union of compound indexes
      * that can satisfy the sort once the equality predicates from the IN have been pushed onto the indexes.
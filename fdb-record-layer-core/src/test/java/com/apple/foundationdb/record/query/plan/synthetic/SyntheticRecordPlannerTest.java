@@ -79,6 +79,7 @@ import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
 import static com.apple.foundationdb.record.metadata.Key.Expressions.recordType;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests for {@link SyntheticRecordPlanner}.
@@ -249,6 +250,60 @@ public class SyntheticRecordPlannerTest {
         }
     }
 
+    @Test
+    public void batchedJoin() throws Exception {
+        final JoinedRecordTypeBuilder joined = metaDataBuilder.addJoinedRecordType("ManyToMany");
+        joined.addConstituent("simple", "MySimpleRecord");
+        joined.addConstituent("other", "MyOtherRecord");
+        joined.addConstituent("joining", "JoiningRecord");
+        joined.addJoin("joining", "simple_rec_no", "simple", "rec_no");
+        joined.addJoin("joining", "other_rec_no", "other", "rec_no");
+        final JoinedRecordTypeBuilder leftJoined = metaDataBuilder.addJoinedRecordType("ManyToManyLeft");
+        leftJoined.addConstituent("simple", "MySimpleRecord");
+        leftJoined.addConstituent("other", metaDataBuilder.getRecordType("MyOtherRecord"), true);
+        leftJoined.addConstituent("joining", "JoiningRecord");
+        leftJoined.addJoin("joining", "simple_rec_no", "simple", "rec_no");
+        leftJoined.addJoin("joining", "other_rec_no", "other", "rec_no");
+
+        try (FDBRecordContext context = openContext()) {
+            final FDBRecordStore recordStore = recordStoreBuilder.setContext(context).create();
+
+            TestRecordsJoinIndexProto.MySimpleRecord.Builder simple = TestRecordsJoinIndexProto.MySimpleRecord.newBuilder();
+            simple.setRecNo(1);
+            recordStore.saveRecord(simple.build());
+            for (int i = 0; i < 10; i++) {
+                TestRecordsJoinIndexProto.MyOtherRecord.Builder other = TestRecordsJoinIndexProto.MyOtherRecord.newBuilder();
+                other.setRecNo(1000 + i);
+                recordStore.saveRecord(other.build());
+            }
+            // More joining records than fit in one batch, only some of which have a matching other record.
+            for (int i = 0; i < 250; i++) {
+                TestRecordsJoinIndexProto.JoiningRecord.Builder joining = TestRecordsJoinIndexProto.JoiningRecord.newBuilder();
+                joining.setRecNo(100 + i).setSimpleRecNo(1).setOtherRecNo(1000 + i % 20);
+                recordStore.saveRecord(joining.build());
+            }
+            // And one without any join key.
+            TestRecordsJoinIndexProto.JoiningRecord.Builder joining = TestRecordsJoinIndexProto.JoiningRecord.newBuilder();
+            joining.setRecNo(99).setSimpleRecNo(1);
+            recordStore.saveRecord(joining.build());
+
+            context.commit();
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            final FDBRecordStore recordStore = recordStoreBuilder.setContext(context).open();
+            final SyntheticRecordPlanner planner = new SyntheticRecordPlanner(recordStore);
+
+            FDBStoredRecord<Message> record = recordStore.loadRecord(Tuple.from(1));
+            SyntheticRecordFromStoredRecordPlan plan = planner.fromStoredType(record.getRecordType(), true);
+            Multiset<Tuple> expected = HashMultiset.create(plan.execute(recordStore, record).map(FDBSyntheticRecord::getPrimaryKey).asList().join());
+            assertEquals(130 + 251, expected.size());
+            assertTrue(expected.contains(Tuple.from(-2, Tuple.from(1), null, Tuple.from(99))));
+            Multiset<Tuple> results = HashMultiset.create(plan.executeAll(recordStore, record).join().stream().map(FDBSyntheticRecord::getPrimaryKey).collect(Collectors.toList()));
+            assertEquals(expected, results);
+        }
+    }
+
     @Test
     public void selfJoin() throws Exception {
         metaDataBuilder.addIndex("MySimpleRecord", "other_rec_no");
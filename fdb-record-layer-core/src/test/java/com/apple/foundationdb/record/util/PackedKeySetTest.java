@@ -0,0 +1,106 @@
+/*
+ * PackedKeySetTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.util;
+
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link PackedKeySet}.
+ */
+public class PackedKeySetTest {
+    @Test
+    public void addAndContains() {
+        PackedKeySet set = new PackedKeySet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(Tuple.from(1L).pack()));
+        assertTrue(set.add(Tuple.from(2L, "b").pack()));
+        assertFalse(set.add(Tuple.from(1L).pack()));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(Tuple.from(2L, "b").pack()));
+        assertFalse(set.contains(Tuple.from(2L).pack()));
+        assertTrue(set.add(new byte[0]));
+        assertTrue(set.contains(new byte[0]));
+    }
+
+    @Test
+    public void manyKeys() {
+        PackedKeySet set = new PackedKeySet();
+        for (long i = 0; i < 10_000; i++) {
+            assertTrue(set.add(Tuple.from(i).pack()));
+        }
+        assertEquals(10_000, set.size());
+        for (long i = 0; i < 10_000; i++) {
+            assertTrue(set.contains(Tuple.from(i).pack()));
+            assertFalse(set.add(Tuple.from(i).pack()));
+        }
+        assertFalse(set.contains(Tuple.from(10_000L).pack()));
+    }
+
+    @Test
+    public void longKeys() {
+        PackedKeySet set = new PackedKeySet();
+        byte[] key = new byte[20_000];
+        key[key.length - 1] = 1;
+        byte[] other = new byte[20_000];
+        assertTrue(set.add(key));
+        assertTrue(set.add(other));
+        assertTrue(set.contains(key.clone()));
+        assertFalse(set.add(other.clone()));
+        assertFalse(set.contains(new byte[19_999]));
+    }
+
+    @Test
+    public void memoryLimit() {
+        PackedKeySet set = new PackedKeySet(1_000);
+        long i = 0;
+        while (set.hasRoomFor(Tuple.from(i).pack())) {
+            set.add(Tuple.from(i).pack());
+            i++;
+        }
+        assertTrue(set.size() > 0);
+        assertTrue(set.getMemoryUsage() <= 1_000);
+        // A key that is already present still has room.
+        assertTrue(set.hasRoomFor(Tuple.from(0L).pack()));
+        // An empty set always has room for one key.
+        assertTrue(new PackedKeySet(1).hasRoomFor(new byte[100]));
+    }
+
+    @Test
+    public void memoryUsageCountsCapacity() {
+        PackedKeySet set = new PackedKeySet();
+        final long emptyUsage = set.getMemoryUsage();
+        assertTrue(emptyUsage > 0);
+        // A small key fits in space that is already allocated.
+        set.add(Tuple.from(1L).pack());
+        assertEquals(emptyUsage, set.getMemoryUsage());
+        // Growing the key storage counts the whole new array, including the spare space after the keys.
+        set.add(new byte[300]);
+        final long grownUsage = set.getMemoryUsage();
+        assertTrue(grownUsage > emptyUsage);
+        set.add(Tuple.from(2L).pack());
+        assertEquals(grownUsage, set.getMemoryUsage());
+    }
+}
@@ -26,6 +26,8 @@ import com.apple.foundationdb.record.lucene.directory.FDBDirectory;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
 import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.IOUtils;
 import org.slf4j.Logger;
@@ -51,7 +53,19 @@ public class DirectoryCommitCheckAsync implements FDBRecordContext.CommitCheckAs
      * @param context context
      */
     public DirectoryCommitCheckAsync(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context) {
-        this.directory = new FDBDirectory(subspace, context);
+        this(subspace, context, false);
+    }
+
+    /**
+     * Creates a lucene directory from a subspace (keyspace) and a transaction.
+     *
+     * @param subspace the index subspace that contains the Directory/Files/etc.
+     * @param context context
+     * @param compressBlocks whether to compress the blocks of files written to the directory
+     * @see LuceneIndexOptions#COMPRESS_BLOCKS_OPTION
+     */
+    public DirectoryCommitCheckAsync(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context, boolean compressBlocks) {
+        this.directory = new FDBDirectory(subspace, context, compressBlocks);
     }
 
     /**
@@ -87,25 +101,53 @@ public class DirectoryCommitCheckAsync implements FDBRecordContext.CommitCheckAs
      */
     @Nonnull
     protected static DirectoryCommitCheckAsync getOrCreateDirectoryCommitCheckAsync(@Nonnull final IndexMaintainerState state) {
+        return getOrCreateDirectoryCommitCheckAsync(state, TupleHelpers.EMPTY);
+    }
+
+    /**
+     * Attempts to get the commit check for the directory of the given group from the context and if it cannot find it,
+     * creates one and adds it to the context.
+     *
+     * @param state state
+     * @param groupingKey the values of the grouping columns, or an empty tuple if the index is not partitioned
+     * @return DirectoryCommitCheckAsync
+     * @see LuceneIndexOptions#PARTITION_BY_GROUP_OPTION
+     */
+    @Nonnull
+    protected static DirectoryCommitCheckAsync getOrCreateDirectoryCommitCheckAsync(@Nonnull final IndexMaintainerState state,
+                                                                                   @Nonnull final Tuple groupingKey) {
         synchronized (state.context) {
-            DirectoryCommitCheckAsync directoryCheck = state.context.getInSession(getDirectoryName(state), DirectoryCommitCheckAsync.class);
+            DirectoryCommitCheckAsync directoryCheck = state.context.getInSession(getDirectoryName(state, groupingKey), DirectoryCommitCheckAsync.class);
             if (directoryCheck == null) {
-                directoryCheck = new DirectoryCommitCheckAsync(state.indexSubspace, state.context);
+                directoryCheck = new DirectoryCommitCheckAsync(getDirectorySubspace(state, groupingKey), state.context,
+                        state.index.getBooleanOption(LuceneIndexOptions.COMPRESS_BLOCKS_OPTION, false));
                 state.context.addCommitCheck(directoryCheck);
-                state.context.putInSessionIfAbsent(getDirectoryName(state), directoryCheck);
+                state.context.putInSessionIfAbsent(getDirectoryName(state, groupingKey), directoryCheck);
             }
             return directoryCheck;
         }
     }
 
+    /**
+     * The subspace of the directory for the given group.
+     *
+     * @param state state
+     * @param groupingKey the values of the grouping columns, or an empty tuple if the index is not partitioned
+     * @return Subspace
+     */
+    @Nonnull
+    protected static Subspace getDirectorySubspace(@Nonnull final IndexMaintainerState state, @Nonnull final Tuple groupingKey) {
+        return groupingKey.isEmpty() ? state.indexSubspace : state.indexSubspace.subspace(groupingKey);
+    }
+
     /**
      * The directory name in the context.
      *
      * @param state state
+     * @param groupingKey groupingKey
      * @return String
      */
-    private static String getDirectoryName(@Nonnull final IndexMaintainerState state) {
-        return "directory$" + state.index.getName();
+    private static String getDirectoryName(@Nonnull final IndexMaintainerState state, @Nonnull final Tuple groupingKey) {
+        return groupingKey.isEmpty() ? "directory$" + state.index.getName() : "directory$" + state.index.getName() + "$" + groupingKey;
     }
 }
-
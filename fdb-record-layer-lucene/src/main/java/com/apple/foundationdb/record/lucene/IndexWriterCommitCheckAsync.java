@@ -25,6 +25,8 @@ import com.apple.foundationdb.async.AsyncUtil;
 import com.apple.foundationdb.record.RecordCoreStorageException;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene70.Lucene70Codec;
@@ -32,6 +34,7 @@ import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.util.IOUtils;
 import org.slf4j.Logger;
@@ -65,13 +68,24 @@ public class IndexWriterCommitCheckAsync implements FDBRecordContext.CommitCheck
      * @throws IOException exception
      */
     public IndexWriterCommitCheckAsync(@Nonnull Analyzer analyzer, @Nonnull DirectoryCommitCheckAsync directoryCommitCheckAsync, Executor executor) throws IOException {
-        TieredMergePolicy tieredMergePolicy = new TieredMergePolicy();
-        tieredMergePolicy.setMaxMergedSegmentMB(5.00);
-        tieredMergePolicy.setMaxMergeAtOnceExplicit(2);
-        tieredMergePolicy.setNoCFSRatio(1.00);
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
-        indexWriterConfig.setUseCompoundFile(true);
-        indexWriterConfig.setMergePolicy(tieredMergePolicy);
+        this(analyzer, directoryCommitCheckAsync, executor, false);
+    }
+
+    /**
+     * Creates an index writer that either merges segments as they are written, with merge configurations that
+     * limit the amount of data in a segment, or leaves merging to {@link LuceneMergeOperation}s.
+     *
+     * @param analyzer analyzer
+     * @param directoryCommitCheckAsync directoryCommitCheckAsync
+     * @param executor executor
+     * @param backgroundMerge whether segments are merged separately
+     * @throws IOException exception
+     * @see LuceneIndexOptions#BACKGROUND_MERGE_OPTION
+     */
+    public IndexWriterCommitCheckAsync(@Nonnull Analyzer analyzer, @Nonnull DirectoryCommitCheckAsync directoryCommitCheckAsync, Executor executor,
+                                       boolean backgroundMerge) throws IOException {
+        final IndexWriterConfig indexWriterConfig = createIndexWriterConfig(analyzer,
+                backgroundMerge ? NoMergePolicy.INSTANCE : createMergePolicy());
         indexWriterConfig.setMergeScheduler(new ConcurrentMergeScheduler() {
             @Override
             protected void doMerge(final IndexWriter writer, final MergePolicy.OneMerge merge) throws IOException {
@@ -79,11 +93,40 @@ public class IndexWriterCommitCheckAsync implements FDBRecordContext.CommitCheck
                 super.doMerge(writer, merge);
             }
         });
-        indexWriterConfig.setCodec(new Lucene70Codec(Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION));
         this.indexWriter = new IndexWriter(directoryCommitCheckAsync.getDirectory(), indexWriterConfig);
         this.executor = executor;
     }
 
+    /**
+     * Creates a merge policy that limits the amount of data in a segment, so that a merge can be done in a single transaction.
+     *
+     * @return a new merge policy
+     */
+    @Nonnull
+    protected static TieredMergePolicy createMergePolicy() {
+        TieredMergePolicy tieredMergePolicy = new TieredMergePolicy();
+        tieredMergePolicy.setMaxMergedSegmentMB(5.00);
+        tieredMergePolicy.setMaxMergeAtOnceExplicit(2);
+        tieredMergePolicy.setNoCFSRatio(1.00);
+        return tieredMergePolicy;
+    }
+
+    /**
+     * Creates an index writer config with the codec and file layout used for all writers of an index.
+     *
+     * @param analyzer analyzer
+     * @param mergePolicy the merge policy to use
+     * @return a new index writer config
+     */
+    @Nonnull
+    protected static IndexWriterConfig createIndexWriterConfig(@Nonnull Analyzer analyzer, @Nonnull MergePolicy mergePolicy) {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
+        indexWriterConfig.setUseCompoundFile(true);
+        indexWriterConfig.setMergePolicy(mergePolicy);
+        indexWriterConfig.setCodec(new Lucene70Codec(Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION));
+        return indexWriterConfig;
+    }
+
     /**
      * Close IndexWriter.
      *
@@ -110,25 +153,38 @@ public class IndexWriterCommitCheckAsync implements FDBRecordContext.CommitCheck
 
     @Nullable
     protected static IndexWriterCommitCheckAsync getIndexWriterCommitCheckAsync(@Nonnull final IndexMaintainerState state) {
-        return state.context.getInSession(getWriterName(state), IndexWriterCommitCheckAsync.class);
+        return getIndexWriterCommitCheckAsync(state, TupleHelpers.EMPTY);
+    }
+
+    @Nullable
+    protected static IndexWriterCommitCheckAsync getIndexWriterCommitCheckAsync(@Nonnull final IndexMaintainerState state,
+                                                                                @Nonnull final Tuple groupingKey) {
+        return state.context.getInSession(getWriterName(state, groupingKey), IndexWriterCommitCheckAsync.class);
     }
 
     @Nonnull
     protected static IndexWriter getOrCreateIndexWriter(@Nonnull final IndexMaintainerState state, @Nonnull Analyzer analyzer, @Nonnull Executor executor) throws IOException {
+        return getOrCreateIndexWriter(state, analyzer, executor, TupleHelpers.EMPTY);
+    }
+
+    @Nonnull
+    protected static IndexWriter getOrCreateIndexWriter(@Nonnull final IndexMaintainerState state, @Nonnull Analyzer analyzer, @Nonnull Executor executor,
+                                                        @Nonnull final Tuple groupingKey) throws IOException {
         synchronized (state.context) {
-            IndexWriterCommitCheckAsync writerCheck = getIndexWriterCommitCheckAsync(state);
+            IndexWriterCommitCheckAsync writerCheck = getIndexWriterCommitCheckAsync(state, groupingKey);
             if (writerCheck == null) {
-                writerCheck = new IndexWriterCommitCheckAsync(analyzer, getOrCreateDirectoryCommitCheckAsync(state), executor);
+                writerCheck = new IndexWriterCommitCheckAsync(analyzer, getOrCreateDirectoryCommitCheckAsync(state, groupingKey), executor,
+                        state.index.getBooleanOption(LuceneIndexOptions.BACKGROUND_MERGE_OPTION, false));
                 state.context.addCommitCheck(writerCheck);
-                state.context.putInSessionIfAbsent(getWriterName(state), writerCheck);
+                state.context.putInSessionIfAbsent(getWriterName(state, groupingKey), writerCheck);
             }
             return writerCheck.indexWriter;
         }
     }
 
     @Nonnull
-    private static String getWriterName(@Nonnull final IndexMaintainerState state) {
-        return "writer$" + state.index.getName();
+    private static String getWriterName(@Nonnull final IndexMaintainerState state, @Nonnull final Tuple groupingKey) {
+        return groupingKey.isEmpty() ? "writer$" + state.index.getName() : "writer$" + state.index.getName() + "$" + groupingKey;
     }
 
 }
@@ -0,0 +1,91 @@
+/*
+ * LuceneEvents.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Lucene-specific events recorded by an {@link com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer}.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LuceneEvents {
+    private LuceneEvents() {
+    }
+
+    /**
+     * Lucene {@link StoreTimer.Count} events.
+     */
+    public enum Counts implements StoreTimer.Count {
+        /** The number of blocks read from the {@link com.apple.foundationdb.record.lucene.directory.FDBDirectoryBlockCache}. */
+        LUCENE_SHARED_CACHE_HIT("lucene shared block cache hit", false),
+        /** The number of blocks not found in the {@link com.apple.foundationdb.record.lucene.directory.FDBDirectoryBlockCache}. */
+        LUCENE_SHARED_CACHE_MISS("lucene shared block cache miss", false),
+        /** The number of Lucene scans that used an index reader from the {@link LuceneIndexReaderCache}. */
+        LUCENE_READER_CACHE_HIT("lucene reader cache hit", false),
+        /** The number of Lucene scans that opened a new index reader for the {@link LuceneIndexReaderCache}. */
+        LUCENE_READER_CACHE_MISS("lucene reader cache miss", false),
+        /** The number of Lucene scans with weak read semantics that opened an index reader without the {@link LuceneIndexReaderCache}. */
+        LUCENE_READER_CACHE_BYPASS("lucene reader cache bypass", false),
+        /** The number of blocks fetched ahead of time by a sequential read of a Lucene file. */
+        LUCENE_READ_AHEAD_BLOCK("lucene read ahead block", false),
+        /** The number of merges of Lucene segments done by a {@link LuceneMergeOperation}. */
+        LUCENE_MERGE("lucene merge segments", false),
+        /** The number of Lucene file blocks that were stored compressed. */
+        LUCENE_COMPRESSED_BLOCK("lucene compressed block", false),
+        /** The number of Lucene file blocks of compressed files that were stored as is because they did not shrink. */
+        LUCENE_UNCOMPRESSED_BLOCK("lucene uncompressed block", false),
+        /** The number of bytes of Lucene file blocks saved by compressing them. */
+        LUCENE_COMPRESSED_BYTES_SAVED("lucene bytes saved by block compression", true);
+
+        private final String title;
+        private final boolean isSize;
+        private final String logKey;
+
+        Counts(String title, boolean isSize, String logKey) {
+            this.title = title;
+            this.isSize = isSize;
+            this.logKey = (logKey != null) ? logKey : StoreTimer.Count.super.logKey();
+        }
+
+        Counts(String title, boolean isSize) {
+            this(title, isSize, null);
+        }
+
+        @Override
+        public String title() {
+            return title;
+        }
+
+        @Override
+        @Nonnull
+        public String logKey() {
+            return this.logKey;
+        }
+
+        @Override
+        public boolean isSize() {
+            return isSize;
+        }
+    }
+}
@@ -33,11 +33,13 @@ import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.ScanProperties;
 import com.apple.foundationdb.record.TupleRange;
 import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
 import com.apple.foundationdb.record.metadata.IndexRecordFunction;
 import com.apple.foundationdb.record.metadata.Key;
 import com.apple.foundationdb.record.metadata.MetaDataException;
 import com.apple.foundationdb.record.metadata.expressions.FieldKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.NestingKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.ThenKeyExpression;
@@ -50,6 +52,7 @@ import com.apple.foundationdb.record.provider.foundationdb.indexes.InvalidIndexE
 import com.apple.foundationdb.record.provider.foundationdb.indexes.StandardIndexMaintainer;
 import com.apple.foundationdb.record.query.QueryToKeyMatcher;
 import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
 import com.google.common.base.Verify;
 import com.google.protobuf.Message;
 import org.apache.lucene.analysis.Analyzer;
@@ -58,9 +61,18 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterMergePolicy;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,9 +82,12 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
+import static com.apple.foundationdb.record.lucene.DirectoryCommitCheckAsync.getOrCreateDirectoryCommitCheckAsync;
+import static com.apple.foundationdb.record.lucene.IndexWriterCommitCheckAsync.getIndexWriterCommitCheckAsync;
 import static com.apple.foundationdb.record.lucene.IndexWriterCommitCheckAsync.getOrCreateIndexWriter;
 
 /**
@@ -87,16 +102,51 @@ public class LuceneIndexMaintainer extends StandardIndexMaintainer {
     protected static final String PRIMARY_KEY_FIELD_NAME = "p"; // TODO: Need to find reserved names..
     private static final String PRIMARY_KEY_SEARCH_NAME = "s"; // TODO: Need to find reserved names..
     private final List<String> fieldNames = new ArrayList<>(2);
+    private final int groupingCount;
     private final Executor executor;
 
     public LuceneIndexMaintainer(@Nonnull final IndexMaintainerState state, @Nonnull Executor executor, @Nonnull Analyzer analyzer) {
         super(state);
         this.analyzer = analyzer;
-        this.state.index.getRootExpression().normalizeKeyForPositions().forEach(
+        this.groupingCount = getGroupingCount(state.index);
+        getTextKey(state.index).normalizeKeyForPositions().forEach(
                 (expression) -> parseFieldNames(expression, ""));
         this.executor = executor;
     }
 
+    /**
+     * Whether the index keeps a separate directory for each value of its grouping columns.
+     *
+     * @param index the index
+     * @return {@code true} if the index is partitioned by group
+     * @see LuceneIndexOptions#PARTITION_BY_GROUP_OPTION
+     */
+    static boolean isPartitionedByGroup(@Nonnull Index index) {
+        return index.getBooleanOption(LuceneIndexOptions.PARTITION_BY_GROUP_OPTION, false) &&
+               index.getRootExpression() instanceof GroupingKeyExpression;
+    }
+
+    /**
+     * The number of leading columns of the index's entries that select its directory.
+     *
+     * @param index the index
+     * @return the number of grouping columns, or {@code 0} if the index is not partitioned by group
+     */
+    static int getGroupingCount(@Nonnull Index index) {
+        return isPartitionedByGroup(index) ? ((GroupingKeyExpression)index.getRootExpression()).getGroupingCount() : 0;
+    }
+
+    /**
+     * The part of the index's root expression whose values are indexed as text.
+     *
+     * @param index the index
+     * @return the grouped part of the root expression if the index is partitioned by group, else the whole of it
+     */
+    @Nonnull
+    static KeyExpression getTextKey(@Nonnull Index index) {
+        return isPartitionedByGroup(index) ? ((GroupingKeyExpression)index.getRootExpression()).getGroupedSubKey() : index.getRootExpression();
+    }
+
     private void parseFieldNames(KeyExpression expression, @Nonnull String parentFieldName) {
         if (expression instanceof FieldKeyExpression) {
             this.fieldNames.add(parentFieldName + ((FieldKeyExpression)expression).getFieldName());
@@ -114,7 +164,8 @@ public class LuceneIndexMaintainer extends StandardIndexMaintainer {
 
     /**
      * The scan uses the low element in the range to execute the
-     * MultiFieldQueryParser.
+     * MultiFieldQueryParser. If the index is partitioned by group, the low element is preceded by
+     * the values of the grouping columns, and only the directory for that group is searched.
      *
      * @param scanType the {@link IndexScanType type} of scan to perform
      * @param range the range to scan
@@ -132,8 +183,17 @@ public class LuceneIndexMaintainer extends StandardIndexMaintainer {
         Verify.verify(scanType == IndexScanType.BY_LUCENE);
         try {
             final MultiFieldQueryParser parser = new MultiFieldQueryParser(fieldNames.toArray(new String[0]) , analyzer);
-            Query query = parser.parse(range.getLow().getString(0));
-            return new LuceneRecordCursor(executor, scanProperties, state, query, continuation, fieldNames);
+            final Tuple low = range.getLow();
+            if (low.size() != groupingCount + 1) {
+                throw new RecordCoreArgumentException("Lucene scan range must give the grouping key and query string",
+                        LogMessageKeys.INDEX_NAME, state.index.getName(),
+                        "groupingCount", groupingCount);
+            }
+            Query query = parser.parse(low.getString(groupingCount));
+            return new LuceneRecordCursor(executor, scanProperties, state, query, continuation, fieldNames,
+                    TupleHelpers.subTuple(low, 0, groupingCount));
+        } catch (RecordCoreArgumentException e) {
+            throw e;
         } catch (Exception ioe) {
             throw new RecordCoreArgumentException("Unable to parse range given for query", "range", range,
                     "internalException", ioe);
@@ -158,9 +218,10 @@ public class LuceneIndexMaintainer extends StandardIndexMaintainer {
             return AsyncUtil.DONE;
         }
         try {
-            final IndexWriter writer = getOrCreateIndexWriter(state, analyzer, executor);
             indexEntries.forEach( (entry ) -> {
                 try {
+                    final Tuple groupingKey = TupleHelpers.subTuple(entry.getKey(), 0, groupingCount);
+                    final IndexWriter writer = getOrCreateIndexWriter(state, analyzer, executor, groupingKey);
                     if (remove) {
                         Query query = SortedDocValuesField.newSlowExactQuery(PRIMARY_KEY_SEARCH_NAME, new BytesRef(savedRecord.getPrimaryKey().pack()));
                         writer.deleteDocuments(query);
@@ -171,7 +232,7 @@ public class LuceneIndexMaintainer extends StandardIndexMaintainer {
                         document.add(new StoredField(PRIMARY_KEY_FIELD_NAME, ref));
                         document.add(new SortedDocValuesField(PRIMARY_KEY_SEARCH_NAME, ref));
                         for (int i = 0; i < fieldNames.size(); i++) {
-                            String value = entry.getKey().getString(i);
+                            String value = entry.getKey().getString(groupingCount + i);
                             if (value == null) {
                                 value = ""; 
                             }
@@ -264,9 +325,90 @@ public class LuceneIndexMaintainer extends StandardIndexMaintainer {
     @Nonnull
     public CompletableFuture<IndexOperationResult> performOperation(@Nonnull IndexOperation operation) {
         LOG.trace("performOperation operation={}", operation);
+        if (operation instanceof LuceneMergeOperation) {
+            return CompletableFuture.supplyAsync(() -> new LuceneMergeOperationResult(
+                    mergeSegments(((LuceneMergeOperation)operation).getGroupingKey())), executor);
+        }
         return CompletableFuture.completedFuture(new IndexOperationResult() {
         });
     }
 
+    /**
+     * Perform at most one merge of the index's segments in this transaction.
+     *
+     * @param groupingKey the group whose directory to merge, or an empty tuple if the index is not partitioned
+     * @return whether any segments were merged
+     */
+    private boolean mergeSegments(@Nonnull Tuple groupingKey) {
+        if (groupingKey.size() != groupingCount) {
+            throw new RecordCoreArgumentException("Lucene merge must give the grouping key of a partitioned index",
+                    LogMessageKeys.INDEX_NAME, state.index.getName(),
+                    "groupingCount", groupingCount);
+        }
+        if (getIndexWriterCommitCheckAsync(state, groupingKey) != null) {
+            throw new RecordCoreException("Lucene index cannot be merged in a transaction that updates it",
+                    LogMessageKeys.INDEX_NAME, state.index.getName());
+        }
+        final Directory directory = getOrCreateDirectoryCommitCheckAsync(state, groupingKey).getDirectory();
+        try {
+            if (!DirectoryReader.indexExists(directory)) {
+                return false;
+            }
+            final SingleMergePolicy mergePolicy = new SingleMergePolicy(IndexWriterCommitCheckAsync.createMergePolicy());
+            final IndexWriterConfig indexWriterConfig = IndexWriterCommitCheckAsync.createIndexWriterConfig(analyzer, mergePolicy);
+            indexWriterConfig.setMergeScheduler(new SerialMergeScheduler());
+            // Closing the writer commits the merged segment and deletes the ones it replaced.
+            try (IndexWriter writer = new IndexWriter(directory, indexWriterConfig)) {
+                writer.maybeMerge();
+            }
+            if (mergePolicy.merged) {
+                state.context.increment(LuceneEvents.Counts.LUCENE_MERGE);
+            }
+            return mergePolicy.merged;
+        } catch (IOException ioe) {
+            throw new RecordCoreException("Unable to merge Lucene index segments", LogMessageKeys.INDEX_NAME, state.index.getName(), ioe);
+        }
+    }
+
+    /**
+     * A merge policy that only allows the first merge found by another policy, so that each transaction
+     * does a bounded amount of merging.
+     */
+    private static class SingleMergePolicy extends FilterMergePolicy {
+        private boolean merged;
+
+        private SingleMergePolicy(@Nonnull MergePolicy in) {
+            super(in);
+        }
+
+        @Override
+        public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos,
+                                             MergeContext mergeContext) throws IOException {
+            if (merged) {
+                return null;
+            }
+            final MergeSpecification found = super.findMerges(mergeTrigger, segmentInfos, mergeContext);
+            if (found == null || found.merges.isEmpty()) {
+                return null;
+            }
+            final MergeSpecification single = new MergeSpecification();
+            single.add(found.merges.get(0));
+            merged = true;
+            return single;
+        }
+
+        @Override
+        public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+                                                   Map<SegmentCommitInfo, Boolean> segmentsToMerge,
+                                                   MergeContext mergeContext) {
+            return null;
+        }
+
+        @Override
+        public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos, MergeContext mergeContext) {
+            return null;
+        }
+    }
+
 
 }
@@ -21,9 +21,12 @@
 package com.apple.foundationdb.record.lucene;
 
 import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
 import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.IndexValidator;
+import com.apple.foundationdb.record.metadata.MetaDataException;
 import com.apple.foundationdb.record.metadata.MetaDataValidator;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainer;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerFactory;
 import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
@@ -56,7 +59,12 @@ public class LuceneIndexMaintainerFactory implements IndexMaintainerFactory {
         return new IndexValidator(index) {
             @Override
             public void validate(@Nonnull MetaDataValidator metaDataValidator) {
-                // nothing to validate
+                if (index.getBooleanOption(LuceneIndexOptions.PARTITION_BY_GROUP_OPTION, false) &&
+                        (!(index.getRootExpression() instanceof GroupingKeyExpression) ||
+                         ((GroupingKeyExpression)index.getRootExpression()).getGroupingCount() == 0)) {
+                    throw new MetaDataException("Lucene index partitioned by group must have a grouping key",
+                            LogMessageKeys.INDEX_NAME, index.getName());
+                }
             }
         };
     }
@@ -0,0 +1,123 @@
+/*
+ * LuceneIndexMerger.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabaseRunner;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges the segments of a Lucene index separately from the transactions that update it.
+ *
+ * <p>
+ * Each merge is done by a {@link LuceneMergeOperation} in a transaction of its own, which publishes the merged
+ * segment and removes the segments it replaces when it commits. Merging continues with further transactions until
+ * the index's merge policy finds nothing more to merge. If a merge transaction conflicts with a concurrent update
+ * of the index, it is retried by the runner; if the merger is stopped part way through, any merges already committed
+ * are kept and a later run picks up from there.
+ * </p>
+ *
+ * <p>
+ * This is intended for indexes with the {@link LuceneIndexOptions#BACKGROUND_MERGE_OPTION} option, whose updates
+ * only ever add small segments, so that the work of merging does not count against the time and size limits of the
+ * updating transactions.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LuceneIndexMerger {
+    @Nonnull
+    private final FDBDatabaseRunner runner;
+    @Nonnull
+    private final FDBRecordStore.Builder storeBuilder;
+    @Nonnull
+    private final String indexName;
+    @Nonnull
+    private final Tuple groupingKey;
+
+    /**
+     * Create a new merger.
+     * @param runner the runner used to run each merge transaction
+     * @param storeBuilder a builder for the record store containing the index; its context is set for each transaction
+     * @param indexName the name of the Lucene index to merge
+     */
+    public LuceneIndexMerger(@Nonnull FDBDatabaseRunner runner, @Nonnull FDBRecordStore.Builder storeBuilder,
+                             @Nonnull String indexName) {
+        this(runner, storeBuilder, indexName, TupleHelpers.EMPTY);
+    }
+
+    /**
+     * Create a new merger for the directory of one group of an index that is partitioned by group.
+     * @param runner the runner used to run each merge transaction
+     * @param storeBuilder a builder for the record store containing the index; its context is set for each transaction
+     * @param indexName the name of the Lucene index to merge
+     * @param groupingKey the values of the index's grouping columns for the group to merge
+     * @see LuceneIndexOptions#PARTITION_BY_GROUP_OPTION
+     */
+    public LuceneIndexMerger(@Nonnull FDBDatabaseRunner runner, @Nonnull FDBRecordStore.Builder storeBuilder,
+                             @Nonnull String indexName, @Nonnull Tuple groupingKey) {
+        this.runner = runner;
+        this.storeBuilder = storeBuilder.copyBuilder();
+        this.indexName = indexName;
+        this.groupingKey = groupingKey;
+    }
+
+    /**
+     * Merge segments until the index does not need any more merging.
+     * @return a future that completes to the number of merges performed
+     */
+    @Nonnull
+    public CompletableFuture<Integer> mergeAsync() {
+        final AtomicInteger merges = new AtomicInteger();
+        return AsyncUtil.whileTrue(() -> mergeOnceAsync().thenApply(merged -> {
+            if (merged) {
+                merges.incrementAndGet();
+            }
+            return merged;
+        }), runner.getExecutor()).thenApply(vignore -> merges.get());
+    }
+
+    /**
+     * Merge segments until the index does not need any more merging.
+     * @return the number of merges performed
+     */
+    public int merge() {
+        return runner.asyncToSync(FDBStoreTimer.Waits.WAIT_INDEX_OPERATION, mergeAsync());
+    }
+
+    /**
+     * Perform a single merge in its own transaction.
+     * @return a future that completes to whether a merge was performed
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> mergeOnceAsync() {
+        return runner.runAsync(context -> storeBuilder.copyBuilder().setContext(context).openAsync()
+                .thenCompose(store -> store.performIndexOperationAsync(indexName, new LuceneMergeOperation(groupingKey)))
+                .thenApply(result -> ((LuceneMergeOperationResult)result).isMerged()));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * LuceneIndexOptions.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene;
+
+import com.apple.foundationdb.annotation.API;
+
+/**
+ * Options for use with {@link LuceneIndexTypes#LUCENE} indexes.
+ *
+ * @see com.apple.foundationdb.record.metadata.IndexOptions
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LuceneIndexOptions {
+    /**
+     * If {@code "true"}, updates to the index do not merge segments. Instead, segments are merged by
+     * {@link LuceneMergeOperation}s, typically run in the background by a {@link LuceneIndexMerger}.
+     */
+    public static final String BACKGROUND_MERGE_OPTION = "luceneBackgroundMerge";
+    /**
+     * If {@code "true"}, an index whose root expression is a
+     * {@link com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression} keeps a separate Lucene
+     * directory for each value of its grouping columns, and only the grouped columns are indexed as text. A scan of
+     * such an index must then give the values of the grouping columns ahead of the query string, and only searches
+     * the documents in that group.
+     */
+    public static final String PARTITION_BY_GROUP_OPTION = "lucenePartitionByGroup";
+    /**
+     * If {@code "true"}, each block of the index's files is compressed with LZ4 when it is written, unless that
+     * does not make it any smaller. Files written without this option remain readable, as do files written with it
+     * if the option is later removed.
+     */
+    public static final String COMPRESS_BLOCKS_OPTION = "luceneCompressBlocks";
+
+    private LuceneIndexOptions() {
+    }
+}
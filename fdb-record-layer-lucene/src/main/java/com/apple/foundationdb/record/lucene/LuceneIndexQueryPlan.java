@@ -37,6 +37,9 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 import static com.google.common.base.Verify.verify;
@@ -89,6 +92,31 @@ public class LuceneIndexQueryPlan extends RecordQueryIndexPlan {
         this.sort = sort;
     }
 
+    private LuceneIndexQueryPlan(@Nonnull final String indexName, @Nonnull final IndexScanType scanType, @Nonnull ScanComparisons comparisons, final boolean reverse, @Nullable KeyExpression sort) {
+        super(indexName, scanType, comparisons, reverse);
+        this.sort = sort;
+    }
+
+    /**
+     * Get a plan that scans the directory selected by the given comparisons on the grouping fields of an index that
+     * is partitioned by group, using this plan's query.
+     *
+     * @param groupComparisons equality comparisons on each of the index's grouping fields
+     * @return a new plan
+     * @see LuceneIndexOptions#PARTITION_BY_GROUP_OPTION
+     */
+    @Nonnull
+    public LuceneIndexQueryPlan withGroupComparisons(@Nonnull List<Comparisons.Comparison> groupComparisons) {
+        final List<Comparisons.Comparison> equalityComparisons = new ArrayList<>(groupComparisons);
+        equalityComparisons.addAll(comparisons.getEqualityComparisons());
+        final LuceneIndexQueryPlan plan = new LuceneIndexQueryPlan(indexName, scanType,
+                new ScanComparisons(equalityComparisons, Collections.emptySet()), reverse, sort);
+        if (createsDuplicates()) {
+            plan.setCreatesDuplicates();
+        }
+        return plan;
+    }
+
     public boolean createsDuplicates() {
         return duplicates;
     }
@@ -98,7 +126,8 @@ public class LuceneIndexQueryPlan extends RecordQueryIndexPlan {
     }
 
     public Comparisons.LuceneComparison getComparison() {
-        return (Comparisons.LuceneComparison)comparisons.getEqualityComparisons().get(0);
+        final List<Comparisons.Comparison> equalityComparisons = comparisons.getEqualityComparisons();
+        return (Comparisons.LuceneComparison)equalityComparisons.get(equalityComparisons.size() - 1);
     }
 
     public String getLuceneQueryString() {
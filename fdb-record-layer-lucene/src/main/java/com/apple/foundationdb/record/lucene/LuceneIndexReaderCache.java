@@ -0,0 +1,252 @@
+/*
+ * LuceneIndexReaderCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.lucene.directory.FDBDirectory;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabase;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.cache.CacheBuilder;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of open {@link DirectoryReader}s that lets Lucene queries in different transactions share a reader rather
+ * than each opening, and parsing the metadata of every segment of, its own.
+ *
+ * <p>
+ * A reader reads its files through the transaction of the directory that opened it, so a shared reader is opened
+ * with a read-only context of its own, with the same configuration (timer, priority, timeout, and so on) as the
+ * transaction that first asked for it and its read version set to that transaction's.
+ * A later transaction may use the same reader if the index's latest commit generation at its read version is the one
+ * the reader was opened at, and its read version is no older than the reader's. Since commit generations only ever
+ * increase, the reader's commit was then current for every version in between, so none of its files can have been
+ * deleted, and the reader sees exactly what the later transaction would have seen through its own reader.
+ * </p>
+ *
+ * <p>
+ * The reader's context is subject to the usual transaction time limits: its read version becomes too old about
+ * five seconds after it was obtained, and it is cancelled once its own timeout expires. A reader is therefore only
+ * handed out until {@link #getMaxReaderAgeMillis()} after the transaction that opened it was created, which can be
+ * at most {@link #MAX_READER_AGE_MILLIS}, or until its context's timeout expires, if that is sooner. After that,
+ * the next query opens a fresh reader. A query that is handed a shared reader has correspondingly less time to use
+ * it than it would have had with a reader of its own.
+ * </p>
+ *
+ * <p>
+ * A transaction opened with {@link com.apple.foundationdb.record.provider.foundationdb.FDBDatabase.WeakReadSemantics}
+ * may start at a cached or prefetched read version that was obtained well before the transaction was created, so
+ * there is no telling how much longer a reader opened at that version could be used. Such transactions are
+ * given a reader of their own, which is not shared.
+ * </p>
+ *
+ * <p>
+ * Readers are reference counted: each caller of {@link #getReader(FDBRecordContext, Subspace, Directory)} must
+ * call {@link DirectoryReader#decRef()} when it is done. A reader, along with its context, is closed once it has been
+ * replaced in the cache and the last caller has released it. Transactions that have written to the index itself must
+ * not use this cache, as the shared reader does not see their uncommitted changes.
+ * </p>
+ *
+ * <p>
+ * A cache is associated with a database using {@link #setForDatabase(FDBDatabase, LuceneIndexReaderCache)}, after
+ * which Lucene scans in contexts from that database use it.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LuceneIndexReaderCache implements AutoCloseable {
+    /**
+     * The default amount of time after a shared reader is opened during which it is handed out to new queries.
+     */
+    public static final long DEFAULT_MAX_READER_AGE_MILLIS = 1000L;
+    /**
+     * The largest allowed maximum reader age, which leaves a query that is handed a reader at least as long again
+     * before the reader's read version becomes too old to read at.
+     */
+    public static final long MAX_READER_AGE_MILLIS = 2500L;
+
+    @Nonnull
+    private static final ConcurrentMap<FDBDatabase, LuceneIndexReaderCache> CACHES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .<FDBDatabase, LuceneIndexReaderCache>build()
+            .asMap();
+
+    private final long maxReaderAgeMillis;
+    @Nonnull
+    private final Map<Tuple, SharedReader> readers = new HashMap<>();
+
+    public LuceneIndexReaderCache() {
+        this(DEFAULT_MAX_READER_AGE_MILLIS);
+    }
+
+    public LuceneIndexReaderCache(long maxReaderAgeMillis) {
+        if (maxReaderAgeMillis < 0 || maxReaderAgeMillis > MAX_READER_AGE_MILLIS) {
+            throw new RecordCoreArgumentException("maximum reader age out of range")
+                    .addLogInfo("maxReaderAgeMillis", maxReaderAgeMillis);
+        }
+        this.maxReaderAgeMillis = maxReaderAgeMillis;
+    }
+
+    /**
+     * Get the cache used by Lucene scans against the given database.
+     * @param database the database
+     * @return the reader cache or {@code null} if there is none
+     */
+    @Nullable
+    public static LuceneIndexReaderCache forDatabase(@Nonnull FDBDatabase database) {
+        return CACHES.get(database);
+    }
+
+    /**
+     * Set the cache used by Lucene scans against the given database.
+     * @param database the database
+     * @param cache the reader cache or {@code null} to have each scan open its own reader
+     */
+    public static void setForDatabase(@Nonnull FDBDatabase database, @Nullable LuceneIndexReaderCache cache) {
+        if (cache == null) {
+            CACHES.remove(database);
+        } else {
+            CACHES.put(database, cache);
+        }
+    }
+
+    /**
+     * Get the amount of time after the transaction that opened a shared reader was created during which the reader
+     * is handed out to new queries.
+     * @return the maximum reader age in milliseconds
+     */
+    public long getMaxReaderAgeMillis() {
+        return maxReaderAgeMillis;
+    }
+
+    /**
+     * Get a reader for the index stored in the given subspace that is consistent with the given transaction.
+     * The caller must call {@link DirectoryReader#decRef()} on the returned reader once it is done with it.
+     * @param context the transaction in which the index is being queried
+     * @param subspace the subspace of the index's directory
+     * @param directory the index's directory in the given transaction, used to determine the latest commit
+     * @return a reader for the index's latest commit as of the transaction's read version
+     * @throws IOException if the index cannot be read
+     */
+    @Nonnull
+    public DirectoryReader getReader(@Nonnull FDBRecordContext context, @Nonnull Subspace subspace,
+                                     @Nonnull Directory directory) throws IOException {
+        if (context.getWeakReadSemantics() != null) {
+            // The read version may already be close to too old, so only this transaction can use the reader.
+            context.increment(LuceneEvents.Counts.LUCENE_READER_CACHE_BYPASS);
+            return DirectoryReader.open(directory);
+        }
+        final long generation = SegmentInfos.getLastCommitGeneration(directory);
+        final long readVersion = context.getReadVersion();
+        final Tuple key = Tuple.from(subspace.getKey());
+        synchronized (this) {
+            final SharedReader shared = readers.get(key);
+            if (shared != null && shared.generation == generation && shared.readVersion <= readVersion &&
+                    System.currentTimeMillis() < shared.expiresMillis &&
+                    shared.reader.tryIncRef()) {
+                context.increment(LuceneEvents.Counts.LUCENE_READER_CACHE_HIT);
+                return shared.reader;
+            }
+        }
+        context.increment(LuceneEvents.Counts.LUCENE_READER_CACHE_MISS);
+        final SharedReader opened = open(context, subspace, readVersion);
+        // One reference for the cache and one for the caller.
+        opened.reader.incRef();
+        final SharedReader replaced;
+        synchronized (this) {
+            replaced = readers.put(key, opened);
+        }
+        if (replaced != null) {
+            replaced.reader.decRef();
+        }
+        return opened.reader;
+    }
+
+    @Nonnull
+    private SharedReader open(@Nonnull FDBRecordContext context, @Nonnull Subspace subspace, long readVersion) throws IOException {
+        final FDBRecordContext readerContext = context.getDatabase().openContext(context.getConfig());
+        try {
+            readerContext.setReadVersion(readVersion);
+            // Without weak read semantics, the read version was obtained no earlier than the transaction was created.
+            long expiresMillis = context.getTransactionCreateTime() + maxReaderAgeMillis;
+            if (readerContext.getTimeoutMillis() > 0) {
+                expiresMillis = Math.min(expiresMillis, readerContext.getTransactionCreateTime() + readerContext.getTimeoutMillis());
+            }
+            final DirectoryReader reader = DirectoryReader.open(new FDBDirectory(subspace, readerContext));
+            reader.getReaderCacheHelper().addClosedListener(keyIgnore -> readerContext.close());
+            return new SharedReader(reader, reader.getIndexCommit().getGeneration(), readVersion, expiresMillis);
+        } catch (IOException | RuntimeException e) {
+            readerContext.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Release the cache's references to all of its readers. Readers that are still in use are closed once they are
+     * released by their last caller.
+     * @throws IOException if closing a reader fails
+     */
+    @Override
+    public void close() throws IOException {
+        final List<SharedReader> released;
+        synchronized (this) {
+            released = new ArrayList<>(readers.values());
+            readers.clear();
+        }
+        final List<DirectoryReader> toRelease = new ArrayList<>(released.size());
+        for (SharedReader shared : released) {
+            toRelease.add(shared.reader);
+        }
+        IOUtils.applyToAll(toRelease, DirectoryReader::decRef);
+    }
+
+    /**
+     * An open reader along with the commit generation and read version at which it was opened and the time until
+     * which it can be handed out.
+     */
+    private static class SharedReader {
+        @Nonnull
+        private final DirectoryReader reader;
+        private final long generation;
+        private final long readVersion;
+        private final long expiresMillis;
+
+        private SharedReader(@Nonnull DirectoryReader reader, long generation, long readVersion, long expiresMillis) {
+            this.reader = reader;
+            this.generation = generation;
+            this.readVersion = readVersion;
+            this.expiresMillis = expiresMillis;
+        }
+    }
+}
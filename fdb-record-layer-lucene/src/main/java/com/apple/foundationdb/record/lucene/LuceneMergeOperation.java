@@ -0,0 +1,62 @@
+/*
+ * LuceneMergeOperation.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.foundationdb.IndexOperation;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Merge some of the segments of a Lucene index.
+ *
+ * At most one merge, as chosen by the index's merge policy, is performed, and its result is published by the
+ * transaction in which the operation is performed. Segments can therefore be merged over several transactions by
+ * performing the operation repeatedly until {@link LuceneMergeOperationResult#isMerged()} is {@code false}.
+ * For an index that is partitioned by group, the operation merges the segments of the directory of a single group.
+ *
+ * @see LuceneIndexMerger
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LuceneMergeOperation extends IndexOperation {
+    @Nonnull
+    private final Tuple groupingKey;
+
+    public LuceneMergeOperation() {
+        this(TupleHelpers.EMPTY);
+    }
+
+    /**
+     * Create an operation that merges the segments of the given group's directory.
+     * @param groupingKey the values of the grouping columns, or an empty tuple if the index is not partitioned
+     * @see LuceneIndexOptions#PARTITION_BY_GROUP_OPTION
+     */
+    public LuceneMergeOperation(@Nonnull Tuple groupingKey) {
+        this.groupingKey = groupingKey;
+    }
+
+    @Nonnull
+    public Tuple getGroupingKey() {
+        return groupingKey;
+    }
+}
@@ -26,6 +26,7 @@ import com.apple.foundationdb.record.logging.LogMessageKeys;
 import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.MetaDataException;
 import com.apple.foundationdb.record.metadata.expressions.FieldKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.NestingKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.ThenKeyExpression;
@@ -46,6 +47,7 @@ import com.google.common.collect.Lists;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -87,7 +89,7 @@ public class LucenePlanner extends RecordQueryPlanner {
         }
         String comparisonString;
         List<String> fieldNames = Lists.newArrayList();
-        index.getRootExpression().normalizeKeyForPositions().forEach( (expression) -> fieldNames.addAll(parseFieldNames(expression, "")));
+        LuceneIndexMaintainer.getTextKey(index).normalizeKeyForPositions().forEach( (expression) -> fieldNames.addAll(parseFieldNames(expression, "")));
         if (!fieldNames.contains(completeFieldName)) {
             return null;
         }
@@ -234,12 +236,64 @@ public class LucenePlanner extends RecordQueryPlanner {
     }
 
 
+    /**
+     * Plan a scan of an index that is partitioned by group. The filter must include an equality comparison on each of
+     * the index's grouping fields, which select the directory to search, along with filters that can be evaluated
+     * against the grouped fields.
+     */
+    @Nullable
+    private LuceneIndexQueryPlan getScanForPartitionedLucene(@Nonnull Index index, @Nonnull QueryComponent filter,
+                                                             @Nonnull FilterSatisfiedMask filterMask) {
+        if (!(filter instanceof AndComponent)) {
+            return null;
+        }
+        final List<KeyExpression> groupingKeys = ((GroupingKeyExpression)index.getRootExpression()).getGroupingSubKey().normalizeKeyForPositions();
+        final List<Comparisons.Comparison> groupComparisons = new ArrayList<>(groupingKeys.size());
+        for (KeyExpression groupingKey : groupingKeys) {
+            if (!(groupingKey instanceof FieldKeyExpression) || ((FieldKeyExpression)groupingKey).getFanType() != KeyExpression.FanType.None) {
+                return null;
+            }
+            final String fieldName = ((FieldKeyExpression)groupingKey).getFieldName();
+            FilterSatisfiedMask groupMask = null;
+            for (FilterSatisfiedMask childMask : filterMask.getChildren()) {
+                final QueryComponent child = childMask.getFilter();
+                if (!childMask.isSatisfied() && child instanceof FieldWithComparison &&
+                        ((FieldWithComparison)child).getFieldName().equals(fieldName) &&
+                        ((FieldWithComparison)child).getComparison().getType() == Comparisons.Type.EQUALS) {
+                    groupMask = childMask;
+                    break;
+                }
+            }
+            if (groupMask == null) {
+                return null;
+            }
+            groupMask.setSatisfied(true);
+            groupComparisons.add(((FieldWithComparison)groupMask.getFilter()).getComparison());
+        }
+        LuceneIndexQueryPlan combinedComparison = null;
+        for (FilterSatisfiedMask childMask : filterMask.getChildren()) {
+            if (!childMask.isSatisfied()) {
+                LuceneIndexQueryPlan childComparison = getComparisonsForLuceneFilter(index, null, childMask.getFilter(), childMask);
+                if (childComparison != null) {
+                    childMask.setSatisfied(true);
+                    combinedComparison = combinedComparison == null ? childComparison : LuceneIndexQueryPlan.merge(combinedComparison, childComparison, "AND");
+                }
+            }
+        }
+        if (combinedComparison == null) {
+            return null;
+        }
+        return combinedComparison.withGroupComparisons(groupComparisons);
+    }
+
     @Override
     protected ScoredPlan planLucene(@Nonnull CandidateScan candidateScan,
                                     @Nonnull Index index, @Nonnull QueryComponent filter,
                                     @Nullable KeyExpression sort) {
         FilterSatisfiedMask filterMask = FilterSatisfiedMask.of(filter);
-        LuceneIndexQueryPlan lucenePlan = getComparisonsForLuceneFilter(index, null, filter, filterMask);
+        LuceneIndexQueryPlan lucenePlan = LuceneIndexMaintainer.isPartitionedByGroup(index) ?
+                                          getScanForPartitionedLucene(index, filter, filterMask) :
+                                          getComparisonsForLuceneFilter(index, null, filter, filterMask);
         if (lucenePlan == null) {
             return null;
         }
@@ -40,11 +40,14 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.slf4j.Logger;
@@ -53,6 +56,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -64,6 +68,12 @@ import static com.apple.foundationdb.record.lucene.IndexWriterCommitCheckAsync.g
 /**
  * This class is a Record Cursor implementation for Lucene queries.
  *
+ * <p>
+ * Only as many hits as the scan's skip and returned row limit allow for are collected. The continuation records the
+ * last hit returned, so that the next page is collected with {@link IndexSearcher#searchAfter} rather than by
+ * collecting and discarding every hit before it. A continuation that is just a position, as returned by earlier
+ * versions, is still accepted and collects the hits up to that position again.
+ * </p>
  */
 @API(API.Status.EXPERIMENTAL)
 class LuceneRecordCursor implements BaseCursor<IndexEntry> {
@@ -79,28 +89,47 @@ class LuceneRecordCursor implements BaseCursor<IndexEntry> {
     private RecordCursorResult<IndexEntry> nextResult;
     final IndexMaintainerState state;
     private IndexReader indexReader;
+    // Whether the reader came from a LuceneIndexReaderCache and so must be released rather than closed.
+    private boolean sharedReader;
     private final Query query;
     private IndexSearcher searcher;
     private TopDocs topDocs;
     private int currentPosition;
+    // The first position in topDocs that is returned, after any skipped hits.
+    private int startPosition;
+    @Nullable
+    private final byte[] continuation;
+    @Nullable
+    private final Tuple after;
     private final List<String> fieldNames;
+    @Nonnull
+    private final Tuple groupingKey;
     private Sort sort = null;
 
     LuceneRecordCursor(@Nonnull Executor executor,
                        @Nonnull ScanProperties scanProperties,
                        @Nonnull final IndexMaintainerState state, Query query,
-                       byte[] continuation, List<String> fieldNames) {
+                       byte[] continuation, List<String> fieldNames, @Nonnull Tuple groupingKey) {
         this.state = state;
         this.executor = executor;
         this.limitManager = new CursorLimitManager(state.context, scanProperties);
         this.limitRemaining = scanProperties.getExecuteProperties().getReturnedRowLimitOrMax();
         this.timer = state.context.getTimer();
         this.query = query;
-        this.currentPosition = continuation == null ? 0 : Ints.fromByteArray(continuation);
+        this.continuation = continuation;
+        if (continuation != null && continuation.length == Integer.BYTES) {
+            this.after = null;
+            this.startPosition = Ints.fromByteArray(continuation);
+        } else {
+            this.after = continuation == null ? null : Tuple.fromBytes(continuation);
+            this.startPosition = 0;
+        }
         if (scanProperties.getExecuteProperties().getSkip() > 0) {
-            this.currentPosition += scanProperties.getExecuteProperties().getSkip();
+            this.startPosition += scanProperties.getExecuteProperties().getSkip();
         }
+        this.currentPosition = startPosition;
         this.fieldNames = fieldNames;
+        this.groupingKey = groupingKey;
     }
 
     @Nonnull
@@ -135,7 +164,8 @@ class LuceneRecordCursor implements BaseCursor<IndexEntry> {
                         limitRemaining--;
                     }
                     List<Object> setPrimaryKey = Tuple.fromBytes(pk.bytes).getItems();
-                    List<Object> fields = Lists.newArrayList(fieldNames);
+                    List<Object> fields = Lists.newArrayList(groupingKey.getItems());
+                    fields.addAll(fieldNames);
                     int[] keyPos = state.index.getPrimaryKeyComponentPositions();
                     Tuple tuple;
                     if (keyPos != null) {
@@ -181,15 +211,60 @@ class LuceneRecordCursor implements BaseCursor<IndexEntry> {
     private RecordCursorContinuation continuationHelper() {
         if (currentPosition >= topDocs.scoreDocs.length && limitRemaining > 0) {
             return ByteArrayContinuation.fromNullable(null);
+        } else if (currentPosition > startPosition) {
+            return ByteArrayContinuation.fromNullable(toContinuation(topDocs.scoreDocs[currentPosition - 1]).pack());
         } else {
-            return ByteArrayContinuation.fromNullable(Ints.toByteArray(currentPosition));
+            // Nothing returned yet, so resume from the same place.
+            return ByteArrayContinuation.fromNullable(continuation);
+        }
+    }
+
+    /**
+     * Encode a hit as the tuple {@code (doc, score, sort values...)}, with any {@link BytesRef} sort values as byte arrays.
+     */
+    @Nonnull
+    private static Tuple toContinuation(@Nonnull ScoreDoc scoreDoc) {
+        final List<Object> items = Lists.newArrayList(scoreDoc.doc, (double)scoreDoc.score);
+        if (scoreDoc instanceof FieldDoc) {
+            for (Object field : ((FieldDoc)scoreDoc).fields) {
+                if (field instanceof BytesRef) {
+                    final BytesRef bytesRef = (BytesRef)field;
+                    items.add(Arrays.copyOfRange(bytesRef.bytes, bytesRef.offset, bytesRef.offset + bytesRef.length));
+                } else {
+                    items.add(field);
+                }
+            }
         }
+        return Tuple.fromList(items);
+    }
+
+    @Nonnull
+    private ScoreDoc fromContinuation(@Nonnull Tuple continuation) {
+        final int doc = (int)continuation.getLong(0);
+        final float score = (float)continuation.getDouble(1);
+        if (sort == null) {
+            return new ScoreDoc(doc, score);
+        }
+        final Object[] fields = new Object[continuation.size() - 2];
+        for (int i = 0; i < fields.length; i++) {
+            final Object field = continuation.get(i + 2);
+            fields[i] = field instanceof byte[] ? new BytesRef((byte[])field) : field;
+        }
+        return new FieldDoc(doc, score, fields);
     }
 
     @Override
     public void close() {
         if (indexReader != null) {
-            IOUtils.closeWhileHandlingException(indexReader);
+            if (sharedReader) {
+                try {
+                    indexReader.decRef();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("unable to release shared index reader", e);
+                }
+            } else {
+                IOUtils.closeWhileHandlingException(indexReader);
+            }
         }
     }
 
@@ -206,17 +281,30 @@ class LuceneRecordCursor implements BaseCursor<IndexEntry> {
     }
 
     private synchronized IndexReader getIndexReader() throws IOException {
-        IndexWriterCommitCheckAsync writerCheck = getIndexWriterCommitCheckAsync(state);
-        return writerCheck == null ? DirectoryReader.open(getOrCreateDirectoryCommitCheckAsync(state).getDirectory()) : DirectoryReader.open(writerCheck.indexWriter);
+        IndexWriterCommitCheckAsync writerCheck = getIndexWriterCommitCheckAsync(state, groupingKey);
+        if (writerCheck != null) {
+            // Only a reader from this transaction's writer sees its uncommitted changes.
+            return DirectoryReader.open(writerCheck.indexWriter);
+        }
+        final Directory directory = getOrCreateDirectoryCommitCheckAsync(state, groupingKey).getDirectory();
+        final LuceneIndexReaderCache readerCache = LuceneIndexReaderCache.forDatabase(state.context.getDatabase());
+        if (readerCache != null) {
+            sharedReader = true;
+            return readerCache.getReader(state.context, DirectoryCommitCheckAsync.getDirectorySubspace(state, groupingKey), directory);
+        }
+        return DirectoryReader.open(directory);
     }
 
     private void performScan() throws IOException {
         indexReader = getIndexReader();
         searcher = new IndexSearcher(indexReader);
+        // Collect just the hits that are skipped or returned.
+        final int numHits = (int)Math.min((long)startPosition + limitRemaining, Integer.MAX_VALUE);
+        final ScoreDoc afterDoc = after == null ? null : fromContinuation(after);
         if (sort != null) {
-            topDocs = searcher.search(query, limitRemaining, sort);
+            topDocs = searcher.searchAfter(afterDoc, query, numHits, sort);
         } else {
-            topDocs = searcher.search(query, limitRemaining);
+            topDocs = searcher.searchAfter(afterDoc, query, numHits);
         }
     }
 
@@ -26,6 +26,7 @@ import com.apple.foundationdb.record.RecordCoreArgumentException;
 import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.logging.CompletionExceptionLogHelper;
 import com.apple.foundationdb.record.logging.KeyValueLogMessage;
+import com.apple.foundationdb.record.lucene.LuceneEvents;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
 import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.Tuple;
@@ -33,14 +34,19 @@ import com.google.common.base.Verify;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
 import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.GrowableByteArrayDataOutput;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.Lock;
 import org.apache.lucene.store.LockFactory;
 import org.apache.lucene.store.NoLockFactory;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,10 +56,13 @@ import javax.annotation.concurrent.NotThreadSafe;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -82,6 +91,9 @@ public class FDBDirectory extends Directory {
     private static final int SEQUENCE_SUBSPACE = 0;
     private static final int META_SUBSPACE = 1;
     private static final int DATA_SUBSPACE = 2;
+    // The first byte of each block of a file whose blocks may be compressed says how the rest is stored.
+    private static final byte UNCOMPRESSED_BLOCK = 0;
+    private static final byte LZ4_BLOCK = 1;
     private final AtomicLong nextTempFileCounter = new AtomicLong();
     private final FDBRecordContext context;
     private final Subspace subspace;
@@ -91,18 +103,36 @@ public class FDBDirectory extends Directory {
 
     private final LockFactory lockFactory;
     private final int blockSize;
+    private final boolean compressBlocks;
     private final Cache<String, FDBLuceneFileReference> fileReferenceCache;
     private final Cache<Pair<Long, Integer>, CompletableFuture<byte[]>> blockCache;
+    @Nullable
+    private final FDBDirectoryBlockCache sharedBlockCache;
+    private final Set<Long> writtenFileIds = new HashSet<>();
+    @Nullable
+    private CompletableFuture<UUID> incarnation;
 
     public FDBDirectory(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context) {
-        this(subspace, context, NoLockFactory.INSTANCE);
+        this(subspace, context, false);
+    }
+
+    /**
+     * Create a directory that may compress the blocks of the files written to it. Files are read the same way
+     * whether or not the directory compresses the blocks of new ones.
+     * @param subspace the subspace that contains the directory's files
+     * @param context the transaction in which the directory is used
+     * @param compressBlocks whether to compress the blocks of files written to the directory
+     */
+    public FDBDirectory(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context, boolean compressBlocks) {
+        this(subspace, context, NoLockFactory.INSTANCE, DEFAULT_BLOCK_SIZE, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAXIMUM_SIZE, DEFAULT_CONCURRENCY_LEVEL, compressBlocks);
     }
 
     FDBDirectory(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context, @Nonnull LockFactory lockFactory) {
-        this(subspace, context, lockFactory, DEFAULT_BLOCK_SIZE, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAXIMUM_SIZE, DEFAULT_CONCURRENCY_LEVEL);
+        this(subspace, context, lockFactory, DEFAULT_BLOCK_SIZE, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAXIMUM_SIZE, DEFAULT_CONCURRENCY_LEVEL, false);
     }
 
-    FDBDirectory(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context, @Nonnull LockFactory lockFactory, int blockSize, final int initialCapacity, final int maximumSize, final int concurrencyLevel) {
+    FDBDirectory(@Nonnull Subspace subspace, @Nonnull FDBRecordContext context, @Nonnull LockFactory lockFactory, int blockSize, final int initialCapacity, final int maximumSize, final int concurrencyLevel,
+                 boolean compressBlocks) {
         Verify.verify(subspace != null);
         Verify.verify(context != null);
         Verify.verify(lockFactory != null);
@@ -114,6 +144,7 @@ public class FDBDirectory extends Directory {
         this.dataSubspace = subspace.subspace(Tuple.from(DATA_SUBSPACE));
         this.lockFactory = lockFactory;
         this.blockSize = blockSize;
+        this.compressBlocks = compressBlocks;
         this.fileReferenceCache = CacheBuilder.newBuilder()
                 .initialCapacity(initialCapacity)
                 .maximumSize(maximumSize)
@@ -125,6 +156,7 @@ public class FDBDirectory extends Directory {
                 .maximumSize(maximumSize)
                 .recordStats()
                 .build();
+        this.sharedBlockCache = FDBDirectoryBlockCache.forDatabase(context.getDatabase());
     }
 
     /**
@@ -136,16 +168,40 @@ public class FDBDirectory extends Directory {
         return context.ensureActive().get(sequenceSubspaceKey).thenApply(
             (value) -> {
                 if (value == null) {
-                    context.ensureActive().set(sequenceSubspaceKey, Tuple.from(1L).pack());
+                    context.ensureActive().set(sequenceSubspaceKey, Tuple.from(1L, UUID.randomUUID()).pack());
                     return 1L;
                 } else {
-                    long sequence = Tuple.fromBytes(value).getLong(0) + 1;
-                    context.ensureActive().set(sequenceSubspaceKey, Tuple.from(sequence).pack());
+                    final Tuple sequenceTuple = Tuple.fromBytes(value);
+                    long sequence = sequenceTuple.getLong(0) + 1;
+                    // Directories created before incarnations were recorded get one the next time they allocate a file.
+                    final UUID currentIncarnation = sequenceTuple.size() > 1 ? sequenceTuple.getUUID(1) : UUID.randomUUID();
+                    context.ensureActive().set(sequenceSubspaceKey, Tuple.from(sequence, currentIncarnation).pack());
                     return sequence;
                 }
             }).join();
     }
 
+    /**
+     * Get the random id that identifies this incarnation of the directory. A new id is chosen whenever the directory's
+     * file id sequence is started, so that blocks cached in the {@link FDBDirectoryBlockCache} for files of an earlier
+     * directory in the same subspace are never used for files of a later one.
+     * @return a future that completes to the incarnation id or {@code null} if the directory does not have one yet
+     */
+    @Nonnull
+    private synchronized CompletableFuture<UUID> getIncarnation() {
+        if (incarnation == null) {
+            // A snapshot read so that readers do not conflict with writers allocating file ids.
+            incarnation = context.ensureActive().snapshot().get(sequenceSubspaceKey).thenApply(value -> {
+                if (value == null) {
+                    return null;
+                }
+                final Tuple sequenceTuple = Tuple.fromBytes(value);
+                return sequenceTuple.size() > 1 ? sequenceTuple.getUUID(1) : null;
+            });
+        }
+        return incarnation;
+    }
+
     /**
      * Checks the cache for  the file reference.
      * If the file is in the cache it returns the cached value.
@@ -195,9 +251,64 @@ public class FDBDirectory extends Directory {
     public void writeData(long id, int block, @Nonnull byte[] value) {
         LOGGER.trace("writeData id={}, block={}, valueSize={}", id, block, value.length);
         Verify.verify(value.length <= blockSize);
+        writtenFileIds.add(id);
         context.ensureActive().set(dataSubspace.pack(Tuple.from(id, block)), value);
     }
 
+    /**
+     * Writes a block of a file whose blocks may be compressed. The block is compressed with LZ4 if that makes it
+     * smaller and is otherwise stored as is, after a header byte saying which.
+     * @param id id for the data
+     * @param block block for the data to be stored in
+     * @param value the data to be stored
+     * @param compressor the compressor to use, which is not thread safe
+     */
+    void writeCompressedData(long id, int block, @Nonnull byte[] value, @Nonnull Compressor compressor) {
+        LOGGER.trace("writeCompressedData id={}, block={}, valueSize={}", id, block, value.length);
+        Verify.verify(value.length <= blockSize);
+        final GrowableByteArrayDataOutput compressed = new GrowableByteArrayDataOutput(value.length + 1);
+        try {
+            compressed.writeByte(LZ4_BLOCK);
+            compressed.writeVInt(value.length);
+            compressor.compress(value, 0, value.length, compressed);
+        } catch (IOException ioe) {
+            throw new RecordCoreException("Unable to compress block", ioe);
+        }
+        final byte[] stored;
+        if (compressed.getPosition() < value.length + 1) {
+            stored = Arrays.copyOf(compressed.getBytes(), compressed.getPosition());
+            context.increment(LuceneEvents.Counts.LUCENE_COMPRESSED_BLOCK);
+            context.increment(LuceneEvents.Counts.LUCENE_COMPRESSED_BYTES_SAVED, value.length + 1 - stored.length);
+        } else {
+            stored = new byte[value.length + 1];
+            stored[0] = UNCOMPRESSED_BLOCK;
+            System.arraycopy(value, 0, stored, 1, value.length);
+            context.increment(LuceneEvents.Counts.LUCENE_UNCOMPRESSED_BLOCK);
+        }
+        writtenFileIds.add(id);
+        context.ensureActive().set(dataSubspace.pack(Tuple.from(id, block)), stored);
+    }
+
+    @Nonnull
+    private static byte[] decompressBlock(@Nonnull byte[] stored) {
+        switch (stored[0]) {
+            case UNCOMPRESSED_BLOCK:
+                return Arrays.copyOfRange(stored, 1, stored.length);
+            case LZ4_BLOCK:
+                try {
+                    final ByteArrayDataInput input = new ByteArrayDataInput(stored, 1, stored.length - 1);
+                    final int length = input.readVInt();
+                    final BytesRef value = new BytesRef();
+                    CompressionMode.FAST.newDecompressor().decompress(input, length, 0, length, value);
+                    return Arrays.copyOfRange(value.bytes, value.offset, value.offset + value.length);
+                } catch (IOException ioe) {
+                    throw new RecordCoreException("Unable to decompress block", ioe);
+                }
+            default:
+                throw new RecordCoreException("Unknown block compression", "header", stored[0]);
+        }
+    }
+
     /**
      * Reads known data from the directory.
      * @param resourceDescription Description should be non-null, opaque string describing this resource; used for logging
@@ -217,16 +328,43 @@ public class FDBDirectory extends Directory {
                 throw new RecordCoreArgumentException(String.format("No reference with name %s was found", resourceDescription));
             }
             Long id = reference.getId();
-            return blockCache.get(Pair.of(id, block),
-                    () -> {
-                        return context.ensureActive().get(dataSubspace.pack(Tuple.from(id, block)));
-                    }
-            );
+            return blockCache.get(Pair.of(id, block), () -> readSharedBlock(id, block, reference.isCompressed()));
         } catch (ExecutionException e) {
             throw new RecordCoreException(CompletionExceptionLogHelper.asCause(e));
         }
     }
 
+    @Nonnull
+    private CompletableFuture<byte[]> readSharedBlock(long id, int block, boolean compressed) {
+        if (sharedBlockCache == null || writtenFileIds.contains(id)) {
+            return readUncachedBlock(id, block, compressed);
+        }
+        return getIncarnation().thenCompose(currentIncarnation -> {
+            if (currentIncarnation == null) {
+                return readUncachedBlock(id, block, compressed);
+            }
+            final byte[] cached = sharedBlockCache.get(subspace.getKey(), currentIncarnation, id, block);
+            if (cached != null) {
+                context.increment(LuceneEvents.Counts.LUCENE_SHARED_CACHE_HIT);
+                return CompletableFuture.completedFuture(cached);
+            }
+            context.increment(LuceneEvents.Counts.LUCENE_SHARED_CACHE_MISS);
+            return readUncachedBlock(id, block, compressed).thenApply(value -> {
+                if (value != null) {
+                    sharedBlockCache.put(subspace.getKey(), currentIncarnation, id, block, value);
+                }
+                return value;
+            });
+        });
+    }
+
+    @Nonnull
+    private CompletableFuture<byte[]> readUncachedBlock(long id, int block, boolean compressed) {
+        final CompletableFuture<byte[]> stored = context.ensureActive().get(dataSubspace.pack(Tuple.from(id, block)));
+        // Blocks are cached, here and in the shared cache, after they are decompressed.
+        return compressed ? stored.thenApply(value -> value == null ? null : decompressBlock(value)) : stored;
+    }
+
     /**
      * Lists all file names in the subspace. Puts all references in the cache.
      * Logs the count of references, and the total size of the data.
@@ -382,7 +520,7 @@ public class FDBDirectory extends Directory {
     @Nonnull
     public IndexInput openInput(@Nonnull final String name, @Nonnull final IOContext ioContext) throws IOException {
         LOGGER.trace("openInput -> name={}", name);
-        return new FDBIndexInput(name, this);
+        return new FDBIndexInput(name, this, ioContext);
     }
 
     @Override
@@ -417,6 +555,14 @@ public class FDBDirectory extends Directory {
         return blockSize;
     }
 
+    /**
+     * Whether the blocks of files written to this directory are compressed.
+     * @return {@code true} if new files are written with compressed blocks
+     */
+    public boolean isCompressBlocks() {
+        return compressBlocks;
+    }
+
     public FDBRecordContext getContext() {
         return context;
     }
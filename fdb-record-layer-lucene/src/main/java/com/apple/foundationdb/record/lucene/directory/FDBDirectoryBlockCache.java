@@ -0,0 +1,158 @@
+/*
+ * FDBDirectoryBlockCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene.directory;
+
+import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabase;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of Lucene file blocks that is shared by all of the {@link FDBDirectory} instances, and therefore all of the
+ * transactions, that use the same {@link FDBDatabase}.
+ *
+ * <p>
+ * Lucene never modifies a file once it has been written, so the contents of a block can only change if its file id is
+ * reused. File ids are only reused if the directory itself is cleared and recreated or if the transaction that wrote a
+ * file was never committed. To guard against the first, each directory records a random incarnation id alongside its
+ * file id sequence, and blocks are cached under the directory's subspace and incarnation as well as the file id and
+ * block number; directories that do not yet have an incarnation id do not use the cache. To guard against the second,
+ * a directory does not use the cache for files that it has written itself, and so only blocks of committed files are
+ * ever added.
+ * </p>
+ *
+ * <p>
+ * A cache is associated with a database using {@link #setForDatabase(FDBDatabase, FDBDirectoryBlockCache)}, after which
+ * any new directory opened with a context from that database uses it. The cache is bounded by the total size of the
+ * blocks it holds. Hits and misses are counted in each transaction's timer as
+ * {@link com.apple.foundationdb.record.lucene.LuceneEvents.Counts#LUCENE_SHARED_CACHE_HIT} and
+ * {@link com.apple.foundationdb.record.lucene.LuceneEvents.Counts#LUCENE_SHARED_CACHE_MISS}; overall statistics,
+ * including the number of evictions, are available from {@link #getStats()}.
+ * </p>
+ */
+@API(API.Status.EXPERIMENTAL)
+public class FDBDirectoryBlockCache {
+    /**
+     * The default maximum total size of the blocks in the cache.
+     */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+
+    @Nonnull
+    private static final ConcurrentMap<FDBDatabase, FDBDirectoryBlockCache> CACHES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .<FDBDatabase, FDBDirectoryBlockCache>build()
+            .asMap();
+
+    private final long maxSizeBytes;
+    @Nonnull
+    private final Cache<Tuple, byte[]> blocks;
+
+    public FDBDirectoryBlockCache() {
+        this(DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    public FDBDirectoryBlockCache(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.blocks = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .<Tuple, byte[]>weigher((key, value) -> value.length)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get the cache used by directories opened against the given database.
+     * @param database the database
+     * @return the shared block cache or {@code null} if there is none
+     */
+    @Nullable
+    public static FDBDirectoryBlockCache forDatabase(@Nonnull FDBDatabase database) {
+        return CACHES.get(database);
+    }
+
+    /**
+     * Set the cache used by directories opened against the given database. Directories that are already open
+     * continue to use the cache, if any, that was set when they were opened.
+     * @param database the database
+     * @param cache the shared block cache or {@code null} to stop sharing blocks between transactions
+     */
+    public static void setForDatabase(@Nonnull FDBDatabase database, @Nullable FDBDirectoryBlockCache cache) {
+        if (cache == null) {
+            CACHES.remove(database);
+        } else {
+            CACHES.put(database, cache);
+        }
+    }
+
+    /**
+     * Get the maximum total size of the blocks in the cache.
+     * @return the maximum size in bytes
+     */
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    /**
+     * Get statistics about the use of this cache, including its hit rate and the number of blocks that have been
+     * evicted because the cache was full.
+     * @return the cache statistics
+     */
+    @Nonnull
+    public CacheStats getStats() {
+        return blocks.stats();
+    }
+
+    /**
+     * Get the number of blocks currently in the cache.
+     * @return the number of cached blocks
+     */
+    public long size() {
+        return blocks.size();
+    }
+
+    /**
+     * Remove all blocks from the cache.
+     */
+    public void clear() {
+        blocks.invalidateAll();
+    }
+
+    @Nullable
+    byte[] get(@Nonnull byte[] subspaceKey, @Nonnull UUID incarnation, long id, int block) {
+        return blocks.getIfPresent(key(subspaceKey, incarnation, id, block));
+    }
+
+    void put(@Nonnull byte[] subspaceKey, @Nonnull UUID incarnation, long id, int block, @Nonnull byte[] value) {
+        blocks.put(key(subspaceKey, incarnation, id, block), value);
+    }
+
+    @Nonnull
+    private static Tuple key(@Nonnull byte[] subspaceKey, @Nonnull UUID incarnation, long id, int block) {
+        return Tuple.from(subspaceKey, incarnation, id, block);
+    }
+}
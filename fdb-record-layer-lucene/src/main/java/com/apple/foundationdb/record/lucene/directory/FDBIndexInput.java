@@ -21,6 +21,8 @@
 package com.apple.foundationdb.record.lucene.directory;
 
 import com.apple.foundationdb.annotation.API;
+import com.apple.foundationdb.record.lucene.LuceneEvents;
+import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,11 +37,21 @@ import static com.google.common.base.Verify.verify;
 /**
  * Class that handles reading data cut into blocks (KeyValue) backed by an FDB keyspace.
  *
+ * When blocks are read one after another, the following blocks are fetched ahead of time, so that a sequential
+ * traversal does not wait for one round trip per block. The number of blocks read ahead starts at one and doubles
+ * with each further block read in sequence, up to {@link #MAX_READ_AHEAD_BLOCKS}, and goes back to none after a seek
+ * elsewhere in the file. Inputs opened for a single sequential pass, such as with {@link IOContext#READONCE} or for
+ * a merge, read ahead the full number of blocks from the start.
+ *
  * @see <a href="https://lucene.apache.org/core/7_6_0/core/org/apache/lucene/store/IndexInput.html">IndexInput</a>
  */
 @API(API.Status.EXPERIMENTAL)
 public class FDBIndexInput extends IndexInput {
     private static final Logger LOGGER = LoggerFactory.getLogger(FDBIndexInput.class);
+    /**
+     * The maximum number of blocks fetched ahead of the current block during a sequential read.
+     */
+    public static final int MAX_READ_AHEAD_BLOCKS = 8;
     private final String resourceDescription;
     private final FDBDirectory fdbDirectory;
     private final CompletableFuture<FDBLuceneFileReference> reference;
@@ -51,6 +63,15 @@ public class FDBIndexInput extends IndexInput {
     private int currentBlock;
     private final long initialOffset;
     private int numberOfSeeks = 0;
+    /*
+     * The number of blocks to read ahead with the next sequential block and with seeks
+     */
+    private final int initialReadAheadBlocks;
+    private int readAheadBlocks;
+    /*
+     * The last block for which a read ahead has already been issued
+     */
+    private int readAheadUntil = -1;
 
     /**
      * Constructor to create an FDBIndexInput from a file referenced in the metadata keyspace.
@@ -62,8 +83,22 @@ public class FDBIndexInput extends IndexInput {
      * @throws IOException exception
      */
     public FDBIndexInput(@Nonnull final String resourceDescription, @Nonnull final FDBDirectory fdbDirectory) throws IOException {
+        this(resourceDescription, fdbDirectory, IOContext.DEFAULT);
+    }
+
+    /**
+     * Constructor to create an FDBIndexInput from a file referenced in the metadata keyspace, taking into account
+     * how Lucene intends to read the file.
+     *
+     * @param resourceDescription opaque description of file; used for logging
+     * @param fdbDirectory FDB directory mapping
+     * @param ioContext the IOContext from Lucene
+     * @throws IOException exception
+     */
+    public FDBIndexInput(@Nonnull final String resourceDescription, @Nonnull final FDBDirectory fdbDirectory,
+                         @Nonnull final IOContext ioContext) throws IOException {
         this(resourceDescription, fdbDirectory, fdbDirectory.getFDBLuceneFileReference(resourceDescription), 0L,
-                0L, 0, null);
+                0L, 0, null, isSequential(ioContext) ? MAX_READ_AHEAD_BLOCKS : 0);
     }
 
     /**
@@ -81,6 +116,13 @@ public class FDBIndexInput extends IndexInput {
     public FDBIndexInput(@Nonnull final String resourceDescription, @Nonnull final FDBDirectory fdbDirectory,
                          @Nonnull CompletableFuture<FDBLuceneFileReference> reference, long initalOffset, long position,
                          int currentBlock, @Nullable CompletableFuture<byte[]> currentData) throws IOException {
+        this(resourceDescription, fdbDirectory, reference, initalOffset, position, currentBlock, currentData, 0);
+    }
+
+    private FDBIndexInput(@Nonnull final String resourceDescription, @Nonnull final FDBDirectory fdbDirectory,
+                          @Nonnull CompletableFuture<FDBLuceneFileReference> reference, long initalOffset, long position,
+                          int currentBlock, @Nullable CompletableFuture<byte[]> currentData,
+                          int initialReadAheadBlocks) throws IOException {
         super(resourceDescription);
         LOGGER.trace("init() -> {}", resourceDescription);
         this.resourceDescription = resourceDescription;
@@ -90,9 +132,12 @@ public class FDBIndexInput extends IndexInput {
         this.currentBlock = currentBlock;
         this.currentData = currentData;
         this.initialOffset = initalOffset;
+        this.initialReadAheadBlocks = initialReadAheadBlocks;
+        this.readAheadBlocks = initialReadAheadBlocks;
         if (currentData == null) {
             numberOfSeeks++;
             this.currentData = fdbDirectory.readBlock(resourceDescription, reference, currentBlock);
+            readAhead();
         } else {
             seek(position);
         }
@@ -136,6 +181,9 @@ public class FDBIndexInput extends IndexInput {
             numberOfSeeks++;
             LOGGER.trace("actual seek -> resource={}, offset={}", resourceDescription, offset);
             this.currentData = fdbDirectory.readBlock(resourceDescription, reference, currentBlock); // Physical Seek
+            // Random access: start the read ahead window over.
+            readAheadBlocks = initialReadAheadBlocks;
+            readAhead();
         } else {
             this.position = offset;     // Logical Seek
         }
@@ -168,8 +216,8 @@ public class FDBIndexInput extends IndexInput {
     public IndexInput slice(@Nonnull String sliceDescription, long offset, long length) throws IOException {
         LOGGER.trace("slice -> resource={}, desc={}, offset={}, length={}", resourceDescription, sliceDescription, offset, length);
         return new FDBIndexInput(resourceDescription, fdbDirectory, CompletableFuture.completedFuture(
-                new FDBLuceneFileReference(reference.join().getId(), length, reference.join().getBlockSize())),
-                offset + initialOffset, 0L, currentBlock, currentData
+                new FDBLuceneFileReference(reference.join().getId(), length, reference.join().getBlockSize(), reference.join().isCompressed())),
+                offset + initialOffset, 0L, currentBlock, currentData, initialReadAheadBlocks
                 );
     }
 
@@ -202,9 +250,7 @@ public class FDBIndexInput extends IndexInput {
             return currentData.join()[probe];
         } finally {
             if (absolutePosition() % reference.join().getBlockSize() == 0) {
-                currentBlock++;
-                numberOfSeeks++;
-                this.currentData = fdbDirectory.readBlock(resourceDescription, reference, currentBlock);
+                nextBlock();
             }
         }
     }
@@ -230,16 +276,51 @@ public class FDBIndexInput extends IndexInput {
             bytesRead += toRead;
             position += toRead;
             if (absolutePosition() % blockSize == 0) {
-                currentBlock++;
-                numberOfSeeks++;
+                nextBlock();
                 LOGGER.trace("hard seek resource={}, currentBlock={}, offset={}, length={}, position={}, initialOffset={}",
                         resourceDescription, currentBlock, offset, length, position, initialOffset);
-                this.currentData = fdbDirectory.readBlock(resourceDescription, reference, currentBlock);
             }
         }
 
     }
 
+    /**
+     * Move on to the next block, which means that the input is being read sequentially, so widen
+     * the read ahead window.
+     */
+    private void nextBlock() {
+        currentBlock++;
+        numberOfSeeks++;
+        this.currentData = fdbDirectory.readBlock(resourceDescription, reference, currentBlock);
+        readAheadBlocks = readAheadBlocks == 0 ? 1 : Math.min(readAheadBlocks * 2, MAX_READ_AHEAD_BLOCKS);
+        readAhead();
+    }
+
+    /**
+     * Start fetching the blocks in the read ahead window that have not been fetched yet. The fetched blocks are
+     * held by the directory's block cache until they are read.
+     */
+    private void readAhead() {
+        if (readAheadBlocks <= 0) {
+            return;
+        }
+        final FDBLuceneFileReference fileReference = reference.join();
+        if (fileReference == null || fileReference.getSize() == 0) {
+            return;
+        }
+        final int lastBlock = getBlock(fileReference.getSize() - 1);
+        final int until = Math.min(currentBlock + readAheadBlocks, lastBlock);
+        for (int block = Math.max(currentBlock, readAheadUntil) + 1; block <= until; block++) {
+            fdbDirectory.readBlock(resourceDescription, reference, block);
+            fdbDirectory.getContext().increment(LuceneEvents.Counts.LUCENE_READ_AHEAD_BLOCK);
+        }
+        readAheadUntil = Math.max(readAheadUntil, until);
+    }
+
+    private static boolean isSequential(@Nonnull IOContext ioContext) {
+        return ioContext.readOnce || ioContext.context == IOContext.Context.MERGE;
+    }
+
     /**
      * Retrieve the appropriate indexed block taking into account the absolute position
      * (possible splice offsets) and dividing by the block size stored in the metadata keyspace.
@@ -22,12 +22,15 @@ package com.apple.foundationdb.record.lucene.directory;
 
 import com.apple.foundationdb.annotation.API;
 import com.apple.foundationdb.annotation.SpotBugsSuppressWarnings;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.IndexOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -53,6 +56,8 @@ public final class FDBIndexOutput extends IndexOutput {
     private final long blockSize;
     private final CRC32 crc;
     private final long id;
+    @Nullable
+    private final Compressor compressor;
     private static final ArrayBlockingQueue<ByteBuffer> BUFFERS;
     private static final int POOL_SIZE = 100;
 
@@ -92,6 +97,7 @@ public final class FDBIndexOutput extends IndexOutput {
         }
         crc = new CRC32();
         id = fdbDirectory.getIncrement();
+        compressor = fdbDirectory.isCompressBlocks() ? CompressionMode.FAST.newCompressor() : null;
     }
 
     /**
@@ -102,7 +108,7 @@ public final class FDBIndexOutput extends IndexOutput {
     public void close() {
         LOGGER.trace("close() -> resource={}", resourceDescription);
         flush();
-        fdbDirectory.writeFDBLuceneFileReference(resourceDescription, new FDBLuceneFileReference(id, currentSize, blockSize));
+        fdbDirectory.writeFDBLuceneFileReference(resourceDescription, new FDBLuceneFileReference(id, currentSize, blockSize, compressor != null));
         BUFFERS.offer(buffer);
     }
 
@@ -165,7 +171,11 @@ public final class FDBIndexOutput extends IndexOutput {
             buffer.flip();
             byte[] arr = new byte[buffer.remaining()];
             buffer.get(arr);
-            fdbDirectory.writeData(id, (int) ( (currentSize - 1) / blockSize), arr);
+            if (compressor != null) {
+                fdbDirectory.writeCompressedData(id, (int) ( (currentSize - 1) / blockSize), arr, compressor);
+            } else {
+                fdbDirectory.writeData(id, (int) ( (currentSize - 1) / blockSize), arr);
+            }
             buffer.clear();
         }
     }
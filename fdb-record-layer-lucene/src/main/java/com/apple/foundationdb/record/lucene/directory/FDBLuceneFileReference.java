@@ -26,22 +26,28 @@ import com.apple.foundationdb.tuple.Tuple;
 import javax.annotation.Nonnull;
 
 /**
- * A File Reference record laying out the id, size, and block size.
+ * A File Reference record laying out the id, size, and block size, and whether the file's blocks may be compressed.
  */
 @API(API.Status.EXPERIMENTAL)
 public class FDBLuceneFileReference {
     private final long id;
     private final long size;
     private final long blockSize;
+    private final boolean compressed;
 
     public FDBLuceneFileReference(@Nonnull Tuple tuple) {
-        this(tuple.getLong(0), tuple.getLong(1), tuple.getLong(2));
+        this(tuple.getLong(0), tuple.getLong(1), tuple.getLong(2), tuple.size() > 3 && tuple.getBoolean(3));
     }
 
     public FDBLuceneFileReference(long id, long size, long blockSize) {
+        this(id, size, blockSize, false);
+    }
+
+    public FDBLuceneFileReference(long id, long size, long blockSize, boolean compressed) {
         this.id = id;
         this.size = size;
         this.blockSize = blockSize;
+        this.compressed = compressed;
     }
 
     public long getId() {
@@ -56,12 +62,21 @@ public class FDBLuceneFileReference {
         return blockSize;
     }
 
+    /**
+     * Whether the blocks of the file were written with a header saying whether each one is compressed.
+     * @return {@code true} if the file's blocks may be compressed
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
     public Tuple getTuple() {
-        return Tuple.from(id, size, blockSize);
+        // Left off when false so that references to uncompressed files are unchanged.
+        return compressed ? Tuple.from(id, size, blockSize, true) : Tuple.from(id, size, blockSize);
     }
 
     @Override
     public String toString() {
-        return "Reference [ id=" + id + ", size=" + size + ", blockSize=" + blockSize + "]";
+        return "Reference [ id=" + id + ", size=" + size + ", blockSize=" + blockSize + ", compressed=" + compressed + "]";
     }
 }
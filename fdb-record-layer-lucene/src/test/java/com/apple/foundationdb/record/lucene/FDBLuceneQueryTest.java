@@ -20,6 +20,7 @@
 
 package com.apple.foundationdb.record.lucene;
 
+import com.apple.foundationdb.record.EvaluationContext;
 import com.apple.foundationdb.record.IndexScanType;
 import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.RecordMetaData;
@@ -125,6 +126,10 @@ public class FDBLuceneQueryTest extends FDBRecordStoreQueryTestBase {
             new GroupingKeyExpression(field("entry", KeyExpression.FanType.FanOut).nest(concatenateFields("key", "value")), 1),
             IndexTypes.LUCENE);
 
+    private static final Index SIMPLE_TEXT_PARTITIONED = new Index("Simple$text_partitioned",
+            field("text").groupBy(field("group")), IndexTypes.LUCENE,
+            ImmutableMap.of(LuceneIndexOptions.PARTITION_BY_GROUP_OPTION, "true"));
+
     @Override
     public void setupPlanner(@Nullable PlannableIndexTypes indexTypes) {
         if (useRewritePlanner) {
@@ -200,6 +205,41 @@ public class FDBLuceneQueryTest extends FDBRecordStoreQueryTestBase {
         }
     }
 
+    @ParameterizedTest
+    @BooleanSource
+    public void partitionedLuceneScan(boolean shouldDeferFetch) throws Exception {
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(SIMPLE_TEXT_SUFFIXES.getName());
+            metaDataBuilder.addIndex(TextIndexTestUtils.SIMPLE_DOC, SIMPLE_TEXT_PARTITIONED);
+        };
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            DOCUMENTS.forEach(recordStore::saveRecord);
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            final QueryComponent filter = Query.and(Query.field("group").equalsParameter("group"),
+                    new LuceneQueryComponent("civil blood makes civil hands unclean"));
+            RecordQuery query = RecordQuery.newBuilder()
+                    .setRecordType(TextIndexTestUtils.SIMPLE_DOC)
+                    .setFilter(filter)
+                    .build();
+            setDeferFetchAfterUnionAndIntersection(shouldDeferFetch);
+            Matcher<RecordQueryPlan> matcher = indexScan(allOf(indexScan(SIMPLE_TEXT_PARTITIONED.getName()),
+                    indexScanType(IndexScanType.BY_LUCENE),
+                    bounds(hasTupleString("[EQUALS $group, EQUALS civil blood makes civil hands unclean]"))));
+            RecordQueryPlan plan = planner.plan(query);
+            assertThat(plan, matcher);
+            List<Long> primaryKeys = plan.execute(recordStore, EvaluationContext.forBinding("group", 0L))
+                    .map(FDBQueriedRecord::getPrimaryKey).map(t -> t.getLong(0)).asList().get();
+            assertEquals(ImmutableSet.of(2L, 4L), ImmutableSet.copyOf(primaryKeys));
+            primaryKeys = plan.execute(recordStore, EvaluationContext.forBinding("group", 1L))
+                    .map(FDBQueriedRecord::getPrimaryKey).map(t -> t.getLong(0)).asList().get();
+            assertEquals(Collections.emptyList(), primaryKeys);
+        }
+    }
+
     @ParameterizedTest
     @BooleanSource
     public void simpleLuceneScansDocId(boolean shouldDeferFetch) throws Exception {
@@ -23,7 +23,9 @@ package com.apple.foundationdb.record.lucene;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.IndexEntry;
 import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
 import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorResult;
 import com.apple.foundationdb.record.RecordMetaData;
 import com.apple.foundationdb.record.RecordMetaDataBuilder;
 import com.apple.foundationdb.record.ScanProperties;
@@ -35,7 +37,10 @@ import com.apple.foundationdb.record.metadata.IndexTypes;
 import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.provider.common.text.AllSuffixesTextTokenizer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabase;
+import com.apple.foundationdb.record.provider.foundationdb.FDBDatabaseRunner;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContextConfig;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreTestBase;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
@@ -47,13 +52,18 @@ import com.google.common.primitives.Ints;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import javax.annotation.Nonnull;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import static com.apple.foundationdb.record.metadata.Key.Expressions.concatenateFields;
 import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
 import static com.apple.foundationdb.record.provider.foundationdb.indexes.TextIndexTestUtils.COMPLEX_DOC;
 import static com.apple.foundationdb.record.provider.foundationdb.indexes.TextIndexTestUtils.SIMPLE_DOC;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -67,9 +77,15 @@ public class LuceneIndexTest extends FDBRecordStoreTestBase {
     private static final Index SIMPLE_TEXT_SUFFIXES = new Index("Simple$text_suffixes", field("text"), LuceneIndexTypes.LUCENE,
             ImmutableMap.of(IndexOptions.TEXT_TOKENIZER_NAME_OPTION, AllSuffixesTextTokenizer.NAME));
 
+    private static final Index SIMPLE_TEXT_BACKGROUND_MERGE = new Index("Simple$text_background_merge", field("text"), LuceneIndexTypes.LUCENE,
+            ImmutableMap.of(LuceneIndexOptions.BACKGROUND_MERGE_OPTION, "true"));
+
     private static final Index COMPLEX_MULTIPLE_TEXT_INDEXES = new Index("Complex$text_multipleIndexes", concatenateFields("text", "text2"), LuceneIndexTypes.LUCENE,
             ImmutableMap.of(IndexOptions.TEXT_TOKENIZER_NAME_OPTION, AllSuffixesTextTokenizer.NAME));
 
+    private static final Index COMPLEX_PARTITIONED = new Index("Complex$text_partitioned", field("text").groupBy(field("group")), LuceneIndexTypes.LUCENE,
+            ImmutableMap.of(LuceneIndexOptions.PARTITION_BY_GROUP_OPTION, "true"));
+
     private static final Index MAP_ON_VALUE_INDEX = new Index("Map$entry-value", new GroupingKeyExpression(field("entry", KeyExpression.FanType.FanOut).nest(concatenateFields("key", "value")), 1), IndexTypes.LUCENE);
 
     private static final String DYLAN = "You're an idiot, babe\n" +
@@ -219,13 +235,42 @@ public class LuceneIndexTest extends FDBRecordStoreTestBase {
             for (int i = 0; i < 200; i++) {
                 recordStore.saveRecord(createSimpleDocument(1623L + i, DYLAN, 2));
             }
-            assertEquals(48, recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
+            assertEquals(50, recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
                     TupleRange.allOf(Tuple.from("idiot")), Ints.toByteArray(2),
                     ExecuteProperties.newBuilder().setReturnedRowLimit(50).build().asScanProperties(false))
                     .getCount().join());
         }
     }
 
+    @Test
+    public void testPagingWithContinuation() {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, metaDataBuilder -> {
+                metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+                metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_SUFFIXES);
+            });
+            for (int i = 0; i < 200; i++) {
+                recordStore.saveRecord(createSimpleDocument(1623L + i, i % 3 == 0 ? DYLAN : DYLAN + " " + DYLAN, 2));
+            }
+            final Set<Tuple> primaryKeys = new HashSet<>();
+            byte[] continuation = null;
+            int pages = 0;
+            do {
+                RecordCursor<IndexEntry> cursor = recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
+                        TupleRange.allOf(Tuple.from("idiot")), continuation,
+                        ExecuteProperties.newBuilder().setReturnedRowLimit(30).build().asScanProperties(false));
+                RecordCursorResult<IndexEntry> result;
+                while ((result = cursor.getNext()).hasNext()) {
+                    assertTrue(primaryKeys.add(result.get().getPrimaryKey()));
+                }
+                continuation = result.getContinuation().toBytes();
+                pages++;
+            } while (continuation != null);
+            assertEquals(200, primaryKeys.size());
+            assertEquals(7, pages);
+        }
+    }
+
     @Test
     public void testNestedFieldSearch() {
         try (FDBRecordContext context = openContext()) {
@@ -243,6 +288,39 @@ public class LuceneIndexTest extends FDBRecordStoreTestBase {
         }
     }
 
+    @Test
+    public void partitionedByGroup() {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, metaDataBuilder -> {
+                metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+                metaDataBuilder.addIndex(COMPLEX_DOC, COMPLEX_PARTITIONED);
+            });
+            recordStore.saveRecord(createComplexDocument(1623L, DYLAN, "", 1));
+            recordStore.saveRecord(createComplexDocument(1624L, DYLAN, "", 2));
+            recordStore.saveRecord(createComplexDocument(1547L, WAYLON, "", 2));
+            List<IndexEntry> entries = recordStore.scanIndex(COMPLEX_PARTITIONED, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from(1L, "idiot")), null, ScanProperties.FORWARD_SCAN)
+                    .asList().join();
+            assertEquals(1, entries.size());
+            assertEquals(Tuple.from(1L, 1623L), recordStore.getRecordMetaData().getIndex(COMPLEX_PARTITIONED.getName()).getEntryPrimaryKey(entries.get(0).getKey()));
+            assertEquals(1, recordStore.scanIndex(COMPLEX_PARTITIONED, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from(2L, "idiot")), null, ScanProperties.FORWARD_SCAN)
+                    .getCount().join());
+            assertEquals(0, recordStore.scanIndex(COMPLEX_PARTITIONED, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from(1L, "way")), null, ScanProperties.FORWARD_SCAN)
+                    .getCount().join());
+            recordStore.deleteRecord(Tuple.from(2L, 1624L));
+            assertEquals(0, recordStore.scanIndex(COMPLEX_PARTITIONED, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from(2L, "idiot")), null, ScanProperties.FORWARD_SCAN)
+                    .getCount().join());
+            assertEquals(1, recordStore.scanIndex(COMPLEX_PARTITIONED, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from(1L, "idiot")), null, ScanProperties.FORWARD_SCAN)
+                    .getCount().join());
+            assertThrows(RecordCoreArgumentException.class, () -> recordStore.scanIndex(COMPLEX_PARTITIONED, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from("idiot")), null, ScanProperties.FORWARD_SCAN));
+        }
+    }
+
     @Test
     public void testMultipleFieldSearch() {
         try (FDBRecordContext context = openContext()) {
@@ -316,6 +394,147 @@ public class LuceneIndexTest extends FDBRecordStoreTestBase {
         }
     }
 
+    @Test
+    public void sharedReaderAcrossTransactions() throws Exception {
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_SUFFIXES);
+        };
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            recordStore.saveRecord(createSimpleDocument(1623L, DYLAN, 2));
+            recordStore.saveRecord(createSimpleDocument(1547L, WAYLON, 1));
+            commit(context);
+        }
+        try (LuceneIndexReaderCache readerCache = new LuceneIndexReaderCache(LuceneIndexReaderCache.MAX_READER_AGE_MILLIS)) {
+            LuceneIndexReaderCache.setForDatabase(fdb, readerCache);
+            for (int i = 0; i < 2; i++) {
+                timer.reset();
+                try (FDBRecordContext context = openContext()) {
+                    openRecordStore(context, hook);
+                    assertEquals(1, recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
+                            TupleRange.allOf(Tuple.from("idiot")), null, ScanProperties.FORWARD_SCAN)
+                            .getCount().join());
+                }
+                assertEquals(i == 0 ? 1 : 0, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_MISS));
+                assertEquals(i == 0 ? 0 : 1, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_HIT));
+            }
+
+            try (FDBRecordContext context = openContext()) {
+                openRecordStore(context, hook);
+                recordStore.saveRecord(createSimpleDocument(1624L, DYLAN, 2));
+                commit(context);
+            }
+            timer.reset();
+            try (FDBRecordContext context = openContext()) {
+                openRecordStore(context, hook);
+                assertEquals(2, recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
+                        TupleRange.allOf(Tuple.from("idiot")), null, ScanProperties.FORWARD_SCAN)
+                        .getCount().join());
+            }
+            assertEquals(1, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_MISS));
+        } finally {
+            LuceneIndexReaderCache.setForDatabase(fdb, null);
+        }
+    }
+
+    @Test
+    public void sharedReaderNotUsedWithStaleWeakReadVersion() throws Exception {
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_SUFFIXES);
+        };
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            recordStore.saveRecord(createSimpleDocument(1623L, DYLAN, 2));
+            commit(context);
+        }
+        final boolean trackLastSeenVersionOnRead = fdb.isTrackLastSeenVersionOnRead();
+        final boolean trackLastSeenVersionOnCommit = fdb.isTrackLastSeenVersionOnCommit();
+        try (LuceneIndexReaderCache readerCache = new LuceneIndexReaderCache(LuceneIndexReaderCache.MAX_READER_AGE_MILLIS)) {
+            LuceneIndexReaderCache.setForDatabase(fdb, readerCache);
+            fdb.setTrackLastSeenVersion(true);
+            final long staleVersion;
+            try (FDBRecordContext context = openContext()) {
+                staleVersion = context.getReadVersion();
+            }
+
+            timer.reset();
+            final FDBRecordContextConfig weakReadConfig = FDBRecordContextConfig.newBuilder()
+                    .setTimer(timer)
+                    .setWeakReadSemantics(new FDBDatabase.WeakReadSemantics(0L, Long.MAX_VALUE, false))
+                    .build();
+            try (FDBRecordContext context = fdb.openContext(weakReadConfig)) {
+                assertEquals(staleVersion, context.getReadVersion());
+                openRecordStore(context, hook);
+                assertEquals(1, recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
+                        TupleRange.allOf(Tuple.from("idiot")), null, ScanProperties.FORWARD_SCAN)
+                        .getCount().join());
+            }
+            assertEquals(1, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_BYPASS));
+            assertEquals(0, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_MISS));
+            assertEquals(0, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_HIT));
+
+            // The reader opened at the stale version was not left in the cache for others.
+            timer.reset();
+            try (FDBRecordContext context = openContext()) {
+                openRecordStore(context, hook);
+                assertEquals(1, recordStore.scanIndex(SIMPLE_TEXT_SUFFIXES, IndexScanType.BY_LUCENE,
+                        TupleRange.allOf(Tuple.from("idiot")), null, ScanProperties.FORWARD_SCAN)
+                        .getCount().join());
+            }
+            assertEquals(1, timer.getCount(LuceneEvents.Counts.LUCENE_READER_CACHE_MISS));
+        } finally {
+            fdb.setTrackLastSeenVersionOnRead(trackLastSeenVersionOnRead);
+            fdb.setTrackLastSeenVersionOnCommit(trackLastSeenVersionOnCommit);
+            LuceneIndexReaderCache.setForDatabase(fdb, null);
+        }
+    }
+
+    @Test
+    public void backgroundMerge() throws Exception {
+        final RecordMetaDataHook hook = metaDataBuilder -> {
+            metaDataBuilder.removeIndex(TextIndexTestUtils.SIMPLE_DEFAULT_NAME);
+            metaDataBuilder.addIndex(SIMPLE_DOC, SIMPLE_TEXT_BACKGROUND_MERGE);
+        };
+        final FDBRecordStore.Builder storeBuilder;
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            storeBuilder = recordStore.asBuilder();
+            // The merger opens the store with the usual existence check.
+            storeBuilder.copyBuilder().setContext(context).createOrOpen();
+            commit(context);
+        }
+        // Each transaction adds a segment, which is not merged by the updates themselves.
+        for (int i = 0; i < 12; i++) {
+            try (FDBRecordContext context = openContext()) {
+                openRecordStore(context, hook);
+                recordStore.saveRecord(createSimpleDocument(1000L + i, DYLAN, 2));
+                commit(context);
+            }
+        }
+        assertEquals(0, timer.getCount(LuceneEvents.Counts.LUCENE_MERGE));
+
+        final int merges;
+        try (FDBDatabaseRunner runner = fdb.newRunner()) {
+            runner.setTimer(timer);
+            merges = new LuceneIndexMerger(runner, storeBuilder, SIMPLE_TEXT_BACKGROUND_MERGE.getName()).merge();
+        }
+        assertTrue(merges > 0);
+        assertEquals(merges, timer.getCount(LuceneEvents.Counts.LUCENE_MERGE));
+
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context, hook);
+            assertEquals(12, recordStore.scanIndex(SIMPLE_TEXT_BACKGROUND_MERGE, IndexScanType.BY_LUCENE,
+                    TupleRange.allOf(Tuple.from("idiot")), null, ScanProperties.FORWARD_SCAN)
+                    .getCount().join());
+            // Nothing more to merge.
+            LuceneMergeOperationResult result = (LuceneMergeOperationResult)recordStore.performIndexOperation(
+                    SIMPLE_TEXT_BACKGROUND_MERGE.getName(), new LuceneMergeOperation());
+            assertFalse(result.isMerged());
+        }
+    }
+
     @Test
     public void testRollback() {
         try (FDBRecordContext context = openContext()) {
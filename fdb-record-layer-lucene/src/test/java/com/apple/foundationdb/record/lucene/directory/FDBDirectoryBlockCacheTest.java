@@ -0,0 +1,107 @@
+/*
+ * FDBDirectoryBlockCacheTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2021 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.lucene.directory;
+
+import com.apple.foundationdb.record.lucene.LuceneEvents;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.test.Tags;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link FDBDirectoryBlockCache}.
+ */
+@Tag(Tags.RequiresFDB)
+public class FDBDirectoryBlockCacheTest extends FDBDirectoryBaseTest {
+    private FDBDirectoryBlockCache blockCache;
+
+    @BeforeEach
+    public void setUpBlockCache() {
+        blockCache = new FDBDirectoryBlockCache();
+        FDBDirectoryBlockCache.setForDatabase(fdb, blockCache);
+    }
+
+    @AfterEach
+    public void tearDownBlockCache() {
+        FDBDirectoryBlockCache.setForDatabase(fdb, null);
+    }
+
+    private byte[] readBlock(FDBStoreTimer timer, String name) throws Exception {
+        try (FDBRecordContext context = fdb.openContext(null, timer)) {
+            FDBDirectory readDirectory = new FDBDirectory(subspace, context);
+            return readDirectory.readBlock(name, readDirectory.getFDBLuceneFileReference(name), 0).get();
+        }
+    }
+
+    @Test
+    public void sharedBetweenTransactions() throws Exception {
+        final byte[] data = "block of an immutable file".getBytes(StandardCharsets.UTF_8);
+        try (FDBRecordContext context = fdb.openContext()) {
+            FDBDirectory writeDirectory = new FDBDirectory(subspace, context);
+            long id = writeDirectory.getIncrement();
+            writeDirectory.writeFDBLuceneFileReference("file1", new FDBLuceneFileReference(id, data.length, data.length));
+            writeDirectory.writeData(id, 0, data);
+            // Not shared from the writing transaction.
+            assertArrayEquals(data, writeDirectory.readBlock("file1", CompletableFuture.completedFuture(
+                    new FDBLuceneFileReference(id, data.length, data.length)), 0).get());
+            assertEquals(0L, blockCache.size());
+            context.commit();
+        }
+
+        FDBStoreTimer timer = new FDBStoreTimer();
+        assertArrayEquals(data, readBlock(timer, "file1"));
+        assertEquals(1, timer.getCount(LuceneEvents.Counts.LUCENE_SHARED_CACHE_MISS));
+        assertEquals(0, timer.getCount(LuceneEvents.Counts.LUCENE_SHARED_CACHE_HIT));
+        assertEquals(1L, blockCache.size());
+
+        timer.reset();
+        assertArrayEquals(data, readBlock(timer, "file1"));
+        assertEquals(0, timer.getCount(LuceneEvents.Counts.LUCENE_SHARED_CACHE_MISS));
+        assertEquals(1, timer.getCount(LuceneEvents.Counts.LUCENE_SHARED_CACHE_HIT));
+    }
+
+    @Test
+    public void notSharedWithRecreatedDirectory() throws Exception {
+        final byte[] data1 = "first directory".getBytes(StandardCharsets.UTF_8);
+        final byte[] data2 = "second directory".getBytes(StandardCharsets.UTF_8);
+        for (byte[] data : new byte[][] {data1, data2}) {
+            try (FDBRecordContext context = fdb.openContext()) {
+                context.ensureActive().clear(subspace.range());
+                FDBDirectory writeDirectory = new FDBDirectory(subspace, context);
+                long id = writeDirectory.getIncrement();
+                writeDirectory.writeFDBLuceneFileReference("file1", new FDBLuceneFileReference(id, data.length, data.length));
+                writeDirectory.writeData(id, 0, data);
+                context.commit();
+            }
+            // The same file id is reused, but the incarnation differs.
+            assertArrayEquals(data, readBlock(new FDBStoreTimer(), "file1"));
+        }
+    }
+}
@@ -20,13 +20,18 @@
 
 package com.apple.foundationdb.record.lucene.directory;
 
+import com.apple.foundationdb.record.lucene.LuceneEvents;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.test.Tags;
+import org.apache.lucene.store.IOContext;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  * Test to FDBIndexInput functionality.
@@ -65,4 +70,68 @@ public class FDBIndexInputTest extends FDBDirectoryBaseTest {
         assertArrayEquals(expectedAfterSeek, actual);
     }
 
+    @Test
+    public void testReadBytesAcrossBlocks() throws Exception {
+        FDBIndexOutput output = new FDBIndexOutput(FILE_NAME, directory);
+        byte[] expected = new byte[directory.getBlockSize() * 4 + randomInt(1)];
+        random.nextBytes(expected);
+        output.writeBytes(expected, expected.length);
+        output.close();
+        FDBIndexInput input = new FDBIndexInput(FILE_NAME, directory);
+        byte[] actual = new byte[expected.length];
+        // Chunks that do not divide the block size, so that reads both end at and cross block boundaries.
+        int chunkSize = directory.getBlockSize() / 3 + 1;
+        int offset = 0;
+        while (offset < expected.length) {
+            int length = Math.min(chunkSize, expected.length - offset);
+            input.readBytes(actual, offset, length);
+            offset += length;
+            assertEquals(offset, input.getFilePointer());
+        }
+        assertArrayEquals(expected, actual);
+
+        // Reads that end exactly at a block boundary, followed by single bytes from the next block.
+        input = new FDBIndexInput(FILE_NAME, directory);
+        actual = new byte[directory.getBlockSize()];
+        input.readBytes(actual, 0, actual.length);
+        assertArrayEquals(Arrays.copyOfRange(expected, 0, directory.getBlockSize()), actual);
+        assertEquals(expected[directory.getBlockSize()], input.readByte());
+        actual = new byte[directory.getBlockSize() * 2];
+        input.readBytes(actual, 0, actual.length);
+        assertArrayEquals(Arrays.copyOfRange(expected, directory.getBlockSize() + 1, directory.getBlockSize() * 3 + 1), actual);
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        FDBStoreTimer timer = new FDBStoreTimer();
+        directory = new FDBDirectory(subspace, fdb.openContext(null, timer));
+        FDBIndexOutput output = new FDBIndexOutput(FILE_NAME, directory);
+        byte[] expected = new byte[directory.getBlockSize() * 10 + randomInt(1)];
+        random.nextBytes(expected);
+        output.writeBytes(expected, expected.length);
+        output.close();
+
+        // A single small read does not read ahead.
+        FDBIndexInput input = new FDBIndexInput(FILE_NAME, directory, IOContext.DEFAULT);
+        input.seek(directory.getBlockSize() * 5L);
+        input.readBytes(new byte[16], 0, 16);
+        assertEquals(0, timer.getCount(LuceneEvents.Counts.LUCENE_READ_AHEAD_BLOCK));
+
+        // Sequential reads read ahead up to the end of the file, but each block only once. By default, the window
+        // only opens up once the second block is reached, whereas a read-once input reads ahead from the first.
+        final int lastBlock = (expected.length - 1) / directory.getBlockSize();
+        timer.reset();
+        input = new FDBIndexInput(FILE_NAME, directory, IOContext.DEFAULT);
+        byte[] actual = new byte[expected.length];
+        input.readBytes(actual, 0, expected.length);
+        assertArrayEquals(expected, actual);
+        assertEquals(lastBlock - 1, timer.getCount(LuceneEvents.Counts.LUCENE_READ_AHEAD_BLOCK));
+
+        timer.reset();
+        input = new FDBIndexInput(FILE_NAME, directory, IOContext.READONCE);
+        actual = new byte[expected.length];
+        input.readBytes(actual, 0, expected.length);
+        assertArrayEquals(expected, actual);
+        assertEquals(lastBlock, timer.getCount(LuceneEvents.Counts.LUCENE_READ_AHEAD_BLOCK));
+    }
 }
@@ -20,11 +20,20 @@
 
 package com.apple.foundationdb.record.lucene.directory;
 
+import com.apple.foundationdb.record.lucene.LuceneEvents;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.test.Tags;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /**
@@ -53,4 +62,43 @@ public class FDBIndexOutputTest extends FDBDirectoryBaseTest {
         assertEquals(1, directory.getFDBLuceneFileReference(FILE_NAME).get().getSize());
     }
 
+    @Test
+    public void testCompressedBlocks() throws Exception {
+        final byte[] compressible = new byte[3 * FDBDirectory.DEFAULT_BLOCK_SIZE];
+        final byte[] phrase = "It's a wonder that you still know how to breathe. ".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < compressible.length; i++) {
+            compressible[i] = phrase[i % phrase.length];
+        }
+        final byte[] incompressible = new byte[FDBDirectory.DEFAULT_BLOCK_SIZE + 100];
+        random.nextBytes(incompressible);
+        final FDBStoreTimer timer = new FDBStoreTimer();
+        try (FDBRecordContext context = fdb.openContext(null, timer)) {
+            FDBDirectory compressingDirectory = new FDBDirectory(subspace, context, true);
+            FDBIndexOutput output = new FDBIndexOutput("compressible", compressingDirectory);
+            output.writeBytes(compressible, compressible.length);
+            output.close();
+            output = new FDBIndexOutput("incompressible", compressingDirectory);
+            output.writeBytes(incompressible, incompressible.length);
+            output.close();
+            context.commit();
+        }
+        assertEquals(3, timer.getCount(LuceneEvents.Counts.LUCENE_COMPRESSED_BLOCK));
+        assertEquals(2, timer.getCount(LuceneEvents.Counts.LUCENE_UNCOMPRESSED_BLOCK));
+        assertTrue(timer.getCount(LuceneEvents.Counts.LUCENE_COMPRESSED_BYTES_SAVED) > 2 * FDBDirectory.DEFAULT_BLOCK_SIZE);
+
+        // Files are read the same way whether or not the reading directory compresses new ones.
+        try (FDBRecordContext context = fdb.openContext()) {
+            FDBDirectory readDirectory = new FDBDirectory(subspace, context);
+            assertTrue(readDirectory.getFDBLuceneFileReference("compressible").get().isCompressed());
+            for (byte[] expected : new byte[][] {compressible, incompressible}) {
+                final String name = expected == compressible ? "compressible" : "incompressible";
+                assertEquals(expected.length, readDirectory.fileLength(name));
+                try (IndexInput input = readDirectory.openInput(name, IOContext.READONCE)) {
+                    byte[] actual = new byte[expected.length];
+                    input.readBytes(actual, 0, actual.length);
+                    assertArrayEquals(expected, actual);
+                }
+            }
+        }
+    }
 }